@@ -0,0 +1,169 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.protempa.proposition.DataSourceBackendId;
+import org.protempa.proposition.LocalUniqueId;
+import org.protempa.proposition.PrimitiveParameter;
+import org.protempa.proposition.UniqueId;
+import org.protempa.proposition.interval.Relation;
+import org.protempa.proposition.value.AbsoluteTimeGranularity;
+import org.protempa.proposition.value.AbsoluteTimeUnit;
+import org.protempa.proposition.value.NominalValue;
+import org.protempa.proposition.value.NumberValue;
+import org.protempa.proposition.value.ValueComparator;
+import org.protempa.proposition.value.ValueType;
+
+/**
+ * Synthetic knowledge and data for the benchmarks: a numerical observation,
+ * <code>OBS</code>, a low-level abstraction of it, <code>OBS_STATE</code>,
+ * with the values <code>High</code> (above 100) and <code>Normal</code>, and
+ * a high-level abstraction, <code>OBS_NORMAL_THEN_HIGH</code>, of a
+ * <code>Normal</code> interval followed within a week by a
+ * <code>High</code> interval. Observations are one day apart, and their values are a seeded random walk
+ * around 100 so that abstraction intervals have a realistic mix of lengths.
+ *
+ * @author Andrew Post
+ */
+final class BenchmarkData {
+
+    static final String OBSERVATION_ID = "OBS";
+    static final String ABSTRACTION_ID = "OBS_STATE";
+    static final String HIGH_LEVEL_ABSTRACTION_ID = "OBS_NORMAL_THEN_HIGH";
+    static final String ALGORITHM_ID = "stateDetector";
+    static final String DATA_SOURCE_BACKEND_ID = "benchmark";
+
+    private static final long START = 1262304000000L; // 2010-01-01
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private BenchmarkData() {
+    }
+
+    static PrimitiveParameterDefinition newObservationDefinition() {
+        PrimitiveParameterDefinition result
+                = new PrimitiveParameterDefinition(OBSERVATION_ID);
+        result.setValueType(ValueType.NUMERICALVALUE);
+        result.setInDataSource(true);
+        return result;
+    }
+
+    static LowLevelAbstractionDefinition newAbstractionDefinition() {
+        LowLevelAbstractionDefinition result
+                = new LowLevelAbstractionDefinition(ABSTRACTION_ID);
+        result.addPrimitiveParameterId(OBSERVATION_ID);
+        result.setAlgorithmId(ALGORITHM_ID);
+        result.setValueType(ValueType.NOMINALVALUE);
+        result.setSlidingWindowWidthMode(SlidingWindowWidthMode.DEFAULT);
+
+        LowLevelAbstractionValueDefinition high
+                = new LowLevelAbstractionValueDefinition(result, "High");
+        high.setValue(NominalValue.getInstance("High"));
+        high.setParameterValue("minThreshold", NumberValue.getInstance(100));
+        high.setParameterComp("minThreshold", ValueComparator.GREATER_THAN);
+
+        LowLevelAbstractionValueDefinition normal
+                = new LowLevelAbstractionValueDefinition(result, "Normal");
+        normal.setValue(NominalValue.getInstance("Normal"));
+        normal.setParameterValue("maxThreshold", NumberValue.getInstance(100));
+        normal.setParameterComp("maxThreshold",
+                ValueComparator.LESS_THAN_OR_EQUAL_TO);
+        return result;
+    }
+
+    static HighLevelAbstractionDefinition newHighLevelAbstractionDefinition() {
+        HighLevelAbstractionDefinition result
+                = new HighLevelAbstractionDefinition(HIGH_LEVEL_ABSTRACTION_ID);
+        TemporalExtendedParameterDefinition normal
+                = new TemporalExtendedParameterDefinition(ABSTRACTION_ID,
+                        NominalValue.getInstance("Normal"));
+        TemporalExtendedParameterDefinition high
+                = new TemporalExtendedParameterDefinition(ABSTRACTION_ID,
+                        NominalValue.getInstance("High"));
+        result.add(normal);
+        result.add(high);
+        result.setRelation(normal, high, new Relation(null, null, null, null,
+                null, null, null, null, 0, AbsoluteTimeUnit.DAY,
+                7, AbsoluteTimeUnit.DAY, null, null, null, null));
+        return result;
+    }
+
+    /**
+     * Creates a key's observations.
+     *
+     * @param keyId the key id.
+     * @param count the number of observations.
+     * @param random the source of the observations' values.
+     * @return a newly created list of observations in temporal order.
+     */
+    static List<PrimitiveParameter> newObservations(String keyId, int count,
+            Random random) {
+        List<PrimitiveParameter> result = new ArrayList<>(count);
+        DataSourceBackendId sourceId
+                = DataSourceBackendId.getInstance(DATA_SOURCE_BACKEND_ID);
+        double value = 100.0;
+        for (int i = 0; i < count; i++) {
+            PrimitiveParameter pp = new PrimitiveParameter(OBSERVATION_ID,
+                    new UniqueId(sourceId,
+                            new KeyIdIndexLocalUniqueId(keyId, i)));
+            pp.setPosition(START + i * DAY_MILLIS);
+            pp.setGranularity(AbsoluteTimeGranularity.DAY);
+            value += random.nextGaussian() * 5.0;
+            pp.setValue(NumberValue.getInstance(Math.rint(value)));
+            result.add(pp);
+        }
+        return result;
+    }
+
+    private static final class KeyIdIndexLocalUniqueId
+            implements LocalUniqueId {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String id;
+        private final int index;
+
+        KeyIdIndexLocalUniqueId(String keyId, int index) {
+            this.id = keyId + "^" + OBSERVATION_ID + "^" + index;
+            this.index = index;
+        }
+
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public int getNumericalId() {
+            return this.index;
+        }
+
+        @Override
+        public LocalUniqueId clone() {
+            try {
+                return (LocalUniqueId) super.clone();
+            } catch (CloneNotSupportedException ex) {
+                throw new AssertionError("Never reached!");
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import org.protempa.dest.AbstractDestination;
+import org.protempa.dest.AbstractQueryResultsHandler;
+import org.protempa.dest.QueryResultsHandler;
+import org.protempa.proposition.Proposition;
+import org.protempa.proposition.UniqueId;
+import org.protempa.query.Query;
+
+/**
+ * Counts the propositions that are passed to its query results handler.
+ *
+ * @author Andrew Post
+ */
+final class CountingDestination extends AbstractDestination {
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Returns the number of propositions counted since the previous call.
+     *
+     * @return the number of propositions.
+     */
+    long sumThenReset() {
+        return this.count.sumThenReset();
+    }
+
+    @Override
+    public QueryResultsHandler getQueryResultsHandler(Query query,
+            DataSource dataSource, KnowledgeSource knowledgeSource,
+            List<? extends ProtempaEventListener> eventListeners) {
+        return new AbstractQueryResultsHandler() {
+            @Override
+            public void handleQueryResult(String keyId,
+                    List<Proposition> propositions,
+                    Map<Proposition, Set<Proposition>> forwardDerivations,
+                    Map<Proposition, Set<Proposition>> backwardDerivations,
+                    Map<UniqueId, Proposition> references) {
+                CountingDestination.this.count.add(propositions.size());
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.protempa.proposition.Proposition;
+
+/**
+ * Measures merging the per-entity streams of a data source by key id with
+ * {@link DataStreamerIterator}. Each stream has an event for about half of
+ * the keys, like the streams of a relational database data source backend
+ * for a patient population in which not every patient has every kind of
+ * data.
+ *
+ * @author Andrew Post
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataStreamerIteratorBenchmark {
+
+    /**
+     * The number of streams to merge.
+     */
+    @Param({"1", "4", "16", "64", "128"})
+    public int streamCount;
+
+    /**
+     * The number of keys.
+     */
+    @Param({"10000"})
+    public int keyCount;
+
+    private List<List<DataStreamingEvent<Proposition>>> streams;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1L);
+        List<Proposition> data = Collections.emptyList();
+        this.streams = new ArrayList<>(this.streamCount);
+        for (int i = 0; i < this.streamCount; i++) {
+            List<DataStreamingEvent<Proposition>> stream = new ArrayList<>();
+            for (int j = 0; j < this.keyCount; j++) {
+                if (random.nextBoolean()) {
+                    stream.add(new DataStreamingEvent<>(
+                            String.format("%010d", j), data));
+                }
+            }
+            this.streams.add(stream);
+        }
+    }
+
+    @Benchmark
+    public void merge(Blackhole bh) throws DataSourceReadException {
+        List<DataStreamingEventIterator<Proposition>> itrs
+                = new ArrayList<>(this.streamCount);
+        for (List<DataStreamingEvent<Proposition>> stream : this.streams) {
+            itrs.add(new ListDataStreamingEventIterator(stream));
+        }
+        try (DataStreamerIterator<Proposition> itr
+                = new DataStreamerIterator<>(itrs)) {
+            while (itr.hasNext()) {
+                bh.consume(itr.next());
+            }
+        }
+    }
+
+    private static final class ListDataStreamingEventIterator
+            implements DataStreamingEventIterator<Proposition> {
+
+        private final List<DataStreamingEvent<Proposition>> events;
+        private int index;
+
+        ListDataStreamingEventIterator(
+                List<DataStreamingEvent<Proposition>> events) {
+            this.events = events;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < this.events.size();
+        }
+
+        @Override
+        public DataStreamingEvent<Proposition> next() {
+            return this.events.get(this.index++);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.protempa.backend.asb.AlgorithmSourceBackend;
+import org.protempa.backend.dsb.DataSourceBackend;
+import org.protempa.backend.ksb.SimpleKnowledgeSourceBackend;
+import org.protempa.query.DefaultQueryBuilder;
+import org.protempa.query.Query;
+
+/**
+ * Measures end-to-end query execution: retrieving data from a synthetic data
+ * source backend that generates a number of patients, each with a number of
+ * observations, computing a low-level abstraction or passing the
+ * observations through, and handing the results to a destination that
+ * counts them. Divide the number of patients by the time per operation for
+ * the throughput in keys per second.
+ *
+ * @author Andrew Post
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+    /**
+     * The number of patients.
+     */
+    @Param({"1000", "10000"})
+    public int patientCount;
+
+    /**
+     * The number of observations per patient.
+     */
+    @Param({"10", "100"})
+    public int observationCount;
+
+    /**
+     * The proposition to query: the raw observations, or the low-level
+     * abstraction of them.
+     */
+    @Param({BenchmarkData.OBSERVATION_ID, BenchmarkData.ABSTRACTION_ID})
+    public String propositionId;
+
+    private Protempa protempa;
+    private Query query;
+    private CountingDestination destination;
+
+    @Setup
+    public void setup() throws ProtempaException {
+        DataSourceBackend dataSourceBackend = new SyntheticDataSourceBackend(
+                this.patientCount, this.observationCount);
+        AlgorithmSourceBackend algorithmSourceBackend
+                = new StateAlgorithmSourceBackend();
+        this.protempa = new Protempa(
+                new DataSourceImpl(
+                        new DataSourceBackend[]{dataSourceBackend}),
+                new KnowledgeSourceImpl(new SimpleKnowledgeSourceBackend(
+                        BenchmarkData.newObservationDefinition(),
+                        BenchmarkData.newAbstractionDefinition())),
+                new AlgorithmSourceImpl(
+                        new AlgorithmSourceBackend[]{algorithmSourceBackend}));
+        DefaultQueryBuilder queryBuilder = new DefaultQueryBuilder();
+        queryBuilder.setName("ExecutorBenchmark");
+        queryBuilder.setPropositionIds(new String[]{this.propositionId});
+        this.query = this.protempa.buildQuery(queryBuilder);
+        this.destination = new CountingDestination();
+    }
+
+    @TearDown
+    public void tearDown() throws CloseException {
+        this.protempa.close();
+    }
+
+    @Benchmark
+    public long execute() throws QueryException {
+        this.protempa.execute(this.query, this.destination);
+        return this.destination.sumThenReset();
+    }
+}
@@ -0,0 +1,125 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.drools.WorkingMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.protempa.backend.asb.java.StateAlgorithm;
+import org.protempa.proposition.PrimitiveParameter;
+import org.protempa.proposition.Sequence;
+
+/**
+ * Measures finding the intervals of a low-level abstraction in one key's
+ * time series with
+ * {@link LowLevelAbstractionFinder#process(org.protempa.proposition.Sequence, org.protempa.LowLevelAbstractionDefinition, org.protempa.Algorithm, org.protempa.ObjectAsserter, org.protempa.DerivationsBuilder, org.drools.WorkingMemory) },
+ * without the rule engine around it. The finder only uses the working
+ * memory for its globals, so a map-backed stand-in is used.
+ *
+ * @author Andrew Post
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LowLevelAbstractionFinderBenchmark {
+
+    /**
+     * The number of observations in the time series.
+     */
+    @Param({"10", "100", "1000"})
+    public int observationCount;
+
+    private Sequence<PrimitiveParameter> sequence;
+    private LowLevelAbstractionDefinition definition;
+    private Algorithm algorithm;
+    private Map<String, Object> globals;
+    private WorkingMemory workingMemory;
+
+    @Setup
+    public void setup() {
+        this.definition = BenchmarkData.newAbstractionDefinition();
+        this.algorithm = new StateAlgorithm(new Algorithms(),
+                BenchmarkData.ALGORITHM_ID);
+        this.sequence = new Sequence<>(BenchmarkData.OBSERVATION_ID,
+                BenchmarkData.newObservations("0000000001",
+                        this.observationCount, new Random(1L)));
+        this.globals = new HashMap<>();
+        this.workingMemory = newWorkingMemory(this.globals);
+    }
+
+    @Benchmark
+    public void process(final Blackhole bh)
+            throws AlgorithmInitializationException,
+            AlgorithmProcessingException {
+        this.globals.clear();
+        this.globals.put(WorkingMemoryGlobals.KEY_ID, "0000000001");
+        LowLevelAbstractionFinder.process(this.sequence, this.definition,
+                this.algorithm, new ObjectAsserter() {
+            @Override
+            public void assertObject(Object obj) {
+                bh.consume(obj);
+            }
+        }, new DerivationsBuilder(), this.workingMemory);
+    }
+
+    /**
+     * Creates a working memory that supports only getting and setting
+     * globals.
+     *
+     * @param globals where to store the globals.
+     * @return a working memory.
+     */
+    private static WorkingMemory newWorkingMemory(
+            final Map<String, Object> globals) {
+        return (WorkingMemory) Proxy.newProxyInstance(
+                WorkingMemory.class.getClassLoader(),
+                new Class<?>[]{WorkingMemory.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getGlobal":
+                            return globals.get((String) args[0]);
+                        case "setGlobal":
+                            globals.put((String) args[0], args[1]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.getName());
+                    }
+                });
+    }
+}
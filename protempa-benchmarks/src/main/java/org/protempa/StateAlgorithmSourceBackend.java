@@ -0,0 +1,53 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.protempa.backend.asb.AbstractAlgorithmSourceBackend;
+import org.protempa.backend.asb.java.StateAlgorithm;
+
+/**
+ * Provides the {@link StateAlgorithm} that computes the benchmarks'
+ * low-level abstraction.
+ *
+ * @author Andrew Post
+ */
+final class StateAlgorithmSourceBackend extends AbstractAlgorithmSourceBackend {
+
+    @Override
+    public Algorithm readAlgorithm(String id, Algorithms algorithms) {
+        if (BenchmarkData.ALGORITHM_ID.equals(id)) {
+            return new StateAlgorithm(algorithms, id);
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public void readAlgorithms(Algorithms algorithms) {
+        if (!algorithms.hasAlgorithm(BenchmarkData.ALGORITHM_ID)) {
+            new StateAlgorithm(algorithms, BenchmarkData.ALGORITHM_ID);
+        }
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "State Algorithm Source Backend";
+    }
+}
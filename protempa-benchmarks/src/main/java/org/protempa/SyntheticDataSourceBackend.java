@@ -0,0 +1,87 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import org.protempa.backend.dsb.AbstractDataSourceBackend;
+import org.protempa.backend.dsb.filter.Filter;
+import org.protempa.dest.QueryResultsHandler;
+import org.protempa.proposition.Proposition;
+
+/**
+ * Generates each patient's observations as they are read, with
+ * {@link BenchmarkData#newObservations(java.lang.String, int, java.util.Random) }.
+ *
+ * @author Andrew Post
+ */
+final class SyntheticDataSourceBackend extends AbstractDataSourceBackend {
+
+    private final int patientCount;
+    private final int observationCount;
+
+    SyntheticDataSourceBackend(int patientCount, int observationCount) {
+        this.patientCount = patientCount;
+        this.observationCount = observationCount;
+        setKeyType("Patient");
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Synthetic Data Source Backend";
+    }
+
+    @Override
+    public DataStreamingEventIterator<Proposition> readPropositions(
+            Set<String> keyIds, Set<String> propIds, Filter filters,
+            QueryResultsHandler queryResultsHandler)
+            throws DataSourceReadException {
+        int count = propIds.contains(BenchmarkData.OBSERVATION_ID)
+                ? this.patientCount : 0;
+        return new DataStreamingEventIterator<Proposition>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < count;
+            }
+
+            @Override
+            public DataStreamingEvent<Proposition> next() {
+                if (this.index >= count) {
+                    throw new NoSuchElementException();
+                }
+                int i = this.index++;
+                String keyId = String.format("%010d", i);
+                return new DataStreamingEvent<>(keyId,
+                        new ArrayList<Proposition>(
+                                BenchmarkData.newObservations(keyId,
+                                        observationCount,
+                                        new Random(i))));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
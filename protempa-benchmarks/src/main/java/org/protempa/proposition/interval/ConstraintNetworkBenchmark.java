@@ -0,0 +1,96 @@
+package org.protempa.proposition.interval;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.protempa.proposition.value.AbsoluteTimeGranularity;
+import org.protempa.proposition.value.AbsoluteTimeUnit;
+
+/**
+ * Measures building a {@link ConstraintNetwork} from intervals with uncertain
+ * starts, finishes and lengths, and solving it for its bounds and
+ * consistency. This is what {@link DefaultInterval} does whenever one of its
+ * bounds is not known exactly.
+ *
+ * @author Andrew Post
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConstraintNetworkBenchmark {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * The number of intervals in the network.
+     */
+    @Param({"1", "4", "16"})
+    public int intervalCount;
+
+    private Interval[] intervals;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1L);
+        this.intervals = new Interval[this.intervalCount];
+        long base = 1262304000000L; // 2010-01-01
+        for (int i = 0; i < this.intervalCount; i++) {
+            long minStart = base + random.nextInt(365) * DAY_MILLIS;
+            long maxStart = minStart + random.nextInt(7) * DAY_MILLIS;
+            long minFinish = maxStart + random.nextInt(7) * DAY_MILLIS;
+            long maxFinish = minFinish + random.nextInt(7) * DAY_MILLIS;
+            this.intervals[i] = new DefaultInterval(minStart, maxStart,
+                    AbsoluteTimeGranularity.DAY, minFinish, maxFinish,
+                    AbsoluteTimeGranularity.DAY, 1L, 30L,
+                    AbsoluteTimeUnit.DAY);
+        }
+    }
+
+    @Benchmark
+    public void solve(Blackhole bh) {
+        ConstraintNetwork cn = new ConstraintNetwork(this.intervalCount);
+        for (Interval interval : this.intervals) {
+            cn.addInterval(interval);
+        }
+        bh.consume(cn.getMinimumStart());
+        bh.consume(cn.getMaximumStart());
+        bh.consume(cn.getMinimumFinish());
+        bh.consume(cn.getMaximumFinish());
+        bh.consume(cn.getMinimumDuration());
+        bh.consume(cn.getMaximumDuration());
+        bh.consume(cn.getConsistent());
+    }
+}
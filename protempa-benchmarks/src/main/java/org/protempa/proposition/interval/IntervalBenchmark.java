@@ -0,0 +1,138 @@
+package org.protempa.proposition.interval;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.protempa.proposition.value.AbsoluteTimeGranularity;
+
+/**
+ * Measures creating intervals with {@link IntervalFactory}, with and without
+ * interning, and testing pairs of intervals with
+ * {@link Relation#hasRelation(org.protempa.proposition.interval.Interval, org.protempa.proposition.interval.Interval) }.
+ *
+ * @author Andrew Post
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntervalBenchmark {
+
+    private static final int SIZE = 1024;
+    private static final int MASK = SIZE - 1;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Whether the factory interns the intervals it creates.
+     */
+    @Param({"true", "false"})
+    public boolean intern;
+
+    private IntervalFactory intervalFactory;
+    private Long[] starts;
+    private Long[] finishes;
+    private Interval[] intervals1;
+    private Interval[] intervals2;
+    private int index;
+
+    @Setup
+    public void setup() {
+        this.intervalFactory = new IntervalFactory(this.intern);
+        IntervalFactory.clearCache();
+        Random random = new Random(1L);
+        this.starts = new Long[SIZE];
+        this.finishes = new Long[SIZE];
+        this.intervals1 = new Interval[SIZE];
+        this.intervals2 = new Interval[SIZE];
+        long base = 1262304000000L; // 2010-01-01
+        for (int i = 0; i < SIZE; i++) {
+            long start = base + random.nextInt(3650) * DAY_MILLIS;
+            long finish = start + random.nextInt(30) * DAY_MILLIS;
+            this.starts[i] = start;
+            this.finishes[i] = finish;
+            this.intervals1[i] = this.intervalFactory.getInstance(start,
+                    AbsoluteTimeGranularity.DAY, finish,
+                    AbsoluteTimeGranularity.DAY);
+            long start2 = start + (random.nextInt(60) - 30) * DAY_MILLIS;
+            long finish2 = start2 + random.nextInt(30) * DAY_MILLIS;
+            this.intervals2[i] = this.intervalFactory.getInstance(start2,
+                    AbsoluteTimeGranularity.DAY, finish2,
+                    AbsoluteTimeGranularity.DAY);
+        }
+    }
+
+    @Benchmark
+    public Interval getInstancePosition() {
+        int i = this.index++ & MASK;
+        return this.intervalFactory.getInstance(this.starts[i],
+                AbsoluteTimeGranularity.DAY);
+    }
+
+    @Benchmark
+    public Interval getInstanceStartFinish() {
+        int i = this.index++ & MASK;
+        return this.intervalFactory.getInstance(this.starts[i],
+                AbsoluteTimeGranularity.DAY, this.finishes[i],
+                AbsoluteTimeGranularity.DAY);
+    }
+
+    @Benchmark
+    public Interval getInstanceMinMax() {
+        int i = this.index++ & MASK;
+        return this.intervalFactory.getInstance(this.starts[i],
+                this.starts[i], AbsoluteTimeGranularity.DAY,
+                this.finishes[i], null, AbsoluteTimeGranularity.DAY);
+    }
+
+    @Benchmark
+    public boolean hasRelationBefore() {
+        int i = this.index++ & MASK;
+        return Relation.BEFORE.hasRelation(this.intervals1[i],
+                this.intervals2[i]);
+    }
+
+    @Benchmark
+    public boolean hasRelationOverlaps() {
+        int i = this.index++ & MASK;
+        return Relation.OVERLAPS.hasRelation(this.intervals1[i],
+                this.intervals2[i]);
+    }
+
+    @Benchmark
+    public boolean hasRelationContains() {
+        int i = this.index++ & MASK;
+        return Relation.CONTAINS.hasRelation(this.intervals1[i],
+                this.intervals2[i]);
+    }
+}
@@ -0,0 +1,100 @@
+package org.protempa.proposition.value;
+
+/*-
+ * #%L
+ * Protempa Benchmarks
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the calendar arithmetic in {@link AbsoluteTimeGranularity} and
+ * {@link AbsoluteTimeUnit}. Run with several threads (<code>-t</code>) to
+ * check that the methods do not contend with each other.
+ *
+ * @author Andrew Post
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AbsoluteTimeGranularityBenchmark {
+
+    private static final int SIZE = 1024;
+    private static final int MASK = SIZE - 1;
+
+    private long[] positions;
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1L);
+        this.positions = new long[SIZE];
+        long base = 1262304000000L; // 2010-01-01
+        for (int i = 0; i < SIZE; i++) {
+            this.positions[i] = base
+                    + (long) (random.nextDouble() * 10 * 365 * 24 * 60 * 60
+                    * 1000);
+        }
+    }
+
+    @Benchmark
+    public long earliestDay() {
+        return AbsoluteTimeGranularity.DAY.earliest(
+                this.positions[this.index++ & MASK]);
+    }
+
+    @Benchmark
+    public long latestMonth() {
+        return AbsoluteTimeGranularity.MONTH.latest(
+                this.positions[this.index++ & MASK]);
+    }
+
+    @Benchmark
+    public long minimumDistanceDays() {
+        return AbsoluteTimeGranularity.DAY.minimumDistance(
+                this.positions[this.index++ & MASK], 30,
+                AbsoluteTimeUnit.DAY);
+    }
+
+    @Benchmark
+    public long distanceMonths() {
+        int i = this.index++;
+        return AbsoluteTimeGranularity.DAY.distance(
+                this.positions[i & MASK], this.positions[(i + 1) & MASK],
+                AbsoluteTimeGranularity.DAY, AbsoluteTimeUnit.MONTH);
+    }
+
+    @Benchmark
+    public long addToPositionMonths() {
+        return AbsoluteTimeUnit.MONTH.addToPosition(
+                this.positions[this.index++ & MASK], 6);
+    }
+}
@@ -32,7 +32,9 @@ import org.protempa.proposition.UniqueId;
 abstract class AbstractResultProcessor implements SQLGenResultProcessor {
 
     private final String dataSourceBackendId;
+    private final DataSourceBackendId dsbId;
     private final EntitySpec entitySpec;
+    private final int[] maxWidths;
     private boolean casePresent;
     final RelationalDbDataSourceBackend backend;
     
@@ -46,6 +48,8 @@ abstract class AbstractResultProcessor implements SQLGenResultProcessor {
         this.backend = backend;
         this.entitySpec = entitySpec;
         this.dataSourceBackendId = dataSourceBackendId;
+        this.dsbId = DataSourceBackendId.getInstance(dataSourceBackendId);
+        this.maxWidths = entitySpec.getMaxWidths();
     }
 
     final String getDataSourceBackendId() {
@@ -81,8 +85,7 @@ abstract class AbstractResultProcessor implements SQLGenResultProcessor {
 
     protected final UniqueId generateUniqueId(String name,
             String[] uniqueIds) {
-        return new UniqueId(
-                DataSourceBackendId.getInstance(this.dataSourceBackendId),
-                new SQLGenLocalUniqueId(name, uniqueIds, this.entitySpec.getMaxWidths()));
+        return new UniqueId(this.dsbId,
+                new SQLGenLocalUniqueId(name, uniqueIds, this.maxWidths));
     }
 }
@@ -28,6 +28,7 @@ import org.protempa.DataStreamingEventIterator;
 import org.protempa.UniqueIdPair;
 import org.protempa.backend.dsb.filter.Filter;
 import org.protempa.backend.dsb.filter.PositionFilter;
+import org.protempa.metrics.Metrics;
 import org.protempa.proposition.Proposition;
 import org.protempa.proposition.value.Granularity;
 import org.protempa.proposition.value.GranularityFactory;
@@ -44,6 +45,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -51,8 +53,8 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.protempa.ProtempaEvent;
@@ -65,7 +67,7 @@ import org.protempa.ProtempaEvent;
 public abstract class AbstractSQLGenerator implements SQLGenerator {
 
     static final int FETCH_SIZE = 10000;
-    private static final int DEFAULT_QUERY_THREAD_COUNT = 4;
+    private static final int GENERATED_STATEMENT_CACHE_SIZE = 256;
     private static final String READ_PROPOSITION_SQL = "select {0} from {1} {2}";
     private ConnectionSpec connectionSpec;
     private final Map<String, List<EntitySpec>> primitiveParameterSpecs;
@@ -77,13 +79,23 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
     private GranularityFactory granularities;
     private UnitFactory units;
     private RelationalDbDataSourceBackend backend;
-    private int queryThreadCount;
+    private final Map<GeneratedStatementKey, GeneratedStatement> generatedStatements;
 
     protected AbstractSQLGenerator() {
         this.primitiveParameterSpecs = new HashMap<>();
         this.eventSpecs = new HashMap<>();
         this.constantSpecs = new HashMap<>();
-        this.queryThreadCount = DEFAULT_QUERY_THREAD_COUNT;
+        this.generatedStatements = java.util.Collections.synchronizedMap(
+                new LinkedHashMap<GeneratedStatementKey, GeneratedStatement>(
+                        16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<GeneratedStatementKey, GeneratedStatement> eldest) {
+                return size() > GENERATED_STATEMENT_CACHE_SIZE;
+            }
+        });
     }
 
     @Override
@@ -101,10 +113,6 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
             this.granularities = relationalDatabaseSpec.getGranularities();
             this.units = relationalDatabaseSpec.getUnits();
             this.connectionSpec = connectionSpec;
-            Integer queryThreadCountSetting = backend.getQueryThreadCount();
-            if (queryThreadCountSetting != null) {
-                this.queryThreadCount = queryThreadCountSetting;
-            }
         } else {
             throw new IllegalArgumentException(
                     "relationalDatabaseSpec cannot be null");
@@ -147,23 +155,20 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
 
         private final Map<EntitySpec, SQLGenResultProcessorFactory> allEntitySpecToResultProcessor;
         private final Collection<EntitySpec> allEntitySpecs;
-        private final Filter filters;
+        private final List<QueryPartition> partitions;
         private final Set<String> propIds;
-        private final Set<String> keyIds;
         private final EntitySpec entitySpec;
 
         public SQLExecutorCallable(EntitySpec entitySpec,
                 Map<EntitySpec, SQLGenResultProcessorFactory> allEntitySpecToResultProcessor,
                 Collection<EntitySpec> allEntitySpecs,
-                Filter filters,
-                Set<String> propIds,
-                Set<String> keyIds) {
+                List<QueryPartition> partitions,
+                Set<String> propIds) {
             this.entitySpec = entitySpec;
             this.allEntitySpecToResultProcessor = allEntitySpecToResultProcessor;
             this.allEntitySpecs = allEntitySpecs;
-            this.filters = filters;
+            this.partitions = partitions;
             this.propIds = propIds;
-            this.keyIds = keyIds;
         }
 
         @Override
@@ -175,19 +180,47 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
                             backend.getClass(), 
                             new Date(), 
                             this.entitySpec.getName()));
+            ConnectionPool connectionPool = backend.getConnectionPool();
             Connection conn;
             try {
-                conn = connectionSpec.getOrCreate();
+                conn = connectionPool.acquire();
             } catch (SQLException ex) {
                 throw new DataSourceReadException(ex);
             }
-            return processEntitySpecStreaming(this.entitySpec,
-                    allEntitySpecToResultProcessor,
-                    allEntitySpecs, filters,
-                    propIds,
-                    keyIds, new StreamingSQLExecutor(
-                            conn, backendNameForMessages(),
-                            backend.getQueryTimeout()));
+            backend.queryStarted();
+            try {
+                List<StreamingIteratorPair> result
+                        = processEntitySpecStreaming(this.entitySpec,
+                                allEntitySpecToResultProcessor,
+                                allEntitySpecs, partitions,
+                                propIds, new StreamingSQLExecutor(
+                                        conn, backendNameForMessages(),
+                                        backend.getQueryTimeout()));
+                if (result.isEmpty()) {
+                    try {
+                        connectionPool.release(conn);
+                    } finally {
+                        backend.queryFinished();
+                    }
+                }
+                return result;
+            } catch (DataSourceReadException | RuntimeException | Error ex) {
+                /*
+                 * The failed query may have left statements open, so don't
+                 * let the connection be reused.
+                 */
+                try {
+                    conn.close();
+                } catch (SQLException ignore) {
+                }
+                try {
+                    connectionPool.release(conn);
+                } catch (SQLException ignore) {
+                } finally {
+                    backend.queryFinished();
+                }
+                throw ex;
+            }
         }
 
     }
@@ -204,35 +237,76 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
                 = allEntitySpecToResultProcessor.keySet();
 
         final List<StreamingIteratorPair> itrs = new ArrayList<>();
-        ExecutorService executor = Executors.newFixedThreadPool(this.queryThreadCount);
+        ExecutorService executor = this.backend.getQueryExecutor();
         List<Future<List<StreamingIteratorPair>>> list = new ArrayList<>();
-        List<Connection> connections = new ArrayList<>();
+        Integer partitionConcurrency = this.backend.getPartitionConcurrency();
+        int groupCount = partitionGroupCount(
+                partitionConcurrency != null ? partitionConcurrency : 1,
+                entitySpecToPropIds.size(), this.backend.getMaxConnections());
         for (EntitySpec entitySpec : entitySpecToPropIds.keySet()) {
-            list.add(executor.submit(new SQLExecutorCallable(entitySpec, allEntitySpecToResultProcessor, allEntitySpecs, filters, propIds, keyIds)));
+            List<List<QueryPartition>> groups = groupPartitions(
+                    constructPartitions(entitySpec,
+                            computeApplicableFilters(filters, allEntitySpecs,
+                                    entitySpec),
+                            keyIds),
+                    groupCount);
+            for (List<QueryPartition> group : groups) {
+                list.add(executor.submit(new SQLExecutorCallable(entitySpec, allEntitySpecToResultProcessor, allEntitySpecs, group, propIds)));
+            }
         }
 
+        /*
+         * Wait for every query, even after an interrupt or a failure, so
+         * that all of the connections that they checked out get released.
+         */
+        boolean interrupted = false;
+        ExecutionException failure = null;
         for (Future<List<StreamingIteratorPair>> future : list) {
-            try {
-                itrs.addAll(future.get());
-            } catch (InterruptedException ex) {
-                SQLGenUtil.logger().log(Level.FINER, "SQL generation thread interrupted", ex);
-            } catch (ExecutionException ex) {
-                throw new DataSourceReadException(ex);
+            while (true) {
+                try {
+                    itrs.addAll(future.get());
+                    break;
+                } catch (InterruptedException ex) {
+                    SQLGenUtil.logger().log(Level.FINER, "SQL generation thread interrupted", ex);
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    } else {
+                        failure.addSuppressed(ex);
+                    }
+                    break;
+                }
             }
         }
-        executor.shutdown();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
 
         List<DataStreamingEventIterator<Proposition>> events
                 = new ArrayList<>(
                         itrs.size());
         List<DataStreamingEventIterator<UniqueIdPair>> refs
                 = new ArrayList<>();
+        Set<Connection> connections = new LinkedHashSet<>();
         for (StreamingIteratorPair pair : itrs) {
             events.add(pair.getProps());
             refs.addAll(pair.getRefs());
+            connections.add(pair.getConnection());
         }
         RelationalDbDataReadIterator streamingResults
-                = new RelationalDbDataReadIterator(refs, events, connections);
+                = new RelationalDbDataReadIterator(refs, events,
+                        new ArrayList<>(connections),
+                        this.backend.getConnectionPool(), this.backend);
+
+        if (failure != null) {
+            try {
+                streamingResults.close();
+            } catch (DataSourceReadException ex) {
+                failure.addSuppressed(ex);
+            }
+            throw new DataSourceReadException(failure);
+        }
 
         return streamingResults;
 
@@ -266,10 +340,114 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
 
     }
 
+    /**
+     * Identifies the SQL that is generated for an entity spec. Key ids are
+     * either bound to parameters, in which case only their number matters,
+     * or absent. Filters are compared with their <code>equals</code>
+     * methods and by their proposition ids, which the filters'
+     * <code>equals</code> methods do not compare.
+     */
+    static final class GeneratedStatementKey {
+
+        private final EntitySpec entitySpec;
+        private final Set<String> propIds;
+        private final Set<List<Object>> filters;
+        private final int keyIdParameterCount;
+        private final SQLOrderBy order;
+        private final boolean wrapKeyId;
+        private final int hashCode;
+
+        GeneratedStatementKey(EntitySpec entitySpec, Set<String> propIds,
+                Set<Filter> filters, int keyIdParameterCount,
+                SQLOrderBy order, boolean wrapKeyId) {
+            this.entitySpec = entitySpec;
+            this.propIds = new HashSet<>(propIds);
+            this.filters = new HashSet<>();
+            for (Filter filter : filters) {
+                this.filters.add(java.util.Arrays.asList(filter,
+                        java.util.Arrays.asList(filter.getPropositionIds())));
+            }
+            this.keyIdParameterCount = keyIdParameterCount;
+            this.order = order;
+            this.wrapKeyId = wrapKeyId;
+            int result = System.identityHashCode(entitySpec);
+            result = 31 * result + this.propIds.hashCode();
+            result = 31 * result + this.filters.hashCode();
+            result = 31 * result + keyIdParameterCount;
+            result = 31 * result + (order != null ? order.hashCode() : 0);
+            result = 31 * result + (wrapKeyId ? 1 : 0);
+            this.hashCode = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof GeneratedStatementKey)) {
+                return false;
+            }
+            GeneratedStatementKey other = (GeneratedStatementKey) obj;
+            return this.entitySpec == other.entitySpec
+                    && this.keyIdParameterCount == other.keyIdParameterCount
+                    && this.order == other.order
+                    && this.wrapKeyId == other.wrapKeyId
+                    && this.propIds.equals(other.propIds)
+                    && this.filters.equals(other.filters);
+        }
+    }
+
+    /**
+     * Generated SQL and whether it has a case clause, which the result
+     * processor needs to know. When cached SQL is reused, the case clause
+     * flag is the only state of the result processor that is restored, so
+     * any other state that generating a select statement sets on the result
+     * processor must be added here too.
+     */
+    private static final class GeneratedStatement {
+
+        private final String sql;
+        private final boolean casePresent;
+
+        GeneratedStatement(String sql, boolean casePresent) {
+            this.sql = sql;
+            this.casePresent = casePresent;
+        }
+    }
+
+    /**
+     * The filters and key ids of one of the queries into which an entity
+     * spec's query is split.
+     */
+    private static class QueryPartition {
+
+        private final Set<Filter> filters;
+        private final Set<String> keyIds;
+
+        QueryPartition(Set<Filter> filters, Set<String> keyIds) {
+            this.filters = filters;
+            this.keyIds = keyIds;
+        }
+
+        Set<Filter> getFilters() {
+            return filters;
+        }
+
+        Set<String> getKeyIds() {
+            return keyIds;
+        }
+
+    }
+
     private List<StreamingIteratorPair> processEntitySpecStreaming(EntitySpec entitySpec,
             Map<EntitySpec, SQLGenResultProcessorFactory> allEntitySpecToResultProcessor,
-            Collection<EntitySpec> allEntitySpecs, Filter filters,
-            Set<String> propIds, Set<String> keyIds,
+            Collection<EntitySpec> allEntitySpecs,
+            List<QueryPartition> partitions, Set<String> propIds,
             StreamingSQLExecutor executor)
             throws DataSourceReadException {
         List<StreamingIteratorPair> result = new ArrayList<>();
@@ -283,12 +461,6 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
         List<EntitySpec> applicableEntitySpecs
                 = computeApplicableEntitySpecs(allEntitySpecs, entitySpec);
 
-        Set<Filter> applicableFilters = computeApplicableFilters(filters,
-                allEntitySpecs, entitySpec);
-
-        List<Set<Filter>> partitions = constructPartitions(entitySpec,
-                applicableFilters);
-
         LinkedHashMap<String, ReferenceSpec> inboundRefSpecs
                 = collectInboundRefSpecs(applicableEntitySpecs, entitySpec, propIds);
         Map<String, ReferenceSpec> bidirRefSpecs = 
@@ -299,13 +471,25 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
                 = factory.getStreamingInstance(dataSourceBackendId, entitySpec,
                         inboundRefSpecs, bidirRefSpecs, propIds);
 
-        for (Set<Filter> filterSet : partitions) {
-            generateAndExecuteSelectStreaming(entitySpec, propIds, filterSet,
-                    applicableEntitySpecs, inboundRefSpecs, keyIds,
-                    SQLOrderBy.ASCENDING,
+        for (QueryPartition partition : partitions) {
+            generateAndExecuteSelectStreaming(entitySpec, propIds,
+                    partition.getFilters(), applicableEntitySpecs,
+                    inboundRefSpecs, partition.getKeyIds(),
+                    this.backend.isClientSideKeyGrouping()
+                            ? null : SQLOrderBy.ASCENDING,
                     resultProcessor, executor, true);
             DataStreamingEventIterator<Proposition> results
                     = resultProcessor.getResults();
+            if (results instanceof PropositionResultSetIterator) {
+                try {
+                    ((PropositionResultSetIterator<?>) results)
+                            .groupByKeyId();
+                } catch (SQLException ex) {
+                    throw new DataSourceReadException("Error retrieving "
+                            + entitySpec.getName() + " from data source backend "
+                            + backendNameForMessages(), ex);
+                }
+            }
             List<DataStreamingEventIterator<UniqueIdPair>> refResults
                     = java.util.Collections.singletonList(resultProcessor
                             .getInboundReferenceResults());
@@ -334,15 +518,96 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
         return filtersCopy;
     }
 
+    /*
+     * Partitions an entity spec's query by time and by key id. This has the
+     * effect of splitting up one query into multiple queries to improve
+     * performance. Each time partition is split into the same key ranges.
+     */
+    private List<QueryPartition> constructPartitions(EntitySpec entitySpec,
+            Set<Filter> filtersCopy, Set<String> keyIds) {
+        Integer keyPartitionCount = this.backend.getKeyPartitionCount();
+        List<Set<String>> keyIdRanges = constructKeyIdRanges(keyIds,
+                keyPartitionCount != null ? keyPartitionCount : 1);
+        List<QueryPartition> result = new ArrayList<>();
+        for (Set<Filter> filterSet
+                : constructTimePartitions(entitySpec, filtersCopy)) {
+            for (Set<String> keyIdRange : keyIdRanges) {
+                result.add(new QueryPartition(filterSet, keyIdRange));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Splits key ids into the given number of contiguous ranges in key id
+     * order. Queries without key ids are not split.
+     */
+    static List<Set<String>> constructKeyIdRanges(Set<String> keyIds,
+            int partitionCount) {
+        if (keyIds == null || partitionCount < 2 || keyIds.size() < 2) {
+            return java.util.Collections.singletonList(keyIds);
+        }
+        List<String> sortedKeyIds = new ArrayList<>(keyIds);
+        java.util.Collections.sort(sortedKeyIds);
+        int n = sortedKeyIds.size();
+        int rangeCount = Math.min(partitionCount, n);
+        List<Set<String>> result = new ArrayList<>(rangeCount);
+        for (int i = 0; i < rangeCount; i++) {
+            result.add(new LinkedHashSet<>(sortedKeyIds.subList(
+                    (int) ((long) n * i / rangeCount),
+                    (int) ((long) n * (i + 1) / rangeCount))));
+        }
+        return result;
+    }
+
+    /*
+     * Computes the number of partition groups per entity spec. Each group
+     * holds a connection until the read's results are closed, so the
+     * partition concurrency is reduced as needed for a read's groups to fit
+     * within the maximum number of connections. Every entity spec still gets
+     * at least one group.
+     */
+    static int partitionGroupCount(int partitionConcurrency,
+            int entitySpecCount, Integer maxConnections) {
+        if (maxConnections == null || entitySpecCount < 1
+                || (long) partitionConcurrency * entitySpecCount
+                <= maxConnections) {
+            return partitionConcurrency;
+        }
+        int result = Math.max(1, maxConnections / entitySpecCount);
+        SQLGenUtil.logger().log(Level.FINE,
+                "Reducing partition concurrency from {0} to {1} so that {2} entity specs fit within {3} connections",
+                new Object[]{partitionConcurrency, result, entitySpecCount,
+                    maxConnections});
+        return result;
+    }
+
+    /*
+     * Distributes partitions round-robin into at most the given number of
+     * groups. Each group's queries run one after another on one connection,
+     * and the groups run concurrently.
+     */
+    static <E> List<List<E>> groupPartitions(List<E> partitions,
+            int groupCount) {
+        int n = Math.max(1, Math.min(groupCount, partitions.size()));
+        List<List<E>> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(new ArrayList<>());
+        }
+        for (int i = 0, size = partitions.size(); i < size; i++) {
+            result.get(i % n).add(partitions.get(i));
+        }
+        return result;
+    }
+
     /*
      * Partitions position filters according to the data source backend's
-     * configuration. This has the effect of splitting up one query into
-     * multiple queries to improve performance. Currently this only works when
-     * upper and lower bounds are provided on the same side of the specified
-     * proposition's intervals. If there are multiple position filters
-     * specified, which one gets chosen to partition is non-deterministic.
+     * configuration. Currently this only works when upper and lower bounds
+     * are provided on the same side of the specified proposition's
+     * intervals. If there are multiple position filters specified, which one
+     * gets chosen to partition is non-deterministic.
      */
-    private List<Set<Filter>> constructPartitions(EntitySpec entitySpec,
+    private List<Set<Filter>> constructTimePartitions(EntitySpec entitySpec,
             Set<Filter> filtersCopy) {
         PositionFilter positionFilter = null;
         for (Filter filter : filtersCopy) {
@@ -544,10 +809,41 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
                     new Object[]{backendNameForMessages, entitySpecName});
         }
 
-        String query = getSelectStatement(entitySpec,
-                entitySpecsCopy, inboundRefSpecs, filtersCopy, propIds,
-                keyIds, order,
-                resultProcessor, wrapKeyId).generateStatement();
+        KeyIdParameters keyIdParameters = KeyIdParameters.getInstance(keyIds);
+        GeneratedStatementKey cacheKey;
+        if (keyIdParameters != null) {
+            keyIds = keyIdParameters;
+            cacheKey = new GeneratedStatementKey(entitySpec, propIds,
+                    filtersCopy, keyIdParameters.getParameters().length,
+                    order, wrapKeyId);
+        } else if (keyIds == null || keyIds.isEmpty()) {
+            cacheKey = new GeneratedStatementKey(entitySpec, propIds,
+                    filtersCopy, 0, order, wrapKeyId);
+        } else {
+            cacheKey = null;
+        }
+        GeneratedStatement generated = cacheKey != null
+                ? this.generatedStatements.get(cacheKey) : null;
+        String query;
+        if (generated != null) {
+            query = generated.sql;
+            /*
+             * Restores the only result processor state that generating the
+             * select statement sets. See GeneratedStatement.
+             */
+            resultProcessor.setCasePresent(generated.casePresent);
+            logger.log(Level.FINER,
+                    "Using cached query for {0}", entitySpecName);
+        } else {
+            query = getSelectStatement(entitySpec,
+                    entitySpecsCopy, inboundRefSpecs, filtersCopy, propIds,
+                    keyIds, order,
+                    resultProcessor, wrapKeyId).generateStatement();
+            if (cacheKey != null) {
+                this.generatedStatements.put(cacheKey, new GeneratedStatement(
+                        query, resultProcessor.isCasePresent()));
+            }
+        }
 
         if (logger.isLoggable(Level.FINE)) {
             logger.log(
@@ -556,7 +852,13 @@ public abstract class AbstractSQLGenerator implements SQLGenerator {
                     new Object[]{backendNameForMessages, entitySpecName,
                         query});
         }
-        executor.executeSelect(entitySpecName, query, resultProcessor);
+        long start = System.nanoTime();
+        executor.executeSelect(entitySpecName, query,
+                keyIdParameters != null
+                        ? keyIdParameters.getParameters() : null,
+                resultProcessor);
+        Metrics.histogram("relationaldb.sql." + entitySpecName + ".micros")
+                .record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
     }
 
     private static void removeNonApplicableEntitySpecs(EntitySpec entitySpec,
@@ -51,7 +51,11 @@ public abstract class AbstractSelectStatement implements SelectStatement {
         this.inboundReferenceSpecs = new LinkedHashMap<>(inboundReferenceSpecs);
         this.filters = new HashSet<>(filters);
         this.propIds = new HashSet<>(propIds);
-        this.keyIds = new HashSet<>(keyIds);
+        if (keyIds instanceof KeyIdParameters) {
+            this.keyIds = keyIds;
+        } else {
+            this.keyIds = new HashSet<>(keyIds);
+        }
         this.order = order;
         this.resultProcessor = resultProcessor;
         this.wrapKeyId = wrapKeyId;
@@ -62,7 +62,11 @@ public abstract class AbstractWhereClause implements WhereClause {
         this.entitySpecs = Collections.unmodifiableList(entitySpecs);
         this.filters = Collections.unmodifiableSet(filters);
         this.referenceIndices = referenceIndices;
-        this.keyIds = Collections.unmodifiableSet(keyIds);
+        if (keyIds instanceof KeyIdParameters) {
+            this.keyIds = keyIds;
+        } else {
+            this.keyIds = Collections.unmodifiableSet(keyIds);
+        }
         this.order = order;
         this.resultProcessor = resultProcessor;
         this.selectClause = selectClause;
@@ -190,7 +194,13 @@ public abstract class AbstractWhereClause implements WhereClause {
             }
             ColumnSpec keySpec = info.getColumnSpecs().get(0).getColumnSpec();
 
-            wherePart.append(getInClause(keySpec, keyIds.toArray(), false)
+            Object[] elements;
+            if (keyIds instanceof KeyIdParameters) {
+                elements = ((KeyIdParameters) keyIds).getPlaceholders();
+            } else {
+                elements = keyIds.toArray();
+            }
+            wherePart.append(getInClause(keySpec, elements, false)
                     .generateClause());
         }
     }
@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+/**
+ * A table from integer codes to proposition ids. It uses open addressing
+ * with linear probing over parallel <code>long</code> and {@link String}
+ * arrays, so looking up a code neither boxes it nor allocates. The table
+ * grows as needed up to a maximum number of codes, after which codes that
+ * are not in the table already are not added.
+ *
+ * @author Andrew Post
+ */
+final class CodeTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxSize;
+    private long[] codes;
+    private String[] propIds;
+    private int size;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param maxSize the maximum number of codes in the table. Must be
+     * positive.
+     */
+    CodeTable(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.codes = new long[INITIAL_CAPACITY];
+        this.propIds = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the proposition id of a code.
+     *
+     * @param code a code.
+     * @return the proposition id, or <code>null</code> if the code is not in
+     * the table.
+     */
+    String get(long code) {
+        long[] c = this.codes;
+        String[] p = this.propIds;
+        int mask = c.length - 1;
+        for (int slot = slot(code, mask); ; slot = (slot + 1) & mask) {
+            String propId = p[slot];
+            if (propId == null || c[slot] == code) {
+                return propId;
+            }
+        }
+    }
+
+    /**
+     * Adds a code and its proposition id to the table, unless the table has
+     * its maximum number of codes already.
+     *
+     * @param code a code.
+     * @param propId its proposition id. Cannot be <code>null</code>.
+     * @return whether the code is in the table.
+     */
+    boolean put(long code, String propId) {
+        assert propId != null : "propId cannot be null";
+        int mask = this.codes.length - 1;
+        int slot = slot(code, mask);
+        while (this.propIds[slot] != null) {
+            if (this.codes[slot] == code) {
+                this.propIds[slot] = propId;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (this.size >= this.maxSize) {
+            return false;
+        }
+        this.codes[slot] = code;
+        this.propIds[slot] = propId;
+        if (++this.size * 2 > this.codes.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of codes in the table.
+     *
+     * @return the number of codes.
+     */
+    int size() {
+        return this.size;
+    }
+
+    private void grow() {
+        long[] oldCodes = this.codes;
+        String[] oldPropIds = this.propIds;
+        this.codes = new long[oldCodes.length * 2];
+        this.propIds = new String[oldCodes.length * 2];
+        int mask = this.codes.length - 1;
+        for (int i = 0; i < oldCodes.length; i++) {
+            if (oldPropIds[i] != null) {
+                int slot = slot(oldCodes[i], mask);
+                while (this.propIds[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.codes[slot] = oldCodes[i];
+                this.propIds[slot] = oldPropIds[i];
+            }
+        }
+    }
+
+    /*
+     * Codes are often consecutive, so their bits are mixed before they are
+     * reduced to a slot.
+     */
+    private static int slot(long code, int mask) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arp.javautil.sql.ConnectionSpec;
+
+/**
+ * A bounded pool of database connections that a relational database data
+ * source backend shares across queries. At most <code>maxConnections</code>
+ * connections are checked out at once, and callers wait for one to be
+ * released beyond that, failing if none is released within
+ * <code>acquireTimeoutMillis</code>. Up to <code>maxIdleConnections</code>
+ * released connections are kept open for reuse; the rest are closed.
+ *
+ * Connections are checked out for as long as the streaming results that read
+ * from them are open, so <code>maxConnections</code> must be at least the
+ * number of entity specs that a single read may query.
+ *
+ * @author Andrew Post
+ */
+final class ConnectionPool {
+
+    private final ConnectionSpec connectionSpec;
+    private final int maxConnections;
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+    private final int maxIdleConnections;
+    private final Deque<Connection> idleConnections;
+    private final AtomicInteger connectionsInUse;
+    private final AtomicLong connectionWaitTimeNanos;
+    private volatile boolean closed;
+
+    ConnectionPool(ConnectionSpec connectionSpec, int maxConnections,
+            int maxIdleConnections, long acquireTimeoutMillis) {
+        assert connectionSpec != null : "connectionSpec cannot be null";
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException(
+                    "maxConnections must be at least 1 but was "
+                    + maxConnections);
+        }
+        if (acquireTimeoutMillis < 0) {
+            throw new IllegalArgumentException(
+                    "acquireTimeoutMillis cannot be negative but was "
+                    + acquireTimeoutMillis);
+        }
+        this.connectionSpec = connectionSpec;
+        this.maxConnections = maxConnections;
+        this.permits = new Semaphore(maxConnections, true);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.maxIdleConnections = maxIdleConnections;
+        this.idleConnections = new ArrayDeque<>();
+        this.connectionsInUse = new AtomicInteger();
+        this.connectionWaitTimeNanos = new AtomicLong();
+    }
+
+    /**
+     * Checks out a connection, waiting for one to be released if the maximum
+     * number of connections is in use. The caller must pass it to
+     * {@link #release(java.sql.Connection) } when done.
+     *
+     * @return a connection.
+     * @throws SQLException if a new connection could not be opened, or if
+     * none was released within the pool's acquire timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Connection acquire() throws SQLException, InterruptedException {
+        if (this.closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        boolean acquired = this.permits.tryAcquire(this.acquireTimeoutMillis,
+                TimeUnit.MILLISECONDS);
+        long waited = System.nanoTime() - start;
+        this.connectionWaitTimeNanos.addAndGet(waited);
+        if (!acquired) {
+            throw new SQLException("Timed out after "
+                    + this.acquireTimeoutMillis
+                    + " ms waiting for a database connection: all "
+                    + this.maxConnections
+                    + " connections are in use. Reads hold a connection per"
+                    + " entity spec and partition group until their results"
+                    + " are closed, so increase maxConnections or reduce"
+                    + " partitionConcurrency or the number of concurrent"
+                    + " reads");
+        }
+        Logger logger = SQLGenUtil.logger();
+        if (logger.isLoggable(Level.FINER)) {
+            logger.log(Level.FINER, "Waited {0} ms for a database connection",
+                    TimeUnit.NANOSECONDS.toMillis(waited));
+        }
+        try {
+            Connection connection;
+            while ((connection = pollIdle()) != null) {
+                if (!connection.isClosed()) {
+                    this.connectionsInUse.incrementAndGet();
+                    return connection;
+                }
+            }
+            connection = this.connectionSpec.getOrCreate();
+            this.connectionsInUse.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException | Error ex) {
+            this.permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a checked-out connection to the pool. It is closed instead if
+     * it is already closed, the pool is closed, or the pool already has the
+     * maximum number of idle connections.
+     *
+     * @param connection a connection from {@link #acquire() }.
+     * @throws SQLException if closing the connection failed.
+     */
+    void release(Connection connection) throws SQLException {
+        if (connection == null) {
+            return;
+        }
+        this.connectionsInUse.decrementAndGet();
+        try {
+            if (!connection.isClosed() && offerIdle(connection)) {
+                return;
+            }
+            connection.close();
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Closes the pool's idle connections. Connections that are checked out
+     * are closed when they are released.
+     *
+     * @throws SQLException if closing a connection failed.
+     */
+    void close() throws SQLException {
+        synchronized (this.idleConnections) {
+            this.closed = true;
+        }
+        SQLException exception = null;
+        Connection connection;
+        while ((connection = pollIdle()) != null) {
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                if (exception == null) {
+                    exception = ex;
+                } else {
+                    exception.addSuppressed(ex);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Gets the number of connections that are checked out.
+     *
+     * @return the number of connections in use.
+     */
+    int getConnectionsInUse() {
+        return this.connectionsInUse.get();
+    }
+
+    /**
+     * Gets the total time that callers of {@link #acquire() } have spent
+     * waiting for a connection to be released.
+     *
+     * @return the wait time in milliseconds.
+     */
+    long getConnectionWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(
+                this.connectionWaitTimeNanos.get());
+    }
+
+    private Connection pollIdle() {
+        synchronized (this.idleConnections) {
+            return this.idleConnections.pollFirst();
+        }
+    }
+
+    private boolean offerIdle(Connection connection) {
+        synchronized (this.idleConnections) {
+            if (!this.closed
+                    && this.idleConnections.size() < this.maxIdleConnections) {
+                this.idleConnections.offerFirst(connection);
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+}
@@ -20,7 +20,6 @@
 package org.protempa.backend.dsb.relationaldb;
 
 import org.apache.commons.lang3.StringUtils;
-import org.arp.javautil.arrays.Arrays;
 import org.protempa.DataSourceBackendSourceSystem;
 import org.protempa.DataStreamingEventIterator;
 import org.protempa.UniqueIdPair;
@@ -69,56 +68,45 @@ class ConstantStreamingResultProcessor extends StreamingMainResultProcessor<Cons
                 Map<String, ReferenceSpec> bidirectionalRefSpecs, InboundReferenceResultSetIterator referenceIterator)
                 throws SQLException {
             super(getBackend(), statement, resultSet, entitySpec, inboundRefSpecs,
-                    bidirectionalRefSpecs, getDataSourceBackendId(), referenceIterator);
+                    bidirectionalRefSpecs, getDataSourceBackendId(), referenceIterator,
+                    isCasePresent(), 0);
             this.logger = SQLGenUtil.logger();
             this.dsType = DataSourceBackendSourceSystem.getInstance(getDataSourceBackendId());
             this.now = new Date();
         }
 
         @Override
-        void doProcess(ResultSet resultSet,
-                String[] uniqueIds, ColumnSpec codeSpec, EntitySpec entitySpec,
+        void doProcess(ResultSet resultSet, RowDecoder decoder,
+                EntitySpec entitySpec,
                 Map<String, ReferenceSpec> bidirectionalRefSpecs,
-                int[] columnTypes, String[] propIds, PropertySpec[] propertySpecs,
+                int[] columnTypes, PropertySpec[] propertySpecs,
                 Value[] propertyValues,
                 UniqueIdPair[] refUniqueIds) throws SQLException {
-            int i = 1;
-            String kId = resultSet.getString(i++);
+            String kId = decoder.readKeyId(resultSet);
             if (kId == null) {
                 logger.warning("A keyId is null. Skipping record.");
                 return;
             }
-            handleKeyId(kId);
+            kId = handleKeyId(kId);
 
-            i = readUniqueIds(uniqueIds, resultSet, i);
-            if (Arrays.contains(uniqueIds, null)) {
+            String[] uniqueIds = decoder.getUniqueIds();
+            if (!decoder.readUniqueIds(resultSet)) {
                 if (logger.isLoggable(Level.WARNING)) {
                     logger.log(Level.WARNING,
                             "Unique ids contain null ({0}). Skipping record.",
                             StringUtils.join(uniqueIds, ", "));
                 }
-                this.getReferenceIterator().addUniqueIds(kId, null);
+                this.addReferenceUniqueIds(kId, null);
                 return;
             }
             UniqueId uniqueId = generateUniqueId(entitySpec.getName(), uniqueIds);
 
-            String propId = null;
-            if (!isCasePresent()) {
-                if (codeSpec == null) {
-                    assert propIds.length == 1 :
-                            "Don't know which proposition id to assign to";
-                    propId = propIds[0];
-                } else {
-                    String code = resultSet.getString(i++);
-                    propId = sqlCodeToPropositionId(codeSpec, code);
-                    if (propId == null) {
-                        this.getReferenceIterator().addUniqueIds(kId, null);
-                        return;
-                    }
-                }
-            } else {
-                i++;
+            String propId = decoder.readPropositionId(resultSet);
+            if (propId == null && !isCasePresent()) {
+                this.addReferenceUniqueIds(kId, null);
+                return;
             }
+            int i = decoder.getColumn();
 
             i = extractPropertyValues(resultSet, i,
                     propertyValues, columnTypes);
@@ -130,11 +118,11 @@ class ConstantStreamingResultProcessor extends StreamingMainResultProcessor<Cons
             }
             
             if (!queryPropIds.contains(propId)) {
-                this.getReferenceIterator().addUniqueIds(kId, null);
+                this.addReferenceUniqueIds(kId, null);
                 return;
             }
             
-            this.getReferenceIterator().addUniqueIds(kId, refUniqueIds);
+            this.addReferenceUniqueIds(kId, refUniqueIds);
 
             Constant cp = new Constant(propId, uniqueId);
             for (int j = 0; j < propertySpecs.length; j++) {
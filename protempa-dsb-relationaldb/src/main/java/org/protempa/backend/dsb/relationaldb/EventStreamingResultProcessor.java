@@ -20,7 +20,6 @@
 package org.protempa.backend.dsb.relationaldb;
 
 import org.apache.commons.lang3.StringUtils;
-import org.arp.javautil.arrays.Arrays;
 import org.protempa.DataSourceBackendSourceSystem;
 import org.protempa.DataStreamingEventIterator;
 import org.protempa.UniqueIdPair;
@@ -67,7 +66,6 @@ class EventStreamingResultProcessor extends StreamingMainResultProcessor<Event>
         private final Logger logger;
         private final DataSourceBackendSourceSystem dsType;
         private final IntervalFactory intervalFactory;
-        private final JDBCPositionFormat positionParser;
         private EntitySpec entitySpec;
         private final Date now;
         
@@ -77,110 +75,77 @@ class EventStreamingResultProcessor extends StreamingMainResultProcessor<Event>
                 ReferenceSpec> bidirectionalRefSpecs, InboundReferenceResultSetIterator referenceIterator)
                 throws SQLException {
             super(getBackend(), statement, resultSet, entitySpec, inboundRefSpecs,
-                    bidirectionalRefSpecs, getDataSourceBackendId(), referenceIterator);
+                    bidirectionalRefSpecs, getDataSourceBackendId(), referenceIterator,
+                    isCasePresent(),
+                    entitySpec.getFinishTimeSpec() == null ? 1 : 2);
             this.logger = SQLGenUtil.logger();
             this.dsType = DataSourceBackendSourceSystem.getInstance(getDataSourceBackendId());
             this.intervalFactory = new IntervalFactory();
-            this.positionParser = entitySpec.getPositionParser();
             this.entitySpec = entitySpec;
             this.now = new Date();
         }
 
         @Override
-        void doProcess(ResultSet resultSet,
-                String[] uniqueIds, ColumnSpec codeSpec, EntitySpec entitySpec,
+        void doProcess(ResultSet resultSet, RowDecoder decoder,
+                EntitySpec entitySpec,
                 Map<String, ReferenceSpec> bidirectionalRefSpec,
-                int[] columnTypes, String[] propIds, PropertySpec[] propertySpecs,
+                int[] columnTypes, PropertySpec[] propertySpecs,
                 Value[] propertyValues,
                 UniqueIdPair[] refUniqueIds) throws SQLException {
-            int i = 1;
-            String kId = resultSet.getString(i++);
+            String kId = decoder.readKeyId(resultSet);
             if (kId == null) {
                 logger.warning("A keyId is null. Skipping record.");
                 return;
             }
-            handleKeyId(kId);
+            kId = handleKeyId(kId);
 
-            i = readUniqueIds(uniqueIds, resultSet, i);
-            if (Arrays.contains(uniqueIds, null)) {
+            String[] uniqueIds = decoder.getUniqueIds();
+            if (!decoder.readUniqueIds(resultSet)) {
                 if (logger.isLoggable(Level.WARNING)) {
                     logger.log(Level.WARNING,
                             "Unique ids contain null ({0}). Skipping record.",
                             StringUtils.join(uniqueIds, ", "));
                 }
-                this.getReferenceIterator().addUniqueIds(kId, null);
+                this.addReferenceUniqueIds(kId, null);
                 return;
             }
             UniqueId uniqueId = generateUniqueId(entitySpec.getName(), uniqueIds);
 
-            String propId = null;
-            if (!isCasePresent()) {
-                if (codeSpec == null) {
-                    assert propIds.length == 1 :
-                            "Don't know which proposition id to assign to";
-                    propId = propIds[0];
-                } else {
-                    String code = resultSet.getString(i++);
-                    propId = sqlCodeToPropositionId(codeSpec, code);
-                    if (propId == null) {
-                        this.getReferenceIterator().addUniqueIds(kId, null);
-                        return;
-                    }
-                }
-            } else {
-                i++;
+            String propId = decoder.readPropositionId(resultSet);
+            if (propId == null && !isCasePresent()) {
+                this.addReferenceUniqueIds(kId, null);
+                return;
             }
 
-            ColumnSpec finishTimeSpec = entitySpec.getFinishTimeSpec();
+            decoder.readPositions(resultSet);
             Granularity gran = entitySpec.getGranularity();
-            Interval interval = null;
-            if (finishTimeSpec == null) {
-                Long d = null;
-                try {
-                    d = positionParser.toPosition(resultSet, i, columnTypes[i - 1]);
-                    i++;
-                } catch (SQLException e) {
-                    logger.log(
-                            Level.WARNING,
-                            "Could not parse timestamp. Leaving the start time/timestamp unset.",
-                            e);
+            Interval interval;
+            if (entitySpec.getFinishTimeSpec() == null) {
+                if (decoder.isPositionNull(0)) {
+                    interval = intervalFactory.getInstance(null, gran);
+                } else {
+                    interval = intervalFactory.getInstance(
+                            decoder.getPosition(0), gran);
                 }
-                interval = intervalFactory.getInstance(d, gran);
+            } else if (decoder.isPositionNull(0)
+                    || decoder.isPositionNull(1)) {
+                interval = intervalFactory.getInstance(
+                        decoder.getPositionOrNull(0), gran,
+                        decoder.getPositionOrNull(1), gran);
             } else {
-                Long start = null;
-                try {
-                    start = positionParser.toPosition(resultSet, i,
-                            columnTypes[i - 1]);
-                } catch (SQLException e) {
-                    logger.log(
-                            Level.WARNING,
-                            "Could not parse start time. Leaving the start time/timestamp unset.",
-                            e);
-                } finally {
-                    i++;
-                }
-                Long finish = null;
-                try {
-                    finish = positionParser.toPosition(resultSet, i,
-                            columnTypes[i - 1]);
-                } catch (SQLException e) {
-                    logger.log(
-                            Level.WARNING,
-                            "Could not parse start time. Leaving the finish time unset.",
-                            e);
-                } finally {
-                    i++;
-                }
-                if (finish != null && start != null && finish.compareTo(start) < 0) {
+                long start = decoder.getPosition(0);
+                long finish = decoder.getPosition(1);
+                if (finish < start) {
                     logger.log(Level.WARNING, "Finish {0} is before start {1}: Leaving time unset",
                             new Object[]{finish, start});
                     interval = intervalFactory.getInstance(null, gran, null,
                             gran);
                 } else {
-                    interval = intervalFactory.getInstance(start, gran, finish,
-                            gran);
+                    interval = intervalFactory.getInstance(start, gran,
+                            finish, gran);
                 }
             }
+            int i = decoder.getColumn();
 
             i = extractPropertyValues(resultSet, i, propertyValues,
                     columnTypes);
@@ -192,11 +157,11 @@ class EventStreamingResultProcessor extends StreamingMainResultProcessor<Event>
             }
             
             if (!queryPropIds.contains(propId)) {
-                this.getReferenceIterator().addUniqueIds(kId, null);
+                this.addReferenceUniqueIds(kId, null);
                 return;
             }
             
-            this.getReferenceIterator().addUniqueIds(kId, refUniqueIds);
+            this.addReferenceUniqueIds(kId, refUniqueIds);
 
             Event event = new Event(propId, uniqueId);
             event.setSourceSystem(dsType);
@@ -61,6 +61,16 @@ public final class JDBCDateTimeTimestampPositionParser
         }
     }
 
+    /**
+     * Returns the position to use when the date column of interest is
+     * <code>null</code>.
+     *
+     * @return a position, or <code>null</code>.
+     */
+    Long getDefaultDate() {
+        return this.defaultDate;
+    }
+
     /**
      * Parses a date/time into a PROTEMPA position. For types date, time and
      * timestamp it calls the corresponding method in {@link ResultSet}. For
@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Key ids that are bound to parameters of a prepared statement rather than
+ * inlined into the generated SQL. When a select statement is given an
+ * instance of this class as its key ids, its where clause constrains the key
+ * id with an <code>IN</code> clause of <code>?</code> placeholders, one per
+ * {@link #getParameters() parameter}, and the parameters are bound in order.
+ *
+ * The parameters are the key ids padded to a power of two by repeating the
+ * last one, so that reads with similar numbers of key ids generate the same
+ * SQL. This keeps the number of distinct statements that the database parses
+ * and the SQL generator caches small.
+ *
+ * @author Andrew Post
+ */
+final class KeyIdParameters extends AbstractSet<String> {
+
+    /**
+     * The most key ids to bind. Larger sets of key ids are inlined, and
+     * reads of that many keys should use a key loader table instead.
+     */
+    static final int MAX_PARAMETERS = 1024;
+
+    private final Set<String> keyIds;
+    private final String[] parameters;
+
+    private KeyIdParameters(Set<String> keyIds, String[] parameters) {
+        this.keyIds = keyIds;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Returns key ids for binding, if there are not too many of them.
+     *
+     * @param keyIds the key ids.
+     * @return the key ids to bind, or <code>null</code> if there are none or
+     * more than {@link #MAX_PARAMETERS}.
+     */
+    static KeyIdParameters getInstance(Set<String> keyIds) {
+        if (keyIds == null || keyIds.isEmpty()
+                || keyIds.size() > MAX_PARAMETERS) {
+            return null;
+        }
+        int n = keyIds.size();
+        String[] parameters = keyIds.toArray(
+                new String[n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1]);
+        Arrays.fill(parameters, n, parameters.length, parameters[n - 1]);
+        return new KeyIdParameters(keyIds, parameters);
+    }
+
+    /**
+     * Gets the elements of an <code>IN</code> clause with a
+     * <code>?</code> placeholder for each parameter.
+     *
+     * @return a newly created array of
+     * {@link SqlGeneratorUtil#PARAMETER}, one per parameter.
+     */
+    Object[] getPlaceholders() {
+        Object[] result = new Object[this.parameters.length];
+        Arrays.fill(result, SqlGeneratorUtil.PARAMETER);
+        return result;
+    }
+
+    /**
+     * Gets the key ids to bind, in order, including padding.
+     *
+     * @return an array of key ids. Must not be modified.
+     */
+    String[] getParameters() {
+        return this.parameters;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return Collections.unmodifiableSet(this.keyIds).iterator();
+    }
+
+    @Override
+    public int size() {
+        return this.keyIds.size();
+    }
+}
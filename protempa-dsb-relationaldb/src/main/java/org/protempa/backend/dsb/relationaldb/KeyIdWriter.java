@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Loads a set of key ids into a key loader table over one connection. Each
+ * key id is looked up in the default key id table, and the matching key id
+ * and join key are inserted into the key loader table.
+ *
+ * By default, key ids are bound in chunks of <code>batchSize</code> to a
+ * reused <code>INSERT ... SELECT ... WHERE keyid IN (?, ...)</code>
+ * statement, and the chunks are sent as JDBC batches. If a staging table is
+ * specified, the key ids are instead batch-inserted into it and copied into
+ * the key loader table with one <code>INSERT ... SELECT</code> that joins
+ * against it. The staging table must have a column with the same name as the
+ * key loader table's key id column, and it must keep its rows across
+ * commits, for example a PostgreSQL <code>UNLOGGED</code> table or an Oracle
+ * global temporary table created with <code>ON COMMIT PRESERVE ROWS</code>.
+ * Its contents are deleted before and after loading. Because of that, two
+ * writes must not use the same staging table at the same time unless the
+ * table's rows are private to each connection, as they are in a global
+ * temporary table. Otherwise, one write would delete the other's staged key
+ * ids, or copy them into its key loader table.
+ *
+ * The transaction is committed every <code>commitSize</code> key ids and
+ * after the last one. On error, the open transaction is rolled back.
+ *
+ * @author Andrew Post
+ */
+final class KeyIdWriter {
+
+    private final String keyLoaderTable;
+    private final String keyLoaderKeyIdColumn;
+    private final String keyLoaderKeyIdJoinKey;
+    private final String defaultKeyIdTable;
+    private final String defaultKeyIdColumn;
+    private final String defaultKeyIdJoinKey;
+    private final String stagingTable;
+    private final int batchSize;
+    private final int commitSize;
+
+    /**
+     * Creates a key id writer.
+     *
+     * @param keyLoaderTable the schema-qualified key loader table.
+     * @param keyLoaderKeyIdColumn the key loader table's key id column.
+     * @param keyLoaderKeyIdJoinKey the key loader table's join key column.
+     * @param defaultKeyIdTable the schema-qualified default key id table.
+     * @param defaultKeyIdColumn the default key id table's key id column.
+     * @param defaultKeyIdJoinKey the default key id table's join key column.
+     * @param stagingTable the schema-qualified staging table, or
+     * <code>null</code> to insert into the key loader table directly.
+     * @param batchSize the number of key ids to send to the database at a
+     * time. Must be positive.
+     * @param commitSize the number of key ids to write per transaction. Must
+     * be positive.
+     */
+    KeyIdWriter(String keyLoaderTable, String keyLoaderKeyIdColumn,
+            String keyLoaderKeyIdJoinKey, String defaultKeyIdTable,
+            String defaultKeyIdColumn, String defaultKeyIdJoinKey,
+            String stagingTable, int batchSize, int commitSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(
+                    "batchSize must be positive but was " + batchSize);
+        }
+        if (commitSize < 1) {
+            throw new IllegalArgumentException(
+                    "commitSize must be positive but was " + commitSize);
+        }
+        this.keyLoaderTable = keyLoaderTable;
+        this.keyLoaderKeyIdColumn = keyLoaderKeyIdColumn;
+        this.keyLoaderKeyIdJoinKey = keyLoaderKeyIdJoinKey;
+        this.defaultKeyIdTable = defaultKeyIdTable;
+        this.defaultKeyIdColumn = defaultKeyIdColumn;
+        this.defaultKeyIdJoinKey = defaultKeyIdJoinKey;
+        this.stagingTable = stagingTable;
+        this.batchSize = batchSize;
+        this.commitSize = commitSize;
+    }
+
+    /**
+     * Writes key ids to the key loader table.
+     *
+     * @param con an open connection with auto-commit off.
+     * @param keyIds the key ids.
+     * @return the number of key ids written.
+     * @throws SQLException if an error occurred. The open transaction will
+     * have been rolled back.
+     */
+    int write(Connection con, Iterable<String> keyIds) throws SQLException {
+        try {
+            int count;
+            if (this.stagingTable != null) {
+                count = writeStaged(con, keyIds);
+            } else {
+                count = writeDirect(con, keyIds);
+            }
+            con.commit();
+            return count;
+        } catch (SQLException ex) {
+            try {
+                con.rollback();
+            } catch (SQLException ignore) {
+                ex.addSuppressed(ignore);
+            }
+            throw ex;
+        }
+    }
+
+    private int writeDirect(Connection con, Iterable<String> keyIds)
+            throws SQLException {
+        Logger logger = SQLGenUtil.logger();
+        String[] chunk = new String[this.batchSize];
+        int inChunk = 0;
+        int count = 0;
+        int uncommitted = 0;
+        String sql = insertSelectInStmt(this.batchSize);
+        logger.log(Level.FINER, "Statement for writing keys: {0}", sql);
+        try (PreparedStatement stmt = con.prepareStatement(sql)) {
+            int batched = 0;
+            for (Iterator<String> itr = keyIds.iterator(); itr.hasNext();) {
+                chunk[inChunk++] = itr.next();
+                if (inChunk == this.batchSize) {
+                    for (int i = 0; i < inChunk; i++) {
+                        stmt.setString(i + 1, chunk[i]);
+                    }
+                    stmt.addBatch();
+                    batched++;
+                    count += inChunk;
+                    uncommitted += inChunk;
+                    inChunk = 0;
+                    if (uncommitted >= this.commitSize) {
+                        stmt.executeBatch();
+                        batched = 0;
+                        con.commit();
+                        uncommitted = 0;
+                        logger.log(Level.FINEST, "Wrote {0} keys", count);
+                    }
+                }
+            }
+            if (batched > 0) {
+                stmt.executeBatch();
+            }
+        }
+        if (inChunk > 0) {
+            sql = insertSelectInStmt(inChunk);
+            logger.log(Level.FINER, "Statement for writing keys: {0}", sql);
+            try (PreparedStatement stmt = con.prepareStatement(sql)) {
+                for (int i = 0; i < inChunk; i++) {
+                    stmt.setString(i + 1, chunk[i]);
+                }
+                stmt.execute();
+            }
+            count += inChunk;
+        }
+        return count;
+    }
+
+    private int writeStaged(Connection con, Iterable<String> keyIds)
+            throws SQLException {
+        Logger logger = SQLGenUtil.logger();
+        String deleteSql = "DELETE FROM " + this.stagingTable;
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(deleteSql);
+        }
+        int count = 0;
+        String sql = "INSERT INTO " + this.stagingTable + " ("
+                + this.keyLoaderKeyIdColumn + ") VALUES (?)";
+        logger.log(Level.FINER, "Statement for staging keys: {0}", sql);
+        try (PreparedStatement stmt = con.prepareStatement(sql)) {
+            int batched = 0;
+            for (String keyId : keyIds) {
+                stmt.setString(1, keyId);
+                stmt.addBatch();
+                count++;
+                if (++batched == this.batchSize) {
+                    stmt.executeBatch();
+                    batched = 0;
+                }
+                if (count % this.commitSize == 0) {
+                    if (batched > 0) {
+                        stmt.executeBatch();
+                        batched = 0;
+                    }
+                    con.commit();
+                    logger.log(Level.FINEST, "Staged {0} keys", count);
+                }
+            }
+            if (batched > 0) {
+                stmt.executeBatch();
+            }
+        }
+        sql = insertSelectStagedStmt();
+        logger.log(Level.FINER, "Statement for writing keys: {0}", sql);
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(sql);
+            stmt.execute(deleteSql);
+        }
+        return count;
+    }
+
+    private StringBuilder insertSelectPrefix() {
+        StringBuilder stmtBuilder = new StringBuilder();
+        stmtBuilder.append("INSERT INTO ");
+        stmtBuilder.append(this.keyLoaderTable);
+        stmtBuilder.append(" (");
+        stmtBuilder.append(this.keyLoaderKeyIdColumn);
+        stmtBuilder.append(", ");
+        stmtBuilder.append(this.keyLoaderKeyIdJoinKey);
+        stmtBuilder.append(") SELECT ");
+        stmtBuilder.append(this.defaultKeyIdColumn);
+        stmtBuilder.append(", ");
+        stmtBuilder.append(this.defaultKeyIdJoinKey);
+        stmtBuilder.append(" FROM ");
+        stmtBuilder.append(this.defaultKeyIdTable);
+        stmtBuilder.append(" WHERE ");
+        stmtBuilder.append(this.defaultKeyIdColumn);
+        stmtBuilder.append(" IN (");
+        return stmtBuilder;
+    }
+
+    private String insertSelectInStmt(int size) {
+        StringBuilder stmtBuilder = insertSelectPrefix();
+        stmtBuilder.append(
+                StringUtils.join(Collections.nCopies(size, "?"), ','));
+        stmtBuilder.append(')');
+        return stmtBuilder.toString();
+    }
+
+    private String insertSelectStagedStmt() {
+        StringBuilder stmtBuilder = insertSelectPrefix();
+        stmtBuilder.append("SELECT ");
+        stmtBuilder.append(this.keyLoaderKeyIdColumn);
+        stmtBuilder.append(" FROM ");
+        stmtBuilder.append(this.stagingTable);
+        stmtBuilder.append(')');
+        return stmtBuilder.toString();
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import org.protempa.UniqueIdPair;
+import org.protempa.proposition.Proposition;
+import org.protempa.proposition.UniqueId;
+
+/**
+ * Sorts the propositions and references read from an unordered result set by
+ * key id on the client, so that the database need not sort them. Records are
+ * buffered in memory in runs of up to <code>runSize</code> records. Each full
+ * run is sorted by key id and written sequentially to a temporary file, and
+ * the runs are merged when the records are read back. Records with the same
+ * key id are returned in the order in which they were added.
+ *
+ * Add records with {@link #addReferences} and {@link #addProposition}, call
+ * {@link #finish() }, then iterate with {@link #next() }. Call
+ * {@link #close() } to delete the temporary files.
+ *
+ * @author Andrew Post
+ */
+final class KeySortingSpill<P extends Proposition> implements AutoCloseable {
+
+    private static final Comparator<Entry> ENTRY_COMPARATOR
+            = Comparator.comparing((Entry e) -> e.keyId);
+
+    /**
+     * The number of records written to a run between resets of its object
+     * stream. A stream and the stream reading it back hold a reference to
+     * every object passed through them until a reset, and a reset makes the
+     * stream write class descriptors again.
+     */
+    private static final int RESET_INTERVAL = 1024;
+
+    private final int runSize;
+    private final Path directory;
+    private final List<Path> runFiles;
+    private List<Entry> run;
+    private Iterator<Entry> memoryItr;
+    private PriorityQueue<RunReader> readers;
+    private Entry current;
+    private long count;
+
+    /**
+     * Creates a spill.
+     *
+     * @param runSize the maximum number of records to hold in memory. Must be
+     * positive.
+     * @param directory the directory in which to create temporary files, or
+     * <code>null</code> for the default temporary-file directory.
+     */
+    KeySortingSpill(int runSize, Path directory) {
+        if (runSize < 1) {
+            throw new IllegalArgumentException(
+                    "runSize must be positive but was " + runSize);
+        }
+        this.runSize = runSize;
+        this.directory = directory;
+        this.runFiles = new ArrayList<>();
+        this.run = new ArrayList<>();
+    }
+
+    /**
+     * Adds a record of the references of a result set row.
+     *
+     * @param keyId the key id. Cannot be <code>null</code>.
+     * @param refUniqueIds the references, which may be or contain
+     * <code>null</code>. The array is copied.
+     * @throws IOException if a full run could not be written.
+     */
+    void addReferences(String keyId, UniqueIdPair[] refUniqueIds)
+            throws IOException {
+        add(new Entry(keyId, null,
+                refUniqueIds != null ? refUniqueIds.clone() : null));
+    }
+
+    /**
+     * Adds a record of a proposition.
+     *
+     * @param keyId the key id. Cannot be <code>null</code>.
+     * @param proposition the proposition. Cannot be <code>null</code>.
+     * @throws IOException if a full run could not be written.
+     */
+    void addProposition(String keyId, P proposition) throws IOException {
+        add(new Entry(keyId, proposition, null));
+    }
+
+    private void add(Entry entry) throws IOException {
+        this.run.add(entry);
+        this.count++;
+        if (this.run.size() >= this.runSize) {
+            writeRun();
+        }
+    }
+
+    /**
+     * Signals that all records have been added and prepares to read them
+     * back in key id order.
+     *
+     * @throws IOException if the last run could not be written or the runs
+     * could not be opened.
+     */
+    void finish() throws IOException {
+        if (this.runFiles.isEmpty()) {
+            this.run.sort(ENTRY_COMPARATOR);
+            this.memoryItr = this.run.iterator();
+        } else {
+            if (!this.run.isEmpty()) {
+                writeRun();
+            }
+            this.run = null;
+            this.readers = new PriorityQueue<>(this.runFiles.size());
+            for (int i = 0, n = this.runFiles.size(); i < n; i++) {
+                RunReader reader = new RunReader(this.runFiles.get(i), i);
+                boolean hasRecord;
+                try {
+                    hasRecord = reader.advance();
+                } catch (IOException | RuntimeException ex) {
+                    try {
+                        reader.close();
+                    } catch (IOException ignore) {
+                        ex.addSuppressed(ignore);
+                    }
+                    throw ex;
+                }
+                if (hasRecord) {
+                    this.readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        }
+        SQLGenUtil.logger().log(Level.FINE,
+                "Sorting {0} records by key id in {1} run(s)",
+                new Object[]{this.count, Math.max(1, this.runFiles.size())});
+    }
+
+    /**
+     * Advances to the next record in key id order.
+     *
+     * @return whether there was a next record.
+     * @throws IOException if a run could not be read.
+     */
+    boolean next() throws IOException {
+        if (this.memoryItr != null) {
+            if (this.memoryItr.hasNext()) {
+                this.current = this.memoryItr.next();
+                return true;
+            }
+        } else if (this.readers != null) {
+            RunReader reader = this.readers.poll();
+            if (reader != null) {
+                this.current = reader.current;
+                if (reader.advance()) {
+                    this.readers.add(reader);
+                } else {
+                    reader.close();
+                }
+                return true;
+            }
+        }
+        this.current = null;
+        return false;
+    }
+
+    String getKeyId() {
+        return this.current.keyId;
+    }
+
+    /**
+     * Gets the current record's proposition.
+     *
+     * @return the proposition, or <code>null</code> if the current record is
+     * of references.
+     */
+    P getProposition() {
+        @SuppressWarnings("unchecked")
+        P result = (P) this.current.proposition;
+        return result;
+    }
+
+    /**
+     * Gets the current record's references.
+     *
+     * @return the references, or <code>null</code> if the current record is
+     * of a proposition or has no references.
+     */
+    UniqueIdPair[] getReferences() {
+        return this.current.refUniqueIds;
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @throws IOException if an error occurred.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        if (this.readers != null) {
+            for (RunReader reader : this.readers) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    exception = ex;
+                }
+            }
+            this.readers = null;
+        }
+        for (Path runFile : this.runFiles) {
+            try {
+                Files.deleteIfExists(runFile);
+            } catch (IOException ex) {
+                if (exception == null) {
+                    exception = ex;
+                } else {
+                    exception.addSuppressed(ex);
+                }
+            }
+        }
+        this.runFiles.clear();
+        this.run = null;
+        this.memoryItr = null;
+        this.current = null;
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void writeRun() throws IOException {
+        this.run.sort(ENTRY_COMPARATOR);
+        Path runFile = this.directory != null
+                ? Files.createTempFile(this.directory, "protempa-run", null)
+                : Files.createTempFile("protempa-run", null);
+        this.runFiles.add(runFile);
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(runFile)))) {
+            out.writeInt(this.run.size());
+            int written = 0;
+            for (Entry entry : this.run) {
+                entry.write(out);
+                /*
+                 * Don't let the streams hold a reference to every object in
+                 * the run, or the merge would hold every run in memory.
+                 */
+                if (++written % RESET_INTERVAL == 0) {
+                    out.reset();
+                }
+            }
+        }
+        SQLGenUtil.logger().log(Level.FINER,
+                "Wrote run of {0} records to {1}",
+                new Object[]{this.run.size(), runFile});
+        this.run.clear();
+    }
+
+    private static final class Entry {
+
+        private final String keyId;
+        private final Proposition proposition;
+        private final UniqueIdPair[] refUniqueIds;
+
+        Entry(String keyId, Proposition proposition,
+                UniqueIdPair[] refUniqueIds) {
+            assert keyId != null : "keyId cannot be null";
+            this.keyId = keyId;
+            this.proposition = proposition;
+            this.refUniqueIds = refUniqueIds;
+        }
+
+        void write(ObjectOutputStream out) throws IOException {
+            out.writeUTF(this.keyId);
+            if (this.proposition != null) {
+                out.writeByte(0);
+                out.writeObject(this.proposition);
+            } else if (this.refUniqueIds == null) {
+                out.writeByte(1);
+            } else {
+                out.writeByte(2);
+                out.writeInt(this.refUniqueIds.length);
+                for (UniqueIdPair pair : this.refUniqueIds) {
+                    if (pair != null) {
+                        out.writeBoolean(true);
+                        out.writeUTF(pair.getReferenceName());
+                        out.writeObject(pair.getProposition());
+                        out.writeObject(pair.getReference());
+                    } else {
+                        out.writeBoolean(false);
+                    }
+                }
+            }
+        }
+
+        static Entry read(ObjectInputStream in)
+                throws IOException, ClassNotFoundException {
+            String keyId = in.readUTF();
+            switch (in.readByte()) {
+                case 0:
+                    return new Entry(keyId, (Proposition) in.readObject(),
+                            null);
+                case 1:
+                    return new Entry(keyId, null, null);
+                default:
+                    UniqueIdPair[] pairs = new UniqueIdPair[in.readInt()];
+                    for (int i = 0; i < pairs.length; i++) {
+                        if (in.readBoolean()) {
+                            String referenceName = in.readUTF();
+                            UniqueId proposition = (UniqueId) in.readObject();
+                            UniqueId reference = (UniqueId) in.readObject();
+                            pairs[i] = new UniqueIdPair(referenceName,
+                                    proposition, reference);
+                        }
+                    }
+                    return new Entry(keyId, null, pairs);
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a run in order. Ties between runs are broken by
+     * run order, so records with the same key id keep the order in which
+     * they were added.
+     */
+    private static final class RunReader implements Comparable<RunReader> {
+
+        private final ObjectInputStream in;
+        private final int index;
+        private int remaining;
+        private Entry current;
+
+        RunReader(Path runFile, int index) throws IOException {
+            InputStream fileIn = Files.newInputStream(runFile);
+            try {
+                this.in = new ObjectInputStream(
+                        new BufferedInputStream(fileIn));
+                this.remaining = this.in.readInt();
+            } catch (IOException | RuntimeException ex) {
+                try {
+                    fileIn.close();
+                } catch (IOException ignore) {
+                    ex.addSuppressed(ignore);
+                }
+                throw ex;
+            }
+            this.index = index;
+        }
+
+        boolean advance() throws IOException {
+            if (this.remaining == 0) {
+                this.current = null;
+                return false;
+            }
+            try {
+                this.current = Entry.read(this.in);
+            } catch (ClassNotFoundException ex) {
+                throw new IOException(ex);
+            }
+            this.remaining--;
+            return true;
+        }
+
+        void close() throws IOException {
+            this.in.close();
+        }
+
+        @Override
+        public int compareTo(RunReader o) {
+            int result = this.current.keyId.compareTo(o.current.keyId);
+            return result != 0 ? result : Integer.compare(this.index, o.index);
+        }
+    }
+}
@@ -20,12 +20,13 @@
 package org.protempa.backend.dsb.relationaldb;
 
 import org.apache.commons.lang3.StringUtils;
-import org.arp.javautil.arrays.Arrays;
 import org.protempa.DataSourceBackendSourceSystem;
 import org.protempa.DataStreamingEventIterator;
 import org.protempa.UniqueIdPair;
 import org.protempa.proposition.PrimitiveParameter;
 import org.protempa.proposition.UniqueId;
+import org.protempa.proposition.interval.IntervalFactory;
+import org.protempa.proposition.value.Granularity;
 import org.protempa.proposition.value.Value;
 import org.protempa.proposition.value.ValueType;
 
@@ -64,6 +65,7 @@ class PrimitiveParameterStreamingResultProcessor extends StreamingMainResultProc
 
         private final Logger logger;
         private final DataSourceBackendSourceSystem dsType;
+        private final IntervalFactory intervalFactory;
         private final Date now;
         
 
@@ -73,67 +75,48 @@ class PrimitiveParameterStreamingResultProcessor extends StreamingMainResultProc
                 throws SQLException {
             super(getBackend(), statement, resultSet, entitySpec, inboundRefSpecs,
                     bidirectionalRefSpecs,
-                    getDataSourceBackendId(), referenceIterator);
+                    getDataSourceBackendId(), referenceIterator,
+                    isCasePresent(), 1);
             this.logger = SQLGenUtil.logger();
             this.dsType = DataSourceBackendSourceSystem.getInstance(getDataSourceBackendId());
+            this.intervalFactory = new IntervalFactory();
             this.now = new Date();
         }
 
         @Override
-        void doProcess(ResultSet resultSet,
-                String[] uniqueIds, ColumnSpec codeSpec, EntitySpec entitySpec,
+        void doProcess(ResultSet resultSet, RowDecoder decoder,
+                EntitySpec entitySpec,
                 Map<String, ReferenceSpec> bidirectionalRefSpecs,
-                int[] columnTypes, String[] propIds, PropertySpec[] propertySpecs,
+                int[] columnTypes, PropertySpec[] propertySpecs,
                 Value[] propertyValues, UniqueIdPair[] refUniqueIds)
                 throws SQLException {
-            int i = 1;
-
-            String kId = resultSet.getString(i++);
+            String kId = decoder.readKeyId(resultSet);
             if (kId == null) {
                 logger.warning("A keyId is null. Skipping record.");
                 return;
             }
-            handleKeyId(kId);
+            kId = handleKeyId(kId);
 
-            i = readUniqueIds(uniqueIds, resultSet, i);
-            if (Arrays.contains(uniqueIds, null)) {
+            String[] uniqueIds = decoder.getUniqueIds();
+            if (!decoder.readUniqueIds(resultSet)) {
                 if (logger.isLoggable(Level.WARNING)) {
                     logger.log(Level.WARNING,
                             "Unique ids contain null ({0}). Skipping record.",
                             StringUtils.join(uniqueIds, ", "));
                 }
-                this.getReferenceIterator().addUniqueIds(kId, null);
+                this.addReferenceUniqueIds(kId, null);
                 return;
             }
             UniqueId uniqueId = generateUniqueId(entitySpec.getName(), uniqueIds);
 
-            String propId = null;
-            if (!isCasePresent()) {
-                if (codeSpec == null) {
-                    assert propIds.length == 1 :
-                            "Don't know which proposition id to assign to";
-                    propId = propIds[0];
-                } else {
-                    String code = resultSet.getString(i++);
-                    propId = sqlCodeToPropositionId(codeSpec, code);
-                    if (propId == null) {
-                        this.getReferenceIterator().addUniqueIds(kId, null);
-                        return;
-                    }
-                }
-            } else {
-                i++;
+            String propId = decoder.readPropositionId(resultSet);
+            if (propId == null && !isCasePresent()) {
+                this.addReferenceUniqueIds(kId, null);
+                return;
             }
 
-            Long timestamp = null;
-            try {
-                timestamp = entitySpec.getPositionParser().toPosition(resultSet,
-                        i, columnTypes[i - 1]);
-                i++;
-            } catch (SQLException e) {
-                logger.log(Level.WARNING,
-                        "Could not parse timestamp. Leaving timestamp unset.", e);
-            }
+            decoder.readPositions(resultSet);
+            int i = decoder.getColumn();
 
             ValueType valueType = entitySpec.getValueType();
             String cpValStr = resultSet.getString(i++);
@@ -149,15 +132,22 @@ class PrimitiveParameterStreamingResultProcessor extends StreamingMainResultProc
             }
             
             if (!queryPropIds.contains(propId)) {
-                this.getReferenceIterator().addUniqueIds(kId, null);
+                this.addReferenceUniqueIds(kId, null);
                 return;
             }
             
-            this.getReferenceIterator().addUniqueIds(kId, refUniqueIds);
+            this.addReferenceUniqueIds(kId, refUniqueIds);
 
             PrimitiveParameter p = new PrimitiveParameter(propId, uniqueId);
-            p.setPosition(timestamp);
-            p.setGranularity(entitySpec.getGranularity());
+            Granularity gran = entitySpec.getGranularity();
+            if (decoder.isPositionNull(0)) {
+                p.setInterval(this.intervalFactory.getInstance(null, gran,
+                        null, gran));
+            } else {
+                long timestamp = decoder.getPosition(0);
+                p.setInterval(this.intervalFactory.getInstance(timestamp,
+                        gran, timestamp, gran));
+            }
             p.setValue(cpVal);
             for (int j = 0; j < propertySpecs.length; j++) {
                 PropertySpec propertySpec = propertySpecs[j];
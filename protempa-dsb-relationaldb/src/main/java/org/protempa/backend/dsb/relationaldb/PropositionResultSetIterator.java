@@ -28,6 +28,8 @@ import org.protempa.proposition.Proposition;
 import org.protempa.proposition.UniqueId;
 import org.protempa.proposition.value.Value;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -44,7 +46,10 @@ import org.protempa.ProtempaEvent;
 
 /**
  * Base implementation for iterators that read a result set that is ordered by
- * key id.
+ * key id. If the backend is configured for
+ * {@link RelationalDbDataSourceBackend#setClientSideKeyGrouping(java.lang.Boolean) client-side key grouping},
+ * the result set is unordered, and the iterator reads all of it and sorts the
+ * records by key id with a {@link KeySortingSpill} before returning any.
  *
  * @author Andrew Post
  */
@@ -53,13 +58,11 @@ abstract class PropositionResultSetIterator<P extends Proposition>
 
     private ResultSet resultSet;
     private final Logger logger;
-    private final String[] uniqueIds;
+    private final RowDecoder decoder;
     private final EntitySpec entitySpec;
     private final int[] columnTypes;
     private Statement statement;
     private int count;
-    private final ColumnSpec codeSpec;
-    private final String[] propIds;
     private final PropertySpec[] propertySpecs;
     private final Value[] propertyValues;
     private final Map<String, ReferenceSpec> inboundRefSpecs;
@@ -73,12 +76,16 @@ abstract class PropositionResultSetIterator<P extends Proposition>
 
     private boolean advanceInvoked = false;
     private final RelationalDbDataSourceBackend backend;
+    private KeySortingSpill<P> spill;
+    private boolean spilling;
+    private boolean grouped;
 
     PropositionResultSetIterator(RelationalDbDataSourceBackend backend,
             Statement statement, ResultSet resultSet,
             EntitySpec entitySpec, Map<String, ReferenceSpec> inboundRefSpecs,
             Map<String, ReferenceSpec> bidirectionalRefSpecs,
-            String dataSourceBackendId, InboundReferenceResultSetIterator referenceIterator)
+            String dataSourceBackendId, InboundReferenceResultSetIterator referenceIterator,
+            boolean casePresent, int positionCount)
             throws SQLException {
         assert backend != null : "backend cannot be null";
         assert resultSet != null : "resultSet cannot be null";
@@ -87,21 +94,14 @@ abstract class PropositionResultSetIterator<P extends Proposition>
         this.backend = backend;
         this.resultSet = resultSet;
         this.logger = SQLGenUtil.logger();
-        this.uniqueIds
-                = new String[entitySpec.getUniqueIdSpecs().length];
         this.entitySpec = entitySpec;
-        this.propIds = entitySpec.getPropositionIds();
         ResultSetMetaData resultSetMetaData = resultSet.getMetaData();
         this.columnTypes = new int[resultSetMetaData.getColumnCount()];
         for (int i = 0; i < this.columnTypes.length; i++) {
             this.columnTypes[i] = resultSetMetaData.getColumnType(i + 1);
         }
-        ColumnSpec localCodeSpec = entitySpec.getCodeSpec();
-        if (localCodeSpec != null) {
-            List<ColumnSpec> codeSpecL = localCodeSpec.asList();
-            localCodeSpec = codeSpecL.get(codeSpecL.size() - 1);
-        }
-        this.codeSpec = localCodeSpec;
+        this.decoder = new RowDecoder(entitySpec, this.columnTypes,
+                casePresent, positionCount);
         this.propertySpecs = entitySpec.getPropertySpecs();
         this.propertyValues = new Value[this.propertySpecs.length];
         this.referenceIterator = referenceIterator;
@@ -110,6 +110,14 @@ abstract class PropositionResultSetIterator<P extends Proposition>
         this.refUniqueIds = new UniqueIdPair[this.inboundRefSpecs.size() + this.bidirectionalRefSpecs.size()];
         this.props = new HashMap<>();
         this.statement = statement;
+        if (backend.isClientSideKeyGrouping()) {
+            Integer runSize = backend.getKeyGroupingRunSize();
+            String directory = backend.getKeyGroupingDirectory();
+            this.spill = new KeySortingSpill<>(
+                    runSize != null ? runSize
+                            : RelationalDbDataSourceBackend.DEFAULT_KEY_GROUPING_RUN_SIZE,
+                    directory != null ? Paths.get(directory) : null);
+        }
     }
 
     final String getKeyId() {
@@ -121,21 +129,131 @@ abstract class PropositionResultSetIterator<P extends Proposition>
     }
 
     /**
-     * For recording the key id of the current record.
+     * For recording the key id of the current record. Consecutive records
+     * with the same key id share one key id {@link String}, so
+     * implementations should use the returned key id rather than the one
+     * that they passed in.
      *
      * @param kId the key id {@link String}.
+     * @return the key id {@link String} to use for the current record.
      */
-    final void handleKeyId(String kId) {
+    final String handleKeyId(String kId) {
         String oldKeyId = getKeyId();
-        if (oldKeyId != null && !oldKeyId.equals(kId)) {
+        if (oldKeyId != null && oldKeyId.equals(kId)) {
+            return oldKeyId;
+        }
+        if (oldKeyId != null && !this.spilling) {
             createDataStreamingEvent(oldKeyId, this.props);
         }
         this.keyId = kId;
+        return kId;
     }
 
     abstract void fireResultSetCompleted();
 
-    void handleProposition(P prop) {
+    /**
+     * For recording the references of the current record. Implementations
+     * must call this rather than the reference iterator's
+     * {@link InboundReferenceResultSetIterator#addUniqueIds} method.
+     *
+     * @param kId the key id {@link String}.
+     * @param refUniqueIds the references, or <code>null</code> if the
+     * record is skipped.
+     * @throws SQLException if the references could not be spilled to disk.
+     */
+    final void addReferenceUniqueIds(String kId, UniqueIdPair[] refUniqueIds)
+            throws SQLException {
+        if (this.spilling) {
+            try {
+                this.spill.addReferences(kId, refUniqueIds);
+            } catch (IOException ex) {
+                throw spillError(ex);
+            }
+        } else {
+            this.referenceIterator.addUniqueIds(kId, refUniqueIds);
+        }
+    }
+
+    /**
+     * If the backend is configured for client-side key grouping, reads the
+     * whole result set and sorts its records by key id. Otherwise, or if it
+     * was called already, does nothing. It is called on the first call to
+     * {@link #hasNext() } if it was not called before.
+     *
+     * @throws SQLException if an error occurred reading the result set or
+     * writing the records to disk.
+     */
+    final void groupByKeyId() throws SQLException {
+        if (this.spill == null || this.grouped) {
+            return;
+        }
+        this.grouped = true;
+        this.spilling = true;
+        try {
+            while (this.resultSet.next()) {
+                doProcess(this.resultSet, this.decoder, this.entitySpec,
+                        this.bidirectionalRefSpecs, this.columnTypes,
+                        this.propertySpecs, this.propertyValues,
+                        this.refUniqueIds);
+                this.count++;
+            }
+            this.spill.finish();
+        } catch (IOException ex) {
+            throw spillError(ex);
+        } finally {
+            this.spilling = false;
+            this.keyId = null;
+        }
+    }
+
+    private boolean nextRecord() throws SQLException {
+        if (this.spill == null) {
+            if (this.resultSet.next()) {
+                doProcess(this.resultSet, this.decoder, this.entitySpec,
+                        this.bidirectionalRefSpecs, this.columnTypes,
+                        this.propertySpecs, this.propertyValues,
+                        this.refUniqueIds);
+                this.count++;
+                return true;
+            } else {
+                return false;
+            }
+        }
+        groupByKeyId();
+        try {
+            if (this.spill.next()) {
+                String kId = handleKeyId(this.spill.getKeyId());
+                P prop = this.spill.getProposition();
+                if (prop != null) {
+                    handleProposition(prop);
+                } else {
+                    this.referenceIterator.addUniqueIds(kId,
+                            this.spill.getReferences());
+                }
+                return true;
+            } else {
+                this.spill.close();
+                return false;
+            }
+        } catch (IOException ex) {
+            throw spillError(ex);
+        }
+    }
+
+    private SQLException spillError(IOException ex) {
+        return new SQLException("Error sorting "
+                + this.entitySpec.getName() + " records by key id", ex);
+    }
+
+    void handleProposition(P prop) throws SQLException {
+        if (this.spilling) {
+            try {
+                this.spill.addProposition(this.keyId, prop);
+            } catch (IOException ex) {
+                throw spillError(ex);
+            }
+            return;
+        }
         if (!this.props.containsKey(prop.getUniqueId())) {
             this.props.put(prop.getUniqueId(), prop);
         }
@@ -145,22 +263,22 @@ abstract class PropositionResultSetIterator<P extends Proposition>
      * Reads the next record from the result set and creates a
      * {@link Proposition}. Implementations must call {@link #handleKeyId} with
      * the current key id, and they must call {@link #handleProposition} with
-     * the proposition.
+     * the proposition. They read the columns at the start of the record with
+     * the decoder, and the rest of the columns starting at the decoder's
+     * {@link RowDecoder#getColumn() current column}.
      *
      * @param resultSet
-     * @param uniqueIds
-     * @param codeSpec
+     * @param decoder
      * @param entitySpec
      * @param columnTypes
-     * @param propIds
      * @param propertySpecs
      * @param propertyValues
      * @throws SQLException
      */
-    abstract void doProcess(ResultSet resultSet,
-            String[] uniqueIds, ColumnSpec codeSpec, EntitySpec entitySpec,
+    abstract void doProcess(ResultSet resultSet, RowDecoder decoder,
+            EntitySpec entitySpec,
             Map<String, ReferenceSpec> bidirectionalRefSpecs,
-            int[] columnTypes, String[] propIds, PropertySpec[] propertySpecs,
+            int[] columnTypes, PropertySpec[] propertySpecs,
             Value[] propertyValues, UniqueIdPair[] refUniqueIds) throws
             SQLException;
 
@@ -208,15 +326,7 @@ abstract class PropositionResultSetIterator<P extends Proposition>
                      * record.
                      */
                     while (this.dataStreamingEvent == null) {
-                        if (this.resultSet.next()) {
-                            doProcess(this.resultSet, this.uniqueIds,
-                                    this.codeSpec, this.entitySpec,
-                                    this.bidirectionalRefSpecs,
-                                    this.columnTypes, this.propIds,
-                                    this.propertySpecs, this.propertyValues,
-                                    this.refUniqueIds);
-                            this.count++;
-                        } else {
+                        if (!nextRecord()) {
                             logger.log(Level.INFO, "Result set complete for {0} proposition iterator", this.entitySpec.getName());
                             this.end = true;
                             fireResultSetCompleted();
@@ -305,6 +415,15 @@ abstract class PropositionResultSetIterator<P extends Proposition>
 
     @Override
     public final void close() throws DataSourceReadException {
+        if (this.spill != null) {
+            try {
+                this.spill.close();
+            } catch (IOException ex) {
+                logger.log(Level.WARNING,
+                        "Error deleting temporary files for "
+                        + this.entitySpec.getName(), ex);
+            }
+        }
         if (this.resultSet != null) {
             try {
                 this.resultSet.close();
@@ -36,37 +36,52 @@ public class RelationalDbDataReadIterator
         extends DataSourceBackendMultiplexingDataStreamingEventIterator {
 
     private final List<Connection> connections;
+    private final ConnectionPool connectionPool;
+    private final RelationalDbDataSourceBackend backend;
 
     RelationalDbDataReadIterator(
             List<? extends DataStreamingEventIterator<UniqueIdPair>> refs,
             List<? extends DataStreamingEventIterator<Proposition>> itrs,
-            List<Connection> connections) {
+            List<Connection> connections, ConnectionPool connectionPool,
+            RelationalDbDataSourceBackend backend) {
         super(itrs, refs);
         this.connections = connections;
+        this.connectionPool = connectionPool;
+        this.backend = backend;
     }
 
+    /**
+     * Closes the underlying iterators and returns their connections to the
+     * backend's connection pool. Each connection's query is finished then.
+     *
+     * @throws DataSourceReadException if an error occurred.
+     */
     @Override
     public void close() throws DataSourceReadException {
+        DataSourceReadException exception = null;
         try {
             super.close();
+        } catch (DataSourceReadException ex) {
+            exception = ex;
         } finally {
             for (Connection connection : this.connections) {
-                if (connection != null) {
-                    try {
-                        connection.close();
-                        connection = null;
-                    } catch (SQLException sqle) {
-                        throw new DataSourceReadException("Error retrieving data", sqle);
-                    } finally {
-                        if (connection != null) {
-                            try {
-                                connection.close();
-                            } catch (SQLException ignore) {
-                            }
-                        }
+                try {
+                    this.connectionPool.release(connection);
+                } catch (SQLException sqle) {
+                    if (exception == null) {
+                        exception = new DataSourceReadException(
+                                "Error retrieving data", sqle);
+                    } else {
+                        exception.addSuppressed(sqle);
                     }
+                } finally {
+                    this.backend.queryFinished();
                 }
             }
+            this.connections.clear();
+        }
+        if (exception != null) {
+            throw exception;
         }
     }
 
@@ -23,15 +23,18 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -100,6 +103,11 @@ public abstract class RelationalDbDataSourceBackend
 
     private static final DataValidationEvent[] EMPTY_VALIDATION_EVENT_ARRAY
             = new DataValidationEvent[0];
+    private static final int DEFAULT_QUERY_THREAD_COUNT = 4;
+    private static final int DEFAULT_CONNECTION_WAIT_TIMEOUT = 600;
+    private static final int DEFAULT_KEY_LOADER_BATCH_SIZE = 1000;
+    private static final int DEFAULT_KEY_LOADER_COMMIT_SIZE = 10000;
+    static final int DEFAULT_KEY_GROUPING_RUN_SIZE = 100000;
     private DatabaseAPI databaseAPI;
     private String databaseId;
     protected String username;
@@ -115,12 +123,27 @@ public abstract class RelationalDbDataSourceBackend
     private String keyLoaderKeyIdTable;
     private String keyLoaderKeyIdColumn;
     private String keyLoaderKeyIdJoinKey;
+    private String keyLoaderStagingTable;
+    private final Object keyLoaderStagingLock = new Object();
+    private Integer keyLoaderBatchSize;
+    private Integer keyLoaderCommitSize;
     private String keyFile;
     private FromBackendRelationalDatabaseSpecBuilder relationalDatabaseSpecBuilder;
     private MappingsFactory mappingsFactory;
     private Integer queryThreadCount;
+    private Integer maxConnections;
+    private Integer connectionWaitTimeout;
+    private Integer partitionConcurrency;
+    private Integer keyPartitionCount;
+    private boolean clientSideKeyGrouping;
+    private Integer keyGroupingRunSize;
+    private String keyGroupingDirectory;
+    private ConnectionPool connectionPool;
+    private ThreadPoolExecutor queryExecutor;
+    private final AtomicInteger queriesInFlight;
 
     public RelationalDbDataSourceBackend() {
+        this.queriesInFlight = new AtomicInteger();
         this.databaseAPI = DatabaseAPI.DRIVERMANAGER;
 
         this.dryRun
@@ -197,9 +220,258 @@ public abstract class RelationalDbDataSourceBackend
         return queryThreadCount;
     }
 
+    /**
+     * Sets the number of threads that execute entity spec queries. If the
+     * query executor already exists, it is resized.
+     *
+     * @param queryThreadCount the number of threads, or <code>null</code>
+     * for the default of 4.
+     */
     @BackendProperty
-    public void setQueryThreadCount(Integer queryThreadCount) {
+    public synchronized void setQueryThreadCount(Integer queryThreadCount) {
+        if (queryThreadCount != null && queryThreadCount < 1) {
+            throw new IllegalArgumentException(
+                    "invalid queryThreadCount: " + queryThreadCount);
+        }
         this.queryThreadCount = queryThreadCount;
+        if (this.queryExecutor != null) {
+            int threadCount = queryThreadCount();
+            if (threadCount > this.queryExecutor.getMaximumPoolSize()) {
+                this.queryExecutor.setMaximumPoolSize(threadCount);
+                this.queryExecutor.setCorePoolSize(threadCount);
+            } else {
+                this.queryExecutor.setCorePoolSize(threadCount);
+                this.queryExecutor.setMaximumPoolSize(threadCount);
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum number of database connections that reads from this
+     * backend may have open at once.
+     *
+     * @return the maximum number of connections, or <code>null</code> if
+     * unlimited (the default).
+     */
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of database connections that reads from this
+     * backend may have open at once. Reads hold a connection per entity spec
+     * until their results are closed, so this should be at least the number
+     * of entity specs in the mappings times the number of concurrent reads.
+     *
+     * @param maxConnections the maximum number of connections, or
+     * <code>null</code> for unlimited.
+     */
+    @BackendProperty
+    public void setMaxConnections(Integer maxConnections) {
+        if (maxConnections != null && maxConnections < 1) {
+            throw new IllegalArgumentException(
+                    "invalid maxConnections: " + maxConnections);
+        }
+        this.sqlGenerator = null;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Gets how long a read waits for a database connection when
+     * {@link #getMaxConnections() maxConnections} are in use.
+     *
+     * @return the timeout in seconds, or <code>null</code> for the default
+     * of 600.
+     */
+    public Integer getConnectionWaitTimeout() {
+        return connectionWaitTimeout;
+    }
+
+    /**
+     * Sets how long a read waits for a database connection when
+     * {@link #setMaxConnections(java.lang.Integer) maxConnections} are in
+     * use. The read fails if no connection is released in time.
+     *
+     * @param seconds the timeout in seconds, or <code>null</code> for the
+     * default.
+     */
+    @BackendProperty
+    public void setConnectionWaitTimeout(Integer seconds) {
+        if (seconds != null && seconds < 0) {
+            throw new IllegalArgumentException("invalid seconds: " + seconds);
+        }
+        this.sqlGenerator = null;
+        this.connectionWaitTimeout = seconds;
+    }
+
+    /**
+     * Gets the number of connections over which each entity spec's
+     * partitioned queries are spread and executed concurrently.
+     *
+     * @return the number of connections per entity spec, or
+     * <code>null</code> for the default of 1.
+     */
+    public Integer getPartitionConcurrency() {
+        return partitionConcurrency;
+    }
+
+    /**
+     * Sets the number of connections over which each entity spec's
+     * partitioned queries are spread. An entity spec's query is partitioned
+     * by time if the entity spec has a <code>partitionBy</code> unit and the
+     * read has a position filter, and by key id if a
+     * {@link #setKeyPartitionCount(java.lang.Integer) key partition count} is
+     * set and the read specifies key ids. The partitions are distributed
+     * among this many connections, which execute them concurrently on the
+     * backend's query threads. The partitions' results, each sorted by key
+     * id, are merged by key id. By default, all of an entity spec's
+     * partitions execute one after another on one connection.
+     *
+     * Connections are held until the read's results are closed. If a read
+     * queries so many entity specs that this times the number of entity
+     * specs exceeds {@link #setMaxConnections(java.lang.Integer) maxConnections},
+     * the read uses fewer connections per entity spec, but at least one.
+     *
+     * @param partitionConcurrency the number of connections per entity spec,
+     * or <code>null</code> for the default.
+     */
+    @BackendProperty
+    public void setPartitionConcurrency(Integer partitionConcurrency) {
+        if (partitionConcurrency != null && partitionConcurrency < 1) {
+            throw new IllegalArgumentException(
+                    "invalid partitionConcurrency: " + partitionConcurrency);
+        }
+        this.partitionConcurrency = partitionConcurrency;
+    }
+
+    /**
+     * Gets the number of key id ranges into which each entity spec's query
+     * is split when a read specifies key ids.
+     *
+     * @return the number of key id ranges, or <code>null</code> if queries
+     * are not split by key id (the default).
+     */
+    public Integer getKeyPartitionCount() {
+        return keyPartitionCount;
+    }
+
+    /**
+     * Sets the number of key id ranges into which each entity spec's query
+     * is split when a read specifies key ids. The key ids are sorted and
+     * divided into this many contiguous ranges of about equal size, and
+     * each range is queried separately. Use with
+     * {@link #setPartitionConcurrency(java.lang.Integer) } to query the
+     * ranges concurrently.
+     *
+     * @param keyPartitionCount the number of key id ranges, or
+     * <code>null</code> to not split queries by key id.
+     */
+    @BackendProperty
+    public void setKeyPartitionCount(Integer keyPartitionCount) {
+        if (keyPartitionCount != null && keyPartitionCount < 1) {
+            throw new IllegalArgumentException(
+                    "invalid keyPartitionCount: " + keyPartitionCount);
+        }
+        this.keyPartitionCount = keyPartitionCount;
+    }
+
+    /**
+     * Returns whether records are grouped by key id on the client rather than
+     * sorted by the database.
+     *
+     * @return <code>true</code> or <code>false</code> (the default).
+     */
+    public boolean isClientSideKeyGrouping() {
+        return clientSideKeyGrouping;
+    }
+
+    /**
+     * Sets whether records are grouped by key id on the client rather than
+     * sorted by the database. If <code>true</code>, the generated queries
+     * have no <code>ORDER BY</code> clause. Each entity spec's records are
+     * read in the order in which the database returns them, sorted by key id
+     * in runs of {@link #setKeyGroupingRunSize(java.lang.Integer) } records
+     * that are written to temporary files in the
+     * {@link #setKeyGroupingDirectory(java.lang.String) key grouping directory},
+     * and merged. This trades the database's sort for sequential local disk
+     * I/O, which may be faster for very large extracts. The records are read
+     * on the backend's query threads before the read returns.
+     *
+     * @param clientSideKeyGrouping <code>true</code> or <code>false</code>,
+     * or <code>null</code> for the default.
+     */
+    @BackendProperty
+    public void setClientSideKeyGrouping(Boolean clientSideKeyGrouping) {
+        this.clientSideKeyGrouping = clientSideKeyGrouping != null
+                && clientSideKeyGrouping;
+    }
+
+    /**
+     * Gets the maximum number of records per entity spec query that are held
+     * in memory when grouping records by key id on the client.
+     *
+     * @return the number of records, or <code>null</code> for the default of
+     * 100000.
+     */
+    public Integer getKeyGroupingRunSize() {
+        return keyGroupingRunSize;
+    }
+
+    @BackendProperty
+    public void setKeyGroupingRunSize(Integer keyGroupingRunSize) {
+        if (keyGroupingRunSize != null && keyGroupingRunSize < 1) {
+            throw new IllegalArgumentException(
+                    "invalid keyGroupingRunSize: " + keyGroupingRunSize);
+        }
+        this.keyGroupingRunSize = keyGroupingRunSize;
+    }
+
+    /**
+     * Gets the directory for the temporary files that are written when
+     * grouping records by key id on the client.
+     *
+     * @return the directory, or <code>null</code> for the default
+     * temporary-file directory.
+     */
+    public String getKeyGroupingDirectory() {
+        return keyGroupingDirectory;
+    }
+
+    @BackendProperty
+    public void setKeyGroupingDirectory(String keyGroupingDirectory) {
+        this.keyGroupingDirectory = keyGroupingDirectory;
+    }
+
+    /**
+     * Gets the number of database connections that reads from this backend
+     * have open.
+     *
+     * @return the number of connections in use.
+     */
+    public int getConnectionsInUse() {
+        ConnectionPool pool = this.connectionPool;
+        return pool != null ? pool.getConnectionsInUse() : 0;
+    }
+
+    /**
+     * Gets the total time that reads from this backend have waited for a
+     * database connection since the backend's connection pool was created.
+     *
+     * @return the wait time in milliseconds.
+     */
+    public long getConnectionWaitTimeMillis() {
+        ConnectionPool pool = this.connectionPool;
+        return pool != null ? pool.getConnectionWaitTimeMillis() : 0L;
+    }
+
+    /**
+     * Gets the number of entity spec queries that are executing or whose
+     * results are still being read.
+     *
+     * @return the number of queries in flight.
+     */
+    public int getQueriesInFlight() {
+        return this.queriesInFlight.get();
     }
 
     public String getKeyLoaderKeyIdTable() {
@@ -241,6 +513,78 @@ public abstract class RelationalDbDataSourceBackend
         this.keyLoaderKeyIdJoinKey = keyLoaderKeyIdJoinKey;
     }
 
+    /**
+     * Gets the table into which key ids are staged before they are copied
+     * into the key loader table.
+     *
+     * @return the table name, or <code>null</code> if key ids are inserted
+     * into the key loader table directly (the default).
+     */
+    public String getKeyLoaderStagingTable() {
+        return keyLoaderStagingTable;
+    }
+
+    /**
+     * Sets a table into which {@link #writeKeys(java.util.Set) } stages key
+     * ids before copying them into the key loader table with one set-based
+     * insert. It is in the key loader table's schema, has a column with the
+     * same name as the key loader table's key id column, and must keep its
+     * rows across commits, like a PostgreSQL <code>UNLOGGED</code> table or
+     * an Oracle global temporary table created with
+     * <code>ON COMMIT PRESERVE ROWS</code>.
+     *
+     * The staging table is emptied before and after each write. This backend
+     * writes key ids to it one call at a time, but other processes must not
+     * use the same staging table concurrently unless its rows are private to
+     * each connection, as they are in a global temporary table.
+     *
+     * @param keyLoaderStagingTable the table name, or <code>null</code> to
+     * insert into the key loader table directly.
+     */
+    @BackendProperty
+    public void setKeyLoaderStagingTable(String keyLoaderStagingTable) {
+        this.keyLoaderStagingTable = keyLoaderStagingTable;
+    }
+
+    /**
+     * Gets the number of key ids that {@link #writeKeys(java.util.Set) }
+     * sends to the database at a time.
+     *
+     * @return the batch size, or <code>null</code> for the default of 1000.
+     */
+    public Integer getKeyLoaderBatchSize() {
+        return keyLoaderBatchSize;
+    }
+
+    @BackendProperty
+    public void setKeyLoaderBatchSize(Integer keyLoaderBatchSize) {
+        if (keyLoaderBatchSize != null && keyLoaderBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    "invalid keyLoaderBatchSize: " + keyLoaderBatchSize);
+        }
+        this.keyLoaderBatchSize = keyLoaderBatchSize;
+    }
+
+    /**
+     * Gets the number of key ids that {@link #writeKeys(java.util.Set) }
+     * writes per transaction.
+     *
+     * @return the commit size, or <code>null</code> for the default of
+     * 10000.
+     */
+    public Integer getKeyLoaderCommitSize() {
+        return keyLoaderCommitSize;
+    }
+
+    @BackendProperty
+    public void setKeyLoaderCommitSize(Integer keyLoaderCommitSize) {
+        if (keyLoaderCommitSize != null && keyLoaderCommitSize < 1) {
+            throw new IllegalArgumentException(
+                    "invalid keyLoaderCommitSize: " + keyLoaderCommitSize);
+        }
+        this.keyLoaderCommitSize = keyLoaderCommitSize;
+    }
+
     public String getKeyFile() {
         return keyFile;
     }
@@ -434,6 +778,7 @@ public abstract class RelationalDbDataSourceBackend
             try {
                 ConnectionSpec connectionSpecInstance
                         = getConnectionSpecInstance();
+                resetConnectionPool(connectionSpecInstance);
                 this.sqlGenerator = new SQLGeneratorFactory(
                         connectionSpecInstance,
                         this.relationalDatabaseSpecBuilder.build(queryResultsHandler),
@@ -502,99 +847,51 @@ public abstract class RelationalDbDataSourceBackend
 
     @Override
     public void writeKeys(Set<String> keyIds) throws DataSourceWriteException {
-        if (isInKeySetMode() && keyIds != null) {
-            for (String keyId : keyIds) {
-                writeKeys(keyId);
-            }
-        }
-    }
-
-    private void writeKeys(String keyId) throws DataSourceWriteException {
-        final int batchSize = 1000;
-        int commitSize = 10000;
-        try {
-            ConnectionSpec connectionSpecInstance
-                    = getConnectionSpecInstance();
-
-            try (Connection con = connectionSpecInstance.getOrCreate()) {
-                try {
-                    int i = 0;
-                    List<String> subKeyIds = new ArrayList<>(batchSize);
-                    String stmt = buildWriteKeysInsertStmt(batchSize);
-                    SQLGenUtil.logger().log(Level.FINER, "Statement for writing keys: {0}", stmt);
-                    try (PreparedStatement prepareStatement = con.prepareStatement(stmt)) {
-                        subKeyIds.add(keyId);
-                        if (++i % batchSize == 0) {
-                            for (int j = 0, n = subKeyIds.size(); j < n; j++) {
-                                prepareStatement.setObject(j + 1, subKeyIds.get(j));
-                            }
-                            prepareStatement.execute();
-                        }
-                        if (i >= commitSize) {
-                            con.commit();
-                            commitSize = 0;
-                        }
-                    }
-                    if (!subKeyIds.isEmpty()) {
-                        stmt = buildWriteKeysInsertStmt(subKeyIds.size());
-                        SQLGenUtil.logger().log(Level.FINER, "Statement for writing keys: {0}", stmt);
-                        i = 0;
-                        try (PreparedStatement prepareStatement = con.prepareStatement(stmt)) {
-                            for (String subKeyId : subKeyIds) {
-                                prepareStatement.setObject(++i, subKeyId);
-                            }
-                            prepareStatement.execute();
-                        }
-                    }
-                    if (i >= commitSize) {
-                        con.commit();
-                        commitSize = 0;
-                    }
-                } catch (SQLException ex) {
-                    if (commitSize > 0) {
-                        try {
-                            con.rollback();
-                        } catch (SQLException ignore) {
-                            ex.addSuppressed(ignore);
+        if (isInKeySetMode() && keyIds != null && !keyIds.isEmpty()) {
+            KeyIdWriter keyIdWriter = new KeyIdWriter(
+                    qualify(getKeyLoaderKeyIdSchema(),
+                            getKeyLoaderKeyIdTable()),
+                    getKeyLoaderKeyIdColumn(), getKeyLoaderKeyIdJoinKey(),
+                    qualify(getSchemaName(), getDefaultKeyIdTable()),
+                    getDefaultKeyIdColumn(), getDefaultKeyIdJoinKey(),
+                    this.keyLoaderStagingTable != null
+                            ? qualify(getKeyLoaderKeyIdSchema(),
+                                    this.keyLoaderStagingTable)
+                            : null,
+                    this.keyLoaderBatchSize != null
+                            ? this.keyLoaderBatchSize
+                            : DEFAULT_KEY_LOADER_BATCH_SIZE,
+                    this.keyLoaderCommitSize != null
+                            ? this.keyLoaderCommitSize
+                            : DEFAULT_KEY_LOADER_COMMIT_SIZE);
+            try {
+                ConnectionSpec connectionSpecInstance
+                        = getConnectionSpecInstance();
+                try (Connection con = connectionSpecInstance.getOrCreate()) {
+                    int count;
+                    if (this.keyLoaderStagingTable != null) {
+                        synchronized (this.keyLoaderStagingLock) {
+                            count = keyIdWriter.write(con, keyIds);
                         }
+                    } else {
+                        count = keyIdWriter.write(con, keyIds);
                     }
+                    SQLGenUtil.logger().log(Level.FINE,
+                            "Wrote {0} key ids in data source backend {1}",
+                            new Object[]{count, nameForErrors()});
                 }
+            } catch (InvalidConnectionSpecArguments | SQLException ex) {
+                throw new DataSourceWriteException("Could not write key ids in data source backend " + nameForErrors(), ex);
             }
-        } catch (InvalidConnectionSpecArguments | SQLException ex) {
-            throw new DataSourceWriteException("Could not write key ids in data source backend " + nameForErrors(), ex);
-        }
-    }
-
-    private String buildWriteKeysInsertStmt(int size) {
-        StringBuilder stmtBuilder = new StringBuilder();
-        stmtBuilder.append("INSERT INTO ");
-        if (getKeyLoaderKeyIdSchema() != null) {
-            stmtBuilder.append(getKeyLoaderKeyIdSchema());
-            stmtBuilder.append('.');
-        }
-        stmtBuilder.append(getKeyLoaderKeyIdTable());
-        stmtBuilder.append(" (");
-        stmtBuilder.append(getKeyLoaderKeyIdColumn());
-        stmtBuilder.append(", ");
-        stmtBuilder.append(getKeyLoaderKeyIdJoinKey());
-        stmtBuilder.append(") ");
-        stmtBuilder.append(" SELECT ");
-        stmtBuilder.append(getDefaultKeyIdColumn());
-        stmtBuilder.append(", ");
-        stmtBuilder.append(getDefaultKeyIdJoinKey());
-        stmtBuilder.append(" FROM ");
-        if (getSchemaName() != null) {
-            stmtBuilder.append(getSchemaName());
-            stmtBuilder.append('.');
-        }
-        stmtBuilder.append(getDefaultKeyIdTable());
-        stmtBuilder.append(" WHERE ");
-        stmtBuilder.append(getDefaultKeyIdColumn());
-        stmtBuilder.append(" IN (");
-        stmtBuilder.append(StringUtils.join(Collections.nCopies(size, "?"), ','));
-        stmtBuilder.append(')');
-        String stmt = stmtBuilder.toString();
-        return stmt;
+        }
+    }
+
+    private static String qualify(String schema, String table) {
+        if (schema != null) {
+            return schema + '.' + table;
+        } else {
+            return table;
+        }
     }
 
     @Override
@@ -672,13 +969,100 @@ public abstract class RelationalDbDataSourceBackend
     @Override
     public void close() throws BackendCloseException {
         this.sqlGenerator = null;
-        if (this.mappingsFactory != null) {
+        synchronized (this) {
+            if (this.queryExecutor != null) {
+                this.queryExecutor.shutdown();
+                this.queryExecutor = null;
+            }
+        }
+        try {
+            if (this.connectionPool != null) {
+                try {
+                    this.connectionPool.close();
+                } catch (SQLException ex) {
+                    throw new BackendCloseException(ex);
+                } finally {
+                    this.connectionPool = null;
+                }
+            }
+        } finally {
+            if (this.mappingsFactory != null) {
+                try {
+                    this.mappingsFactory.closeAll();
+                } catch (IOException ex) {
+                    throw new BackendCloseException(ex);
+                }
+            }
+        }
+    }
+
+    ConnectionPool getConnectionPool() {
+        return this.connectionPool;
+    }
+
+    /**
+     * Gets the executor that runs this backend's entity spec queries. It is
+     * created on first use with {@link #getQueryThreadCount() } threads,
+     * resized when the thread count is changed, and lives until the backend
+     * is closed.
+     *
+     * @return an {@link ExecutorService}.
+     */
+    synchronized ExecutorService getQueryExecutor() {
+        if (this.queryExecutor == null) {
+            this.queryExecutor = (ThreadPoolExecutor)
+                    Executors.newFixedThreadPool(queryThreadCount(),
+                    (Runnable r) -> {
+                        Thread thread = new Thread(r,
+                                "protempa.dsb.relationaldb.query-" + getId());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return this.queryExecutor;
+    }
+
+    /**
+     * Called when an entity spec query checks out a connection.
+     */
+    void queryStarted() {
+        this.queriesInFlight.incrementAndGet();
+    }
+
+    /**
+     * Called when an entity spec query's connection is released, which is
+     * when the query fails, returns no results, or its results are closed.
+     */
+    void queryFinished() {
+        this.queriesInFlight.decrementAndGet();
+    }
+
+    /**
+     * Replaces the connection pool when the SQL generator is recreated after
+     * a change to the connection settings. Connections still checked out
+     * from the old pool are closed when they are released.
+     */
+    private void resetConnectionPool(ConnectionSpec connectionSpecInstance) {
+        if (this.connectionPool != null) {
             try {
-                this.mappingsFactory.closeAll();
-            } catch (IOException ex) {
-                throw new BackendCloseException(ex);
+                this.connectionPool.close();
+            } catch (SQLException ex) {
+                SQLGenUtil.logger().log(Level.WARNING,
+                        "Error closing idle database connections", ex);
             }
         }
+        this.connectionPool = new ConnectionPool(connectionSpecInstance,
+                this.maxConnections != null
+                        ? this.maxConnections : Integer.MAX_VALUE,
+                queryThreadCount(),
+                TimeUnit.SECONDS.toMillis(this.connectionWaitTimeout != null
+                        ? this.connectionWaitTimeout
+                        : DEFAULT_CONNECTION_WAIT_TIMEOUT));
+    }
+
+    private int queryThreadCount() {
+        return this.queryThreadCount != null
+                ? this.queryThreadCount : DEFAULT_QUERY_THREAD_COUNT;
     }
 
     protected ConnectionSpec getConnectionSpecInstance()
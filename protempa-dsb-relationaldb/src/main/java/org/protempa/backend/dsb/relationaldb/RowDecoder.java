@@ -0,0 +1,394 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decodes the columns at the start of each row of an entity spec's result
+ * set: the key id, the unique ids, the code or case column, and the
+ * position columns. A decoder is compiled from the entity spec and the
+ * result set's column types before the first row is read. Compiling picks
+ * the getter for each column, so that integer codes are read with
+ * {@link ResultSet#getLong(int)} and mapped to proposition ids through a
+ * {@link CodeTable}, and positions are read into a <code>long</code> buffer
+ * without boxing when the entity spec uses one of the built-in position
+ * parsers.
+ *
+ * The decoder reuses its buffers for every row, so callers must copy
+ * anything that they keep before decoding the next row.
+ *
+ * @author Andrew Post
+ */
+final class RowDecoder {
+
+    /**
+     * The maximum number of integer codes whose proposition ids are
+     * remembered.
+     */
+    static final int MAX_CODES = 4096;
+
+    /**
+     * How a position column is read.
+     */
+    enum PositionReader {
+        /**
+         * With {@link ResultSet#getLong(int)}, like
+         * {@link DefaultPositionParser}.
+         */
+        LONG,
+        /**
+         * With {@link ResultSet#getTimestamp(int)}.
+         */
+        TIMESTAMP,
+        /**
+         * With {@link ResultSet#getDate(int)}.
+         */
+        DATE,
+        /**
+         * With {@link ResultSet#getTime(int)}.
+         */
+        TIME,
+        /**
+         * With the entity spec's position parser.
+         */
+        PARSER
+    }
+
+    private final Logger logger;
+    private final int uniqueIdCount;
+    private final boolean casePresent;
+    private final String propId;
+    private final ColumnSpec codeSpec;
+    private final boolean longCodes;
+    private final CodeTable codeTable;
+    private final int[] columnTypes;
+    private final JDBCPositionFormat positionParser;
+    private final PositionReader[] positionReaders;
+    private final Long defaultPosition;
+
+    private final String[] uniqueIds;
+    private final long[] positions;
+    private int positionNulls;
+    private int column;
+
+    /**
+     * Compiles a decoder.
+     *
+     * @param entitySpec the entity spec. Cannot be <code>null</code>.
+     * @param columnTypes the result set's column types as {@link Types}.
+     * Cannot be <code>null</code>.
+     * @param casePresent whether the result set has a case column rather
+     * than a code column.
+     * @param positionCount the number of position columns that follow the
+     * code column: <code>0</code> for constants, <code>1</code> for primitive
+     * parameters and events with only a start time, and <code>2</code> for
+     * events with a start and finish time.
+     */
+    RowDecoder(EntitySpec entitySpec, int[] columnTypes, boolean casePresent,
+            int positionCount) {
+        assert entitySpec != null : "entitySpec cannot be null";
+        assert columnTypes != null : "columnTypes cannot be null";
+        this.logger = SQLGenUtil.logger();
+        this.uniqueIdCount = entitySpec.getUniqueIdSpecs().length;
+        this.casePresent = casePresent;
+        this.columnTypes = columnTypes;
+        ColumnSpec localCodeSpec = entitySpec.getCodeSpec();
+        if (localCodeSpec != null) {
+            List<ColumnSpec> codeSpecL = localCodeSpec.asList();
+            localCodeSpec = codeSpecL.get(codeSpecL.size() - 1);
+        }
+        this.codeSpec = localCodeSpec;
+        if (this.codeSpec == null && !casePresent) {
+            String[] propIds = entitySpec.getPropositionIds();
+            assert propIds.length == 1 :
+                    "Don't know which proposition id to assign to";
+            this.propId = propIds[0];
+        } else {
+            this.propId = null;
+        }
+        int codeColumn = 2 + this.uniqueIdCount;
+        this.longCodes = this.codeSpec != null && !casePresent
+                && codeColumn <= columnTypes.length
+                && isInteger(columnTypes[codeColumn - 1]);
+        this.codeTable = this.longCodes ? new CodeTable(MAX_CODES) : null;
+        this.positionParser = entitySpec.getPositionParser();
+        this.positionReaders = new PositionReader[positionCount];
+        int positionColumn = this.propId != null ? codeColumn : codeColumn + 1;
+        for (int j = 0; j < positionCount; j++) {
+            int k = positionColumn + j;
+            this.positionReaders[j] = positionReader(this.positionParser,
+                    k <= columnTypes.length ? columnTypes[k - 1] : Types.OTHER);
+        }
+        if (this.positionParser
+                instanceof JDBCDateTimeTimestampPositionParser) {
+            this.defaultPosition = ((JDBCDateTimeTimestampPositionParser)
+                    this.positionParser).getDefaultDate();
+        } else {
+            this.defaultPosition = null;
+        }
+        this.uniqueIds = new String[this.uniqueIdCount];
+        this.positions = new long[positionCount];
+    }
+
+    /**
+     * Reads the key id of the result set's current row. This must be called
+     * first for each row.
+     *
+     * @param resultSet the result set. Cannot be <code>null</code>.
+     * @return the key id, or <code>null</code> if the key id column is
+     * <code>NULL</code>.
+     * @throws SQLException if an error occurred reading the result set.
+     */
+    String readKeyId(ResultSet resultSet) throws SQLException {
+        this.column = 1;
+        return resultSet.getString(this.column++);
+    }
+
+    /**
+     * Reads the unique ids of the current row into the unique ids buffer.
+     *
+     * @param resultSet the result set. Cannot be <code>null</code>.
+     * @return <code>true</code> if none of the unique ids is
+     * <code>NULL</code>, <code>false</code> otherwise.
+     * @throws SQLException if an error occurred reading the result set.
+     */
+    boolean readUniqueIds(ResultSet resultSet) throws SQLException {
+        boolean result = true;
+        for (int m = 0; m < this.uniqueIdCount; m++) {
+            String uniqueId = resultSet.getString(this.column++);
+            if (uniqueId == null) {
+                result = false;
+            }
+            this.uniqueIds[m] = uniqueId;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the unique ids buffer.
+     *
+     * @return the unique ids of the current row.
+     */
+    String[] getUniqueIds() {
+        return this.uniqueIds;
+    }
+
+    /**
+     * Reads the proposition id of the current row from its code column. If
+     * the result set has a case column instead, it skips the column, and
+     * the caller gets the proposition id from the case column.
+     *
+     * @param resultSet the result set. Cannot be <code>null</code>.
+     * @return the proposition id, or <code>null</code> if the code does not
+     * map to one or the result set has a case column.
+     * @throws SQLException if an error occurred reading the result set.
+     */
+    String readPropositionId(ResultSet resultSet) throws SQLException {
+        if (this.propId != null) {
+            return this.propId;
+        }
+        int i = this.column++;
+        if (this.casePresent) {
+            return null;
+        }
+        if (this.longCodes) {
+            long code = resultSet.getLong(i);
+            if (resultSet.wasNull()) {
+                return this.codeSpec.getTarget(null);
+            }
+            String result = this.codeTable.get(code);
+            if (result == null) {
+                result = this.codeSpec.getTarget(Long.toString(code));
+                if (result != null) {
+                    this.codeTable.put(code, result);
+                }
+            }
+            return result;
+        } else {
+            return this.codeSpec.getTarget(resultSet.getString(i));
+        }
+    }
+
+    /**
+     * Reads the position columns of the current row into the positions
+     * buffer. A position that cannot be parsed is logged and left unset.
+     *
+     * @param resultSet the result set. Cannot be <code>null</code>.
+     * @throws SQLException if an error occurred reading the result set.
+     */
+    void readPositions(ResultSet resultSet) throws SQLException {
+        this.positionNulls = 0;
+        for (int j = 0; j < this.positionReaders.length; j++) {
+            int i = this.column++;
+            try {
+                if (!readPosition(resultSet, j, i)) {
+                    this.positionNulls |= 1 << j;
+                }
+            } catch (SQLException e) {
+                this.positionNulls |= 1 << j;
+                this.logger.log(Level.WARNING, "Could not parse the position "
+                        + "in column " + i + ". Leaving it unset.", e);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a position of the current row is unset.
+     *
+     * @param j the index of the position column, starting at <code>0</code>.
+     * @return <code>true</code> or <code>false</code>.
+     */
+    boolean isPositionNull(int j) {
+        return (this.positionNulls & (1 << j)) != 0;
+    }
+
+    /**
+     * Returns a position of the current row.
+     *
+     * @param j the index of the position column, starting at <code>0</code>.
+     * @return the position. Undefined if the position is unset.
+     */
+    long getPosition(int j) {
+        return this.positions[j];
+    }
+
+    /**
+     * Returns a position of the current row as a {@link Long}.
+     *
+     * @param j the index of the position column, starting at <code>0</code>.
+     * @return the position, or <code>null</code> if it is unset.
+     */
+    Long getPositionOrNull(int j) {
+        return isPositionNull(j) ? null : this.positions[j];
+    }
+
+    /**
+     * Returns the index of the column after the columns that this decoder
+     * has read from the current row.
+     *
+     * @return a column index.
+     */
+    int getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Returns how a position column is read.
+     *
+     * @param j the index of the position column, starting at <code>0</code>.
+     * @return a {@link PositionReader}.
+     */
+    PositionReader getPositionReader(int j) {
+        return this.positionReaders[j];
+    }
+
+    /**
+     * Returns whether codes are read as integers.
+     *
+     * @return <code>true</code> or <code>false</code>.
+     */
+    boolean isLongCodes() {
+        return this.longCodes;
+    }
+
+    private boolean readPosition(ResultSet resultSet, int j, int i)
+            throws SQLException {
+        java.util.Date date;
+        switch (this.positionReaders[j]) {
+            case LONG:
+                this.positions[j] = resultSet.getLong(i);
+                return true;
+            case TIMESTAMP:
+                date = resultSet.getTimestamp(i);
+                break;
+            case DATE:
+                date = resultSet.getDate(i);
+                break;
+            case TIME:
+                date = resultSet.getTime(i);
+                break;
+            default:
+                Long position = this.positionParser.toPosition(resultSet, i,
+                        this.columnTypes[i - 1]);
+                if (position == null) {
+                    return false;
+                }
+                this.positions[j] = position;
+                return true;
+        }
+        if (date != null) {
+            this.positions[j] = date.getTime();
+            return true;
+        } else if (this.defaultPosition != null) {
+            this.positions[j] = this.defaultPosition;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Picks the getter that does what the position parser does for a
+     * column type. Parsers other than the built-in ones are called as is.
+     */
+    private static PositionReader positionReader(JDBCPositionFormat parser,
+            int columnType) {
+        if (parser == null) {
+            return PositionReader.PARSER;
+        }
+        Class<?> cls = parser.getClass();
+        if (cls == DefaultPositionParser.class) {
+            return PositionReader.LONG;
+        } else if (cls == JDBCTimestampPositionParser.class) {
+            return PositionReader.TIMESTAMP;
+        } else if (cls == JDBCDatePositionParser.class) {
+            return PositionReader.DATE;
+        } else if (cls == JDBCDateTimeTimestampPositionParser.class) {
+            switch (columnType) {
+                case Types.DATE:
+                    return PositionReader.DATE;
+                case Types.TIME:
+                    return PositionReader.TIME;
+                default:
+                    return PositionReader.TIMESTAMP;
+            }
+        } else {
+            return PositionReader.PARSER;
+        }
+    }
+
+    private static boolean isInteger(int columnType) {
+        switch (columnType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
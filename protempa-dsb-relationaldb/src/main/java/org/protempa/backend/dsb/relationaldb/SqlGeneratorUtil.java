@@ -27,6 +27,18 @@ package org.protempa.backend.dsb.relationaldb;
  *
  */
 public final class SqlGeneratorUtil {
+
+    /**
+     * A value that {@link #prepareValue(java.lang.Object) } turns into a
+     * <code>?</code> parameter placeholder.
+     */
+    public static final Object PARAMETER = new Object() {
+        @Override
+        public String toString() {
+            return "?";
+        }
+    };
+
     private SqlGeneratorUtil() {
     }
 
@@ -37,6 +49,9 @@ public final class SqlGeneratorUtil {
      * @return a <tt>String</tt> ready to be appended to an SQL statement
      */
     public static String prepareValue(Object val) {
+        if (val == PARAMETER) {
+            return "?";
+        }
         StringBuilder result = new StringBuilder();
         
         boolean numberOrBooleanOrNull;
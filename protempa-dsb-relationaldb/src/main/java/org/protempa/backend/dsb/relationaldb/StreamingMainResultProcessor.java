@@ -54,11 +54,6 @@ abstract class StreamingMainResultProcessor<P extends Proposition>
         this.lastColumnSpecs = new ColumnSpec[this.propertySpecs.length];
     }
 
-    protected static String sqlCodeToPropositionId(ColumnSpec codeSpec,
-            String code) throws SQLException {
-        return codeSpec.getTarget(code);
-    }
-
     protected int extractPropertyValues(ResultSet resultSet, int i, 
             Value[] propertyValues, int[] colTypes) throws SQLException {
         for (int j = 0; j < this.propertySpecs.length; j++) {
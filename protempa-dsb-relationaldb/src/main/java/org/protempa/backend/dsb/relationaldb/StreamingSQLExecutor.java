@@ -20,6 +20,7 @@
 package org.protempa.backend.dsb.relationaldb;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -49,6 +50,23 @@ public class StreamingSQLExecutor {
     void executeSelect(String entitySpecName, String query,
             StreamingResultProcessor<?> resultProcessor)
             throws DataSourceReadException {
+        executeSelect(entitySpecName, query, null, resultProcessor);
+    }
+
+    /**
+     * Executes a query, binding parameters if there are any, and passes its
+     * result set to a result processor.
+     *
+     * @param entitySpecName the name of the entity spec being queried.
+     * @param query the SQL.
+     * @param parameters the values of the query's parameters, in order, or
+     * <code>null</code> if the query has no parameters.
+     * @param resultProcessor the result processor.
+     * @throws DataSourceReadException if an error occurred.
+     */
+    void executeSelect(String entitySpecName, String query,
+            String[] parameters, StreamingResultProcessor<?> resultProcessor)
+            throws DataSourceReadException {
         Logger logger = SQLGenUtil.logger();
         if (this.connection == null) {
             if (logger.isLoggable(Level.INFO)) {
@@ -66,9 +84,22 @@ public class StreamingSQLExecutor {
             }
 
             try {
-                Statement stmt = connection.createStatement();
-                stmt.setFetchSize(AbstractSQLGenerator.FETCH_SIZE);
-                ResultSet resultSet = stmt.executeQuery(query);
+                Statement stmt;
+                ResultSet resultSet;
+                if (parameters != null) {
+                    PreparedStatement pstmt
+                            = connection.prepareStatement(query);
+                    stmt = pstmt;
+                    stmt.setFetchSize(AbstractSQLGenerator.FETCH_SIZE);
+                    for (int i = 0; i < parameters.length; i++) {
+                        pstmt.setString(i + 1, parameters[i]);
+                    }
+                    resultSet = pstmt.executeQuery();
+                } else {
+                    stmt = connection.createStatement();
+                    stmt.setFetchSize(AbstractSQLGenerator.FETCH_SIZE);
+                    resultSet = stmt.executeQuery(query);
+                }
                 logger.log(Level.FINE, "Database query execution for {0} has returned", entitySpecName);
                 resultProcessor.setStatement(stmt);
                 resultProcessor.process(resultSet);
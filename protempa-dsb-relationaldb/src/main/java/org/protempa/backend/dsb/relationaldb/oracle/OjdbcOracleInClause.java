@@ -44,11 +44,17 @@ final class Ojdbc6OracleInClause extends AbstractInClause {
 
     /**
      * Oracle doesn't allow more than 1000 elements in an IN clause, so if we
-     * want more than 1000 we create multiple IN clauses chained together by OR.
+     * want more than 1000 we create multiple IN clauses chained together by OR,
+     * in parentheses so that they combine correctly with the rest of the
+     * where clause.
      */
     @Override
     public String generateClause() {
         StringBuilder wherePart = new StringBuilder();
+        boolean chained = elements.length > 1000;
+        if (chained) {
+            wherePart.append('(');
+        }
         wherePart.append(referenceIndices.generateColumnReference(columnSpec));
         if (not) {
             wherePart.append(" NOT");
@@ -68,6 +74,9 @@ final class Ojdbc6OracleInClause extends AbstractInClause {
             }
         }
         wherePart.append(')');
+        if (chained) {
+            wherePart.append(')');
+        }
         
         return wherePart.toString();
     }
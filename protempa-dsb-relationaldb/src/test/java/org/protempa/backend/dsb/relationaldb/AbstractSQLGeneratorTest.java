@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.protempa.backend.dsb.filter.Filter;
+import org.protempa.backend.dsb.filter.PropertyValueFilter;
+import org.protempa.proposition.value.NominalValue;
+import org.protempa.proposition.value.ValueComparator;
+
+/**
+ * Tests how {@link AbstractSQLGenerator} partitions an entity spec's queries
+ * and identifies the statements that it caches.
+ *
+ * @author Andrew Post
+ */
+public class AbstractSQLGeneratorTest {
+
+    @Test
+    public void testKeyIdRangesWithoutKeyIds() {
+        Assert.assertEquals(Collections.singletonList(null),
+                AbstractSQLGenerator.constructKeyIdRanges(null, 4));
+    }
+
+    @Test
+    public void testKeyIdRangesWithOnePartition() {
+        Set<String> keyIds = keyIds("b", "a", "c");
+        Assert.assertEquals(Collections.singletonList(keyIds),
+                AbstractSQLGenerator.constructKeyIdRanges(keyIds, 1));
+    }
+
+    @Test
+    public void testKeyIdRangesAreContiguousAndSorted() {
+        List<Set<String>> ranges = AbstractSQLGenerator.constructKeyIdRanges(
+                keyIds("e", "a", "d", "b", "g", "c", "f"), 3);
+        Assert.assertEquals(Arrays.asList(
+                Arrays.asList("a", "b"),
+                Arrays.asList("c", "d"),
+                Arrays.asList("e", "f", "g")), lists(ranges));
+    }
+
+    @Test
+    public void testKeyIdRangesNoMoreThanKeyIds() {
+        List<Set<String>> ranges = AbstractSQLGenerator.constructKeyIdRanges(
+                keyIds("b", "a"), 5);
+        Assert.assertEquals(Arrays.asList(
+                Collections.singletonList("a"),
+                Collections.singletonList("b")), lists(ranges));
+    }
+
+    @Test
+    public void testGroupPartitionsRoundRobin() {
+        Assert.assertEquals(Arrays.asList(
+                Arrays.asList(0, 3, 6),
+                Arrays.asList(1, 4),
+                Arrays.asList(2, 5)),
+                AbstractSQLGenerator.groupPartitions(
+                        Arrays.asList(0, 1, 2, 3, 4, 5, 6), 3));
+    }
+
+    @Test
+    public void testGroupPartitionsNoMoreGroupsThanPartitions() {
+        Assert.assertEquals(Arrays.asList(
+                Collections.singletonList(0),
+                Collections.singletonList(1)),
+                AbstractSQLGenerator.groupPartitions(Arrays.asList(0, 1), 4));
+    }
+
+    @Test
+    public void testGroupPartitionsAtLeastOneGroup() {
+        Assert.assertEquals(
+                Collections.singletonList(Collections.emptyList()),
+                AbstractSQLGenerator.groupPartitions(
+                        Collections.emptyList(), 4));
+    }
+
+    @Test
+    public void testPartitionGroupCountWithinMaxConnections() {
+        Assert.assertEquals(4,
+                AbstractSQLGenerator.partitionGroupCount(4, 3, 12));
+        Assert.assertEquals(4,
+                AbstractSQLGenerator.partitionGroupCount(4, 3, null));
+    }
+
+    @Test
+    public void testPartitionGroupCountClampedToMaxConnections() {
+        Assert.assertEquals(2,
+                AbstractSQLGenerator.partitionGroupCount(4, 5, 10));
+        Assert.assertEquals(2,
+                AbstractSQLGenerator.partitionGroupCount(4, 5, 14));
+    }
+
+    @Test
+    public void testPartitionGroupCountAtLeastOne() {
+        Assert.assertEquals(1,
+                AbstractSQLGenerator.partitionGroupCount(4, 5, 3));
+    }
+
+    @Test
+    public void testStatementKeyWithEqualFilters() {
+        AbstractSQLGenerator.GeneratedStatementKey key
+                = statementKey(4, filter("P", "a"));
+        AbstractSQLGenerator.GeneratedStatementKey other
+                = statementKey(4, filter("P", "a"));
+        Assert.assertEquals(key, other);
+        Assert.assertEquals(key.hashCode(), other.hashCode());
+        Map<AbstractSQLGenerator.GeneratedStatementKey, String> cache
+                = new HashMap<>();
+        cache.put(key, "SELECT");
+        Assert.assertEquals("SELECT", cache.get(other));
+    }
+
+    @Test
+    public void testStatementKeyWithUnequalFilterValues() {
+        Map<AbstractSQLGenerator.GeneratedStatementKey, String> cache
+                = new HashMap<>();
+        cache.put(statementKey(4, filter("P", "a")), "SELECT");
+        Assert.assertNull(cache.get(statementKey(4, filter("P", "b"))));
+    }
+
+    @Test
+    public void testStatementKeyWithUnequalFilterPropositionIds() {
+        Map<AbstractSQLGenerator.GeneratedStatementKey, String> cache
+                = new HashMap<>();
+        cache.put(statementKey(4, filter("P", "a")), "SELECT");
+        Assert.assertNull(cache.get(statementKey(4, filter("Q", "a"))));
+    }
+
+    @Test
+    public void testStatementKeyWithUnequalParameterCounts() {
+        Map<AbstractSQLGenerator.GeneratedStatementKey, String> cache
+                = new HashMap<>();
+        cache.put(statementKey(4, filter("P", "a")), "SELECT");
+        Assert.assertNull(cache.get(statementKey(8, filter("P", "a"))));
+    }
+
+    private static AbstractSQLGenerator.GeneratedStatementKey statementKey(
+            int keyIdParameterCount, Filter filter) {
+        return new AbstractSQLGenerator.GeneratedStatementKey(null,
+                Collections.singleton("P"), Collections.singleton(filter),
+                keyIdParameterCount, SQLOrderBy.ASCENDING, false);
+    }
+
+    private static Filter filter(String propId, String value) {
+        return new PropertyValueFilter(new String[]{propId}, "prop",
+                ValueComparator.EQUAL_TO, NominalValue.getInstance(value));
+    }
+
+    private static Set<String> keyIds(String... keyIds) {
+        return new HashSet<>(Arrays.asList(keyIds));
+    }
+
+    private static List<List<String>> lists(List<Set<String>> ranges) {
+        List<List<String>> result = new ArrayList<>(ranges.size());
+        for (Set<String> range : ranges) {
+            Assert.assertTrue(range instanceof LinkedHashSet);
+            result.add(new ArrayList<>(range));
+        }
+        return result;
+    }
+}
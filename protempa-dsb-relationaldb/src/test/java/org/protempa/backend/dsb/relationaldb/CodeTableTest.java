@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link CodeTable}.
+ *
+ * @author Andrew Post
+ */
+public class CodeTableTest {
+
+    @Test
+    public void testEmpty() {
+        CodeTable table = new CodeTable(10);
+        Assert.assertNull(table.get(0L));
+        Assert.assertNull(table.get(-1L));
+        Assert.assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testPutAndGet() {
+        CodeTable table = new CodeTable(10);
+        Assert.assertTrue(table.put(0L, "Zero"));
+        Assert.assertTrue(table.put(-5L, "MinusFive"));
+        Assert.assertTrue(table.put(Long.MAX_VALUE, "Max"));
+        Assert.assertEquals("Zero", table.get(0L));
+        Assert.assertEquals("MinusFive", table.get(-5L));
+        Assert.assertEquals("Max", table.get(Long.MAX_VALUE));
+        Assert.assertNull(table.get(5L));
+        Assert.assertEquals(3, table.size());
+    }
+
+    @Test
+    public void testPutReplaces() {
+        CodeTable table = new CodeTable(1);
+        Assert.assertTrue(table.put(7L, "A"));
+        Assert.assertTrue(table.put(7L, "B"));
+        Assert.assertEquals("B", table.get(7L));
+        Assert.assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testGrows() {
+        CodeTable table = new CodeTable(10000);
+        for (long code = 0; code < 5000; code++) {
+            Assert.assertTrue(table.put(code * 64, "P" + code));
+        }
+        Assert.assertEquals(5000, table.size());
+        for (long code = 0; code < 5000; code++) {
+            Assert.assertEquals("P" + code, table.get(code * 64));
+        }
+        Assert.assertNull(table.get(1L));
+    }
+
+    @Test
+    public void testMaxSize() {
+        CodeTable table = new CodeTable(100);
+        for (long code = 0; code < 100; code++) {
+            Assert.assertTrue(table.put(code, "P" + code));
+        }
+        Assert.assertFalse(table.put(100L, "P100"));
+        Assert.assertNull(table.get(100L));
+        Assert.assertEquals(100, table.size());
+        Assert.assertEquals("P99", table.get(99L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxSizeMustBePositive() {
+        new CodeTable(0);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.arp.javautil.sql.ConnectionSpec;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ConnectionPool} with connections that only track whether
+ * they are closed.
+ *
+ * @author Andrew Post
+ */
+public class ConnectionPoolTest {
+
+    private List<Connection> created;
+    private List<Connection> closed;
+    private boolean failCreate;
+    private ConnectionSpec connectionSpec;
+
+    @Before
+    public void setUp() {
+        this.created = new ArrayList<>();
+        this.closed = new ArrayList<>();
+        this.connectionSpec = (ConnectionSpec) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{ConnectionSpec.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getOrCreate")) {
+                        if (this.failCreate) {
+                            throw new SQLException("cannot connect");
+                        }
+                        Connection connection = newConnection();
+                        this.created.add(connection);
+                        return connection;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @After
+    public void tearDown() {
+        this.created = null;
+        this.closed = null;
+        this.connectionSpec = null;
+    }
+
+    @Test
+    public void testReleasedConnectionIsReused() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this.connectionSpec, 2, 1,
+                1000);
+        Connection connection = pool.acquire();
+        Assert.assertEquals(1, pool.getConnectionsInUse());
+        pool.release(connection);
+        Assert.assertEquals(0, pool.getConnectionsInUse());
+        Assert.assertSame(connection, pool.acquire());
+        Assert.assertEquals(1, this.created.size());
+    }
+
+    @Test
+    public void testClosedConnectionIsNotReused() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this.connectionSpec, 2, 1,
+                1000);
+        Connection connection = pool.acquire();
+        connection.close();
+        pool.release(connection);
+        Assert.assertNotSame(connection, pool.acquire());
+        Assert.assertEquals(2, this.created.size());
+    }
+
+    @Test
+    public void testConnectionsBeyondMaxIdleAreClosed() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this.connectionSpec, 3, 1,
+                1000);
+        Connection first = pool.acquire();
+        Connection second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        Assert.assertEquals(1, this.closed.size());
+        Assert.assertSame(second, this.closed.get(0));
+    }
+
+    @Test
+    public void testAcquireTimesOut() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this.connectionSpec, 1, 1,
+                50);
+        pool.acquire();
+        try {
+            pool.acquire();
+            Assert.fail("expected a timeout");
+        } catch (SQLException ex) {
+            Assert.assertTrue(ex.getMessage(),
+                    ex.getMessage().startsWith("Timed out after 50 ms"));
+        }
+        Assert.assertEquals(1, pool.getConnectionsInUse());
+        Assert.assertTrue(pool.getConnectionWaitTimeMillis() >= 50);
+    }
+
+    @Test
+    public void testReleaseWakesWaitingAcquire() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this.connectionSpec, 1, 1,
+                10000);
+        Connection connection = pool.acquire();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Connection> waiting = executor.submit(pool::acquire);
+            Thread.sleep(50);
+            Assert.assertFalse(waiting.isDone());
+            pool.release(connection);
+            Assert.assertSame(connection,
+                    waiting.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedCreateReturnsPermit() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this.connectionSpec, 1, 1,
+                50);
+        this.failCreate = true;
+        try {
+            pool.acquire();
+            Assert.fail("expected the connection to fail");
+        } catch (SQLException ex) {
+            Assert.assertEquals("cannot connect", ex.getMessage());
+        }
+        this.failCreate = false;
+        Assert.assertNotNull(pool.acquire());
+        Assert.assertEquals(1, pool.getConnectionsInUse());
+    }
+
+    @Test
+    public void testCloseClosesIdleConnections() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this.connectionSpec, 2, 2,
+                1000);
+        Connection idle = pool.acquire();
+        Connection inUse = pool.acquire();
+        pool.release(idle);
+        pool.close();
+        Assert.assertEquals(1, this.closed.size());
+        Assert.assertSame(idle, this.closed.get(0));
+        pool.release(inUse);
+        Assert.assertEquals(2, this.closed.size());
+        try {
+            pool.acquire();
+            Assert.fail("expected the pool to be closed");
+        } catch (SQLException ex) {
+            Assert.assertEquals("Connection pool is closed", ex.getMessage());
+        }
+    }
+
+    private Connection newConnection() {
+        boolean[] isClosed = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isClosed":
+                            return isClosed[0];
+                        case "close":
+                            if (!isClosed[0]) {
+                                isClosed[0] = true;
+                                this.closed.add((Connection) proxy);
+                            }
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the padding of {@link KeyIdParameters} and the <code>IN</code>
+ * clauses generated from it.
+ *
+ * @author Andrew Post
+ */
+public class KeyIdParametersTest {
+
+    @Test
+    public void testNoKeyIds() {
+        Assert.assertNull(KeyIdParameters.getInstance(null));
+        Assert.assertNull(KeyIdParameters.getInstance(
+                Collections.<String>emptySet()));
+    }
+
+    @Test
+    public void testOneKeyId() {
+        KeyIdParameters params = KeyIdParameters.getInstance(keyIds(1));
+        Assert.assertArrayEquals(new String[]{"k0"}, params.getParameters());
+        Assert.assertEquals(1, params.size());
+    }
+
+    @Test
+    public void testTwoKeyIds() {
+        Assert.assertArrayEquals(new String[]{"k0", "k1"},
+                KeyIdParameters.getInstance(keyIds(2)).getParameters());
+    }
+
+    @Test
+    public void testThreeKeyIdsPadded() {
+        KeyIdParameters params = KeyIdParameters.getInstance(keyIds(3));
+        Assert.assertArrayEquals(new String[]{"k0", "k1", "k2", "k2"},
+                params.getParameters());
+        Assert.assertEquals(3, params.size());
+        Assert.assertEquals(keyIds(3), params);
+    }
+
+    @Test
+    public void testMaxKeyIds() {
+        String[] parameters = KeyIdParameters.getInstance(
+                keyIds(KeyIdParameters.MAX_PARAMETERS)).getParameters();
+        Assert.assertEquals(KeyIdParameters.MAX_PARAMETERS, parameters.length);
+        Assert.assertEquals("k1023", parameters[1023]);
+    }
+
+    @Test
+    public void testTooManyKeyIds() {
+        Assert.assertNull(KeyIdParameters.getInstance(
+                keyIds(KeyIdParameters.MAX_PARAMETERS + 1)));
+    }
+
+    @Test
+    public void testPaddingIsPowerOfTwo() {
+        for (int n = 1; n <= KeyIdParameters.MAX_PARAMETERS; n++) {
+            int length = KeyIdParameters.getInstance(keyIds(n))
+                    .getParameters().length;
+            Assert.assertEquals("n=" + n, 1, Integer.bitCount(length));
+            Assert.assertTrue("n=" + n, length >= n && length < 2 * n);
+        }
+    }
+
+    @Test
+    public void testIteratesKeyIdsWithoutPadding() {
+        Assert.assertEquals(Arrays.asList("k0", "k1", "k2"),
+                new ArrayList<>(KeyIdParameters.getInstance(keyIds(3))));
+    }
+
+    @Test
+    public void testInClausePlaceholders() {
+        ColumnSpec keySpec = new ColumnSpec("KEYID");
+        TableAliaser aliaser = new TableAliaser(
+                Collections.singletonList(new IntColumnSpecWrapper(keySpec)));
+        Object[] placeholders
+                = KeyIdParameters.getInstance(keyIds(3)).getPlaceholders();
+        Assert.assertEquals("KEYID IN (?,?,?,?)", new DefaultInClause(
+                keySpec, placeholders, false, aliaser).generateClause());
+    }
+
+    private static Set<String> keyIds(int count) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            result.add("k" + i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link KeyIdWriter} against a connection that records the JDBC calls
+ * made on it.
+ *
+ * @author Andrew Post
+ */
+public class KeyIdWriterTest {
+
+    private static final String INSERT_SELECT = "INSERT INTO KL (KEYID, JK) "
+            + "SELECT ID, JOINKEY FROM DEF WHERE ID IN (";
+    private static final String STAGED_INSERT
+            = "INSERT INTO STAGING (KEYID) VALUES (?)";
+
+    private List<String> calls;
+    private String failOn;
+
+    @Before
+    public void setUp() {
+        this.calls = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() {
+        this.calls = null;
+        this.failOn = null;
+    }
+
+    @Test
+    public void testDirectExactMultipleOfBatchSize() throws Exception {
+        Assert.assertEquals(8,
+                newKeyIdWriter(null, 2, 4).write(newConnection(), keyIds(8)));
+        Assert.assertEquals(Arrays.asList(
+                "prepare " + INSERT_SELECT + "?,?)",
+                "set 1=k0", "set 2=k1", "addBatch",
+                "set 1=k2", "set 2=k3", "addBatch",
+                "executeBatch", "commit",
+                "set 1=k4", "set 2=k5", "addBatch",
+                "set 1=k6", "set 2=k7", "addBatch",
+                "executeBatch", "commit",
+                "close",
+                "commit"), this.calls);
+    }
+
+    @Test
+    public void testDirectTrailingPartialChunk() throws Exception {
+        Assert.assertEquals(7,
+                newKeyIdWriter(null, 2, 4).write(newConnection(), keyIds(7)));
+        Assert.assertEquals(Arrays.asList(
+                "prepare " + INSERT_SELECT + "?,?)",
+                "set 1=k0", "set 2=k1", "addBatch",
+                "set 1=k2", "set 2=k3", "addBatch",
+                "executeBatch", "commit",
+                "set 1=k4", "set 2=k5", "addBatch",
+                "executeBatch",
+                "close",
+                "prepare " + INSERT_SELECT + "?)",
+                "set 1=k6", "execute",
+                "close",
+                "commit"), this.calls);
+    }
+
+    @Test
+    public void testDirectFewerKeysThanBatchSize() throws Exception {
+        Assert.assertEquals(2,
+                newKeyIdWriter(null, 4, 4).write(newConnection(), keyIds(2)));
+        Assert.assertEquals(Arrays.asList(
+                "prepare " + INSERT_SELECT + "?,?,?,?)",
+                "close",
+                "prepare " + INSERT_SELECT + "?,?)",
+                "set 1=k0", "set 2=k1", "execute",
+                "close",
+                "commit"), this.calls);
+    }
+
+    @Test
+    public void testStaged() throws Exception {
+        Assert.assertEquals(5, newKeyIdWriter("STAGING", 2, 3)
+                .write(newConnection(), keyIds(5)));
+        Assert.assertEquals(Arrays.asList(
+                "execute DELETE FROM STAGING",
+                "close",
+                "prepare " + STAGED_INSERT,
+                "set 1=k0", "addBatch",
+                "set 1=k1", "addBatch", "executeBatch",
+                "set 1=k2", "addBatch", "executeBatch", "commit",
+                "set 1=k3", "addBatch",
+                "set 1=k4", "addBatch", "executeBatch",
+                "close",
+                "execute " + INSERT_SELECT + "SELECT KEYID FROM STAGING)",
+                "execute DELETE FROM STAGING",
+                "close",
+                "commit"), this.calls);
+    }
+
+    @Test
+    public void testDirectFailureRollsBack() throws Exception {
+        this.failOn = "executeBatch";
+        try {
+            newKeyIdWriter(null, 2, 4).write(newConnection(), keyIds(4));
+            Assert.fail("expected the write to fail");
+        } catch (SQLException ex) {
+            Assert.assertEquals("executeBatch failed", ex.getMessage());
+        }
+        Assert.assertEquals("rollback",
+                this.calls.get(this.calls.size() - 1));
+        Assert.assertFalse(this.calls.contains("commit"));
+    }
+
+    @Test
+    public void testStagedFailureRollsBack() throws Exception {
+        this.failOn = "execute " + INSERT_SELECT
+                + "SELECT KEYID FROM STAGING)";
+        try {
+            newKeyIdWriter("STAGING", 2, 10).write(newConnection(),
+                    keyIds(3));
+            Assert.fail("expected the write to fail");
+        } catch (SQLException ex) {
+            Assert.assertEquals(this.failOn + " failed", ex.getMessage());
+        }
+        Assert.assertEquals("rollback",
+                this.calls.get(this.calls.size() - 1));
+        Assert.assertFalse(this.calls.contains("commit"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchSizeMustBePositive() {
+        newKeyIdWriter(null, 0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCommitSizeMustBePositive() {
+        newKeyIdWriter(null, 1, 0);
+    }
+
+    private static KeyIdWriter newKeyIdWriter(String stagingTable,
+            int batchSize, int commitSize) {
+        return new KeyIdWriter("KL", "KEYID", "JK", "DEF", "ID", "JOINKEY",
+                stagingTable, batchSize, commitSize);
+    }
+
+    private static List<String> keyIds(int count) {
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add("k" + i);
+        }
+        return result;
+    }
+
+    /**
+     * Records a call, and throws an exception if it is the call that is
+     * set up to fail.
+     */
+    private void record(String call) throws SQLException {
+        this.calls.add(call);
+        if (call.equals(this.failOn)) {
+            throw new SQLException(call + " failed");
+        }
+    }
+
+    private Connection newConnection() {
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            record("prepare " + args[0]);
+                            return newStatement(PreparedStatement.class);
+                        case "createStatement":
+                            return newStatement(Statement.class);
+                        case "commit":
+                        case "rollback":
+                            record(method.getName());
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.getName());
+                    }
+                });
+    }
+
+    private Object newStatement(Class<? extends Statement> cls) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{cls},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setString":
+                            record("set " + args[0] + "=" + args[1]);
+                            return null;
+                        case "addBatch":
+                        case "close":
+                            record(method.getName());
+                            return null;
+                        case "executeBatch":
+                            record(method.getName());
+                            return new int[0];
+                        case "execute":
+                            record(args != null
+                                    ? "execute " + args[0] : "execute");
+                            return Boolean.FALSE;
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.protempa.UniqueIdPair;
+import org.protempa.proposition.DataSourceBackendId;
+import org.protempa.proposition.DefaultLocalUniqueId;
+import org.protempa.proposition.Event;
+import org.protempa.proposition.UniqueId;
+
+/**
+ * Tests {@link KeySortingSpill} in memory and with runs spilled to a
+ * temporary directory.
+ *
+ * @author Andrew Post
+ */
+public class KeySortingSpillTest {
+
+    /**
+     * Orders the string representations of records by key id only, so that
+     * a stable sort keeps records with the same key id in insertion order.
+     */
+    private static final Comparator<String> BY_KEY_ID = Comparator.comparing(
+            (String s) -> s.substring(0, s.indexOf(' ')));
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("protempa-spill");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path file : files()) {
+            Files.delete(file);
+        }
+        Files.delete(this.directory);
+        this.directory = null;
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        try (KeySortingSpill<Event> spill
+                = new KeySortingSpill<>(10, this.directory)) {
+            List<String> expected = Arrays.asList(
+                    add(spill, "b", "B1"), add(spill, "a", "A1"),
+                    add(spill, "b", "B2"), add(spill, "a", "A2"));
+            spill.finish();
+            Assert.assertTrue(files().isEmpty());
+            Assert.assertEquals(Arrays.asList(expected.get(1),
+                    expected.get(3), expected.get(0), expected.get(2)),
+                    readAll(spill));
+        }
+    }
+
+    @Test
+    public void testMultiRunMerge() throws IOException {
+        try (KeySortingSpill<Event> spill
+                = new KeySortingSpill<>(3, this.directory)) {
+            List<String> expected = new ArrayList<>();
+            for (String keyId : Arrays.asList("e", "a", "d", "g", "c", "f",
+                    "b", "h", "a", "c")) {
+                expected.add(add(spill, keyId, "P"));
+            }
+            spill.finish();
+            Assert.assertEquals(4, files().size());
+            expected.sort(BY_KEY_ID);
+            Assert.assertEquals(expected, readAll(spill));
+        }
+    }
+
+    @Test
+    public void testTiesKeepInsertionOrder() throws IOException {
+        try (KeySortingSpill<Event> spill
+                = new KeySortingSpill<>(2, this.directory)) {
+            String b1 = add(spill, "b", "B1");
+            String a1 = add(spill, "a", "A1");
+            String b2 = add(spill, "b", "B2");
+            String a2 = add(spill, "a", "A2");
+            String b3 = add(spill, "b", "B3");
+            String b4 = add(spill, "b", "B4");
+            String a3 = add(spill, "a", "A3");
+            spill.finish();
+            Assert.assertEquals(Arrays.asList(a1, a2, a3, b1, b2, b3, b4),
+                    readAll(spill));
+        }
+    }
+
+    @Test
+    public void testReferenceRecords() throws IOException {
+        UniqueIdPair pair = new UniqueIdPair("ref", newUniqueId(),
+                newUniqueId());
+        try (KeySortingSpill<Event> spill
+                = new KeySortingSpill<>(1, this.directory)) {
+            spill.addReferences("c", new UniqueIdPair[]{pair, null});
+            spill.addReferences("b", null);
+            UniqueIdPair[] refs = {pair};
+            spill.addReferences("a", refs);
+            refs[0] = null;
+            spill.finish();
+
+            Assert.assertTrue(spill.next());
+            Assert.assertEquals("a", spill.getKeyId());
+            Assert.assertNull(spill.getProposition());
+            Assert.assertEquals(1, spill.getReferences().length);
+            assertPairEquals(pair, spill.getReferences()[0]);
+
+            Assert.assertTrue(spill.next());
+            Assert.assertEquals("b", spill.getKeyId());
+            Assert.assertNull(spill.getProposition());
+            Assert.assertNull(spill.getReferences());
+
+            Assert.assertTrue(spill.next());
+            Assert.assertEquals("c", spill.getKeyId());
+            Assert.assertEquals(2, spill.getReferences().length);
+            assertPairEquals(pair, spill.getReferences()[0]);
+            Assert.assertNull(spill.getReferences()[1]);
+
+            Assert.assertFalse(spill.next());
+        }
+    }
+
+    @Test
+    public void testRunLongerThanResetInterval() throws IOException {
+        try (KeySortingSpill<Event> spill
+                = new KeySortingSpill<>(3000, this.directory)) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 4000; i++) {
+                expected.add(add(spill, String.format("%05d", i % 1500),
+                        "P"));
+            }
+            spill.finish();
+            Assert.assertEquals(2, files().size());
+            expected.sort(BY_KEY_ID);
+            Assert.assertEquals(expected, readAll(spill));
+        }
+    }
+
+    @Test
+    public void testCloseDeletesRunFiles() throws IOException {
+        KeySortingSpill<Event> spill
+                = new KeySortingSpill<>(2, this.directory);
+        for (int i = 0; i < 7; i++) {
+            add(spill, "k" + i, "P");
+        }
+        spill.finish();
+        Assert.assertEquals(4, files().size());
+        Assert.assertTrue(spill.next());
+        spill.close();
+        Assert.assertTrue(files().isEmpty());
+    }
+
+    @Test
+    public void testCloseAfterFailedFinishDeletesRunFiles()
+            throws IOException {
+        KeySortingSpill<Event> spill
+                = new KeySortingSpill<>(2, this.directory);
+        for (int i = 0; i < 6; i++) {
+            add(spill, "k" + i, "P");
+        }
+        Files.write(files().get(0), new byte[0]);
+        try {
+            spill.finish();
+            Assert.fail("expected the truncated run to fail");
+        } catch (IOException ex) {
+            // expected
+        }
+        spill.close();
+        Assert.assertTrue(files().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRunSizeMustBePositive() {
+        new KeySortingSpill<Event>(0, this.directory);
+    }
+
+    /**
+     * Adds a proposition.
+     *
+     * @return the expected string representation of the record.
+     */
+    private static String add(KeySortingSpill<Event> spill, String keyId,
+            String propId) throws IOException {
+        Event event = new Event(propId, newUniqueId());
+        spill.addProposition(keyId, event);
+        return toString(keyId, event);
+    }
+
+    private static List<String> readAll(KeySortingSpill<Event> spill)
+            throws IOException {
+        List<String> result = new ArrayList<>();
+        while (spill.next()) {
+            Assert.assertNull(spill.getReferences());
+            result.add(toString(spill.getKeyId(), spill.getProposition()));
+        }
+        return result;
+    }
+
+    private static String toString(String keyId, Event event) {
+        return keyId + " " + event.getId() + " "
+                + event.getUniqueId().getStringRepresentation();
+    }
+
+    private static UniqueId newUniqueId() {
+        return new UniqueId(DataSourceBackendId.getInstance("test"),
+                new DefaultLocalUniqueId());
+    }
+
+    private static void assertPairEquals(UniqueIdPair expected,
+            UniqueIdPair actual) {
+        Assert.assertEquals(expected.getReferenceName(),
+                actual.getReferenceName());
+        Assert.assertEquals(
+                expected.getProposition().getStringRepresentation(),
+                actual.getProposition().getStringRepresentation());
+        Assert.assertEquals(expected.getReference().getStringRepresentation(),
+                actual.getReference().getStringRepresentation());
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}
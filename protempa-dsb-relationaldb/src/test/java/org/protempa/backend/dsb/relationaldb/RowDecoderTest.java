@@ -0,0 +1,327 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb;
+
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.protempa.backend.dsb.relationaldb.mappings.DefaultMappings;
+import org.protempa.proposition.value.AbsoluteTimeGranularity;
+
+/**
+ * Tests how {@link RowDecoder} reads the columns at the start of a row
+ * against a result set that records the getters called on it.
+ *
+ * @author Andrew Post
+ */
+public class RowDecoderTest {
+
+    private List<String> calls;
+    private Object[] row;
+    private boolean wasNull;
+    private int targetLookups;
+
+    @Before
+    public void setUp() {
+        this.calls = new ArrayList<>();
+        this.targetLookups = 0;
+    }
+
+    @After
+    public void tearDown() {
+        this.calls = null;
+        this.row = null;
+    }
+
+    @Test
+    public void testIntegerCodes() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), true,
+                        new JDBCDateTimeTimestampPositionParser()),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                    Types.TIMESTAMP, Types.TIMESTAMP, Types.VARCHAR},
+                false, 2);
+        Assert.assertTrue(decoder.isLongCodes());
+        Assert.assertEquals(RowDecoder.PositionReader.TIMESTAMP,
+                decoder.getPositionReader(0));
+
+        decode(decoder, "k1", "u1", 1, new Timestamp(1000L),
+                new Timestamp(2000L), "value");
+        Assert.assertEquals("A", decoder.readPropositionId(resultSet()));
+        decoder.readPositions(resultSet());
+        Assert.assertEquals(1000L, decoder.getPosition(0));
+        Assert.assertEquals(2000L, decoder.getPosition(1));
+        Assert.assertFalse(decoder.isPositionNull(0));
+        Assert.assertFalse(decoder.isPositionNull(1));
+        Assert.assertEquals(6, decoder.getColumn());
+        Assert.assertEquals(java.util.Arrays.asList("getString 1",
+                "getString 2", "getLong 3", "getTimestamp 4",
+                "getTimestamp 5"), this.calls);
+    }
+
+    @Test
+    public void testIntegerCodeMappingsAreRemembered() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), false, null),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.BIGINT},
+                false, 0);
+        for (int i = 0; i < 3; i++) {
+            decode(decoder, "k1", "u" + i, 2L);
+            Assert.assertEquals("B", decoder.readPropositionId(resultSet()));
+        }
+        decode(decoder, "k1", "u3", 1L);
+        Assert.assertEquals("A", decoder.readPropositionId(resultSet()));
+        Assert.assertEquals(2, this.targetLookups);
+    }
+
+    @Test
+    public void testNullIntegerCode() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), false, null),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER},
+                false, 0);
+        decode(decoder, "k1", "u1", null);
+        Assert.assertEquals("NullCode",
+                decoder.readPropositionId(resultSet()));
+    }
+
+    @Test
+    public void testStringCodes() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), false, null),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.VARCHAR},
+                false, 0);
+        Assert.assertFalse(decoder.isLongCodes());
+        decode(decoder, "k1", "u1", "2");
+        Assert.assertEquals("B", decoder.readPropositionId(resultSet()));
+        Assert.assertEquals("getString 3",
+                this.calls.get(this.calls.size() - 1));
+    }
+
+    @Test
+    public void testNullUniqueId() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(null, false, null),
+                new int[]{Types.VARCHAR, Types.VARCHAR}, false, 0);
+        this.row = new Object[]{"k1", null};
+        Assert.assertEquals("k1", decoder.readKeyId(resultSet()));
+        Assert.assertFalse(decoder.readUniqueIds(resultSet()));
+        Assert.assertNull(decoder.getUniqueIds()[0]);
+    }
+
+    @Test
+    public void testSinglePropositionIdHasNoCodeColumn()
+            throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(null, false, new DefaultPositionParser()),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.BIGINT},
+                false, 1);
+        Assert.assertEquals(RowDecoder.PositionReader.LONG,
+                decoder.getPositionReader(0));
+        decode(decoder, "k1", "u1", 42L);
+        Assert.assertEquals("A", decoder.readPropositionId(resultSet()));
+        decoder.readPositions(resultSet());
+        Assert.assertEquals(42L, decoder.getPosition(0));
+        Assert.assertEquals(4, decoder.getColumn());
+    }
+
+    @Test
+    public void testCaseColumnIsSkipped() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), false, new JDBCDatePositionParser()),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                    Types.DATE}, true, 1);
+        Assert.assertFalse(decoder.isLongCodes());
+        decode(decoder, "k1", "u1", 1, new Date(5000L));
+        Assert.assertNull(decoder.readPropositionId(resultSet()));
+        decoder.readPositions(resultSet());
+        Assert.assertEquals(5000L, decoder.getPosition(0));
+        Assert.assertEquals(0, this.targetLookups);
+        Assert.assertEquals("getDate 4",
+                this.calls.get(this.calls.size() - 1));
+    }
+
+    @Test
+    public void testDateTimeTimestampParserUsesColumnType()
+            throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), true,
+                        new JDBCDateTimeTimestampPositionParser()),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                    Types.DATE, Types.TIME}, false, 2);
+        Assert.assertEquals(RowDecoder.PositionReader.DATE,
+                decoder.getPositionReader(0));
+        Assert.assertEquals(RowDecoder.PositionReader.TIME,
+                decoder.getPositionReader(1));
+        decode(decoder, "k1", "u1", 1, new Date(1000L), new Time(2000L));
+        decoder.readPropositionId(resultSet());
+        decoder.readPositions(resultSet());
+        Assert.assertEquals(1000L, decoder.getPosition(0));
+        Assert.assertEquals(2000L, decoder.getPosition(1));
+    }
+
+    @Test
+    public void testNullPositions() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), true,
+                        new JDBCTimestampPositionParser()),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                    Types.TIMESTAMP, Types.TIMESTAMP}, false, 2);
+        decode(decoder, "k1", "u1", 1, null, new Timestamp(2000L));
+        decoder.readPropositionId(resultSet());
+        decoder.readPositions(resultSet());
+        Assert.assertTrue(decoder.isPositionNull(0));
+        Assert.assertNull(decoder.getPositionOrNull(0));
+        Assert.assertFalse(decoder.isPositionNull(1));
+        Assert.assertEquals(Long.valueOf(2000L),
+                decoder.getPositionOrNull(1));
+    }
+
+    @Test
+    public void testNullPositionWithDefaultDate() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), false,
+                        new JDBCDateTimeTimestampPositionParser(
+                                new java.util.Date(7000L))),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                    Types.TIMESTAMP}, false, 1);
+        decode(decoder, "k1", "u1", 1, null);
+        decoder.readPropositionId(resultSet());
+        decoder.readPositions(resultSet());
+        Assert.assertFalse(decoder.isPositionNull(0));
+        Assert.assertEquals(7000L, decoder.getPosition(0));
+    }
+
+    @Test
+    public void testOtherParsersAreCalled() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), false, new JDBCDecimalDayParser()),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                    Types.INTEGER}, false, 1);
+        Assert.assertEquals(RowDecoder.PositionReader.PARSER,
+                decoder.getPositionReader(0));
+        decode(decoder, "k1", "u1", 1, 1);
+        decoder.readPropositionId(resultSet());
+        decoder.readPositions(resultSet());
+        Assert.assertTrue(decoder.isPositionNull(0));
+        Assert.assertEquals("getInt 4", this.calls.get(this.calls.size() - 1));
+    }
+
+    @Test
+    public void testUnparseablePositionIsUnset() throws SQLException {
+        RowDecoder decoder = new RowDecoder(
+                entitySpec(codeSpec(), true,
+                        new JDBCTimestampPositionParser()),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER,
+                    Types.VARCHAR, Types.TIMESTAMP}, false, 2);
+        decode(decoder, "k1", "u1", 1, "not a date", new Timestamp(2000L));
+        decoder.readPropositionId(resultSet());
+        decoder.readPositions(resultSet());
+        Assert.assertTrue(decoder.isPositionNull(0));
+        Assert.assertEquals(2000L, decoder.getPosition(1));
+        Assert.assertEquals(6, decoder.getColumn());
+    }
+
+    /**
+     * Sets the current row, and reads its key id and unique ids.
+     */
+    private void decode(RowDecoder decoder, Object... values)
+            throws SQLException {
+        this.row = values;
+        ResultSet resultSet = resultSet();
+        Assert.assertEquals(values[0], decoder.readKeyId(resultSet));
+        Assert.assertTrue(decoder.readUniqueIds(resultSet));
+        Assert.assertEquals(values[1], decoder.getUniqueIds()[0]);
+    }
+
+    private EntitySpec entitySpec(ColumnSpec codeSpec, boolean finishTime,
+            JDBCPositionFormat positionParser) {
+        ColumnSpec tsSpec = positionParser != null
+                ? new ColumnSpec("s", "T", "TS") : null;
+        return new EntitySpec("Test", null,
+                codeSpec != null ? new String[]{"A", "B"} : new String[]{"A"},
+                true, new ColumnSpec("s", "T", "KEYID"),
+                new ColumnSpec[]{new ColumnSpec("s", "T", "ID")}, tsSpec,
+                finishTime ? new ColumnSpec("s", "T", "FINISH") : null,
+                null, null, null, codeSpec, null, null, null,
+                AbsoluteTimeGranularity.DAY, positionParser, null);
+    }
+
+    private ColumnSpec codeSpec() {
+        Map<Object, String> mappings = new HashMap<>();
+        mappings.put("1", "A");
+        mappings.put("2", "B");
+        return new ColumnSpec("s", "T", "CODE", Operator.EQUAL_TO,
+                new DefaultMappings(mappings) {
+            @Override
+            public String getTarget(Object source) {
+                targetLookups++;
+                return source != null ? super.getTarget(source) : "NullCode";
+            }
+        });
+    }
+
+    private ResultSet resultSet() {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("wasNull")) {
+                        return this.wasNull;
+                    }
+                    int i = (Integer) args[0];
+                    this.calls.add(method.getName() + " " + i);
+                    Object value = this.row[i - 1];
+                    this.wasNull = value == null;
+                    switch (method.getName()) {
+                        case "getString":
+                            return value != null ? value.toString() : null;
+                        case "getLong":
+                            return value != null
+                                    ? ((Number) value).longValue() : 0L;
+                        case "getInt":
+                            return value != null
+                                    ? ((Number) value).intValue() : 0;
+                        case "getTimestamp":
+                        case "getDate":
+                        case "getTime":
+                            if (value instanceof String) {
+                                throw new SQLException("Cannot parse "
+                                        + value);
+                            }
+                            return value;
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.getName());
+                    }
+                });
+    }
+}
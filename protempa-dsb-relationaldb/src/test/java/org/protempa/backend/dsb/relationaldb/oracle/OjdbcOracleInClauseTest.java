@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * Protempa Relational Database Data Source Backend
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.backend.dsb.relationaldb.oracle;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import org.protempa.backend.dsb.relationaldb.ColumnSpec;
+import org.protempa.backend.dsb.relationaldb.IntColumnSpecWrapper;
+import org.protempa.backend.dsb.relationaldb.SqlGeneratorUtil;
+import org.protempa.backend.dsb.relationaldb.TableAliaser;
+
+/**
+ * Tests that Oracle <code>IN</code> clauses of parameter placeholders are
+ * chained in groups of at most 1000.
+ *
+ * @author Andrew Post
+ */
+public class OjdbcOracleInClauseTest {
+
+    @Test
+    public void testThousandPlaceholdersNotChained() {
+        Assert.assertEquals("KEYID IN (" + placeholders(1000) + ")",
+                generateClause(1000));
+    }
+
+    @Test
+    public void testMoreThanThousandPlaceholdersChained() {
+        Assert.assertEquals("(KEYID IN (" + placeholders(1000)
+                + ") OR KEYID IN (" + placeholders(24) + "))",
+                generateClause(1024));
+    }
+
+    private static String generateClause(int placeholderCount) {
+        ColumnSpec keySpec = new ColumnSpec("KEYID");
+        TableAliaser aliaser = new TableAliaser(
+                Collections.singletonList(new IntColumnSpecWrapper(keySpec)));
+        Object[] elements = new Object[placeholderCount];
+        Arrays.fill(elements, SqlGeneratorUtil.PARAMETER);
+        return new Ojdbc6OracleInClause(keySpec, elements, false, aliaser)
+                .generateClause();
+    }
+
+    private static String placeholders(int count) {
+        return StringUtils.join(Collections.nCopies(count, "?"), ',');
+    }
+}
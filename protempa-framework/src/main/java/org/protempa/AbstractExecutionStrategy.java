@@ -19,27 +19,37 @@
  */
 package org.protempa;
 
+import java.util.Collection;
+import java.util.Map;
 import org.drools.RuleBase;
 import org.protempa.query.Query;
 
 abstract class AbstractExecutionStrategy implements ExecutionStrategy {
 
     private final AlgorithmSource algorithmSource;
+    private final RuleBaseCache ruleBaseCache;
     private final DerivationsBuilder derivationsBuilder;
     private PropositionDefinitionCache cache;
     private final Query query;
+    private final ExecutorMetrics metrics;
     private RuleBase ruleBase;
 
     /**
      * @param abstractionFinder the {@link AbstractionFinder} using this
      * execution strategy
      */
-    AbstractExecutionStrategy(AlgorithmSource algorithmSource, Query query) {
+    AbstractExecutionStrategy(AlgorithmSource algorithmSource, 
+            RuleBaseCache ruleBaseCache, Query query,
+            ExecutorMetrics metrics) {
         assert algorithmSource != null : "algorithmSource cannot be null";
+        assert ruleBaseCache != null : "ruleBaseCache cannot be null";
         assert query != null : "query cannot be null";
+        assert metrics != null : "metrics cannot be null";
         this.algorithmSource = algorithmSource;
+        this.ruleBaseCache = ruleBaseCache;
         this.derivationsBuilder = new DerivationsBuilder();
         this.query = query;
+        this.metrics = metrics;
     }
 
     public Query getQuery() {
@@ -55,6 +65,10 @@ abstract class AbstractExecutionStrategy implements ExecutionStrategy {
         return this.algorithmSource;
     }
 
+    protected final ExecutorMetrics getMetrics() {
+        return this.metrics;
+    }
+
     protected PropositionDefinitionCache getCache() {
         return cache;
     }
@@ -66,27 +80,55 @@ abstract class AbstractExecutionStrategy implements ExecutionStrategy {
             throw new IllegalArgumentException("cache cannot be null");
         }
         this.cache = cache;
-        createRuleBase();
+        this.ruleBase = newRuleBase();
     }
 
     protected RuleBase getRuleBase() {
         return this.ruleBase;
     }
 
-    private void createRuleBase() throws ExecutionStrategyInitializationException {
-        JBossRuleCreator ruleCreator = newRuleCreator();
+    /**
+     * Gets a rule base for the given proposition definitions from the rule 
+     * base cache, creating it if needed. The rule base's consequences get the
+     * session's {@link DerivationsBuilder} from the 
+     * {@link WorkingMemoryGlobals#DERIVATIONS_BUILDER} global, so subclasses
+     * must set it on every session that they create.
+     * 
+     * @param cache the proposition definitions that the rules may reference.
+     * @param propDefs the proposition definitions to create rules for.
+     * @return a {@link RuleBase}.
+     * @throws ExecutionStrategyInitializationException if the algorithms 
+     * could not be validated or the rule base could not be created.
+     */
+    protected final RuleBase getOrCreateRuleBase(
+            PropositionDefinitionCache cache,
+            Collection<PropositionDefinition> propDefs) 
+            throws ExecutionStrategyInitializationException {
+        ValidateAlgorithmCheckedVisitor visitor
+                = new ValidateAlgorithmCheckedVisitor(getAlgorithmSource());
+        try {
+            visitor.visit(propDefs);
+        } catch (ProtempaException ex) {
+            throw new ExecutionStrategyInitializationException(ex);
+        }
+        Map<LowLevelAbstractionDefinition, Algorithm> algorithms
+                = visitor.getAlgorithms();
         try {
-            this.ruleBase = new JBossRuleBaseFactory(ruleCreator).newInstance();
+            return this.ruleBaseCache.getOrCreate(cache, propDefs, algorithms,
+                    this.query.getQueryMode());
         } catch (RuleBaseInstantiationException ex) {
             throw new ExecutionStrategyInitializationException(ex);
         }
     }
     
     /**
-     * Called by {@link #initialize(java.util.Collection) }.
-     * @return a newly created rule creator instance.
+     * Called by {@link #initialize(org.protempa.PropositionDefinitionCache) }.
+     * Implementations should call 
+     * {@link #getOrCreateRuleBase(org.protempa.PropositionDefinitionCache, java.util.Collection) }.
+     * 
+     * @return a rule base.
      * @throws ExecutionStrategyInitializationException 
      */
-    protected abstract JBossRuleCreator newRuleCreator() throws ExecutionStrategyInitializationException;
+    protected abstract RuleBase newRuleBase() throws ExecutionStrategyInitializationException;
     
 }
@@ -49,8 +49,7 @@ final class AbstractionCombiner implements RuleCreator<AbstractionDefinition> {
     }
 
     @Override
-    public void toRules(AbstractionDefinition d, List<Rule> rules,
-            DerivationsBuilder derivationsBuilder) {
+    public void toRules(AbstractionDefinition d, List<Rule> rules) {
         try {
             Rule rule = new Rule("ABSTRACTION_COMBINER_" + d.getId());
             rule.setSalience(new SalienceInteger(3));
@@ -66,8 +65,7 @@ final class AbstractionCombiner implements RuleCreator<AbstractionDefinition> {
             rule.addPattern(p1);
             rule.addPattern(new EvalCondition(
                     new AbstractionCombinerCondition(d), null));
-            rule.setConsequence(new AbstractionCombinerConsequence(
-                    derivationsBuilder));
+            rule.setConsequence(new AbstractionCombinerConsequence());
             rules.add(rule);
         } catch (InvalidRuleException e) {
             LOGGER.log(Level.SEVERE,
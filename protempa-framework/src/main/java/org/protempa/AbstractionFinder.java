@@ -35,6 +35,7 @@ final class AbstractionFinder {
     private final DataSource dataSource;
     private final KnowledgeSource knowledgeSource;
     private final AlgorithmSource algorithmSource;
+    private final RuleBaseCache ruleBaseCache;
     private boolean closed;
     private Executor executor;
     private final List<? extends ProtempaEventListener> eventListeners;
@@ -51,6 +52,7 @@ final class AbstractionFinder {
         this.dataSource = dataSource;
         this.knowledgeSource = knowledgeSource;
         this.algorithmSource = algorithmSource;
+        this.ruleBaseCache = new RuleBaseCache();
         
         this.eventListeners = eventListeners;
         
@@ -75,6 +77,7 @@ final class AbstractionFinder {
                 new SourceListener<KnowledgeSourceUpdatedEvent>() {
             @Override
             public void sourceUpdated(KnowledgeSourceUpdatedEvent event) {
+                ruleBaseCache.clear();
             }
 
             @Override
@@ -88,6 +91,7 @@ final class AbstractionFinder {
                 new SourceListener<AlgorithmSourceUpdatedEvent>() {
             @Override
             public void sourceUpdated(AlgorithmSourceUpdatedEvent event) {
+                ruleBaseCache.clear();
             }
 
             @Override
@@ -115,6 +119,10 @@ final class AbstractionFinder {
         return this.algorithmSource;
     }
 
+    RuleBaseCache getRuleBaseCache() {
+        return this.ruleBaseCache;
+    }
+
     void doFind(Query query, Destination destination)
             throws QueryException {
         assert destination != null : "destination cannot be null";
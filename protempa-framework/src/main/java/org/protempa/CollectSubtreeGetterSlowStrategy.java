@@ -20,29 +20,26 @@ package org.protempa;
  * #L%
  */
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import org.arp.javautil.arrays.Arrays;
 
 /**
+ * Collects subtrees of the proposition definitions in a map using a
+ * {@link PropositionHierarchyIndex}, which is built the first time it is
+ * needed. The map must not change after that.
  *
  * @author Andrew Post
  */
 class CollectSubtreeGetterSlowStrategy {
 
     private final Map<String, PropositionDefinition> propositionDefinitionMap;
-    private final PropositionDefinitionWalker propDefWalker;
-    private final PropIdWalker propIdWalker;
     private final boolean narrower;
+    private PropositionHierarchyIndex index;
 
     CollectSubtreeGetterSlowStrategy(Map<String, PropositionDefinition> propositionDefinitionMap, boolean narrower) {
         assert propositionDefinitionMap != null : "propositionDefinitionMap cannot be null";
         this.propositionDefinitionMap = propositionDefinitionMap;
         this.narrower = narrower;
-        this.propDefWalker = new PropositionDefinitionWalker();
-        this.propIdWalker = new PropIdWalker();
     }
 
     class InDataSourceResult<E> {
@@ -71,7 +68,10 @@ class CollectSubtreeGetterSlowStrategy {
             throw new IllegalArgumentException(
                     "propIds cannot contain a null element");
         }
-        return this.propIdWalker.walkNarrowerPropDefs(inDataSourceOnly, propIds);
+        Set<String> found = new HashSet<>();
+        Set<String> missing = new HashSet<>();
+        getIndex().collectPropIds(inDataSourceOnly, propIds, found, missing);
+        return new InDataSourceResult<>(found, missing);
     }
 
     InDataSourceResult<PropositionDefinition> collectPropDefs(boolean inDataSourceOnly, Set<String> propIds)
@@ -80,53 +80,18 @@ class CollectSubtreeGetterSlowStrategy {
             throw new IllegalArgumentException(
                     "propIds cannot contain a null element");
         }
-        return this.propDefWalker.walkNarrowerPropDefs(inDataSourceOnly, propIds);
+        Set<PropositionDefinition> found = new HashSet<>();
+        Set<String> missing = new HashSet<>();
+        getIndex().collectPropDefs(inDataSourceOnly, propIds, found, missing);
+        return new InDataSourceResult<>(found, missing);
     }
 
-    private abstract class Walker<E> {
-
-        InDataSourceResult<E> walkNarrowerPropDefs(boolean inDataSource, Set<String> propIds) {
-            Set<E> found = new HashSet<>();
-            Set<String> missing = new HashSet<>();
-            Queue<String> queue = new LinkedList<>(propIds);
-            while (!queue.isEmpty()) {
-                String propId = queue.poll();
-                PropositionDefinition pd = propositionDefinitionMap.get(propId);
-                if (pd != null) {
-                    if (!inDataSource || pd.getInDataSource()) {
-                        addToFound(propId, pd, found);
-                    }
-                    if (narrower) {
-                        Arrays.addAll(queue, pd.getChildren());
-                    } else {
-                        Arrays.addAll(queue, pd.getInverseIsA());
-                    }
-                } else {
-                    missing.add(propId);
-                }
-            }
-            InDataSourceResult<E> inDataSourceResult = new InDataSourceResult<>(found, missing);
-            return inDataSourceResult;
-        }
-
-        protected abstract void addToFound(String propId, PropositionDefinition propDef, Set<E> found);
-    }
-
-    private final class PropositionDefinitionWalker extends Walker<PropositionDefinition> {
-
-        @Override
-        protected void addToFound(String propId, PropositionDefinition propDef, Set<PropositionDefinition> found) {
-            found.add(propDef);
-        }
-
-    }
-
-    private final class PropIdWalker extends Walker<String> {
-
-        @Override
-        protected void addToFound(String propId, PropositionDefinition propDef, Set<String> found) {
-            found.add(propId);
+    private synchronized PropositionHierarchyIndex getIndex() {
+        if (this.index == null) {
+            this.index = new PropositionHierarchyIndex(
+                    this.propositionDefinitionMap.values(), this.narrower);
         }
+        return this.index;
     }
 
 }
@@ -0,0 +1,951 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.protempa.proposition.AbstractParameter;
+import org.protempa.proposition.AbstractProposition;
+import org.protempa.proposition.Constant;
+import org.protempa.proposition.Context;
+import org.protempa.proposition.DataSourceBackendId;
+import org.protempa.proposition.DerivedSourceId;
+import org.protempa.proposition.Event;
+import org.protempa.proposition.LocalUniqueId;
+import org.protempa.proposition.LocalUniqueIdValuesProvider;
+import org.protempa.proposition.PrimitiveParameter;
+import org.protempa.proposition.Proposition;
+import org.protempa.proposition.ProviderBasedLocalUniqueId;
+import org.protempa.proposition.TemporalProposition;
+import org.protempa.proposition.UniqueId;
+import org.protempa.proposition.interval.Interval;
+import org.protempa.proposition.interval.IntervalFactory;
+import org.protempa.proposition.interval.SimpleInterval;
+import org.protempa.proposition.value.BooleanValue;
+import org.protempa.proposition.value.DateValue;
+import org.protempa.proposition.value.Granularity;
+import org.protempa.proposition.value.InequalityNumberValue;
+import org.protempa.proposition.value.NominalValue;
+import org.protempa.proposition.value.NumberValue;
+import org.protempa.proposition.value.Value;
+import org.protempa.proposition.value.ValueComparator;
+import org.protempa.proposition.value.ValueList;
+
+/**
+ * Serialized form of a {@link WorkingMemoryFactStore}. Each distinct
+ * proposition instance is written once into a proposition table, and the
+ * proposition list and derivation maps are written as indices into that
+ * table. Propositions, intervals, values and source systems are written
+ * field by field with a leading type tag rather than through Java
+ * serialization. Strings, unique ids and granularities are written inline
+ * the first time they appear and as a back reference after that. Types
+ * without a tag are written with {@link ObjectOutput#writeObject(Object)}.
+ *
+ * This class is public only because {@link Externalizable} requires it. It
+ * should not be used directly.
+ *
+ * @author Andrew Post
+ */
+public final class CompactWorkingMemoryFactStore implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final byte VERSION = 1;
+
+    private static final int NULL = -1;
+
+    private static final byte PROP_OTHER = 0;
+    private static final byte PROP_PRIMITIVE_PARAMETER = 1;
+    private static final byte PROP_EVENT = 2;
+    private static final byte PROP_ABSTRACT_PARAMETER = 3;
+    private static final byte PROP_CONTEXT = 4;
+    private static final byte PROP_CONSTANT = 5;
+
+    private static final byte INTERVAL_POINT = 0;
+    private static final byte INTERVAL_SIMPLE = 1;
+    private static final byte INTERVAL_GENERAL = 2;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_OTHER = 1;
+    private static final byte VALUE_NOMINAL = 2;
+    private static final byte VALUE_NUMBER = 3;
+    private static final byte VALUE_BIG_NUMBER = 4;
+    private static final byte VALUE_TRUE = 5;
+    private static final byte VALUE_FALSE = 6;
+    private static final byte VALUE_INEQUALITY = 7;
+    private static final byte VALUE_DATE = 8;
+    private static final byte VALUE_LIST = 9;
+
+    private static final byte SOURCE_SYSTEM_NULL = 0;
+    private static final byte SOURCE_SYSTEM_OTHER = 1;
+    private static final byte SOURCE_SYSTEM_DERIVED = 2;
+    private static final byte SOURCE_SYSTEM_UNKNOWN = 3;
+    private static final byte SOURCE_SYSTEM_DATA_SOURCE_BACKEND = 4;
+
+    private static final byte UID_PROVIDER_BASED = 0;
+    private static final byte UID_OTHER = 1;
+
+    /**
+     * Dictionary reference meaning <code>null</code>. A reference of
+     * {@link #NEW_ENTRY} is followed by the entry itself, and a reference
+     * <code>n</code> greater than that refers to entry
+     * <code>n - FIRST_ENTRY</code>.
+     */
+    private static final int NULL_ENTRY = 0;
+    private static final int NEW_ENTRY = 1;
+    private static final int FIRST_ENTRY = 2;
+
+    private static final IntervalFactory INTERVAL_FACTORY
+            = new IntervalFactory();
+
+    private static final ValueComparator[] COMPARATORS
+            = ValueComparator.values();
+
+    private transient WorkingMemoryFactStore factStore;
+
+    /**
+     * For deserialization only.
+     */
+    public CompactWorkingMemoryFactStore() {
+    }
+
+    CompactWorkingMemoryFactStore(WorkingMemoryFactStore factStore) {
+        assert factStore != null : "factStore cannot be null";
+        this.factStore = factStore;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Map<Proposition, Integer> indices = new IdentityHashMap<>();
+        List<Proposition> table = new ArrayList<>();
+        List<Proposition> propositions = this.factStore.getPropositions();
+        Map<Proposition, Set<Proposition>> forwardDerivations
+                = this.factStore.getForwardDerivations();
+        Map<Proposition, Set<Proposition>> backwardDerivations
+                = this.factStore.getBackwardDerivations();
+        if (propositions != null) {
+            for (Proposition prop : propositions) {
+                index(indices, table, prop);
+            }
+        }
+        indexDerivations(indices, table, forwardDerivations);
+        indexDerivations(indices, table, backwardDerivations);
+
+        out.writeByte(VERSION);
+        Writer writer = new Writer(out);
+        writeVarInt(out, table.size());
+        for (Proposition prop : table) {
+            writer.writeProposition(prop);
+        }
+        if (propositions != null) {
+            writeSize(out, propositions.size());
+            for (Proposition prop : propositions) {
+                writeIndex(out, indices, prop);
+            }
+        } else {
+            writeSize(out, NULL);
+        }
+        writeDerivations(out, indices, forwardDerivations);
+        writeDerivations(out, indices, backwardDerivations);
+        Map<String, Integer> instanceNums = this.factStore.getInstanceNums();
+        if (instanceNums != null) {
+            writeSize(out, instanceNums.size());
+            for (Map.Entry<String, Integer> me : instanceNums.entrySet()) {
+                writer.writeString(me.getKey());
+                out.writeInt(me.getValue());
+            }
+        } else {
+            writeSize(out, NULL);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException,
+            ClassNotFoundException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new InvalidObjectException(
+                    "Unsupported working memory fact store version "
+                    + version);
+        }
+        this.factStore = readFactStore(in);
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return this.factStore;
+    }
+
+    private static WorkingMemoryFactStore readFactStore(ObjectInput in)
+            throws IOException, ClassNotFoundException {
+        Reader reader = new Reader(in);
+        Proposition[] table = new Proposition[readVarInt(in)];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = reader.readProposition();
+        }
+        WorkingMemoryFactStore result = new WorkingMemoryFactStore();
+        int size = readSize(in);
+        if (size != NULL) {
+            List<Proposition> propositions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                propositions.add(lookup(table, readVarInt(in) - 1));
+            }
+            result.setPropositions(propositions);
+        }
+        result.setForwardDerivations(readDerivations(in, table));
+        result.setBackwardDerivations(readDerivations(in, table));
+        size = readSize(in);
+        if (size != NULL) {
+            Map<String, Integer> instanceNums = new HashMap<>(mapCapacity(size));
+            for (int i = 0; i < size; i++) {
+                instanceNums.put(reader.readString(), in.readInt());
+            }
+            result.setInstanceNums(instanceNums);
+        }
+        return result;
+    }
+
+    private static void index(Map<Proposition, Integer> indices,
+            List<Proposition> table, Proposition prop) {
+        if (prop != null && !indices.containsKey(prop)) {
+            indices.put(prop, table.size());
+            table.add(prop);
+        }
+    }
+
+    private static void indexDerivations(Map<Proposition, Integer> indices,
+            List<Proposition> table,
+            Map<Proposition, Set<Proposition>> derivations) {
+        if (derivations != null) {
+            for (Map.Entry<Proposition, Set<Proposition>> me
+                    : derivations.entrySet()) {
+                index(indices, table, me.getKey());
+                Set<Proposition> values = me.getValue();
+                if (values != null) {
+                    for (Proposition prop : values) {
+                        index(indices, table, prop);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a proposition's index plus one, so that <code>null</code> is
+     * written as zero.
+     */
+    private static void writeIndex(ObjectOutput out,
+            Map<Proposition, Integer> indices, Proposition prop)
+            throws IOException {
+        writeVarInt(out, prop != null ? indices.get(prop) + 1 : 0);
+    }
+
+    private static Proposition lookup(Proposition[] table, int index)
+            throws InvalidObjectException {
+        if (index == NULL) {
+            return null;
+        }
+        if (index < 0 || index >= table.length) {
+            throw new InvalidObjectException("Invalid proposition index "
+                    + index);
+        }
+        return table[index];
+    }
+
+    private static void writeDerivations(ObjectOutput out,
+            Map<Proposition, Integer> indices,
+            Map<Proposition, Set<Proposition>> derivations)
+            throws IOException {
+        if (derivations == null) {
+            writeSize(out, NULL);
+            return;
+        }
+        writeSize(out, derivations.size());
+        for (Map.Entry<Proposition, Set<Proposition>> me
+                : derivations.entrySet()) {
+            writeIndex(out, indices, me.getKey());
+            Set<Proposition> values = me.getValue();
+            if (values != null) {
+                writeSize(out, values.size());
+                for (Proposition prop : values) {
+                    writeIndex(out, indices, prop);
+                }
+            } else {
+                writeSize(out, NULL);
+            }
+        }
+    }
+
+    private static Map<Proposition, Set<Proposition>> readDerivations(
+            ObjectInput in, Proposition[] table) throws IOException {
+        int size = readSize(in);
+        if (size == NULL) {
+            return null;
+        }
+        Map<Proposition, Set<Proposition>> result
+                = new HashMap<>(mapCapacity(size));
+        for (int i = 0; i < size; i++) {
+            Proposition key = lookup(table, readVarInt(in) - 1);
+            int valuesSize = readSize(in);
+            Set<Proposition> values;
+            if (valuesSize != NULL) {
+                values = new HashSet<>(mapCapacity(valuesSize));
+                for (int j = 0; j < valuesSize; j++) {
+                    values.add(lookup(table, readVarInt(in) - 1));
+                }
+            } else {
+                values = null;
+            }
+            result.put(key, values);
+        }
+        return result;
+    }
+
+    /**
+     * Writes a collection size plus one, so that {@link #NULL} is written
+     * as zero.
+     */
+    private static void writeSize(ObjectOutput out, int size)
+            throws IOException {
+        writeVarInt(out, size + 1);
+    }
+
+    private static int readSize(ObjectInput in) throws IOException {
+        return readVarInt(in) - 1;
+    }
+
+    /**
+     * Writes a non-negative int in seven-bit groups, least significant group
+     * first, so that small counts and indices take one or two bytes.
+     */
+    private static void writeVarInt(ObjectOutput out, int value)
+            throws IOException {
+        assert value >= 0 : "value cannot be negative";
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ObjectInput in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (result < 0) {
+                    break;
+                }
+                return result;
+            }
+        }
+        throw new InvalidObjectException("Malformed variable-length int");
+    }
+
+    private static int mapCapacity(int size) {
+        return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+
+    /**
+     * Writes propositions and the objects they hold. Keeps the dictionaries
+     * of strings, unique ids and other shared objects written so far.
+     */
+    private static final class Writer {
+
+        private final ObjectOutput out;
+        private final Map<String, Integer> strings;
+        private final Map<UniqueId, Integer> uniqueIds;
+        private final Map<Object, Integer> objects;
+
+        Writer(ObjectOutput out) {
+            this.out = out;
+            this.strings = new HashMap<>();
+            this.uniqueIds = new HashMap<>();
+            this.objects = new HashMap<>();
+        }
+
+        void writeProposition(Proposition prop) throws IOException {
+            Class<?> cls = prop.getClass();
+            if (cls == PrimitiveParameter.class) {
+                PrimitiveParameter pp = (PrimitiveParameter) prop;
+                this.out.writeByte(PROP_PRIMITIVE_PARAMETER);
+                writeAbstractProposition(pp);
+                writeLong(pp.getPosition());
+                writeObject(pp.getGranularity());
+                writeValue(pp.getValue());
+            } else if (cls == Event.class) {
+                this.out.writeByte(PROP_EVENT);
+                writeAbstractProposition((Event) prop);
+                writeInterval(((Event) prop).getInterval());
+            } else if (cls == AbstractParameter.class) {
+                AbstractParameter ap = (AbstractParameter) prop;
+                this.out.writeByte(PROP_ABSTRACT_PARAMETER);
+                writeAbstractProposition(ap);
+                writeInterval(ap.getInterval());
+                writeValue(ap.getValue());
+                writeString(ap.getContextId());
+            } else if (cls == Context.class) {
+                this.out.writeByte(PROP_CONTEXT);
+                writeAbstractProposition((Context) prop);
+                writeInterval(((Context) prop).getInterval());
+            } else if (cls == Constant.class) {
+                this.out.writeByte(PROP_CONSTANT);
+                writeAbstractProposition((Constant) prop);
+            } else {
+                this.out.writeByte(PROP_OTHER);
+                this.out.writeObject(prop);
+            }
+        }
+
+        private void writeAbstractProposition(AbstractProposition prop)
+                throws IOException {
+            writeString(prop.getId());
+            writeUniqueId(prop.getUniqueId());
+            String[] propertyNames = prop.getPropertyNames();
+            writeVarInt(this.out, propertyNames.length);
+            for (String propertyName : propertyNames) {
+                writeString(propertyName);
+                writeValue(prop.getProperty(propertyName));
+            }
+            String[] referenceNames = prop.getReferenceNames();
+            writeVarInt(this.out, referenceNames.length);
+            for (String referenceName : referenceNames) {
+                writeString(referenceName);
+                List<UniqueId> uids = prop.getReferences(referenceName);
+                writeVarInt(this.out, uids.size());
+                for (UniqueId uid : uids) {
+                    writeUniqueId(uid);
+                }
+            }
+            writeSourceSystem(prop.getSourceSystem());
+            writeDate(prop.getCreateDate());
+            writeDate(prop.getUpdateDate());
+            writeDate(prop.getDeleteDate());
+            writeDate(prop.getDownloadDate());
+        }
+
+        private void writeSourceSystem(SourceSystem sourceSystem)
+                throws IOException {
+            if (sourceSystem == null) {
+                this.out.writeByte(SOURCE_SYSTEM_NULL);
+            } else if (sourceSystem == SourceSystem.DERIVED) {
+                this.out.writeByte(SOURCE_SYSTEM_DERIVED);
+            } else if (sourceSystem == SourceSystem.UNKNOWN) {
+                this.out.writeByte(SOURCE_SYSTEM_UNKNOWN);
+            } else if (sourceSystem instanceof DataSourceBackendSourceSystem) {
+                this.out.writeByte(SOURCE_SYSTEM_DATA_SOURCE_BACKEND);
+                writeString(
+                        ((DataSourceBackendSourceSystem) sourceSystem).getId());
+            } else {
+                this.out.writeByte(SOURCE_SYSTEM_OTHER);
+                writeObject(sourceSystem);
+            }
+        }
+
+        private void writeInterval(Interval interval) throws IOException {
+            if (interval instanceof SimpleInterval) {
+                long start = interval.getMinStart();
+                long finish = interval.getMinFinish();
+                Granularity startGran = interval.getStartGranularity();
+                Granularity finishGran = interval.getFinishGranularity();
+                if (start == finish && startGran == finishGran) {
+                    this.out.writeByte(INTERVAL_POINT);
+                    this.out.writeLong(start);
+                    writeObject(startGran);
+                } else {
+                    this.out.writeByte(INTERVAL_SIMPLE);
+                    this.out.writeLong(start);
+                    writeObject(startGran);
+                    this.out.writeLong(finish);
+                    writeObject(finishGran);
+                }
+            } else {
+                this.out.writeByte(INTERVAL_GENERAL);
+                writeLong(interval.getMinStart());
+                writeLong(interval.getMaxStart());
+                writeObject(interval.getStartGranularity());
+                writeLong(interval.getMinFinish());
+                writeLong(interval.getMaxFinish());
+                writeObject(interval.getFinishGranularity());
+            }
+        }
+
+        private void writeValue(Value value) throws IOException {
+            if (value == null) {
+                this.out.writeByte(VALUE_NULL);
+                return;
+            }
+            Class<?> cls = value.getClass();
+            if (cls == NominalValue.class) {
+                this.out.writeByte(VALUE_NOMINAL);
+                writeString(((NominalValue) value).getString());
+            } else if (cls == NumberValue.class) {
+                writeNumber(((NumberValue) value).getBigDecimal());
+            } else if (cls == BooleanValue.class) {
+                this.out.writeByte(((BooleanValue) value).booleanValue()
+                        ? VALUE_TRUE : VALUE_FALSE);
+            } else if (cls == InequalityNumberValue.class) {
+                InequalityNumberValue inv = (InequalityNumberValue) value;
+                this.out.writeByte(VALUE_INEQUALITY);
+                this.out.writeByte(inv.getComparator().ordinal());
+                writeNumber(inv.getBigDecimal());
+            } else if (cls == DateValue.class) {
+                this.out.writeByte(VALUE_DATE);
+                this.out.writeLong(((DateValue) value).getDate().getTime());
+            } else if (cls == ValueList.class) {
+                ValueList<?> values = (ValueList<?>) value;
+                this.out.writeByte(VALUE_LIST);
+                writeVarInt(this.out, values.size());
+                for (Value val : values) {
+                    writeValue(val);
+                }
+            } else {
+                this.out.writeByte(VALUE_OTHER);
+                writeObject(value);
+            }
+        }
+
+        private void writeNumber(BigDecimal num) throws IOException {
+            BigInteger unscaled = num.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                this.out.writeByte(VALUE_NUMBER);
+                this.out.writeLong(unscaled.longValue());
+            } else {
+                this.out.writeByte(VALUE_BIG_NUMBER);
+                byte[] bytes = unscaled.toByteArray();
+                writeVarInt(this.out, bytes.length);
+                this.out.write(bytes);
+            }
+            this.out.writeInt(num.scale());
+        }
+
+        void writeString(String str) throws IOException {
+            if (str == null) {
+                writeVarInt(this.out, NULL_ENTRY);
+                return;
+            }
+            Integer index = this.strings.get(str);
+            if (index != null) {
+                writeVarInt(this.out, index + FIRST_ENTRY);
+            } else {
+                this.strings.put(str, this.strings.size());
+                writeVarInt(this.out, NEW_ENTRY);
+                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(this.out, bytes.length);
+                this.out.write(bytes);
+            }
+        }
+
+        private void writeUniqueId(UniqueId uid) throws IOException {
+            if (uid == null) {
+                writeVarInt(this.out, NULL_ENTRY);
+                return;
+            }
+            Integer index = this.uniqueIds.get(uid);
+            if (index != null) {
+                writeVarInt(this.out, index + FIRST_ENTRY);
+                return;
+            }
+            this.uniqueIds.put(uid, this.uniqueIds.size());
+            writeVarInt(this.out, NEW_ENTRY);
+            if (uid.getSourceId() instanceof DerivedSourceId) {
+                writeString(null);
+            } else {
+                writeString(
+                        ((DataSourceBackendId) uid.getSourceId()).getId());
+            }
+            LocalUniqueId localUid = uid.getLocalUniqueId();
+            if (localUid instanceof ProviderBasedLocalUniqueId) {
+                this.out.writeByte(UID_PROVIDER_BASED);
+                writeString(localUid.getId());
+                this.out.writeInt(localUid.getNumericalId());
+            } else {
+                this.out.writeByte(UID_OTHER);
+                writeObject(localUid);
+            }
+        }
+
+        /**
+         * Writes granularities and other objects without a tag. They are
+         * few and are usually shared by many propositions.
+         */
+        private void writeObject(Object obj) throws IOException {
+            if (obj == null) {
+                writeVarInt(this.out, NULL_ENTRY);
+                return;
+            }
+            Integer index = this.objects.get(obj);
+            if (index != null) {
+                writeVarInt(this.out, index + FIRST_ENTRY);
+            } else {
+                this.objects.put(obj, this.objects.size());
+                writeVarInt(this.out, NEW_ENTRY);
+                this.out.writeObject(obj);
+            }
+        }
+
+        private void writeLong(Long l) throws IOException {
+            if (l != null) {
+                this.out.writeBoolean(true);
+                this.out.writeLong(l);
+            } else {
+                this.out.writeBoolean(false);
+            }
+        }
+
+        private void writeDate(Date date) throws IOException {
+            writeLong(date != null ? date.getTime() : null);
+        }
+    }
+
+    /**
+     * Reads what {@link Writer} writes.
+     */
+    private static final class Reader {
+
+        private final ObjectInput in;
+        private final List<String> strings;
+        private final List<UniqueId> uniqueIds;
+        private final List<Object> objects;
+
+        Reader(ObjectInput in) {
+            this.in = in;
+            this.strings = new ArrayList<>();
+            this.uniqueIds = new ArrayList<>();
+            this.objects = new ArrayList<>();
+        }
+
+        Proposition readProposition() throws IOException,
+                ClassNotFoundException {
+            byte type = this.in.readByte();
+            switch (type) {
+                case PROP_PRIMITIVE_PARAMETER: {
+                    PrimitiveParameter pp = new PrimitiveParameter(
+                            readString(), readUniqueId());
+                    readAbstractProposition(pp);
+                    pp.setPosition(readLong());
+                    pp.setGranularity(readObject(Granularity.class));
+                    pp.setValue(readValue());
+                    return pp;
+                }
+                case PROP_EVENT: {
+                    Event event = new Event(readString(), readUniqueId());
+                    readAbstractProposition(event);
+                    event.setInterval(readInterval());
+                    return event;
+                }
+                case PROP_ABSTRACT_PARAMETER: {
+                    AbstractParameter ap = new AbstractParameter(
+                            readString(), readUniqueId());
+                    readAbstractProposition(ap);
+                    ap.setInterval(readInterval());
+                    ap.setValue(readValue());
+                    ap.setContextId(readString());
+                    return ap;
+                }
+                case PROP_CONTEXT: {
+                    Context context = new Context(readString(),
+                            readUniqueId());
+                    readAbstractProposition(context);
+                    context.setInterval(readInterval());
+                    return context;
+                }
+                case PROP_CONSTANT: {
+                    Constant constant = new Constant(readString(),
+                            readUniqueId());
+                    readAbstractProposition(constant);
+                    return constant;
+                }
+                case PROP_OTHER:
+                    return (Proposition) this.in.readObject();
+                default:
+                    throw new InvalidObjectException(
+                            "Invalid proposition type " + type);
+            }
+        }
+
+        private void readAbstractProposition(AbstractProposition prop)
+                throws IOException, ClassNotFoundException {
+            if (prop.getUniqueId() == null) {
+                throw new InvalidObjectException(
+                        "All propositions must have a unique id");
+            }
+            int numProperties = readVarInt(this.in);
+            for (int i = 0; i < numProperties; i++) {
+                prop.setProperty(readString(), readValue());
+            }
+            int numReferences = readVarInt(this.in);
+            for (int i = 0; i < numReferences; i++) {
+                String referenceName = readString();
+                int numUids = readVarInt(this.in);
+                List<UniqueId> uids = new ArrayList<>(numUids);
+                for (int j = 0; j < numUids; j++) {
+                    uids.add(readUniqueId());
+                }
+                prop.setReferences(referenceName, uids);
+            }
+            prop.setSourceSystem(readSourceSystem());
+            prop.setCreateDate(readDate());
+            prop.setUpdateDate(readDate());
+            prop.setDeleteDate(readDate());
+            prop.setDownloadDate(readDate());
+        }
+
+        private SourceSystem readSourceSystem() throws IOException,
+                ClassNotFoundException {
+            byte type = this.in.readByte();
+            switch (type) {
+                case SOURCE_SYSTEM_NULL:
+                    return null;
+                case SOURCE_SYSTEM_DERIVED:
+                    return SourceSystem.DERIVED;
+                case SOURCE_SYSTEM_UNKNOWN:
+                    return SourceSystem.UNKNOWN;
+                case SOURCE_SYSTEM_DATA_SOURCE_BACKEND:
+                    return DataSourceBackendSourceSystem.getInstance(
+                            readString());
+                case SOURCE_SYSTEM_OTHER:
+                    return readObject(SourceSystem.class);
+                default:
+                    throw new InvalidObjectException(
+                            "Invalid source system type " + type);
+            }
+        }
+
+        private Interval readInterval() throws IOException,
+                ClassNotFoundException {
+            byte mode = this.in.readByte();
+            try {
+                switch (mode) {
+                    case INTERVAL_POINT:
+                        return INTERVAL_FACTORY.getInstance(
+                                this.in.readLong(),
+                                readObject(Granularity.class));
+                    case INTERVAL_SIMPLE:
+                        return INTERVAL_FACTORY.getInstance(
+                                this.in.readLong(),
+                                readObject(Granularity.class),
+                                this.in.readLong(),
+                                readObject(Granularity.class));
+                    case INTERVAL_GENERAL:
+                        return INTERVAL_FACTORY.getInstance(readLong(),
+                                readLong(), readObject(Granularity.class),
+                                readLong(), readLong(),
+                                readObject(Granularity.class));
+                    default:
+                        throw new InvalidObjectException(
+                                "Invalid interval mode " + mode);
+                }
+            } catch (IllegalArgumentException iae) {
+                throw new InvalidObjectException("Can't restore interval: "
+                        + iae.getMessage());
+            }
+        }
+
+        private Value readValue() throws IOException, ClassNotFoundException {
+            byte type = this.in.readByte();
+            switch (type) {
+                case VALUE_NULL:
+                    return null;
+                case VALUE_NOMINAL:
+                    return NominalValue.getInstance(readString());
+                case VALUE_NUMBER:
+                case VALUE_BIG_NUMBER:
+                    return NumberValue.getInstance(readNumber(type));
+                case VALUE_TRUE:
+                    return BooleanValue.getInstance(true);
+                case VALUE_FALSE:
+                    return BooleanValue.getInstance(false);
+                case VALUE_INEQUALITY: {
+                    int comparator = this.in.readUnsignedByte();
+                    if (comparator >= COMPARATORS.length) {
+                        throw new InvalidObjectException(
+                                "Invalid value comparator " + comparator);
+                    }
+                    return new InequalityNumberValue(COMPARATORS[comparator],
+                            readNumber(this.in.readByte()));
+                }
+                case VALUE_DATE:
+                    return DateValue.getInstance(new Date(this.in.readLong()));
+                case VALUE_LIST: {
+                    Value[] values = new Value[readVarInt(this.in)];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = readValue();
+                    }
+                    return ValueList.getInstance(values);
+                }
+                case VALUE_OTHER: {
+                    Value value = readObject(Value.class);
+                    return value != null ? value.replace() : null;
+                }
+                default:
+                    throw new InvalidObjectException("Invalid value type "
+                            + type);
+            }
+        }
+
+        private BigDecimal readNumber(byte type) throws IOException {
+            BigInteger unscaled;
+            switch (type) {
+                case VALUE_NUMBER:
+                    unscaled = BigInteger.valueOf(this.in.readLong());
+                    break;
+                case VALUE_BIG_NUMBER:
+                    byte[] bytes = new byte[readVarInt(this.in)];
+                    this.in.readFully(bytes);
+                    unscaled = new BigInteger(bytes);
+                    break;
+                default:
+                    throw new InvalidObjectException("Invalid number type "
+                            + type);
+            }
+            return new BigDecimal(unscaled, this.in.readInt());
+        }
+
+        String readString() throws IOException {
+            int ref = readVarInt(this.in);
+            if (ref == NULL_ENTRY) {
+                return null;
+            } else if (ref == NEW_ENTRY) {
+                byte[] bytes = new byte[readVarInt(this.in)];
+                this.in.readFully(bytes);
+                String str = new String(bytes, StandardCharsets.UTF_8);
+                this.strings.add(str);
+                return str;
+            } else {
+                return entry(this.strings, ref);
+            }
+        }
+
+        private UniqueId readUniqueId() throws IOException,
+                ClassNotFoundException {
+            int ref = readVarInt(this.in);
+            if (ref == NULL_ENTRY) {
+                return null;
+            } else if (ref != NEW_ENTRY) {
+                return entry(this.uniqueIds, ref);
+            }
+            String sourceId = readString();
+            LocalUniqueId localUid;
+            byte type = this.in.readByte();
+            switch (type) {
+                case UID_PROVIDER_BASED:
+                    localUid = new ProviderBasedLocalUniqueId(
+                            new FixedValuesProvider(readString(),
+                                    this.in.readInt()));
+                    break;
+                case UID_OTHER:
+                    localUid = readObject(LocalUniqueId.class);
+                    break;
+                default:
+                    throw new InvalidObjectException(
+                            "Invalid local unique id type " + type);
+            }
+            UniqueId uid = new UniqueId(sourceId != null
+                    ? DataSourceBackendId.getInstance(sourceId)
+                    : DerivedSourceId.getInstance(), localUid);
+            this.uniqueIds.add(uid);
+            return uid;
+        }
+
+        private <T> T readObject(Class<T> cls) throws IOException,
+                ClassNotFoundException {
+            int ref = readVarInt(this.in);
+            Object obj;
+            if (ref == NULL_ENTRY) {
+                return null;
+            } else if (ref == NEW_ENTRY) {
+                obj = this.in.readObject();
+                this.objects.add(obj);
+            } else {
+                obj = entry(this.objects, ref);
+            }
+            if (!cls.isInstance(obj)) {
+                throw new InvalidObjectException("Expected "
+                        + cls.getName() + " but was " + obj);
+            }
+            return cls.cast(obj);
+        }
+
+        private Long readLong() throws IOException {
+            return this.in.readBoolean() ? this.in.readLong() : null;
+        }
+
+        private Date readDate() throws IOException {
+            Long time = readLong();
+            return time != null ? new Date(time) : null;
+        }
+
+        private static <T> T entry(List<T> entries, int ref)
+                throws InvalidObjectException {
+            int index = ref - FIRST_ENTRY;
+            if (index >= entries.size()) {
+                throw new InvalidObjectException("Invalid back reference "
+                        + ref);
+            }
+            return entries.get(index);
+        }
+    }
+
+    /**
+     * Supplies the id and numerical id of a
+     * {@link ProviderBasedLocalUniqueId} that was read back in.
+     */
+    private static final class FixedValuesProvider
+            implements LocalUniqueIdValuesProvider {
+
+        private final String id;
+        private final int numericalId;
+
+        FixedValuesProvider(String id, int numericalId) {
+            this.id = id;
+            this.numericalId = numericalId;
+        }
+
+        @Override
+        public void incr() {
+        }
+
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public int getNumericalId() {
+            return this.numericalId;
+        }
+    }
+}
@@ -43,8 +43,7 @@ final class ContextCombiner implements RuleCreator<ContextDefinition> {
             = new ClassObjectType(Context.class);
 
     @Override
-    public void toRules(ContextDefinition d, List<Rule> rules,
-            DerivationsBuilder derivationsBuilder) {
+    public void toRules(ContextDefinition d, List<Rule> rules) {
         try {
             Rule rule = new Rule("CONTEXT_COMBINER_" + d.getId());
             rule.setSalience(new SalienceInteger(3));
@@ -60,8 +59,7 @@ final class ContextCombiner implements RuleCreator<ContextDefinition> {
             rule.addPattern(p1);
             rule.addPattern(new EvalCondition(
                     new ContextCombinerCondition(d), null));
-            rule.setConsequence(new ContextCombinerConsequence(
-                    derivationsBuilder));
+            rule.setConsequence(new ContextCombinerConsequence());
             rules.add(rule);
         } catch (InvalidRuleException e) {
             LOGGER.log(Level.SEVERE,
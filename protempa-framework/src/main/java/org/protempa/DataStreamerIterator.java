@@ -20,8 +20,9 @@
 package org.protempa;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import org.protempa.proposition.Proposition;
 
 /**
@@ -29,17 +30,80 @@ import org.protempa.proposition.Proposition;
  * iterator. While {@link DataStreamer} implements pushing data from a data
  * source to the caller, this iterator supports pulling data from the data 
  * source.
+ * 
+ * The iterators are merged with a priority queue of the most recent element
+ * retrieved from each iterator, so each element costs O(log k) key id
+ * comparisons for k iterators. Elements are returned in key id order. For
+ * each key id, the iterators take turns in the order in which they were
+ * passed into the constructor, each returning one element per turn.
+ * 
  * @author Andrew Post
  */
 final class DataStreamerIterator<E extends Proposition> implements AutoCloseable {
 
-    private final List<DataStreamingEventIterator<E>> itrs;
-    private final List<DataStreamingEvent<E>> currentElt;
+    private static final Comparator<Head<?>> HEAD_COMPARATOR
+            = new Comparator<Head<?>>() {
+        @Override
+        public int compare(Head<?> o1, Head<?> o2) {
+            int result = o1.elt.getKeyId().compareTo(o2.elt.getKeyId());
+            if (result != 0) {
+                return result;
+            }
+            result = Integer.compare(o1.turn, o2.turn);
+            if (result != 0) {
+                return result;
+            }
+            return Integer.compare(o1.index, o2.index);
+        }
+    };
+
+    /**
+     * The most recent element retrieved from an iterator.
+     */
+    private static final class Head<E> {
+
+        private final DataStreamingEventIterator<E> itr;
+        private final int index;
+        private DataStreamingEvent<E> elt;
+        /*
+         * How many elements with the same key id preceded elt in the
+         * iterator.
+         */
+        private int turn;
+
+        Head(DataStreamingEventIterator<E> itr, int index) {
+            this.itr = itr;
+            this.index = index;
+        }
+
+        /**
+         * Retrieves the next element from the iterator.
+         *
+         * @return <code>true</code> if there was a next element,
+         * <code>false</code> if the iterator is exhausted.
+         */
+        boolean advance() throws DataSourceReadException {
+            if (this.itr.hasNext()) {
+                DataStreamingEvent<E> next = this.itr.next();
+                if (this.elt != null
+                        && this.elt.getKeyId().equals(next.getKeyId())) {
+                    this.turn++;
+                } else {
+                    this.turn = 0;
+                }
+                this.elt = next;
+                return true;
+            } else {
+                this.elt = null;
+                return false;
+            }
+        }
+    }
+
+    private final PriorityQueue<Head<E>> heads;
     private boolean hasNext;
     private DataStreamingEvent<E> result;
     private boolean hasNextComputed;
-    private int i = 0;
-    private DataStreamingEvent<E> currentMin;
     private String nextKeyId;
 
     /**
@@ -53,35 +117,20 @@ final class DataStreamerIterator<E extends Proposition> implements AutoCloseable
     DataStreamerIterator(List<DataStreamingEventIterator<E>> itrs) 
             throws DataSourceReadException {
         assert itrs != null : "itrs cannot be null";
-        this.itrs = itrs;
-        this.currentElt = new ArrayList<>(itrs.size());
         int itrsSize = itrs.size();
+        this.heads = new PriorityQueue<>(Math.max(1, itrsSize),
+                HEAD_COMPARATOR);
         for (int j = 0; j < itrsSize; j++) {
-            this.currentElt.add(null);
-        }
-        /*
-         * Stores the most recent element retrieved from each iterator.
-         */
-        /*
-         * Stores the most recent element retrieved from each iterator.
-         */
-        for (int j = 0; j < itrsSize; j++) {
-            advance(j);
+            Head<E> head = new Head<>(itrs.get(j), j);
+            if (head.advance()) {
+                this.heads.add(head);
+            }
         }
         /*
          * If the iterators have no elements, cut to the chase and arrange for
          * {@link #hasNext()} to return immediately.
          */
-        /*
-         * If the iterators have no elements, cut to the chase and arrange for
-         * {@link #hasNext()} to return immediately.
-         */
-        for (DataStreamingEvent<E> event : this.currentElt) {
-            if (event != null) {
-                this.hasNext = true;
-                break;
-            }
-        }
+        this.hasNext = !this.heads.isEmpty();
     }
 
     String getNextKeyId() {
@@ -89,9 +138,8 @@ final class DataStreamerIterator<E extends Proposition> implements AutoCloseable
     }
 
     /**
-     * We loop through the iterators passed into the constructor and return
-     * whether the the next item in at least one iterator is for the right
-     * keyId.
+     * Returns whether there is another element in any of the iterators
+     * passed into the constructor.
      *
      * @return
      * <code>true</code> or
@@ -99,52 +147,28 @@ final class DataStreamerIterator<E extends Proposition> implements AutoCloseable
      */
     boolean hasNext() throws DataSourceReadException {
         if (!hasNextComputed) {
-            boolean stayInLoop;
-            do {
-                stayInLoop = false;
+            if (this.heads.isEmpty()) {
+                this.hasNext = false;
+            } else if (this.heads.size() == 1) {
                 /*
-                 * Prior to reading the first iterator, we loop through all of
-                 * the iterators to determine the minimum keyId. The minimum
-                 * keyId, stored in currentMin, is used for data retrieval. The
-                 * value of currentMin will be null if there is no data to
-                 * retrieve.
+                 * Only one iterator is still live, so just read from it
+                 * without reordering the queue.
                  */
-                if (i == 0) {
-                    this.currentMin = null;
-                    for (DataStreamingEvent<E> elt : this.currentElt) {
-                        currentMin = min(elt);
-                    }
+                Head<E> head = this.heads.peek();
+                this.result = head.elt;
+                if (!head.advance()) {
+                    this.heads.clear();
                 }
-                /*
-                 * If there is no data to retrieve, we'll return false. If there
-                 * is data to retrieve, we'll loop through the iterators and
-                 * pull data for the current keyId, which is the keyId field of
-                 * currentMin. If there's no data for the current keyId, this
-                 * should loop through all of the iterators until their ends,
-                 * and set hasNext to false.
-                 */
-                if (currentMin == null) {
-                    this.hasNext = false;
-                } else {
-                    int n = this.currentElt.size();
-                    for (; i < n; i++) {
-                        DataStreamingEvent<E> elt = this.currentElt.get(i);
-                        if (elt != null && elt.getKeyId().equals(
-                                this.currentMin != null 
-                                ? this.currentMin.getKeyId() : null)) {
-                            this.result = elt;
-                            this.nextKeyId = elt.getKeyId();
-                            advance(i);
-                            i++;
-                            break;
-                        }
-                    }
-                    if (this.i == n && this.result == null) {
-                        this.i = 0;
-                        stayInLoop = true;
-                    }
+            } else {
+                Head<E> head = this.heads.poll();
+                this.result = head.elt;
+                if (head.advance()) {
+                    this.heads.offer(head);
                 }
-            } while (this.hasNext && stayInLoop);
+            }
+            if (this.hasNext) {
+                this.nextKeyId = this.result.getKeyId();
+            }
             this.hasNextComputed = true;
         }
         return hasNext;
@@ -158,28 +182,6 @@ final class DataStreamerIterator<E extends Proposition> implements AutoCloseable
         this.nextKeyId = null;
         return r;
     }
-
-    private void advance(int j) 
-            throws DataSourceReadException {
-        DataStreamingEventIterator<E> itr = this.itrs.get(j);
-        if (itr.hasNext()) {
-            DataStreamingEvent<E> next = itr.next();
-            this.currentElt.set(j, next);
-        } else {
-            this.currentElt.set(j, null);
-        }
-    }
-
-    private DataStreamingEvent min(DataStreamingEvent elt2) {
-        DataStreamingEvent elt1 = this.currentMin;
-        if (elt1 == null) {
-            return elt2;
-        } else if (elt2 == null) {
-            return elt1;
-        } else {
-            return elt1.getKeyId().compareTo(elt2.getKeyId()) < 0 ? elt1 : elt2;
-        }
-    }
     
     public void close() {
         
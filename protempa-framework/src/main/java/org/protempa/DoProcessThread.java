@@ -20,16 +20,15 @@ package org.protempa;
  * #L%
  */
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.protempa.proposition.Proposition;
-import org.protempa.proposition.UniqueId;
 import org.protempa.query.Query;
 
 /**
@@ -44,9 +43,12 @@ abstract class DoProcessThread<E extends ExecutionStrategy> extends AbstractThre
     private E executionStrategy;
     private final List<QueryException> exceptions;
     private final PropositionDefinitionCache propositionDefinitionCache;
+    private final RequestedPropositions requestedPropositions;
     private final KnowledgeSource knowledgeSource;
     private DerivationsBuilder derivationsBuilder;
     private final AlgorithmSource algorithmSource;
+    private final RuleBaseCache ruleBaseCache;
+    private final ExecutorMetrics metrics;
 
     DoProcessThread(
             BlockingQueue<QueueObject> hqrQueue,
@@ -54,7 +56,9 @@ abstract class DoProcessThread<E extends ExecutionStrategy> extends AbstractThre
             Thread producer,
             KnowledgeSource knowledgeSource,
             PropositionDefinitionCache propositionDefinitionCache,
+            RequestedPropositions requestedPropositions,
             AlgorithmSource algorithmSource,
+            RuleBaseCache ruleBaseCache, ExecutorMetrics metrics,
             Logger logger) throws QueryException {
         super(query, logger, "protempa.executor.DoProcessThread");
         this.hqrQueue = hqrQueue;
@@ -63,8 +67,15 @@ abstract class DoProcessThread<E extends ExecutionStrategy> extends AbstractThre
         this.exceptions = new ArrayList<>();
         this.knowledgeSource = knowledgeSource;
         this.propositionDefinitionCache = propositionDefinitionCache;
+        assert requestedPropositions != null :
+                "requestedPropositions cannot be null";
+        this.requestedPropositions = requestedPropositions;
         assert algorithmSource != null : "algorithmSource cannot be null";
         this.algorithmSource = algorithmSource;
+        assert ruleBaseCache != null : "ruleBaseCache cannot be null";
+        this.ruleBaseCache = ruleBaseCache;
+        assert metrics != null : "metrics cannot be null";
+        this.metrics = metrics;
         try {
             initialize();
         } catch (KnowledgeSourceReadException | ExecutionStrategyInitializationException ex) {
@@ -94,8 +105,24 @@ abstract class DoProcessThread<E extends ExecutionStrategy> extends AbstractThre
         return algorithmSource;
     }
 
-    final void doProcessData(String keyId, Iterator<Proposition> dataItr, int sizeHint, Query query) throws InterruptedException {
+    final RuleBaseCache getRuleBaseCache() {
+        return ruleBaseCache;
+    }
+
+    final ExecutorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs the execution strategy on one key's data.
+     *
+     * @return the results to put on the query results handler queue, or
+     * <code>null</code> if the execution strategy failed. In the latter case,
+     * the failure is added to this thread's exceptions.
+     */
+    final QueueObject doProcessData(String keyId, Iterator<Proposition> dataItr, int sizeHint, Query query) {
         Iterator<Proposition> resultsItr;
+        long start = System.nanoTime();
         try {
             if (this.executionStrategy != null) {
                 resultsItr = this.executionStrategy.execute(keyId, dataItr);
@@ -106,27 +133,33 @@ abstract class DoProcessThread<E extends ExecutionStrategy> extends AbstractThre
                     = this.derivationsBuilder.getForwardDerivations();
             Map<Proposition, Set<Proposition>> backwardDerivations
                     = this.derivationsBuilder.getBackwardDerivations();
-            Map<UniqueId, Proposition> refs = new HashMap<>();
-            List<Proposition> filteredPropositions
-                    = extractRequestedPropositions(resultsItr, refs, sizeHint);
+            QueueObject result = this.requestedPropositions.extract(keyId,
+                    resultsItr, forwardDerivations, backwardDerivations,
+                    sizeHint);
+            this.metrics.recordProcessed(TimeUnit.NANOSECONDS.toMicros(
+                    System.nanoTime() - start), result.propositions.size());
             if (isLoggable(Level.FINEST)) {
                 log(Level.FINEST, "Proposition ids: {0}",
                         String.join(", ", query.getPropositionIds()));
-                log(Level.FINEST, "Filtered propositions: {0}", filteredPropositions);
-                log(Level.FINEST, "Forward derivations: {0}", forwardDerivations);
-                log(Level.FINEST, "Backward derivations: {0}", backwardDerivations);
-                log(Level.FINEST, "References: {0}", refs);
+                log(Level.FINEST, "Filtered propositions: {0}", result.propositions);
+                log(Level.FINEST, "Forward derivations: {0}", result.forwardDerivations);
+                log(Level.FINEST, "Backward derivations: {0}", result.backwardDerivations);
+                log(Level.FINEST, "References: {0}", result.refs);
             }
-            this.hqrQueue.put(new QueueObject(keyId, filteredPropositions,
-                    forwardDerivations, backwardDerivations, refs));
-            log(Level.FINER, "Results put on query result handler queue");
+            return result;
         } catch (ExecutionStrategyExecutionException ex) {
             this.exceptions.add(new QueryException(query.getName(), ex));
+            return null;
         } finally {
             this.derivationsBuilder.reset();
         }
     }
 
+    final void putResults(QueueObject queueObject) throws InterruptedException {
+        this.hqrQueue.put(queueObject);
+        log(Level.FINER, "Results put on query result handler queue");
+    }
+
     abstract void doProcessDataLoop() throws InterruptedException;
 
     /**
@@ -146,22 +179,16 @@ abstract class DoProcessThread<E extends ExecutionStrategy> extends AbstractThre
         }
     }
 
-    final List<QueryException> getExceptions() {
-        return this.exceptions;
+    /**
+     * Called when this thread is interrupted or fails with a runtime exception
+     * or error, before the query results handler is told to stop. The default
+     * implementation does nothing.
+     */
+    void abort() {
     }
 
-    private List<Proposition> extractRequestedPropositions(
-            Iterator<Proposition> propositions, Map<UniqueId, Proposition> refs,
-            int sizeHint) {
-        List<Proposition> result = new ArrayList<>(sizeHint > -1 ? sizeHint : 200);
-        if (propositions != null) {
-            while (!isInterrupted() && propositions.hasNext()) {
-                Proposition prop = propositions.next();
-                refs.put(prop.getUniqueId(), prop);
-                result.add(prop);
-            }
-        }
-        return result;
+    final List<QueryException> getExceptions() {
+        return this.exceptions;
     }
 
     private void swallowHQRPoisonPill() throws InterruptedException {
@@ -171,6 +198,7 @@ abstract class DoProcessThread<E extends ExecutionStrategy> extends AbstractThre
     private void handleInterrupted(InterruptedException ex) {
         // by the HQR thread
         log(Level.FINER, "Do process thread interrupted", ex);
+        abort();
         if (producer != null) {
             producer.interrupt();
         }
@@ -187,6 +215,7 @@ abstract class DoProcessThread<E extends ExecutionStrategy> extends AbstractThre
     }
 
     private void handleException() {
+        abort();
         if (producer != null) {
             producer.interrupt();
         }
@@ -35,36 +35,53 @@ public class DoRegularProcessThread extends DoProcessThread<ExecutionStrategy> {
     
     private static final Logger LOGGER = Logger.getLogger(DoRegularProcessThread.class.getName());
     
-    private final BlockingQueue<DataStreamingEvent<Proposition>> doProcessQueue;
+    private final KeyDispatcher<DataStreamingEvent<Proposition>> dispatcher;
     private final DataStreamingEvent<Proposition> doProcessPoisonPill;
 
-    DoRegularProcessThread(BlockingQueue<DataStreamingEvent<Proposition>> doProcessQueue, 
+    DoRegularProcessThread(KeyDispatcher<DataStreamingEvent<Proposition>> dispatcher, 
             BlockingQueue<QueueObject> hqrQueue, 
             DataStreamingEvent<Proposition> doProcessPoisonPill, 
             QueueObject hqrPoisonPill, Query query, Thread producer, 
             AlgorithmSource algorithmSource, KnowledgeSource knowledgeSource, 
-            PropositionDefinitionCache propositionDefinitionCache) throws QueryException {
+            PropositionDefinitionCache propositionDefinitionCache,
+            RequestedPropositions requestedPropositions,
+            RuleBaseCache ruleBaseCache, ExecutorMetrics metrics)
+            throws QueryException {
         super(hqrQueue, hqrPoisonPill, query, producer, 
-                knowledgeSource, propositionDefinitionCache, algorithmSource, LOGGER);
-        this.doProcessQueue = doProcessQueue;
+                knowledgeSource, propositionDefinitionCache, requestedPropositions,
+                algorithmSource, 
+                ruleBaseCache, metrics, LOGGER);
+        this.dispatcher = dispatcher;
         this.doProcessPoisonPill = doProcessPoisonPill;
     }
     
     @Override
     protected void doProcessDataLoop() throws InterruptedException {
         int count = 0;
+        KeyDispatcher.Ticket<DataStreamingEvent<Proposition>> ticket;
         DataStreamingEvent<Proposition> dse;
-        while (!isInterrupted() && ((dse = doProcessQueue.take()) != doProcessPoisonPill)) {
+        while (!isInterrupted() && ((dse = (ticket = this.dispatcher.take()).getElement()) != doProcessPoisonPill)) {
             try {
                 List<Proposition> data = dse.getData();
-                doProcessData(dse.getKeyId(), data.iterator(), data.size(), getQuery());
+                getMetrics().recordRetrievedPropositions(data.size());
+                QueueObject qo = doProcessData(dse.getKeyId(), data.iterator(), data.size(), getQuery());
+                this.dispatcher.awaitTurn(ticket);
+                if (qo != null) {
+                    putResults(qo);
+                }
                 count++;
             } finally {
+                this.dispatcher.done(ticket);
                 closeWorkingMemory();
             }
         }
         log(Level.INFO, "Processed {0} keys", count);
     }
+
+    @Override
+    void abort() {
+        this.dispatcher.abort();
+    }
     
     @Override
     ExecutionStrategy selectExecutionStrategy() {
@@ -72,11 +89,13 @@ public class DoRegularProcessThread extends DoProcessThread<ExecutionStrategy> {
         if (query.getDatabasePath() != null) {
             log(Level.FINER, "Chosen stateful execution strategy");
             return new StatefulExecutionStrategy(
-                    getAlgorithmSource(), query);
+                    getAlgorithmSource(), getRuleBaseCache(), query,
+                    getMetrics());
         } else {
             log(Level.FINER, "Chosen stateless execution strategy");
             return new StatelessExecutionStrategy(
-                    getAlgorithmSource(), query);
+                    getAlgorithmSource(), getRuleBaseCache(), query,
+                    getMetrics());
         }
     }
     
@@ -19,13 +19,16 @@ package org.protempa;
  * limitations under the License.
  * #L%
  */
-import java.util.Iterator;
 import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.protempa.query.Query;
 
 /**
+ * Reprocesses the keys in a stateful query's working memory data store. Any
+ * number of these threads may reprocess the same query concurrently; they
+ * share the keys to reprocess through a {@link ReprocessKeySource}, and their
+ * execution strategies share the data store.
  *
  * @author Andrew Post
  */
@@ -33,25 +36,38 @@ public class DoReprocessThread extends DoProcessThread<StatefulExecutionStrategy
 
     private static final Logger LOGGER = Logger.getLogger(DoReprocessThread.class.getName());
 
-    DoReprocessThread(
+    private final ReprocessKeySource keySource;
+
+    DoReprocessThread(ReprocessKeySource keySource,
             BlockingQueue<QueueObject> hqrQueue,
             QueueObject hqrPoisonPill, Query query,
             AlgorithmSource algorithmSource, KnowledgeSource knowledgeSource,
-            PropositionDefinitionCache propositionDefinitionCache) throws QueryException {
+            PropositionDefinitionCache propositionDefinitionCache,
+            RequestedPropositions requestedPropositions,
+            RuleBaseCache ruleBaseCache, ExecutorMetrics metrics)
+            throws QueryException {
         super(hqrQueue, hqrPoisonPill, query, null,
-                knowledgeSource, propositionDefinitionCache, algorithmSource, LOGGER);
+                knowledgeSource, propositionDefinitionCache, requestedPropositions,
+                algorithmSource, 
+                ruleBaseCache, metrics, LOGGER);
+        assert keySource != null : "keySource cannot be null";
+        this.keySource = keySource;
     }
 
     @Override
     protected void doProcessDataLoop() throws InterruptedException {
         int count = 0;
         StatefulExecutionStrategy executionStrategy = getExecutionStrategy();
-        Iterator<String> iterator = executionStrategy.getDataStore().keySet().iterator();
-        while (!isInterrupted() && iterator.hasNext()) {
-            String keyId = iterator.next();
+        String keyId;
+        while (!isInterrupted() 
+                && (keyId = this.keySource.next(executionStrategy.getKeyIds())) != null) {
             try {
-                doProcessData(keyId, null, -1, getQuery());
+                QueueObject qo = doProcessData(keyId, null, -1, getQuery());
+                if (qo != null) {
+                    putResults(qo);
+                }
                 count++;
+                this.keySource.keyProcessed();
             } finally {
                 closeWorkingMemory();
             }
@@ -59,9 +75,15 @@ public class DoReprocessThread extends DoProcessThread<StatefulExecutionStrategy
         log(Level.INFO, "Processed {0} keys", count);
     }
 
+    @Override
+    void abort() {
+        this.keySource.abort();
+    }
+
     @Override
     StatefulExecutionStrategy selectExecutionStrategy() {
-        return new StatefulExecutionStrategy(getAlgorithmSource(), getQuery());
+        return new StatefulExecutionStrategy(getAlgorithmSource(), 
+                getRuleBaseCache(), getQuery(), getMetrics());
     }
 
 }
@@ -20,18 +20,21 @@ package org.protempa;
  * #L%
  */
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.lang3.StringUtils;
 import org.arp.javautil.arrays.Arrays;
 import org.protempa.backend.dsb.filter.Filter;
 import org.protempa.dest.Destination;
+import org.protempa.dest.GetSupportedPropositionIdsException;
 import org.protempa.dest.QueryResultsHandler;
 import org.protempa.dest.QueryResultsHandlerCloseException;
 import org.protempa.dest.QueryResultsHandlerInitException;
@@ -47,17 +50,65 @@ import org.protempa.query.QueryMode;
 final class Executor implements AutoCloseable {
 
     private static final Logger LOGGER = Logger.getLogger(Executor.class.getName());
+
+    /**
+     * System property for the number of threads that run the execution
+     * strategy concurrently on different keys. The default is 1. Stateful
+     * queries (queries with a database path) that retrieve data from the
+     * data source always use one thread. Queries that reprocess the working
+     * memory data store use this many threads, and their results are passed
+     * to the query results handler in no particular order.
+     */
+    static final String WORKER_COUNT_PROPERTY = "protempa.executor.workerCount";
+
+    /**
+     * System property that, if <code>true</code>, causes the query results
+     * handler to receive keys in the order in which they were retrieved from
+     * the data source when more than one worker thread is used. The default
+     * is <code>false</code>.
+     */
+    static final String PRESERVE_KEY_ORDER_PROPERTY = "protempa.executor.preserveKeyOrder";
+
+    /**
+     * System property for the maximum number of keys' data that may be
+     * waiting to be processed. The default is 1000.
+     */
+    static final String DO_PROCESS_QUEUE_MAX_SIZE_PROPERTY = "protempa.executor.doProcessQueue.maxSize";
+
+    /**
+     * System property for the maximum estimated number of bytes of data that
+     * may be waiting to be processed. The default is an eighth of the maximum
+     * heap size.
+     */
+    static final String DO_PROCESS_QUEUE_MAX_BYTES_PROPERTY = "protempa.executor.doProcessQueue.maxBytes";
+
+    /**
+     * System property for the maximum number of keys' results that may be
+     * waiting for the query results handler. The default is 1000.
+     */
+    static final String HQR_QUEUE_MAX_SIZE_PROPERTY = "protempa.executor.hqrQueue.maxSize";
+
+    /**
+     * System property for the maximum estimated number of bytes of results
+     * that may be waiting for the query results handler. The default is an
+     * eighth of the maximum heap size.
+     */
+    static final String HQR_QUEUE_MAX_BYTES_PROPERTY = "protempa.executor.hqrQueue.maxBytes";
+
     private final Set<String> propIds;
     private final Filter filters;
     private final PropositionDefinition[] propDefs;
     private final KnowledgeSource ks;
     private final Query query;
     private PropositionDefinitionCache propositionDefinitionCache;
+    private RequestedPropositions requestedPropositions;
     private final AbstractionFinder abstractionFinder;
     private final Destination destination;
     private QueryResultsHandler resultsHandler;
     private final MessageFormat logMessageFormat;
     private HandleQueryResultThread handleQueryResultThread;
+    private MemoryBoundedBlockingQueue<DataStreamingEvent<Proposition>> doProcessQueue;
+    private MemoryBoundedBlockingQueue<QueueObject> hqrQueue;
     private boolean canceled;
     private QueryException exception;
 
@@ -90,7 +141,8 @@ final class Executor implements AutoCloseable {
                 log(Level.FINE, "Propositions to be queried are {0}", StringUtils.join(this.propIds, ", "));
             }
             extractPropositionDefinitionCache();
-        } catch (KnowledgeSourceReadException | QueryResultsHandlerValidationFailedException | QueryResultsHandlerInitException | Error | RuntimeException ex) {
+            extractRequestedPropositions();
+        } catch (KnowledgeSourceReadException | QueryResultsHandlerValidationFailedException | QueryResultsHandlerInitException | GetSupportedPropositionIdsException | Error | RuntimeException ex) {
             throw new QueryException(this.query.getName(), ex);
         }
     }
@@ -106,19 +158,35 @@ final class Executor implements AutoCloseable {
     }
 
     void execute() throws QueryException {
+        ExecutorMetrics metrics = null;
         try {
             RetrieveDataThread retrieveDataThread;
-            DoProcessThread doProcessThread;
+            ReprocessKeySource reprocessKeySource = null;
+            List<DoProcessThread<?>> doProcessThreads = new ArrayList<>();
             synchronized (this) {
                 if (this.canceled) {
                     return;
                 }
                 log(Level.INFO, "Processing data");
+                this.doProcessQueue = new MemoryBoundedBlockingQueue<>(
+                        "do process",
+                        queueMaxSize(DO_PROCESS_QUEUE_MAX_SIZE_PROPERTY),
+                        queueMaxBytes(DO_PROCESS_QUEUE_MAX_BYTES_PROPERTY),
+                        Executor::estimateBytes);
                 BlockingQueue<DataStreamingEvent<Proposition>> doProcessQueue
-                        = new ArrayBlockingQueue<>(1000);
+                        = this.doProcessQueue;
                 QueueObject hqrPoisonPill = new QueueObject();
-                BlockingQueue<QueueObject> hqrQueue = new ArrayBlockingQueue<>(1000);
+                this.hqrQueue = new MemoryBoundedBlockingQueue<>(
+                        "query results handler",
+                        queueMaxSize(HQR_QUEUE_MAX_SIZE_PROPERTY),
+                        queueMaxBytes(HQR_QUEUE_MAX_BYTES_PROPERTY),
+                        QueueObject::estimateBytes);
+                BlockingQueue<QueueObject> hqrQueue = this.hqrQueue;
                 QueryMode queryMode = this.query.getQueryMode();
+                metrics = new ExecutorMetrics(this.query,
+                        this.abstractionFinder.getEventListeners());
+                metrics.addQueue(this.doProcessQueue);
+                metrics.addQueue(this.hqrQueue);
                 if (Arrays.contains(QueryMode.etlModes(), queryMode)) {
                     DataStreamingEvent doProcessPoisonPill
                             = new DataStreamingEvent("poison", Collections.emptyList());
@@ -127,27 +195,57 @@ final class Executor implements AutoCloseable {
                             this.abstractionFinder.getDataSource(),
                             this.propositionDefinitionCache,
                             this.filters, this.resultsHandler);
-                    doProcessThread = new DoRegularProcessThread(doProcessQueue, hqrQueue,
-                            doProcessPoisonPill, hqrPoisonPill, this.query,
-                            retrieveDataThread, this.abstractionFinder.getAlgorithmSource(),
-                            this.abstractionFinder.getKnowledgeSource(),
-                            this.propositionDefinitionCache);
+                    KeyDispatcher<DataStreamingEvent<Proposition>> dispatcher
+                            = new KeyDispatcher<>(doProcessQueue,
+                                    doProcessPoisonPill,
+                                    Boolean.getBoolean(PRESERVE_KEY_ORDER_PROPERTY));
+                    int workerCount = workerCount(true);
+                    for (int i = 0; i < workerCount; i++) {
+                        DoProcessThread<?> doProcessThread
+                                = new DoRegularProcessThread(dispatcher, hqrQueue,
+                                        doProcessPoisonPill, hqrPoisonPill, this.query,
+                                        retrieveDataThread, this.abstractionFinder.getAlgorithmSource(),
+                                        this.abstractionFinder.getKnowledgeSource(),
+                                        this.propositionDefinitionCache,
+                                        this.requestedPropositions,
+                                        this.abstractionFinder.getRuleBaseCache(),
+                                        metrics);
+                        if (workerCount > 1) {
+                            doProcessThread.setName(doProcessThread.getName() + "-" + i);
+                        }
+                        doProcessThreads.add(doProcessThread);
+                    }
                 } else {
                     retrieveDataThread = null;
-                    doProcessThread = new DoReprocessThread(hqrQueue,
-                            hqrPoisonPill, this.query,
-                            this.abstractionFinder.getAlgorithmSource(),
-                            this.abstractionFinder.getKnowledgeSource(),
-                            this.propositionDefinitionCache);
-
+                    reprocessKeySource = new ReprocessKeySource(this.query);
+                    int workerCount = workerCount(false);
+                    for (int i = 0; i < workerCount; i++) {
+                        DoProcessThread<?> doProcessThread
+                                = new DoReprocessThread(reprocessKeySource,
+                                        hqrQueue, hqrPoisonPill, this.query,
+                                        this.abstractionFinder.getAlgorithmSource(),
+                                        this.abstractionFinder.getKnowledgeSource(),
+                                        this.propositionDefinitionCache,
+                                        this.requestedPropositions,
+                                        this.abstractionFinder.getRuleBaseCache(),
+                                        metrics);
+                        if (workerCount > 1) {
+                            doProcessThread.setName(doProcessThread.getName() + "-" + i);
+                        }
+                        doProcessThreads.add(doProcessThread);
+                    }
                 }
                 this.handleQueryResultThread
                         = new HandleQueryResultThread(hqrQueue, hqrPoisonPill,
-                                doProcessThread, this.query, this.resultsHandler, this.propositionDefinitionCache);
+                                doProcessThreads, this.query, this.resultsHandler,
+                                this.propositionDefinitionCache, metrics);
+                metrics.start();
                 if (retrieveDataThread != null) {
                     retrieveDataThread.start();
                 }
-                doProcessThread.start();
+                for (DoProcessThread<?> doProcessThread : doProcessThreads) {
+                    doProcessThread.start();
+                }
                 this.handleQueryResultThread.start();
             }
 
@@ -168,15 +266,20 @@ final class Executor implements AutoCloseable {
                 }
             }
             try {
-                doProcessThread.join();
-                for (Iterator<QueryException> itr = doProcessThread.getExceptions().iterator(); itr.hasNext();) {
-                    QueryException e = itr.next();
-                    if (this.exception == null) {
-                        this.exception = e;
-                    } else {
-                        this.exception.addSuppressed(e);
+                for (DoProcessThread<?> doProcessThread : doProcessThreads) {
+                    doProcessThread.join();
+                    for (Iterator<QueryException> itr = doProcessThread.getExceptions().iterator(); itr.hasNext();) {
+                        QueryException e = itr.next();
+                        if (this.exception == null) {
+                            this.exception = e;
+                        } else {
+                            this.exception.addSuppressed(e);
+                        }
                     }
                 }
+                if (reprocessKeySource != null) {
+                    reprocessKeySource.logProgress();
+                }
                 log(Level.INFO, "Done processing data");
             } catch (InterruptedException ex) {
                 log(Level.FINER, "Protempa consumer thread join interrupted", ex);
@@ -191,6 +294,8 @@ final class Executor implements AutoCloseable {
                     }
                 }
                 log(Level.INFO, "Done outputting results");
+                logQueueStatistics(this.doProcessQueue);
+                logQueueStatistics(this.hqrQueue);
             } catch (InterruptedException ex) {
                 log(Level.FINER, "Protempa consumer thread join interrupted", ex);
             }
@@ -198,8 +303,10 @@ final class Executor implements AutoCloseable {
             if (exception != null) {
                 throw exception;
             }
-        } catch (QueryException ex) {
-            throw ex;
+        } finally {
+            if (metrics != null) {
+                metrics.stop();
+            }
         }
     }
 
@@ -236,6 +343,54 @@ final class Executor implements AutoCloseable {
         }
     }
 
+    private static long estimateBytes(DataStreamingEvent<Proposition> dse) {
+        List<Proposition> data = dse.getData();
+        return data != null ? data.size() * QueueObject.PROPOSITION_BYTES : 0;
+    }
+
+    private int queueMaxSize(String property) {
+        int maxSize = Integer.getInteger(property, 1000);
+        if (maxSize < 1) {
+            log(Level.WARNING, "Invalid value of {0}; using 1000", property);
+            maxSize = 1000;
+        }
+        return maxSize;
+    }
+
+    private long queueMaxBytes(String property) {
+        long defaultMaxBytes = Math.max(1, Runtime.getRuntime().maxMemory() / 8);
+        long maxBytes = Long.getLong(property, defaultMaxBytes);
+        if (maxBytes < 1) {
+            log(Level.WARNING, "Invalid value of {0}; using an eighth of the maximum heap size", property);
+            maxBytes = defaultMaxBytes;
+        }
+        return maxBytes;
+    }
+
+    private void logQueueStatistics(MemoryBoundedBlockingQueue<?> queue) {
+        if (isLoggable(Level.INFO)) {
+            log(Level.INFO, "Queue {0}: producers blocked for {1} ms, consumers blocked for {2} ms", 
+                    new Object[]{queue.getName(),
+                        TimeUnit.MICROSECONDS.toMillis(queue.getPutBlockedMicros()),
+                        TimeUnit.MICROSECONDS.toMillis(queue.getTakeBlockedMicros())});
+        }
+    }
+
+    private int workerCount(boolean retrievingData) {
+        int workerCount = Integer.getInteger(WORKER_COUNT_PROPERTY, 1);
+        if (workerCount < 1) {
+            log(Level.WARNING, "Invalid worker count {0}; using 1 worker thread", workerCount);
+            workerCount = 1;
+        }
+        if (workerCount > 1 && retrievingData
+                && this.query.getDatabasePath() != null) {
+            log(Level.INFO, "Stateful queries that retrieve data are processed with one worker thread");
+            workerCount = 1;
+        }
+        log(Level.FINE, "Using {0} worker thread(s)", workerCount);
+        return workerCount;
+    }
+
     private void extractPropositionDefinitionCache() throws KnowledgeSourceReadException {
         this.propositionDefinitionCache = new PropositionDefinitionCache(this.ks.collectPropDefDescendantsUsingAllNarrower(false, this.propIds.toArray(new String[this.propIds.size()])));
 
@@ -248,6 +403,21 @@ final class Executor implements AutoCloseable {
         }
     }
 
+    /**
+     * Computes the propositions that are put in the proposition list passed
+     * to the query results handler. See {@link RequestedPropositions}.
+     */
+    private void extractRequestedPropositions() throws GetSupportedPropositionIdsException, KnowledgeSourceReadException {
+        String[] supportedPropIds = this.destination.getSupportedPropositionIds(this.abstractionFinder.getDataSource(), this.ks);
+        this.requestedPropositions = RequestedPropositions.getInstance(this.ks, this.propIds, supportedPropIds);
+        Set<String> requestedPropIds = this.requestedPropositions.getPropositionIds();
+        if (requestedPropIds == null) {
+            log(Level.FINE, "All propositions will be passed to the query results handler");
+        } else if (isLoggable(Level.FINE)) {
+            log(Level.FINE, "Propositions to be passed to the query results handler are {0}", StringUtils.join(requestedPropIds, ", "));
+        }
+    }
+
     private void createQueryResultsHandler() throws QueryResultsHandlerValidationFailedException, QueryResultsHandlerInitException {
         log(Level.FINE, "Initializing query results handler...");
         this.resultsHandler = this.destination.getQueryResultsHandler(this.query, this.abstractionFinder.getDataSource(), this.ks, this.abstractionFinder.getEventListeners());
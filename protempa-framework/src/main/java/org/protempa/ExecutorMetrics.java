@@ -0,0 +1,316 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+import org.protempa.metrics.Histogram;
+import org.protempa.metrics.Metrics;
+import org.protempa.query.Query;
+
+/**
+ * The histograms that the executor records while executing a query, and a
+ * reporter that periodically sends a summary of them to the Protempa event
+ * listeners as a {@link ProtempaEvent.Type#METRICS_SUMMARY} event. The
+ * summary includes the number of keys per second that each stage of the
+ * executor has processed since the previous summary.
+ *
+ * Each query has its own histograms, so that concurrent queries do not show
+ * up in each other's summaries. Every value is also recorded in the
+ * JVM-wide histogram of the same name in {@link Metrics}, which accumulates
+ * across queries and is exported through JMX.
+ *
+ * The summary also includes the depth, bytes and blocked times of the
+ * query's queues, which are exported through JMX while the query runs.
+ *
+ * @author Andrew Post
+ */
+final class ExecutorMetrics {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(ExecutorMetrics.class.getName());
+
+    /**
+     * System property for the number of seconds between metrics summaries.
+     * The default is 60. If 0 or less, a summary is sent only when a query
+     * finishes.
+     */
+    static final String SUMMARY_INTERVAL_PROPERTY
+            = "protempa.metrics.summaryInterval";
+
+    /**
+     * The name of the histogram of the number of propositions retrieved per
+     * key.
+     */
+    static final String RETRIEVED_PROPOSITIONS_PER_KEY
+            = "executor.retrieve.propositionsPerKey";
+
+    /**
+     * The name of the histogram of the time to run the execution strategy on
+     * a key and extract the requested propositions.
+     */
+    static final String PROCESS_TIME = "executor.process.micros";
+
+    /**
+     * The name of the histogram of the number of propositions per key passed
+     * to the query results handler.
+     */
+    static final String PROCESSED_PROPOSITIONS_PER_KEY
+            = "executor.process.propositionsPerKey";
+
+    /**
+     * The name of the histogram of the time that the rule engine spends
+     * firing rules per key.
+     */
+    static final String RULE_FIRING_TIME = "executionStrategy.fireRules.micros";
+
+    /**
+     * The name of the histogram of the time the query results handler takes
+     * to handle a key's results.
+     */
+    static final String HANDLE_QUERY_RESULT_TIME
+            = "queryResultsHandler.handleQueryResult.micros";
+
+    /**
+     * A histogram of this query and the JVM-wide histogram of the same name.
+     */
+    private static final class QueryHistogram {
+
+        private final Histogram histogram;
+        private final Histogram jvmHistogram;
+
+        QueryHistogram(String name) {
+            this.histogram = new Histogram(name);
+            this.jvmHistogram = Metrics.histogram(name);
+        }
+
+        void record(long value) {
+            this.histogram.record(value);
+            this.jvmHistogram.record(value);
+        }
+    }
+
+    private final QueryHistogram retrievedPropositionsPerKey;
+    private final QueryHistogram processTime;
+    private final QueryHistogram processedPropositionsPerKey;
+    private final QueryHistogram ruleFiringTime;
+    private final QueryHistogram handleQueryResultTime;
+    private final List<MemoryBoundedBlockingQueue<?>> queues;
+    private final List<ObjectName> queueObjectNames;
+    private final List<? extends ProtempaEventListener> eventListeners;
+    private final String queryName;
+    private final MessageFormat logMessageFormat;
+    private final long intervalSeconds;
+    private ScheduledExecutorService scheduler;
+    private long lastTime;
+    private long lastRetrieved;
+    private long lastProcessed;
+    private long lastHandled;
+
+    ExecutorMetrics(Query query,
+            List<? extends ProtempaEventListener> eventListeners) {
+        assert query != null : "query cannot be null";
+        assert eventListeners != null : "eventListeners cannot be null";
+        this.eventListeners = eventListeners;
+        this.queryName = query.getName();
+        this.logMessageFormat = ProtempaUtil.getLogMessageFormat(query);
+        this.queues = new ArrayList<>(2);
+        this.queueObjectNames = new ArrayList<>(2);
+        this.intervalSeconds = Long.getLong(SUMMARY_INTERVAL_PROPERTY, 60L);
+        this.retrievedPropositionsPerKey
+                = new QueryHistogram(RETRIEVED_PROPOSITIONS_PER_KEY);
+        this.processTime = new QueryHistogram(PROCESS_TIME);
+        this.processedPropositionsPerKey
+                = new QueryHistogram(PROCESSED_PROPOSITIONS_PER_KEY);
+        this.ruleFiringTime = new QueryHistogram(RULE_FIRING_TIME);
+        this.handleQueryResultTime
+                = new QueryHistogram(HANDLE_QUERY_RESULT_TIME);
+    }
+
+    /**
+     * Records the number of propositions retrieved for a key, from the data
+     * source or, when reprocessing, from the working memory data store.
+     *
+     * @param count the number of propositions.
+     */
+    void recordRetrievedPropositions(int count) {
+        this.retrievedPropositionsPerKey.record(count);
+    }
+
+    /**
+     * Records the time to run the execution strategy on a key and extract
+     * the requested propositions, and the number of propositions passed to
+     * the query results handler.
+     *
+     * @param micros the time in microseconds.
+     * @param count the number of propositions.
+     */
+    void recordProcessed(long micros, int count) {
+        this.processTime.record(micros);
+        this.processedPropositionsPerKey.record(count);
+    }
+
+    /**
+     * Records the time that the rule engine spent firing rules for a key.
+     *
+     * @param micros the time in microseconds.
+     */
+    void recordRuleFiring(long micros) {
+        this.ruleFiringTime.record(micros);
+    }
+
+    /**
+     * Records the time the query results handler took to handle a key's
+     * results.
+     *
+     * @param micros the time in microseconds.
+     */
+    void recordHandleQueryResult(long micros) {
+        this.handleQueryResultTime.record(micros);
+    }
+
+    /**
+     * Adds one of the query's queues to the summary, and registers it with
+     * JMX until {@link #stop() } is called.
+     *
+     * @param queue a queue.
+     */
+    synchronized void addQueue(MemoryBoundedBlockingQueue<?> queue) {
+        assert queue != null : "queue cannot be null";
+        this.queues.add(queue);
+        this.queueObjectNames.add(Metrics.registerQueue(this.queryName, queue));
+    }
+
+    /**
+     * Gets this query's histograms, sorted by name.
+     *
+     * @return a newly-created list of histograms.
+     */
+    List<Histogram> getHistograms() {
+        List<Histogram> result = new ArrayList<>(5);
+        result.add(this.ruleFiringTime.histogram);
+        result.add(this.processTime.histogram);
+        result.add(this.processedPropositionsPerKey.histogram);
+        result.add(this.retrievedPropositionsPerKey.histogram);
+        result.add(this.handleQueryResultTime.histogram);
+        return result;
+    }
+
+    /**
+     * Starts sending summaries periodically.
+     */
+    synchronized void start() {
+        this.lastTime = System.nanoTime();
+        this.lastRetrieved
+                = this.retrievedPropositionsPerKey.histogram.getCount();
+        this.lastProcessed = this.processTime.histogram.getCount();
+        this.lastHandled = this.handleQueryResultTime.histogram.getCount();
+        if (this.intervalSeconds > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "protempa.executor.MetricsReporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.scheduler.scheduleAtFixedRate(this::fireSummary,
+                    this.intervalSeconds, this.intervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops sending summaries periodically, sends a final summary, and
+     * unregisters the query's queues from JMX.
+     */
+    synchronized void stop() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+        fireSummary();
+        for (ObjectName objectName : this.queueObjectNames) {
+            Metrics.unregisterQueue(objectName);
+        }
+        this.queueObjectNames.clear();
+    }
+
+    /**
+     * Returns a summary of this query's histograms since the previous
+     * summary, and starts a new summary interval.
+     *
+     * @return a summary.
+     */
+    synchronized String summary() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1L, now - this.lastTime) / 1e9;
+        long retrieved = this.retrievedPropositionsPerKey.histogram.getCount();
+        long processed = this.processTime.histogram.getCount();
+        long handled = this.handleQueryResultTime.histogram.getCount();
+        StringBuilder histograms = new StringBuilder();
+        for (Histogram histogram : getHistograms()) {
+            if (histograms.length() > 0) {
+                histograms.append('\n');
+            }
+            histograms.append(histogram);
+        }
+        for (MemoryBoundedBlockingQueue<?> queue : this.queues) {
+            histograms.append(String.format(
+                    "%nqueue %s: depth %d of %d, %d of %d bytes, producers blocked %d us, consumers blocked %d us",
+                    queue.getName(), queue.getSize(), queue.getMaxSize(),
+                    queue.getBytes(), queue.getMaxBytes(),
+                    queue.getPutBlockedMicros(),
+                    queue.getTakeBlockedMicros()));
+        }
+        String result = String.format(
+            "retrieve %.1f keys/s, process %.1f keys/s, handle results %.1f keys/s%n%s",
+            (retrieved - this.lastRetrieved) / seconds,
+            (processed - this.lastProcessed) / seconds,
+            (handled - this.lastHandled) / seconds,
+            histograms);
+        this.lastTime = now;
+        this.lastRetrieved = retrieved;
+        this.lastProcessed = processed;
+        this.lastHandled = handled;
+        return result;
+    }
+
+    private synchronized void fireSummary() {
+        String description = this.logMessageFormat.format(
+                new Object[]{summary()});
+        LOGGER.log(Level.FINE, description);
+        ProtempaEvent event = new ProtempaEvent(ProtempaEvent.Level.INFO,
+                ProtempaEvent.Type.METRICS_SUMMARY, Executor.class,
+                new Date(), description);
+        for (ProtempaEventListener listener : this.eventListeners) {
+            try {
+                listener.eventFired(event);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Protempa event listener failed", ex);
+            }
+        }
+    }
+}
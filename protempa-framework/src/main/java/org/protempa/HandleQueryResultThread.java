@@ -22,6 +22,7 @@ package org.protempa;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.protempa.dest.QueryResultsHandler;
@@ -38,23 +39,25 @@ class HandleQueryResultThread extends AbstractThread {
     private static final Logger LOGGER = Logger.getLogger(HandleQueryResultThread.class.getName());
 
     private final BlockingQueue<QueueObject> queue;
-    private final Thread producerThread;
+    private final List<? extends Thread> producerThreads;
     private final QueueObject poisonPill;
     private final List<QueryException> exceptions;
     private final QueryResultsHandler queryResultsHandler;
     private final PropositionDefinitionCache cache;
+    private final ExecutorMetrics metrics;
 
     HandleQueryResultThread(BlockingQueue<QueueObject> queue,
-            QueueObject poisonPill, Thread producerThread, Query query,
+            QueueObject poisonPill, List<? extends Thread> producerThreads, Query query,
             QueryResultsHandler queryResultsHandler,
-            PropositionDefinitionCache cache) {
+            PropositionDefinitionCache cache, ExecutorMetrics metrics) {
         super(query, LOGGER, "protempa.executor.HandleQueryResultThread");
         this.queue = queue;
-        this.producerThread = producerThread;
+        this.producerThreads = producerThreads;
         this.poisonPill = poisonPill;
         this.exceptions = new ArrayList<>();
         this.queryResultsHandler = queryResultsHandler;
         this.cache = cache;
+        this.metrics = metrics;
     }
 
     public List<QueryException> getExceptions() {
@@ -67,26 +70,34 @@ class HandleQueryResultThread extends AbstractThread {
         Query query = getQuery();
         QueueObject qo;
         boolean closed = false;
+        int producersRemaining = this.producerThreads.size();
         try {
             this.queryResultsHandler.start(this.cache);
             log(Level.FINE, "Query results handler started");
             log(Level.FINE, "Query results handler waiting for results...");
-            while ((qo = queue.take()) != poisonPill) {
+            while (producersRemaining > 0) {
+                if ((qo = queue.take()) == poisonPill) {
+                    producersRemaining--;
+                    continue;
+                }
                 log(Level.FINER, "Handling some results");
                 try {
+                    long start = System.nanoTime();
                     this.queryResultsHandler.handleQueryResult(qo.keyId,
                             qo.propositions, qo.forwardDerivations,
                             qo.backwardDerivations, qo.refs);
+                    this.metrics.recordHandleQueryResult(
+                            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
                 } catch (QueryResultsHandlerProcessingException ex) {
                     log(Level.FINER, "Handle query results threw QueryResultsHandlerProcessingException", ex);
                     exceptions.add(new QueryException(query.getName(), ex));
-                    producerThread.interrupt();
+                    interruptProducers();
                     break;
                 } catch (Error | RuntimeException t) {
                     log(Level.FINER, "Handle query results threw exception", t);
                     exceptions.add(new QueryException(query.getName(),
                             new QueryResultsHandlerProcessingException(t)));
-                    producerThread.interrupt();
+                    interruptProducers();
                     break;
                 }
                 log(Level.FINER, "Results passed to query result handler");
@@ -96,11 +107,11 @@ class HandleQueryResultThread extends AbstractThread {
             closed = true;
         } catch (InterruptedException ex) {
             log(Level.FINER, "Handle query results thread interrupted", ex);
-            producerThread.interrupt();
+            interruptProducers();
         } catch (QueryResultsHandlerProcessingException ex) {
             log(Level.FINER, "Query results handler threw exception", ex);
             exceptions.add(new QueryException(query.getName(), ex));
-            producerThread.interrupt();
+            interruptProducers();
         } catch (QueryResultsHandlerCloseException ex) {
             log(Level.FINER, "Query results handler close threw exception", ex);
             exceptions.add(new QueryException(query.getName(), ex));
@@ -117,4 +128,10 @@ class HandleQueryResultThread extends AbstractThread {
         log(Level.FINER, "End handle query results thread");
     }
 
+    private void interruptProducers() {
+        for (Thread producerThread : this.producerThreads) {
+            producerThread.interrupt();
+        }
+    }
+
 }
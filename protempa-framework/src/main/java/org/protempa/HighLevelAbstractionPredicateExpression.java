@@ -0,0 +1,150 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.List;
+import org.drools.WorkingMemory;
+import org.drools.rule.Declaration;
+import org.drools.spi.PredicateExpression;
+import org.drools.spi.Tuple;
+import org.protempa.proposition.Proposition;
+import org.protempa.proposition.TemporalProposition;
+import org.protempa.proposition.interval.Relation;
+
+/**
+ * Joins the proposition matched by one of a high-level abstraction rule's
+ * patterns with the propositions matched by the preceding patterns. The
+ * proposition must differ from the preceding ones and must have the temporal
+ * relations that the high-level abstraction definition specifies with them.
+ * Checking each relation as soon as both of its propositions are available
+ * lets the rule engine discard partial matches early instead of enumerating
+ * every combination of propositions.
+ *
+ * @author Andrew Post
+ */
+final class HighLevelAbstractionPredicateExpression
+        implements PredicateExpression {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+    private final int[] otherIndices;
+    private final Relation[] relations;
+    private final boolean[] lhs;
+
+    /**
+     * Creates the join for a pattern.
+     *
+     * @param def the high-level abstraction definition.
+     * @param epds the extended proposition definitions in pattern order.
+     * @param index the index of the pattern.
+     */
+    HighLevelAbstractionPredicateExpression(
+            HighLevelAbstractionDefinition def,
+            ExtendedPropositionDefinition[] epds, int index) {
+        assert def != null : "def cannot be null";
+        assert epds != null : "epds cannot be null";
+        assert index > 0 && index < epds.length :
+                "index must be between 1 and " + (epds.length - 1);
+        this.index = index;
+        List<Integer> others = new ArrayList<>();
+        List<Relation> rels = new ArrayList<>();
+        List<Boolean> lhsL = new ArrayList<>();
+        if (epds[index] instanceof TemporalExtendedPropositionDefinition) {
+            TemporalExtendedPropositionDefinition tepd
+                    = (TemporalExtendedPropositionDefinition) epds[index];
+            for (int i = 0; i < index; i++) {
+                if (epds[i] instanceof TemporalExtendedPropositionDefinition) {
+                    TemporalExtendedPropositionDefinition other
+                            = (TemporalExtendedPropositionDefinition) epds[i];
+                    Relation rel = def.getRelation(other, tepd);
+                    if (rel != null) {
+                        others.add(i);
+                        rels.add(rel);
+                        lhsL.add(Boolean.FALSE);
+                    }
+                    rel = def.getRelation(tepd, other);
+                    if (rel != null) {
+                        others.add(i);
+                        rels.add(rel);
+                        lhsL.add(Boolean.TRUE);
+                    }
+                }
+            }
+        }
+        int n = others.size();
+        this.otherIndices = new int[n];
+        this.relations = rels.toArray(new Relation[n]);
+        this.lhs = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            this.otherIndices[i] = others.get(i);
+            this.lhs[i] = lhsL.get(i);
+        }
+    }
+
+    @Override
+    public boolean evaluate(Object arg0, Tuple arg1, Declaration[] arg2,
+            Declaration[] arg3, WorkingMemory arg4, Object context)
+            throws Exception {
+        Proposition[] previous = new Proposition[this.index];
+        for (int i = 0; i < this.index; i++) {
+            previous[i] = (Proposition) arg4.getObject(arg1.get(i));
+        }
+        return evaluate((Proposition) arg0, previous);
+    }
+
+    /**
+     * Checks a proposition against the propositions matched by the
+     * preceding patterns.
+     *
+     * @param p the proposition matched by this pattern.
+     * @param previous the propositions matched by the preceding patterns,
+     * in pattern order.
+     * @return <code>true</code> if the proposition joins with them,
+     * <code>false</code> otherwise.
+     */
+    boolean evaluate(Proposition p, Proposition[] previous) {
+        for (Proposition prev : previous) {
+            if (p.equals(prev)) { // remove duplicates
+                return false;
+            }
+        }
+        for (int i = 0; i < this.relations.length; i++) {
+            TemporalProposition tp = (TemporalProposition) p;
+            TemporalProposition other
+                    = (TemporalProposition) previous[this.otherIndices[i]];
+            boolean found = this.lhs[i]
+                    ? this.relations[i].hasRelation(tp.getInterval(),
+                            other.getInterval())
+                    : this.relations[i].hasRelation(other.getInterval(),
+                            tp.getInterval());
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object createContext() {
+        return null;
+    }
+}
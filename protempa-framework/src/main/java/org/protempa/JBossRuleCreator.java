@@ -33,7 +33,6 @@ import org.drools.base.ClassObjectType;
 import org.drools.base.SalienceInteger;
 import org.drools.rule.Collect;
 import org.drools.rule.Declaration;
-import org.drools.rule.EvalCondition;
 import org.drools.rule.InvalidRuleException;
 import org.drools.rule.Pattern;
 import org.drools.rule.PredicateConstraint;
@@ -89,17 +88,14 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
     private final Map<LowLevelAbstractionDefinition, Algorithm> algorithms;
     private final List<Rule> rules;
     private final Map<Rule, TemporalPropositionDefinition> ruleToAbstractionDefinition;
-    private final DerivationsBuilder derivationsBuilder;
     private final PropositionDefinitionCache cache;
 
     JBossRuleCreator(Map<LowLevelAbstractionDefinition, Algorithm> algorithms,
-            DerivationsBuilder derivationsBuilder, 
             PropositionDefinitionCache cache) {
         assert cache != null : "cache cannot be null";
         this.algorithms = algorithms;
         this.rules = new ArrayList<>();
         this.ruleToAbstractionDefinition = new HashMap<>();
-        this.derivationsBuilder = derivationsBuilder;
         this.cache = cache;
     }
 
@@ -132,8 +128,7 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
                     inducedByRule.addPattern(sourceP);
                 }
                 inducedByRule.setConsequence(
-                        new ContextDefinitionInducedByConsequence(def,
-                                this.derivationsBuilder));
+                        new ContextDefinitionInducedByConsequence(def));
                 inducedByRule.setSalience(MINUS_THREE_SALIENCE);
                 this.rules.add(inducedByRule);
                 this.ruleToAbstractionDefinition.put(inducedByRule, def);
@@ -141,7 +136,7 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
             }
 
             if (ruleCreated) {
-                CONTEXT_COMBINER.toRules(def, rules, this.derivationsBuilder);
+                CONTEXT_COMBINER.toRules(def, rules);
             }
         } catch (InvalidRuleException e) {
             throw new AssertionError(e.getClass().getName() + ": "
@@ -197,7 +192,7 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
                 Algorithm algo = this.algorithms.get(def);
 
                 rule.setConsequence(new LowLevelAbstractionConsequence(def,
-                        algo, this.derivationsBuilder));
+                        algo));
                 rule.setSalience(TWO_SALIENCE);
                 this.ruleToAbstractionDefinition.put(rule, def);
                 rules.add(rule);
@@ -229,12 +224,11 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
                                 new CollectionSizeExpression(1)));
                 rule.addPattern(resultP);
                 rule.setConsequence(
-                        new CompoundLowLevelAbstractionConsequence(def,
-                                this.derivationsBuilder));
+                        new CompoundLowLevelAbstractionConsequence(def));
                 rule.setSalience(ONE_SALIENCE);
                 this.ruleToAbstractionDefinition.put(rule, def);
                 rules.add(rule);
-                ABSTRACTION_COMBINER.toRules(def, rules, this.derivationsBuilder);
+                ABSTRACTION_COMBINER.toRules(def, rules);
             }
         } catch (InvalidRuleException e) {
             throw new AssertionError(e.getClass().getName() + ": "
@@ -265,23 +259,31 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
             if (!epdsC.isEmpty()) {
                 Rule rule = new Rule(def.getId());
                 rule.setSalience(TWO_SALIENCE);
-                ExtendedPropositionDefinition[] epds = epdsC
-                        .toArray(new ExtendedPropositionDefinition[epdsC.size()]);
+                ExtendedPropositionDefinition[] epds
+                        = joinOrder(def, epdsC);
+                Declaration[] previous = new Declaration[epds.length];
                 for (int i = 0; i < epds.length; i++) {
-                    Pattern p = new Pattern(i, PROP_OT);
+                    Pattern p = new Pattern(i, i, PROP_OT, "hla" + i);
                     GetMatchesPredicateExpression matchesPredicateExpression = new GetMatchesPredicateExpression(epds[i], this.cache);
                     Constraint c = new PredicateConstraint(
                             matchesPredicateExpression);
                     p.addConstraint(c);
+                    if (i > 0) {
+                        Declaration[] prev = new Declaration[i];
+                        System.arraycopy(previous, 0, prev, 0, i);
+                        p.addConstraint(new PredicateConstraint(
+                                new HighLevelAbstractionPredicateExpression(
+                                        def, epds, i), prev,
+                                new Declaration[0]));
+                    }
+                    previous[i] = p.getDeclaration();
                     rule.addPattern(p);
                 }
-                rule.addPattern(new EvalCondition(
-                        new HighLevelAbstractionCondition(def, epds), null));
                 rule.setConsequence(new HighLevelAbstractionConsequence(def,
-                        epds, this.derivationsBuilder));
+                        epds));
                 this.ruleToAbstractionDefinition.put(rule, def);
                 rules.add(rule);
-                ABSTRACTION_COMBINER.toRules(def, rules, this.derivationsBuilder);
+                ABSTRACTION_COMBINER.toRules(def, rules);
             }
         } catch (InvalidRuleException e) {
             throw new AssertionError(e.getClass().getName() + ": "
@@ -329,8 +331,7 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
                 resultP.addConstraint(new PredicateConstraint(
                         new CollectionSizeExpression(len)));
                 rule.addPattern(resultP);
-                rule.setConsequence(new SliceConsequence(def,
-                        this.derivationsBuilder));
+                rule.setConsequence(new SliceConsequence(def));
                 rule.setSalience(MINUS_TWO_SALIENCE);
                 this.ruleToAbstractionDefinition.put(rule, def);
                 rules.add(rule);
@@ -376,12 +377,11 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
                 resultP.addConstraint(new PredicateConstraint(
                         new CollectionSizeExpression(1)));
                 rule.addPattern(resultP);
-                rule.setConsequence(new SequentialTemporalPatternConsequence(def,
-                        this.derivationsBuilder));
+                rule.setConsequence(new SequentialTemporalPatternConsequence(def));
                 rule.setSalience(MINUS_TWO_SALIENCE);
                 this.ruleToAbstractionDefinition.put(rule, def);
                 rules.add(rule);
-                ABSTRACTION_COMBINER.toRules(def, rules, this.derivationsBuilder);
+                ABSTRACTION_COMBINER.toRules(def, rules);
             }
         } catch (InvalidRuleException e) {
             throw new AssertionError(e.getClass().getName() + ": "
@@ -449,6 +449,54 @@ class JBossRuleCreator extends AbstractPropositionDefinitionCheckedVisitor {
         return config;
     }
     
+    /**
+     * Orders a high-level abstraction definition's extended proposition
+     * definitions so that each one has as many temporal relations as
+     * possible with the ones before it. The rule's patterns are created in
+     * this order, so partial matches are joined on their temporal relations
+     * as early as possible.
+     *
+     * @param def a {@link HighLevelAbstractionDefinition}.
+     * @param epdsC its extended proposition definitions.
+     * @return the extended proposition definitions in join order.
+     */
+    static ExtendedPropositionDefinition[] joinOrder(
+            HighLevelAbstractionDefinition def,
+            Set<ExtendedPropositionDefinition> epdsC) {
+        List<ExtendedPropositionDefinition> remaining
+                = new ArrayList<>(epdsC);
+        List<ExtendedPropositionDefinition> result
+                = new ArrayList<>(remaining.size());
+        Set<List<TemporalExtendedPropositionDefinition>> pairs
+                = def.getTemporalExtendedPropositionDefinitionPairs();
+        while (!remaining.isEmpty()) {
+            int best = 0;
+            int bestCount = -1;
+            for (int i = 0, n = remaining.size(); i < n; i++) {
+                ExtendedPropositionDefinition epd = remaining.get(i);
+                int count = 0;
+                for (List<TemporalExtendedPropositionDefinition> pair : pairs) {
+                    if (result.isEmpty()) {
+                        if (pair.contains(epd)) {
+                            count++;
+                        }
+                    } else if ((pair.get(0).equals(epd)
+                            && result.contains(pair.get(1)))
+                            || (pair.get(1).equals(epd)
+                            && result.contains(pair.get(0)))) {
+                        count++;
+                    }
+                }
+                if (count > bestCount) {
+                    best = i;
+                    bestCount = count;
+                }
+            }
+            result.add(remaining.remove(best));
+        }
+        return result.toArray(new ExtendedPropositionDefinition[result.size()]);
+    }
+
     /**
      * This needs to be static. Predicate expressions may be serialized, and
      * if an instance of this predicate expression is serialized, it would
@@ -0,0 +1,171 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out the data streaming events on the do process queue to a pool of
+ * {@link DoRegularProcessThread}s. Each event is tagged with a ticket in the
+ * order in which it was taken off the queue. If key order is to be
+ * preserved, a worker must wait for its ticket to come up before putting its
+ * results on the query results handler queue.
+ *
+ * The poison pill is passed along from worker to worker so that every worker
+ * in the pool sees it exactly once.
+ *
+ * @author Andrew Post
+ */
+final class KeyDispatcher<E> {
+
+    private final BlockingQueue<E> queue;
+    private final E poisonPill;
+    private final boolean preserveKeyOrder;
+    private final Lock takeLock;
+    private final Lock turnLock;
+    private final Condition turnChanged;
+    private long nextTicket;
+    private long nowServing;
+    private final Set<Long> doneOutOfTurn;
+    private volatile boolean aborted;
+
+    KeyDispatcher(BlockingQueue<E> queue, E poisonPill,
+            boolean preserveKeyOrder) {
+        assert queue != null : "queue cannot be null";
+        assert poisonPill != null : "poisonPill cannot be null";
+        this.queue = queue;
+        this.poisonPill = poisonPill;
+        this.preserveKeyOrder = preserveKeyOrder;
+        this.takeLock = new ReentrantLock();
+        this.turnLock = new ReentrantLock();
+        this.turnChanged = this.turnLock.newCondition();
+        this.doneOutOfTurn = new HashSet<>();
+    }
+
+    boolean isPreserveKeyOrder() {
+        return this.preserveKeyOrder;
+    }
+
+    /**
+     * Takes the next element off the queue, waiting if necessary.
+     *
+     * @return the next element and its ticket. If the poison pill is
+     * returned, it is put back on the queue for the other workers.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    Ticket<E> take() throws InterruptedException {
+        this.takeLock.lockInterruptibly();
+        try {
+            E e = this.aborted ? this.poisonPill : this.queue.take();
+            if (e == this.poisonPill) {
+                this.queue.offer(this.poisonPill);
+            }
+            return new Ticket<>(e, this.nextTicket++);
+        } finally {
+            this.takeLock.unlock();
+        }
+    }
+
+    /**
+     * If key order is being preserved, waits until all elements with lower
+     * tickets have been marked done. Otherwise, returns immediately.
+     *
+     * @param ticket the ticket.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void awaitTurn(Ticket<E> ticket) throws InterruptedException {
+        if (this.preserveKeyOrder) {
+            this.turnLock.lockInterruptibly();
+            try {
+                while (!this.aborted && this.nowServing != ticket.number) {
+                    this.turnChanged.await();
+                }
+            } finally {
+                this.turnLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Marks the element with the given ticket done, allowing the element with
+     * the next ticket to proceed. A ticket may be marked done before its turn,
+     * for example by a worker that was interrupted while waiting. It is then
+     * skipped when its turn comes up.
+     *
+     * @param ticket the ticket.
+     */
+    void done(Ticket<E> ticket) {
+        if (this.preserveKeyOrder) {
+            this.turnLock.lock();
+            try {
+                if (this.nowServing == ticket.number) {
+                    this.nowServing++;
+                    while (this.doneOutOfTurn.remove(this.nowServing)) {
+                        this.nowServing++;
+                    }
+                    this.turnChanged.signalAll();
+                } else if (ticket.number > this.nowServing) {
+                    this.doneOutOfTurn.add(ticket.number);
+                }
+            } finally {
+                this.turnLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops the dispatching of elements after a worker fails. Subsequent
+     * calls to {@link #take() } return the poison pill, and workers waiting
+     * for their turn are released.
+     */
+    void abort() {
+        this.aborted = true;
+        this.queue.offer(this.poisonPill);
+        if (this.preserveKeyOrder) {
+            this.turnLock.lock();
+            try {
+                this.turnChanged.signalAll();
+            } finally {
+                this.turnLock.unlock();
+            }
+        }
+    }
+
+    static final class Ticket<E> {
+
+        private final E element;
+        private final long number;
+
+        private Ticket(E element, long number) {
+            this.element = element;
+            this.number = number;
+        }
+
+        E getElement() {
+            return this.element;
+        }
+
+    }
+}
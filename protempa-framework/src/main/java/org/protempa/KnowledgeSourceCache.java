@@ -20,7 +20,9 @@ package org.protempa;
  * #L%
  */
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import org.protempa.valueset.ValueSet;
 
 /**
@@ -44,6 +46,41 @@ public final class KnowledgeSourceCache {
         return this.cache.get(propId);
     }
 
+    /**
+     * Collects the ids of the propositions in the all-narrower subtrees of the
+     * specified propositions, including the propositions themselves. Only
+     * propositions in this cache are returned.
+     *
+     * @param inDataSourceOnly whether to return only propositions that are in
+     * the data source.
+     * @param propIds proposition ids.
+     * @return a newly-created set of proposition ids.
+     */
+    public Set<String> collectPropIdDescendantsUsingAllNarrower(
+            boolean inDataSourceOnly, String... propIds) {
+        return this.cache.collectPropIdDescendantsUsingAllNarrower(
+                inDataSourceOnly, propIds);
+    }
+
+    /**
+     * Collects the ids of the propositions in the all-narrower subtrees of the
+     * specified propositions, including the propositions themselves, and the
+     * ids of the propositions in those subtrees that are not in this cache.
+     *
+     * @param inDataSourceOnly whether to return only propositions that are in
+     * the data source.
+     * @param missing the collection to which to add the ids of propositions
+     * that are not in this cache. May be <code>null</code>.
+     * @param propIds proposition ids.
+     * @return a newly-created set of the ids of propositions in this cache.
+     */
+    public Set<String> collectPropIdDescendantsUsingAllNarrower(
+            boolean inDataSourceOnly, Collection<? super String> missing,
+            String... propIds) {
+        return this.cache.collectPropIdDescendantsUsingAllNarrower(
+                inDataSourceOnly, missing, propIds);
+    }
+
     public ValueSet getValueSet(String valueSetId) {
         if (this.valueSetCache != null) {
             return this.valueSetCache.get(valueSetId);
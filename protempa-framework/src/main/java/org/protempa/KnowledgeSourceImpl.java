@@ -23,8 +23,10 @@ import org.protempa.valueset.ValueSet;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,6 +49,28 @@ public final class KnowledgeSourceImpl
     
     private static final Logger LOGGER = Logger.getLogger(KnowledgeSourceImpl.class.getName());
 
+    /**
+     * System property for the maximum number of proposition definitions,
+     * relations, value sets and subtrees to cache. The default is 100000.
+     */
+    public static final String CACHE_SIZE_PROPERTY
+            = "protempa.knowledgeSource.cacheSize";
+
+    /*
+     * Kinds of cache entries in addition to those of the definition readers.
+     */
+    private static final String IS_A = "isA";
+    private static final String ABSTRACTED_INTO = "abstractedInto";
+    private static final String INDUCES = "induces";
+    private static final String SUB_CONTEXT_OF = "subContextOf";
+    private static final String VALUE_SET = "valueSet";
+    private static final String ALL_NARROWER_IDS = "allNarrowerIds";
+    private static final String ALL_NARROWER_DEFS = "allNarrowerDefs";
+    private static final String IN_DATA_SOURCE_ALL_NARROWER_IDS = "inDataSourceAllNarrowerIds";
+    private static final String IN_DATA_SOURCE_ALL_NARROWER_DEFS = "inDataSourceAllNarrowerDefs";
+    private static final String INVERSE_IS_A_IDS = "inverseIsAIds";
+    private static final String INVERSE_IS_A_DEFS = "inverseIsADefs";
+
     /**
      * PROTEMPA knowledge base.
      */
@@ -56,9 +80,12 @@ public final class KnowledgeSourceImpl
     private final TemporalPropositionDefinitionReader tempPropDefReader;
     private SubtreePropositionDefinitionGetterRegular inDataSourceGetter;
     private SubtreePropositionDefinitionGetterRegular collectSubtreeGetter;
+    private final KnowledgeSourceReadCache cache;
 
     public KnowledgeSourceImpl(KnowledgeSourceBackend... backends) {
         super(backends);
+        this.cache = new KnowledgeSourceReadCache(
+                Integer.getInteger(CACHE_SIZE_PROPERTY, 100000));
         this.propDefReader = new PropositionDefinitionReader();
         this.abstractionDefReader = new AbstractionDefinitionReader();
         this.contextDefReader = new ContextDefinitionReader();
@@ -153,11 +180,7 @@ public final class KnowledgeSourceImpl
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
         }
-        Set<String> isAs = new HashSet<>();
-        for (KnowledgeSourceBackend backend : getBackends()) {
-            Arrays.addAll(isAs, backend.readIsA(id));
-        }
-        return readPropositionDefinitions(isAs.toArray(new String[isAs.size()]));
+        return readPropositionDefinitions(readRelation(IS_A, id));
     }
 
     @Override
@@ -166,11 +189,7 @@ public final class KnowledgeSourceImpl
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
         }
-        Set<String> isAs = new HashSet<>();
-        for (KnowledgeSourceBackend backend : getBackends()) {
-            Arrays.addAll(isAs, backend.readIsA(id));
-        }
-        return new ArrayList<>(isAs);
+        return new ArrayList<>(Arrays.asList(readRelation(IS_A, id)));
     }
 
     @Override
@@ -229,12 +248,7 @@ public final class KnowledgeSourceImpl
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
         }
-        Set<String> abstractedIntos = new HashSet<>();
-        for (KnowledgeSourceBackend backend : getBackends()) {
-            Arrays.addAll(abstractedIntos,
-                    backend.readAbstractedInto(id));
-        }
-        return readAbstractionDefinitions(abstractedIntos.toArray(new String[abstractedIntos.size()]));
+        return readAbstractionDefinitions(readRelation(ABSTRACTED_INTO, id));
     }
 
     @Override
@@ -243,12 +257,7 @@ public final class KnowledgeSourceImpl
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
         }
-        Set<String> abstractedIntos = new HashSet<>();
-        for (KnowledgeSourceBackend backend : getBackends()) {
-            Arrays.addAll(abstractedIntos,
-                    backend.readAbstractedInto(id));
-        }
-        return new ArrayList<>(abstractedIntos);
+        return new ArrayList<>(Arrays.asList(readRelation(ABSTRACTED_INTO, id)));
     }
 
     @Override
@@ -279,12 +288,7 @@ public final class KnowledgeSourceImpl
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
         }
-        Set<String> induces = new HashSet<>();
-        for (KnowledgeSourceBackend backend : getBackends()) {
-            Arrays.addAll(induces,
-                    backend.readInduces(id));
-        }
-        return readContextDefinitions(induces.toArray(new String[induces.size()]));
+        return readContextDefinitions(readRelation(INDUCES, id));
     }
 
     @Override
@@ -293,12 +297,7 @@ public final class KnowledgeSourceImpl
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
         }
-        Set<String> induces = new HashSet<>();
-        for (KnowledgeSourceBackend backend : getBackends()) {
-            Arrays.addAll(induces,
-                    backend.readInduces(id));
-        }
-        return new ArrayList<>(induces);
+        return new ArrayList<>(Arrays.asList(readRelation(INDUCES, id)));
     }
 
     @Override
@@ -307,12 +306,7 @@ public final class KnowledgeSourceImpl
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
         }
-        Set<String> subContextOfs = new HashSet<>();
-        for (KnowledgeSourceBackend backend : getBackends()) {
-            Arrays.addAll(subContextOfs,
-                    backend.readSubContextOfs(id));
-        }
-        return readContextDefinitions(subContextOfs.toArray(new String[subContextOfs.size()]));
+        return readContextDefinitions(readRelation(SUB_CONTEXT_OF, id));
     }
 
     @Override
@@ -321,12 +315,7 @@ public final class KnowledgeSourceImpl
         if (id == null) {
             throw new IllegalArgumentException("id cannot be null");
         }
-        Set<String> subContextOfs = new HashSet<>();
-        for (KnowledgeSourceBackend backend : getBackends()) {
-            Arrays.addAll(subContextOfs,
-                    backend.readSubContextOfs(id));
-        }
-        return new ArrayList<>(subContextOfs);
+        return new ArrayList<>(Arrays.asList(readRelation(SUB_CONTEXT_OF, id)));
     }
 
     @Override
@@ -485,34 +474,83 @@ public final class KnowledgeSourceImpl
         return this.tempPropDefReader.read(propIds);
     }
 
+    /**
+     * Reads definitions of one kind through the cache. A definition is read
+     * from the first backend that has it.
+     */
     private abstract class AbstractDefinitionReader<E extends PropositionDefinition> {
 
+        private final String kind;
+
+        AbstractDefinitionReader(String kind) {
+            this.kind = kind;
+        }
+
         final E read(String id) throws KnowledgeSourceReadException {
             if (id == null) {
                 throw new IllegalArgumentException("id cannot be null");
             }
             initializeIfNeeded("reading the proposition definition {0}", id);
 
-            E result = null;
-            if (result == null) {
-                for (KnowledgeSourceBackend backend : getBackends()) {
-                    result = readFromBackend(id, backend);
-                    if (result != null) {
-                        return result;
-                    }
-                }
-            }
-            return result;
+            return cache.get(new KnowledgeSourceReadCache.Key(this.kind, id),
+                    () -> {
+                        for (KnowledgeSourceBackend backend : getBackends()) {
+                            E result = readFromBackend(id, backend);
+                            if (result != null) {
+                                return result;
+                            }
+                        }
+                        return null;
+                    });
         }
 
         final List<E> read(String[] ids) throws KnowledgeSourceReadException {
             assert ids != null : "ids cannot be null";
             initializeIfNeeded("reading the proposition definitions {0}", ids);
 
-            List<E> result = new ArrayList<>();
+            long generation = cache.generation();
+            Map<String, E> found = new HashMap<>();
+            List<String> misses = new ArrayList<>();
+            for (String id : ids) {
+                KnowledgeSourceReadCache.Entry<E> entry = cache.getIfPresent(
+                        new KnowledgeSourceReadCache.Key(this.kind, id));
+                if (entry != null) {
+                    E propDef = entry.getValue();
+                    if (propDef != null) {
+                        found.put(id, propDef);
+                    }
+                } else {
+                    misses.add(id);
+                }
+            }
+
+            if (!misses.isEmpty()) {
+                Map<String, E> loaded = new HashMap<>();
+                for (KnowledgeSourceBackend backend : getBackends()) {
+                    for (E propDef : readFromBackend(misses, backend)) {
+                        if (propDef != null
+                                && !loaded.containsKey(propDef.getId())) {
+                            loaded.put(propDef.getId(), propDef);
+                        }
+                    }
+                }
+                for (String id : misses) {
+                    E propDef = loaded.get(id);
+                    cache.put(new KnowledgeSourceReadCache.Key(this.kind, id),
+                            propDef, generation);
+                    if (propDef != null) {
+                        found.put(id, propDef);
+                    }
+                }
+            }
 
-            for (KnowledgeSourceBackend backend : getBackends()) {
-                result.addAll(readFromBackend(Arrays.asList(ids), backend));
+            List<E> result = new ArrayList<>(found.size());
+            Set<String> seen = new HashSet<>();
+            for (String id : ids) {
+                E propDef = found.get(id);
+                if (propDef != null && seen.add(id)) {
+                    result.add(propDef);
+                }
             }
             return result;
         }
@@ -536,6 +574,10 @@ public final class KnowledgeSourceImpl
 
     private final class PropositionDefinitionReader extends AbstractDefinitionReader<PropositionDefinition> {
 
+        PropositionDefinitionReader() {
+            super("propositionDefinition");
+        }
+
         @Override
         protected PropositionDefinition readFromBackend(String id,
                 KnowledgeSourceBackend backend)
@@ -552,6 +594,10 @@ public final class KnowledgeSourceImpl
     private final class AbstractionDefinitionReader
             extends AbstractDefinitionReader<AbstractionDefinition> {
 
+        AbstractionDefinitionReader() {
+            super("abstractionDefinition");
+        }
+
         @Override
         protected AbstractionDefinition readFromBackend(String id,
                 KnowledgeSourceBackend backend)
@@ -569,6 +615,10 @@ public final class KnowledgeSourceImpl
     private final class ContextDefinitionReader
             extends AbstractDefinitionReader<ContextDefinition> {
 
+        ContextDefinitionReader() {
+            super("contextDefinition");
+        }
+
         @Override
         protected ContextDefinition readFromBackend(String id, KnowledgeSourceBackend backend) throws KnowledgeSourceReadException {
             return backend.readContextDefinition(id);
@@ -584,6 +634,10 @@ public final class KnowledgeSourceImpl
     private final class TemporalPropositionDefinitionReader
             extends AbstractDefinitionReader<TemporalPropositionDefinition> {
 
+        TemporalPropositionDefinitionReader() {
+            super("temporalPropositionDefinition");
+        }
+
         @Override
         protected TemporalPropositionDefinition readFromBackend(String id, KnowledgeSourceBackend backend) throws KnowledgeSourceReadException {
             return backend.readTemporalPropositionDefinition(id);
@@ -655,32 +709,24 @@ public final class KnowledgeSourceImpl
 
     @Override
     public ValueSet readValueSet(String id) throws KnowledgeSourceReadException {
-        ValueSet result = null;
         initializeIfNeeded("reading the value set {0}", id);
-        if (getBackends() != null) {
-            for (KnowledgeSourceBackend backend : getBackends()) {
-                result = backend.readValueSet(id);
-                if (result != null) {
-                    return result;
-                }
-            }
-        }
-        return result;
+        return this.cache.get(new KnowledgeSourceReadCache.Key(VALUE_SET, id),
+                () -> {
+                    if (getBackends() != null) {
+                        for (KnowledgeSourceBackend backend : getBackends()) {
+                            ValueSet result = backend.readValueSet(id);
+                            if (result != null) {
+                                return result;
+                            }
+                        }
+                    }
+                    return null;
+                });
     }
 
     @Override
     public boolean hasValueSet(String id) throws KnowledgeSourceReadException {
-        boolean result = false;
-        if (!result) {
-            initializeIfNeeded("reading the value set {0}", id);
-            for (KnowledgeSourceBackend backend : getBackends()) {
-                result = backend.readValueSet(id) != null;
-                if (result) {
-                    return result;
-                }
-            }
-        }
-        return result;
+        return readValueSet(id) != null;
     }
 
     @Override
@@ -689,8 +735,34 @@ public final class KnowledgeSourceImpl
         super.close();
     }
 
+    /**
+     * Removes everything that has been read from the backends from this
+     * knowledge source's cache. It is called automatically when a backend
+     * reports that it has been updated.
+     */
     @Override
     public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * Returns the number of reads that were answered from this knowledge
+     * source's cache since it was last cleared.
+     *
+     * @return the number of cache hits.
+     */
+    public long getCacheHitCount() {
+        return this.cache.getHitCount();
+    }
+
+    /**
+     * Returns the number of reads that went to the backends since this
+     * knowledge source's cache was last cleared.
+     *
+     * @return the number of cache misses.
+     */
+    public long getCacheMissCount() {
+        return this.cache.getMissCount();
     }
 
     @Override
@@ -700,7 +772,9 @@ public final class KnowledgeSourceImpl
                 "Getting proposition ids for {0} with inDataSource set to true",
                 StringUtils.join(propIds, ","));
         ProtempaUtil.checkArrayForNullElement(propIds, "propIds");
-        return this.inDataSourceGetter.subtreePropIds(inDataSourceOnly, propIds);
+        return new HashSet<>(this.cache.get(
+                subtreeKey(inDataSourceOnly ? IN_DATA_SOURCE_ALL_NARROWER_IDS : ALL_NARROWER_IDS, propIds),
+                () -> this.inDataSourceGetter.subtreePropIds(inDataSourceOnly, propIds)));
     }
 
     @Override
@@ -710,7 +784,9 @@ public final class KnowledgeSourceImpl
                 "Getting proposition definitions for {0} with inDataSource set to true",
                 StringUtils.join(propIds, ","));
         ProtempaUtil.checkArrayForNullElement(propIds, "propIds");
-        return this.inDataSourceGetter.subtreePropDefs(inDataSourceOnly, propIds);
+        return new HashSet<>(this.cache.get(
+                subtreeKey(inDataSourceOnly ? IN_DATA_SOURCE_ALL_NARROWER_DEFS : ALL_NARROWER_DEFS, propIds),
+                () -> this.inDataSourceGetter.subtreePropDefs(inDataSourceOnly, propIds)));
     }
 
     @Override
@@ -719,7 +795,9 @@ public final class KnowledgeSourceImpl
                 "Getting proposition ids for {0}",
                 StringUtils.join(propIds, ","));
         ProtempaUtil.checkArrayForNullElement(propIds, "propIds");
-        return this.collectSubtreeGetter.subtreePropIds(false, propIds);
+        return new HashSet<>(this.cache.get(
+                subtreeKey(INVERSE_IS_A_IDS, propIds),
+                () -> this.collectSubtreeGetter.subtreePropIds(false, propIds)));
     }
 
     @Override
@@ -728,7 +806,9 @@ public final class KnowledgeSourceImpl
                 "Getting proposition definitions for {0}",
                 StringUtils.join(propIds, ","));
         ProtempaUtil.checkArrayForNullElement(propIds, "propIds");
-        return this.collectSubtreeGetter.subtreePropDefs(false, propIds);
+        return new HashSet<>(this.cache.get(
+                subtreeKey(INVERSE_IS_A_DEFS, propIds),
+                () -> this.collectSubtreeGetter.subtreePropDefs(false, propIds)));
     }
 
     @Override
@@ -737,6 +817,53 @@ public final class KnowledgeSourceImpl
         fireKnowledgeSourceUpdated();
     }
 
+    /**
+     * Reads the ids of the propositions that are related to the specified
+     * proposition in all backends, through the cache.
+     *
+     * @param relation one of {@link #IS_A}, {@link #ABSTRACTED_INTO},
+     * {@link #INDUCES} and {@link #SUB_CONTEXT_OF}.
+     * @param id a proposition id.
+     * @return the related proposition ids. The array is shared with the
+     * cache, so callers must not modify it.
+     * @throws KnowledgeSourceReadException if an error occurred reading from
+     * a backend.
+     */
+    private String[] readRelation(String relation, String id)
+            throws KnowledgeSourceReadException {
+        return this.cache.get(new KnowledgeSourceReadCache.Key(relation, id),
+                () -> {
+                    Set<String> result = new HashSet<>();
+                    for (KnowledgeSourceBackend backend : getBackends()) {
+                        switch (relation) {
+                            case IS_A:
+                                Arrays.addAll(result, backend.readIsA(id));
+                                break;
+                            case ABSTRACTED_INTO:
+                                Arrays.addAll(result,
+                                        backend.readAbstractedInto(id));
+                                break;
+                            case INDUCES:
+                                Arrays.addAll(result, backend.readInduces(id));
+                                break;
+                            case SUB_CONTEXT_OF:
+                                Arrays.addAll(result,
+                                        backend.readSubContextOfs(id));
+                                break;
+                            default:
+                                throw new AssertionError(
+                                        "invalid relation " + relation);
+                        }
+                    }
+                    return result.toArray(new String[result.size()]);
+                });
+    }
+
+    private static KnowledgeSourceReadCache.Key subtreeKey(String kind,
+            String[] propIds) {
+        return new KnowledgeSourceReadCache.Key(kind, Arrays.asSet(propIds));
+    }
+
     /**
      * Notifies registered listeners that the knowledge source has been updated.
      *
@@ -0,0 +1,232 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, concurrent read-through cache of what {@link KnowledgeSourceImpl}
+ * reads from its backends: proposition definitions, relations between them,
+ * value sets and subtrees. Not-found results are cached too. When the cache
+ * is full, an arbitrary eighth of its entries is evicted to make room.
+ *
+ * Concurrent misses for the same key may read from the backends more than
+ * once, which is harmless because the reads have no side effects. Each
+ * {@link #clear() } starts a new generation, and values that were read in an
+ * earlier generation are not cached, so a read that races with a clear
+ * cannot put a stale value back.
+ *
+ * @author Andrew Post
+ */
+final class KnowledgeSourceReadCache {
+
+    /**
+     * Reads a value from the knowledge source backends on a cache miss.
+     *
+     * @param <V> the type of value.
+     */
+    interface Loader<V> {
+
+        V load() throws KnowledgeSourceReadException;
+    }
+
+    /**
+     * A cached value, which may be <code>null</code>.
+     *
+     * @param <V> the type of value.
+     */
+    static final class Entry<V> {
+
+        private final V value;
+
+        Entry(V value) {
+            this.value = value;
+        }
+
+        V getValue() {
+            return this.value;
+        }
+    }
+
+    /**
+     * A cache key made of the kind of thing read and its id or ids.
+     */
+    static final class Key {
+
+        private final String kind;
+        private final Object id;
+        private final int hashCode;
+
+        Key(String kind, Object id) {
+            assert kind != null : "kind cannot be null";
+            assert id != null : "id cannot be null";
+            this.kind = kind;
+            this.id = id;
+            this.hashCode = 31 * kind.hashCode() + id.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.hashCode == other.hashCode
+                    && this.kind.equals(other.kind)
+                    && this.id.equals(other.id);
+        }
+    }
+
+    private final ConcurrentMap<Key, Entry<?>> entries;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final AtomicLong generation;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the maximum number of entries to cache.
+     */
+    KnowledgeSourceReadCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        this.entries = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.generation = new AtomicLong();
+    }
+
+    /**
+     * Returns the cached value for the given key, reading it with the given
+     * loader and caching it if it is not already cached.
+     *
+     * @param key the key.
+     * @param loader reads the value on a cache miss.
+     * @return the value, which may be <code>null</code>.
+     * @throws KnowledgeSourceReadException if the loader failed. Nothing is
+     * cached in that case.
+     */
+    <V> V get(Key key, Loader<V> loader) throws KnowledgeSourceReadException {
+        long gen = generation();
+        Entry<V> entry = getIfPresent(key);
+        if (entry != null) {
+            return entry.getValue();
+        }
+        V value = loader.load();
+        put(key, value, gen);
+        return value;
+    }
+
+    /**
+     * Returns the current generation. Get it before looking up a key and
+     * reading its value, and pass it to
+     * {@link #put(org.protempa.KnowledgeSourceReadCache.Key, java.lang.Object, long) }.
+     *
+     * @return the generation.
+     */
+    long generation() {
+        return this.generation.get();
+    }
+
+    /**
+     * Returns the cached entry for the given key.
+     *
+     * @param key the key.
+     * @return the entry, or <code>null</code> if the key is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    <V> Entry<V> getIfPresent(Key key) {
+        Entry<V> entry = (Entry<V>) this.entries.get(key);
+        if (entry != null) {
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Caches a value unless the cache has been cleared since the value was
+     * read.
+     *
+     * @param key the key.
+     * @param value the value, which may be <code>null</code>.
+     * @param generation the {@link #generation() } from before the value
+     * was read.
+     */
+    <V> void put(Key key, V value, long generation) {
+        if (generation != this.generation.get()) {
+            return;
+        }
+        if (this.entries.size() >= this.maxSize) {
+            evict();
+        }
+        Entry<V> entry = new Entry<>(value);
+        this.entries.put(key, entry);
+        /*
+         * clear() advances the generation before it empties the map, so if
+         * it ran after the check above, either it removed the entry or the
+         * generation has changed and the entry is removed here.
+         */
+        if (generation != this.generation.get()) {
+            this.entries.remove(key, entry);
+        }
+    }
+
+    long getHitCount() {
+        return this.hits.sum();
+    }
+
+    long getMissCount() {
+        return this.misses.sum();
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    void clear() {
+        this.generation.incrementAndGet();
+        this.entries.clear();
+        this.hits.reset();
+        this.misses.reset();
+    }
+
+    private void evict() {
+        int toEvict = Math.max(1, this.maxSize / 8);
+        for (Iterator<Key> itr = this.entries.keySet().iterator();
+                itr.hasNext() && toEvict > 0; toEvict--) {
+            itr.next();
+            itr.remove();
+        }
+    }
+}
@@ -19,8 +19,6 @@
  */
 package org.protempa;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -47,18 +45,21 @@ final class LowLevelAbstractionConsequence implements Consequence {
             null, null, null, null, null, null, null, 0, null, null, null);
     private final LowLevelAbstractionDefinition def;
     private final Algorithm algorithm;
-    private final DerivationsBuilder derivationsBuilder;
-    private transient MyObjectAsserter objAsserter;
 
     private void doProcess(KnowledgeHelper knowledgeHelper, Sequence<PrimitiveParameter> subSeq) throws AlgorithmProcessingException, AlgorithmInitializationException {
-        objAsserter.knowledgeHelper = knowledgeHelper;
+        WorkingMemory workingMemory = knowledgeHelper.getWorkingMemory();
         LowLevelAbstractionFinder.process(subSeq, this.def, this.algorithm,
-                objAsserter, this.derivationsBuilder, knowledgeHelper.getWorkingMemory());
-        objAsserter.knowledgeHelper = null;
+                new MyObjectAsserter(knowledgeHelper), 
+                WorkingMemoryGlobals.getDerivationsBuilder(workingMemory), 
+                workingMemory);
     }
 
     private static class MyObjectAsserter implements ObjectAsserter {
-        private KnowledgeHelper knowledgeHelper;
+        private final KnowledgeHelper knowledgeHelper;
+
+        MyObjectAsserter(KnowledgeHelper knowledgeHelper) {
+            this.knowledgeHelper = knowledgeHelper;
+        }
 
         @Override
         public void assertObject(Object obj) {
@@ -69,11 +70,9 @@ final class LowLevelAbstractionConsequence implements Consequence {
 
     LowLevelAbstractionConsequence(
             LowLevelAbstractionDefinition simpleAbstractionDef,
-            Algorithm algorithm, DerivationsBuilder derivationsBuilder) {
+            Algorithm algorithm) {
         this.def = simpleAbstractionDef;
         this.algorithm = algorithm;
-        this.derivationsBuilder = derivationsBuilder;
-        this.objAsserter = new MyObjectAsserter();
     }
 
     @SuppressWarnings("unchecked")
@@ -127,9 +126,4 @@ final class LowLevelAbstractionConsequence implements Consequence {
         }
 
     }
-
-    private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
-        s.defaultReadObject();
-        this.objAsserter = new MyObjectAsserter();
-    }
 }
@@ -509,31 +509,34 @@ public final class LowLevelAbstractionDefinition
         recalculateChildren();
     }
 
-    private boolean satisfiesGapBetweenValues(
-            Segment<PrimitiveParameter> segment) {
-        PrimitiveParameter eprev = segment.get(0);
-        for (int i = 1, n = segment.size(); i < n; i++) {
-            PrimitiveParameter e = segment.get(i);
-            if (!this.gapBtwValues.satisfiesGap(eprev, e)) {
-                return false;
-            }
-            eprev = e;
-        }
-        return true;
+    /**
+     * Tests whether two consecutive values satisfy this detector's minimum
+     * and maximum gap between values.
+     *
+     * @param prev a value.
+     * @param next the value after it.
+     * @return <code>true</code> if the gap between the two values is
+     * satisfied, <code>false</code> otherwise.
+     */
+    boolean satisfiesGapBetweenValues(PrimitiveParameter prev,
+            PrimitiveParameter next) {
+        return this.gapBtwValues.satisfiesGap(prev, next);
     }
 
     /**
-     * Test whether or not the given time series satisfies the constraints of
-     * this detector and an optional algorithm. If no algorithm is specified,
-     * then this test just uses the detector's constraints.
+     * Test whether or not the given time series satisfies the value
+     * constraints of this detector and an optional algorithm. If no algorithm
+     * is specified, then this test just uses the detector's constraints. The
+     * caller is responsible for checking the gap between consecutive values
+     * with {@link #satisfiesGapBetweenValues}.
      *
      * @param segment
      *            a time series <code>Segment</code>.
      * @param algorithm
      *            an <code>Algorithm</code>, or <code>null</code> to
      *            specify no algorithm.
-     * @return <code>true</code> if the time series segment satisfies the
-     *         constraints of this detector, <code>false</code> otherwise
+     * @return the first value definition that the segment satisfies, or
+     *         <code>null</code> if it satisfies none.
      * @throws AlgorithmProcessingException
      * @throws AlgorithmInitializationException
      */
@@ -541,11 +544,9 @@ public final class LowLevelAbstractionDefinition
             Segment<PrimitiveParameter> segment, Algorithm algorithm)
             throws AlgorithmInitializationException,
             AlgorithmProcessingException {
-        if (satisfiesGapBetweenValues(segment)) {
-            for (LowLevelAbstractionValueDefinition valueDef : this.valueDefinitions) {
-                if (valueDef.satisfiedBy(segment, algorithm)) {
-                    return valueDef;
-                }
+        for (LowLevelAbstractionValueDefinition valueDef : this.valueDefinitions) {
+            if (valueDef.satisfiedBy(segment, algorithm)) {
+                return valueDef;
             }
         }
         return null;
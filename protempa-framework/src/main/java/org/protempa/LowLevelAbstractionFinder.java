@@ -284,6 +284,63 @@ public final class LowLevelAbstractionFinder {
         return nextSeg;
     }
 
+    /**
+     * Evaluates windows of a sequence against a low-level abstraction
+     * definition. Whether consecutive values satisfy the definition's gap
+     * between values is computed once per point, so that checking a window
+     * takes constant time, and the value of each single-point window is
+     * computed once and reused when the search revisits it.
+     */
+    private static final class WindowEvaluator {
+
+        private final LowLevelAbstractionDefinition def;
+        private final Algorithm algorithm;
+        /*
+         * gapViolations[i] is the number of points in 1..i that do not
+         * satisfy the gap between values with the point before them.
+         */
+        private final int[] gapViolations;
+        private final LowLevelAbstractionValueDefinition[] pointValues;
+        private final boolean[] pointEvaluated;
+
+        WindowEvaluator(Sequence<PrimitiveParameter> seq,
+                LowLevelAbstractionDefinition def, Algorithm algorithm) {
+            this.def = def;
+            this.algorithm = algorithm;
+            int size = seq.size();
+            this.gapViolations = new int[size];
+            PrimitiveParameter prev = seq.get(0);
+            for (int i = 1; i < size; i++) {
+                PrimitiveParameter param = seq.get(i);
+                this.gapViolations[i] = this.gapViolations[i - 1]
+                        + (def.satisfiesGapBetweenValues(prev, param) ? 0 : 1);
+                prev = param;
+            }
+            this.pointValues = new LowLevelAbstractionValueDefinition[size];
+            this.pointEvaluated = new boolean[size];
+        }
+
+        LowLevelAbstractionValueDefinition evaluate(
+                Segment<PrimitiveParameter> seg)
+                throws AlgorithmInitializationException,
+                AlgorithmProcessingException {
+            int x = seg.getFirstIndex();
+            int y = seg.getLastIndex();
+            if (this.gapViolations[y] != this.gapViolations[x]) {
+                return null;
+            }
+            if (x == y) {
+                if (!this.pointEvaluated[x]) {
+                    this.pointValues[x] = this.def.satisfiedBy(seg,
+                            this.algorithm);
+                    this.pointEvaluated[x] = true;
+                }
+                return this.pointValues[x];
+            }
+            return this.def.satisfiedBy(seg, this.algorithm);
+        }
+    }
+
     static void process(Sequence<PrimitiveParameter> seq,
             LowLevelAbstractionDefinition def, Algorithm algorithm,
             ObjectAsserter objAsserter, DerivationsBuilder derivationsBuilder,
@@ -304,11 +361,13 @@ public final class LowLevelAbstractionFinder {
         GapFunction gf = def.getGapFunction();
 
         if (seg != null) {
+            WindowEvaluator evaluator = new WindowEvaluator(seq, def,
+                    algorithm);
             Segment<PrimitiveParameter> lastSeg = null;
             LowLevelAbstractionValueDefinition prevFoundValue = null;
             LowLevelAbstractionValueDefinition foundValue = null;
             do {
-                if ((foundValue = def.satisfiedBy(seg, algorithm)) != null) {
+                if ((foundValue = evaluator.evaluate(seg)) != null) {
                     Segment<PrimitiveParameter> nextSeg = null;
                     do {
                         if (lastSeg != null
@@ -338,7 +397,7 @@ public final class LowLevelAbstractionFinder {
                     } while ((nextSeg = nextSegmentAfterMatch(def, seg,
                             algorithm, minPatternLength, maxPatternLength)) != null
                             && (foundValue =
-                            def.satisfiedBy(nextSeg, algorithm)) != null);
+                            evaluator.evaluate(nextSeg)) != null);
                 }
             } while (advanceRow(def, seg, lastSeg, algorithm, minPatternLength,
                     maxPatternLength) != null);
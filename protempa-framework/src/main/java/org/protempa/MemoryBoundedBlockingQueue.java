@@ -0,0 +1,387 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+import org.protempa.metrics.QueueMXBean;
+
+/**
+ * A blocking queue between two stages of query execution that is bounded by
+ * both a number of elements and an estimated number of bytes. Producers wait
+ * while either limit would be exceeded, except that an element is always
+ * accepted by an empty queue so that an element larger than the byte limit
+ * cannot block forever.
+ *
+ * The queue also keeps gauges of its depth and bytes in flight, and counts
+ * the time that producers and consumers have spent blocked, so that the
+ * slowest stage of an execution can be identified: a stage whose consumers
+ * rarely block on its input queue is keeping up, while one whose producers
+ * often block on its input queue is the bottleneck. They are exported
+ * through JMX by {@link ExecutorMetrics}.
+ *
+ * @param <E> the type of element.
+ *
+ * @author Andrew Post
+ */
+final class MemoryBoundedBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E>, QueueMXBean {
+
+    private static final class Entry<E> {
+
+        private final E element;
+        private final long bytes;
+
+        Entry(E element, long bytes) {
+            this.element = element;
+            this.bytes = bytes;
+        }
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long maxBytes;
+    private final ToLongFunction<? super E> weigher;
+    private final ArrayDeque<Entry<E>> entries;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private volatile long bytes;
+    private final LongAdder putBlockedNanos;
+    private final LongAdder takeBlockedNanos;
+
+    /**
+     * Creates a queue.
+     *
+     * @param name the name of the queue, for logging.
+     * @param maxSize the maximum number of elements in the queue. Must be
+     * positive.
+     * @param maxBytes the maximum estimated number of bytes of the elements
+     * in the queue. Must be positive.
+     * @param weigher estimates the number of bytes of an element.
+     */
+    MemoryBoundedBlockingQueue(String name, int maxSize, long maxBytes,
+            ToLongFunction<? super E> weigher) {
+        assert name != null : "name cannot be null";
+        assert weigher != null : "weigher cannot be null";
+        if (maxSize < 1) {
+            throw new IllegalArgumentException(
+                    "maxSize must be at least 1 but was " + maxSize);
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException(
+                    "maxBytes must be at least 1 but was " + maxBytes);
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        this.entries = new ArrayDeque<>();
+        this.lock = new ReentrantLock();
+        this.notEmpty = this.lock.newCondition();
+        this.notFull = this.lock.newCondition();
+        this.putBlockedNanos = new LongAdder();
+        this.takeBlockedNanos = new LongAdder();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public int getSize() {
+        return size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * Gets the estimated number of bytes of the elements in the queue.
+     *
+     * @return a number of bytes.
+     */
+    @Override
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Gets the total time that producers have spent waiting for room in the
+     * queue.
+     *
+     * @return the time in microseconds.
+     */
+    @Override
+    public long getPutBlockedMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.putBlockedNanos.sum());
+    }
+
+    /**
+     * Gets the total time that consumers have spent waiting for an element
+     * to be added to the queue.
+     *
+     * @return the time in microseconds.
+     */
+    @Override
+    public long getTakeBlockedMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.takeBlockedNanos.sum());
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Entry<E> entry = newEntry(e);
+        this.lock.lock();
+        try {
+            if (hasRoom(entry)) {
+                enqueue(entry);
+                return true;
+            } else {
+                return false;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        Entry<E> entry = newEntry(e);
+        this.lock.lockInterruptibly();
+        try {
+            if (!hasRoom(entry)) {
+                long start = System.nanoTime();
+                try {
+                    while (!hasRoom(entry)) {
+                        this.notFull.await();
+                    }
+                } finally {
+                    this.putBlockedNanos.add(System.nanoTime() - start);
+                }
+            }
+            enqueue(entry);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Entry<E> entry = newEntry(e);
+        long nanos = unit.toNanos(timeout);
+        this.lock.lockInterruptibly();
+        try {
+            if (!hasRoom(entry)) {
+                long start = System.nanoTime();
+                try {
+                    while (!hasRoom(entry)) {
+                        if (nanos <= 0) {
+                            return false;
+                        }
+                        nanos = this.notFull.awaitNanos(nanos);
+                    }
+                } finally {
+                    this.putBlockedNanos.add(System.nanoTime() - start);
+                }
+            }
+            enqueue(entry);
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            if (this.entries.isEmpty()) {
+                long start = System.nanoTime();
+                try {
+                    while (this.entries.isEmpty()) {
+                        this.notEmpty.await();
+                    }
+                } finally {
+                    this.takeBlockedNanos.add(System.nanoTime() - start);
+                }
+            }
+            return dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        this.lock.lockInterruptibly();
+        try {
+            if (this.entries.isEmpty()) {
+                long start = System.nanoTime();
+                try {
+                    while (this.entries.isEmpty()) {
+                        if (nanos <= 0) {
+                            return null;
+                        }
+                        nanos = this.notEmpty.awaitNanos(nanos);
+                    }
+                } finally {
+                    this.takeBlockedNanos.add(System.nanoTime() - start);
+                }
+            }
+            return dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        this.lock.lock();
+        try {
+            return this.entries.isEmpty() ? null : dequeue();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        this.lock.lock();
+        try {
+            Entry<E> entry = this.entries.peekFirst();
+            return entry != null ? entry.element : null;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.entries.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        this.lock.lock();
+        try {
+            return this.maxSize - this.entries.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException("c cannot be null");
+        }
+        if (c == this) {
+            throw new IllegalArgumentException("cannot drain to self");
+        }
+        this.lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && !this.entries.isEmpty()) {
+                c.add(dequeue());
+                n++;
+            }
+            return n;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in the queue. The
+     * iterator does not support removal.
+     *
+     * @return an iterator.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        this.lock.lock();
+        try {
+            List<E> snapshot = new ArrayList<>(this.entries.size());
+            for (Entry<E> entry : this.entries) {
+                snapshot.add(entry.element);
+            }
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private Entry<E> newEntry(E e) {
+        if (e == null) {
+            throw new NullPointerException("e cannot be null");
+        }
+        return new Entry<>(e, Math.max(0, this.weigher.applyAsLong(e)));
+    }
+
+    private boolean hasRoom(Entry<E> entry) {
+        return this.entries.isEmpty()
+                || (this.entries.size() < this.maxSize
+                && this.bytes + entry.bytes <= this.maxBytes);
+    }
+
+    private void enqueue(Entry<E> entry) {
+        this.entries.addLast(entry);
+        this.bytes += entry.bytes;
+        this.notEmpty.signal();
+    }
+
+    private E dequeue() {
+        Entry<E> entry = this.entries.pollFirst();
+        this.bytes -= entry.bytes;
+        this.notFull.signalAll();
+        return entry.element;
+    }
+}
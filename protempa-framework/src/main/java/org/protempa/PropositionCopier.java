@@ -39,9 +39,10 @@ import org.protempa.proposition.UniqueIdFactory;
  * Creates derived propositions when discovered by PROTEMPA that have the same
  * characteristics as the proposition from which it was derived 
  * (e.g., interval, value). Users
- * should create one instance of this class per proposition to derive. 
- * Whenever a proposition with that id is to be created, the user should first 
- * call the corresponding copier's
+ * should create one instance of this class per proposition to derive each 
+ * time a consequence fires, because a copier holds the state of the session 
+ * that is using it and rule bases may be shared across sessions. To create a
+ * proposition with that id, the user should first call the copier's
  * {@link #grab(org.drools.WorkingMemory)} method with the current
  * {@link WorkingMemory} instance, call 
  * {@link org.protempa.proposition.Proposition#accept(org.protempa.proposition.PropositionVisitor)}
@@ -57,25 +58,21 @@ class PropositionCopier extends AbstractPropositionVisitor implements Serializab
     private static final Logger LOGGER = Logger.getLogger(PropositionCopier.class.getName());
     
     private final String propId;
-    private final DerivationsBuilder derivationsBuilder;
+    private DerivationsBuilder derivationsBuilder;
     private KnowledgeHelper kh;
     private UniqueIdFactory uniqueIdProvider;
 
     /**
-     * Instances a copier with the id of the proposition to derive, and a
-     * {@link DerivationsBuilder} to store links between the source and derived
-     * propositions.
+     * Instances a copier with the id of the proposition to derive. Links 
+     * between the source and derived propositions are stored in the 
+     * {@link DerivationsBuilder} of the working memory passed into 
+     * {@link #grab(org.drools.spi.KnowledgeHelper) }.
      * 
      * @param propId the id {@link String} of the proposition to derive.
      * Cannot be <code>null</code>.
-     * @param derivationsBuilder a {@link DerivationsBuilder}. Cannot be
-     * <code>null</code>.
      */
-    PropositionCopier(String propId, DerivationsBuilder derivationsBuilder) {
+    PropositionCopier(String propId) {
         assert propId != null : "propId cannot be null";
-        assert derivationsBuilder != null : 
-                "derivationsBuilder cannot be null";
-        this.derivationsBuilder = derivationsBuilder;
         this.propId = propId;
     }
 
@@ -93,6 +90,8 @@ class PropositionCopier extends AbstractPropositionVisitor implements Serializab
                     "The previous user of this copier forgot to call release. This causes a memory leak!");
         }
         this.kh = kh;
+        this.derivationsBuilder = 
+                WorkingMemoryGlobals.getDerivationsBuilder(kh.getWorkingMemory());
         this.uniqueIdProvider = 
                 new ProviderBasedUniqueIdFactory(new JBossRulesDerivedLocalUniqueIdValuesProvider(this.kh.getWorkingMemory(), 
                         this.propId));
@@ -103,6 +102,8 @@ class PropositionCopier extends AbstractPropositionVisitor implements Serializab
      */
     void release() {
         this.kh = null;
+        this.derivationsBuilder = null;
+        this.uniqueIdProvider = null;
     }
 
     /**
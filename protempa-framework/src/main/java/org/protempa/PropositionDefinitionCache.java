@@ -19,13 +19,12 @@ package org.protempa;
  * limitations under the License.
  * #L%
  */
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 
 /**
@@ -37,6 +36,8 @@ import java.util.Set;
 public class PropositionDefinitionCache {
 
     private final Map<String, PropositionDefinition> cache;
+    private PropositionHierarchyIndex allNarrowerIndex;
+    private PropositionHierarchyIndex inverseIsAIndex;
 
     public PropositionDefinitionCache(Collection<? extends PropositionDefinition> propDefs) {
         this.cache = new HashMap<>();
@@ -51,8 +52,9 @@ public class PropositionDefinitionCache {
      * 
      * @param otherCache another proposition definition cache.
      */
-    public void merge(PropositionDefinitionCache otherCache) {
+    public synchronized void merge(PropositionDefinitionCache otherCache) {
         if (otherCache != null) {
+            clearIndices();
             for (Map.Entry<String, PropositionDefinition> me : otherCache.cache.entrySet()) {
                 this.cache.putIfAbsent(me.getKey(), me.getValue());
             }
@@ -76,25 +78,76 @@ public class PropositionDefinitionCache {
         return this.cache.containsKey(id);
     }
     
-    public PropositionDefinition remove(String id) {
+    public synchronized PropositionDefinition remove(String id) {
+        clearIndices();
         return this.cache.remove(id);
     }
 
     public Set<String> collectPropIdDescendantsUsingInverseIsA(String... propIds) throws QueryException {
         Set<String> result = new HashSet<>();
-        Queue<String> queue = new LinkedList<>();
-        org.arp.javautil.arrays.Arrays.addAll(queue, propIds);
-        String propId;
-        while ((propId = queue.poll()) != null) {
-            if (result.add(propId)) {
-                PropositionDefinition pd = cache.get(propId);
-                if (pd != null) {
-                    String[] children = pd.getInverseIsA();
-                    org.arp.javautil.arrays.Arrays.addAll(queue, children);
-                }
-            }
-        }
+        getInverseIsAIndex().collectAllPropIds(
+                Arrays.asList(propIds), result);
+        return result;
+    }
+
+    /**
+     * Collects the ids of the propositions in the all-narrower subtrees of the
+     * specified propositions, including the propositions themselves. Only
+     * propositions with a definition in this cache are returned.
+     *
+     * @param inDataSourceOnly whether to return only propositions that are in
+     * the data source.
+     * @param propIds proposition ids.
+     * @return a newly-created set of proposition ids.
+     */
+    public Set<String> collectPropIdDescendantsUsingAllNarrower(
+            boolean inDataSourceOnly, String... propIds) {
+        return collectPropIdDescendantsUsingAllNarrower(inDataSourceOnly,
+                null, propIds);
+    }
+
+    /**
+     * Collects the ids of the propositions in the all-narrower subtrees of the
+     * specified propositions, including the propositions themselves, and the
+     * ids of the propositions in those subtrees that have no definition in
+     * this cache.
+     *
+     * @param inDataSourceOnly whether to return only propositions that are in
+     * the data source.
+     * @param missing the collection to which to add the ids of propositions
+     * that have no definition in this cache. May be <code>null</code>.
+     * @param propIds proposition ids.
+     * @return a newly-created set of the ids of propositions that have a
+     * definition in this cache.
+     */
+    public Set<String> collectPropIdDescendantsUsingAllNarrower(
+            boolean inDataSourceOnly, Collection<? super String> missing,
+            String... propIds) {
+        Set<String> result = new HashSet<>();
+        getAllNarrowerIndex().collectPropIds(inDataSourceOnly,
+                Arrays.asList(propIds), result, missing);
         return result;
     }
 
+    private synchronized PropositionHierarchyIndex getAllNarrowerIndex() {
+        if (this.allNarrowerIndex == null) {
+            this.allNarrowerIndex
+                    = new PropositionHierarchyIndex(this.cache.values(), true);
+        }
+        return this.allNarrowerIndex;
+    }
+
+    private synchronized PropositionHierarchyIndex getInverseIsAIndex() {
+        if (this.inverseIsAIndex == null) {
+            this.inverseIsAIndex
+                    = new PropositionHierarchyIndex(this.cache.values(), false);
+        }
+        return this.inverseIsAIndex;
+    }
+
+    private void clearIndices() {
+        this.allNarrowerIndex = null;
+        this.inverseIsAIndex = null;
+    }
+
 }
@@ -0,0 +1,250 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An index of the descendants of a fixed set of proposition definitions,
+ * either by all-narrower (children) or by inverse is-a. Proposition ids are
+ * interned to integers, and the descendants of each proposition are
+ * represented as a bitset over them. A proposition's bitset is computed the
+ * first time it is needed, reusing the bitsets of any of its descendants that
+ * have already been computed, and is kept for the lifetime of the index.
+ * Subtree queries then cost time proportional to the size of the answer
+ * rather than a walk over the hierarchy.
+ *
+ * Ids that are referenced as children but have no definition in the index
+ * are interned too, so that callers can find out which parts of a subtree
+ * are missing. The index must be rebuilt if the proposition definitions
+ * change.
+ *
+ * @author Andrew Post
+ */
+final class PropositionHierarchyIndex {
+
+    private final Map<String, Integer> indices;
+    private final String[] ids;
+    private final PropositionDefinition[] propDefs;
+    private final int numDefined;
+    private final int[][] children;
+    private final BitSet inDataSource;
+    private final AtomicReferenceArray<BitSet> descendants;
+
+    /**
+     * Builds an index.
+     *
+     * @param propDefs the proposition definitions to index.
+     * @param narrower <code>true</code> to index descendants by all-narrower,
+     * <code>false</code> to index descendants by inverse is-a.
+     */
+    PropositionHierarchyIndex(Collection<? extends PropositionDefinition> propDefs,
+            boolean narrower) {
+        assert propDefs != null : "propDefs cannot be null";
+        this.indices = new HashMap<>();
+        List<String> idList = new ArrayList<>(propDefs.size());
+        List<PropositionDefinition> propDefList
+                = new ArrayList<>(propDefs.size());
+        for (PropositionDefinition propDef : propDefs) {
+            if (this.indices.putIfAbsent(propDef.getId(), idList.size()) == null) {
+                idList.add(propDef.getId());
+                propDefList.add(propDef);
+            }
+        }
+        this.numDefined = idList.size();
+        int[][] edges = new int[this.numDefined][];
+        for (int i = 0; i < this.numDefined; i++) {
+            PropositionDefinition propDef = propDefList.get(i);
+            String[] childIds = narrower
+                    ? propDef.getChildren() : propDef.getInverseIsA();
+            int[] childIndices = new int[childIds.length];
+            for (int j = 0; j < childIds.length; j++) {
+                Integer index = this.indices.get(childIds[j]);
+                if (index == null) {
+                    index = idList.size();
+                    this.indices.put(childIds[j], index);
+                    idList.add(childIds[j]);
+                }
+                childIndices[j] = index;
+            }
+            edges[i] = childIndices;
+        }
+        int size = idList.size();
+        this.ids = idList.toArray(new String[size]);
+        this.propDefs = propDefList.toArray(new PropositionDefinition[size]);
+        this.children = new int[size][];
+        System.arraycopy(edges, 0, this.children, 0, this.numDefined);
+        for (int i = this.numDefined; i < size; i++) {
+            this.children[i] = new int[0];
+        }
+        this.inDataSource = new BitSet(size);
+        for (int i = 0; i < this.numDefined; i++) {
+            if (this.propDefs[i].getInDataSource()) {
+                this.inDataSource.set(i);
+            }
+        }
+        this.descendants = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Collects the subtrees of the specified propositions, including the
+     * propositions themselves.
+     *
+     * @param inDataSourceOnly whether to collect only propositions that are
+     * in the data source.
+     * @param propIds proposition ids.
+     * @param found the collection to which to add the ids of propositions in
+     * the subtrees that have a definition in this index.
+     * @param missing the collection to which to add the ids of propositions
+     * in the subtrees that have no definition in this index. May be
+     * <code>null</code>.
+     */
+    void collectPropIds(boolean inDataSourceOnly, Collection<String> propIds,
+            Collection<? super String> found,
+            Collection<? super String> missing) {
+        BitSet subtree = subtree(propIds, missing);
+        filter(subtree, inDataSourceOnly, missing);
+        for (int i = subtree.nextSetBit(0); i >= 0;
+                i = subtree.nextSetBit(i + 1)) {
+            found.add(this.ids[i]);
+        }
+    }
+
+    /**
+     * Collects the definitions of the propositions in the subtrees of the
+     * specified propositions, including the propositions themselves.
+     *
+     * @param inDataSourceOnly whether to collect only propositions that are
+     * in the data source.
+     * @param propIds proposition ids.
+     * @param found the collection to which to add the proposition
+     * definitions.
+     * @param missing the collection to which to add the ids of propositions
+     * in the subtrees that have no definition in this index. May be
+     * <code>null</code>.
+     */
+    void collectPropDefs(boolean inDataSourceOnly, Collection<String> propIds,
+            Collection<? super PropositionDefinition> found,
+            Collection<? super String> missing) {
+        BitSet subtree = subtree(propIds, missing);
+        filter(subtree, inDataSourceOnly, missing);
+        for (int i = subtree.nextSetBit(0); i >= 0;
+                i = subtree.nextSetBit(i + 1)) {
+            found.add(this.propDefs[i]);
+        }
+    }
+
+    /**
+     * Collects the ids of all propositions in the subtrees of the specified
+     * propositions, including the propositions themselves, whether or not
+     * they have a definition in this index.
+     *
+     * @param propIds proposition ids.
+     * @param result the collection to which to add the ids.
+     */
+    void collectAllPropIds(Collection<String> propIds,
+            Collection<? super String> result) {
+        BitSet subtree = subtree(propIds, result);
+        for (int i = subtree.nextSetBit(0); i >= 0;
+                i = subtree.nextSetBit(i + 1)) {
+            result.add(this.ids[i]);
+        }
+    }
+
+    private BitSet subtree(Collection<String> propIds,
+            Collection<? super String> unknown) {
+        BitSet result = new BitSet(this.ids.length);
+        for (String propId : propIds) {
+            Integer index = this.indices.get(propId);
+            if (index != null) {
+                result.or(closure(index, this.children, this.descendants));
+            } else if (unknown != null) {
+                unknown.add(propId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the propositions without a definition from the given subtree,
+     * and those not in the data source if requested.
+     */
+    private void filter(BitSet subtree, boolean inDataSourceOnly,
+            Collection<? super String> missing) {
+        for (int i = subtree.nextSetBit(this.numDefined); i >= 0;
+                i = subtree.nextSetBit(i + 1)) {
+            if (missing != null) {
+                missing.add(this.ids[i]);
+            }
+        }
+        subtree.clear(this.numDefined, this.ids.length);
+        if (inDataSourceOnly) {
+            subtree.and(this.inDataSource);
+        }
+    }
+
+    /**
+     * Returns the closure of a proposition over the given edges, computing
+     * and keeping it if it has not been computed yet.
+     */
+    private BitSet closure(int index, int[][] edges,
+            AtomicReferenceArray<BitSet> closures) {
+        BitSet result = closures.get(index);
+        if (result == null) {
+            result = computeClosure(index, edges, closures);
+            closures.compareAndSet(index, null, result);
+        }
+        return result;
+    }
+
+    private BitSet computeClosure(int index, int[][] edges,
+            AtomicReferenceArray<BitSet> closures) {
+        BitSet result = new BitSet(this.ids.length);
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = index;
+        result.set(index);
+        while (top > 0) {
+            int current = stack[--top];
+            for (int child : edges[current]) {
+                if (!result.get(child)) {
+                    BitSet childClosure = closures.get(child);
+                    if (childClosure != null) {
+                        result.or(childClosure);
+                    } else {
+                        result.set(child);
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, top * 2);
+                        }
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -21,6 +21,7 @@ package org.protempa;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.SortedMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
@@ -37,6 +38,8 @@ import org.protempa.backend.asb.AlgorithmSourceBackend;
 import org.protempa.backend.dsb.DataSourceBackend;
 import org.protempa.backend.dsb.DataValidationEvent;
 import org.protempa.backend.ksb.KnowledgeSourceBackend;
+import org.protempa.metrics.Histogram;
+import org.protempa.metrics.Metrics;
 import org.protempa.query.Query;
 import org.protempa.query.QueryBuildException;
 import org.protempa.query.QueryBuilder;
@@ -166,6 +169,22 @@ public final class Protempa implements AutoCloseable {
         return this.abstractionFinder.getAlgorithmSource();
     }
 
+    /**
+     * Gets the histograms of the work that Protempa has done while executing
+     * queries, such as the number of keys processed by each stage, the
+     * number of propositions per key, rule firing time and query results
+     * handler latency. They are also available through JMX, and a summary is
+     * sent periodically to the event listeners as a
+     * {@link ProtempaEvent.Type#METRICS_SUMMARY} event while a query is
+     * executing.
+     *
+     * @return an unmodifiable map of histogram names to histograms, sorted by
+     * name.
+     */
+    public SortedMap<String, Histogram> getMetrics() {
+        return Metrics.getHistograms();
+    }
+
     public void addEventListener(ProtempaEventListener eventListener) {
         this.eventListeners.add(eventListener);
     }
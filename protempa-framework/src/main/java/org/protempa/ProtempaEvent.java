@@ -42,7 +42,8 @@ public class ProtempaEvent {
         DSB_QUERY_RESULT,
         QRH_STEP_START,
         QRH_STEP_STOP,
-        QRH_STEP_RESULT
+        QRH_STEP_RESULT,
+        METRICS_SUMMARY
     }
     
     private final Level level;
@@ -31,6 +31,25 @@ import org.protempa.proposition.UniqueId;
  * @author arpost
  */
 final class QueueObject {
+    
+    /**
+     * Rough retained size of a proposition, including its properties and
+     * unique id, for estimating the memory that queued results use.
+     */
+    static final long PROPOSITION_BYTES = 256;
+    
+    /**
+     * Rough retained size of an entry in a derivations map, including its
+     * set of derived propositions but not the propositions themselves.
+     */
+    static final long DERIVATION_BYTES = 128;
+    
+    /**
+     * Rough retained size of an entry in the references map, not including
+     * the proposition.
+     */
+    static final long REF_BYTES = 64;
+    
     List<Proposition> propositions;
     Map<Proposition, Set<Proposition>> forwardDerivations;
     Map<Proposition, Set<Proposition>> backwardDerivations;
@@ -50,4 +69,27 @@ final class QueueObject {
     QueueObject() {
     }
     
+    /**
+     * Estimates the memory that this object's propositions, derivations and
+     * references use.
+     * 
+     * @return a number of bytes.
+     */
+    long estimateBytes() {
+        long result = 0;
+        if (this.propositions != null) {
+            result += this.propositions.size() * PROPOSITION_BYTES;
+        }
+        if (this.forwardDerivations != null) {
+            result += this.forwardDerivations.size() * DERIVATION_BYTES;
+        }
+        if (this.backwardDerivations != null) {
+            result += this.backwardDerivations.size() * DERIVATION_BYTES;
+        }
+        if (this.refs != null) {
+            result += this.refs.size() * REF_BYTES;
+        }
+        return result;
+    }
+    
 }
@@ -0,0 +1,163 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arp.javautil.arrays.Arrays;
+import org.protempa.query.Query;
+
+/**
+ * Hands out the keys to reprocess to a pool of {@link DoReprocessThread}s.
+ * If the query specifies key ids, only those that are in the working memory
+ * data store are handed out. Otherwise, every key in the data store is
+ * handed out. Each key is handed out exactly once, to whichever worker asks
+ * for a key next, so the work is balanced among the workers no matter how
+ * long each key takes.
+ *
+ * The keys are read from the data store lazily, when the first worker asks
+ * for one, because the data store is opened by the workers' execution
+ * strategies.
+ *
+ * Also counts the keys that the workers have finished, and logs the progress
+ * and throughput every {@link #PROGRESS_INTERVAL_PROPERTY} keys.
+ *
+ * @author Andrew Post
+ */
+final class ReprocessKeySource {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(ReprocessKeySource.class.getName());
+
+    /**
+     * System property for the number of reprocessed keys between progress
+     * log messages. The default is 10000.
+     */
+    static final String PROGRESS_INTERVAL_PROPERTY
+            = "protempa.executor.reprocess.progressInterval";
+
+    private final Query query;
+    private final MessageFormat logMessageFormat;
+    private final long progressInterval;
+    private final AtomicLong processed;
+    private final long start;
+    private Iterator<String> keyIds;
+    private Set<String> storedKeyIds;
+    private boolean filter;
+    private boolean aborted;
+
+    ReprocessKeySource(Query query) {
+        assert query != null : "query cannot be null";
+        this.query = query;
+        this.logMessageFormat = ProtempaUtil.getLogMessageFormat(query);
+        long interval = Long.getLong(PROGRESS_INTERVAL_PROPERTY, 10000L);
+        this.progressInterval = interval > 0 ? interval : 10000L;
+        this.processed = new AtomicLong();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Gets the next key to reprocess.
+     *
+     * @param storedKeyIds the key ids in the working memory data store.
+     * @return a key id, or <code>null</code> if there are no more keys or
+     * the reprocessing has been aborted.
+     */
+    synchronized String next(Set<String> storedKeyIds) {
+        assert storedKeyIds != null : "storedKeyIds cannot be null";
+        if (this.aborted) {
+            return null;
+        }
+        if (this.keyIds == null) {
+            this.storedKeyIds = storedKeyIds;
+            String[] queriedKeyIds = this.query.getKeyIds();
+            this.filter = queriedKeyIds.length > 0;
+            if (this.filter) {
+                this.keyIds = Arrays.asSet(queriedKeyIds).iterator();
+            } else {
+                this.keyIds = storedKeyIds.iterator();
+            }
+        }
+        while (this.keyIds.hasNext()) {
+            String keyId = this.keyIds.next();
+            if (!this.filter || this.storedKeyIds.contains(keyId)) {
+                return keyId;
+            } else if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                        this.logMessageFormat.format(new Object[]{
+                    "Key {0} is not in the data store; skipping it"}),
+                        keyId);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records that a worker finished reprocessing a key, and logs the
+     * progress if another {@link #PROGRESS_INTERVAL_PROPERTY} keys have been
+     * reprocessed.
+     */
+    void keyProcessed() {
+        long count = this.processed.incrementAndGet();
+        if (count % this.progressInterval == 0) {
+            logProgress(count);
+        }
+    }
+
+    /**
+     * Gets the number of keys that the workers have finished reprocessing.
+     *
+     * @return the number of keys.
+     */
+    long getProcessedCount() {
+        return this.processed.get();
+    }
+
+    /**
+     * Logs the number of keys reprocessed so far and the throughput.
+     */
+    void logProgress() {
+        logProgress(this.processed.get());
+    }
+
+    /**
+     * Stops handing out keys after a worker fails. Subsequent calls to
+     * {@link #next(java.util.Set) } return <code>null</code>.
+     */
+    synchronized void abort() {
+        this.aborted = true;
+    }
+
+    private synchronized void logProgress(long count) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - this.start));
+            LOGGER.log(Level.INFO, this.logMessageFormat.format(new Object[]{
+                "Reprocessed {0} keys in {1} ms ({2} keys/s)"}),
+                    new Object[]{count, elapsedMillis,
+                        count * 1000 / elapsedMillis});
+        }
+    }
+}
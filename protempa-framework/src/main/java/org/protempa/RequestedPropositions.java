@@ -0,0 +1,226 @@
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.protempa.proposition.Proposition;
+import org.protempa.proposition.UniqueId;
+
+/**
+ * The propositions that are put in the proposition list passed to a query
+ * results handler. The references map and the derivation maps are pruned to
+ * the propositions that are reachable from the requested ones by following
+ * references and derivations, so references and derivation links still
+ * resolve to propositions that are not requested.
+ *
+ * @author Andrew Post
+ */
+final class RequestedPropositions {
+
+    private static final RequestedPropositions ALL
+            = new RequestedPropositions(null);
+
+    private final Set<String> propIds;
+
+    /**
+     * Computes the requested propositions for a query. They are the query's
+     * proposition ids and the ids that the destination says it supports,
+     * including any that its links traverse to, plus everything narrower
+     * than them by inverse is-a or abstracted from. If the destination does
+     * not specify the propositions it supports, or the query does not
+     * specify proposition ids, every proposition is requested.
+     *
+     * @param knowledgeSource the knowledge source.
+     * @param queryPropIds the query's proposition ids.
+     * @param supportedPropIds the destination's supported proposition ids.
+     * @return the requested propositions. Guaranteed not <code>null</code>.
+     * @throws KnowledgeSourceReadException if an error occurred reading from
+     * the knowledge source.
+     */
+    static RequestedPropositions getInstance(KnowledgeSource knowledgeSource,
+            Collection<String> queryPropIds, String[] supportedPropIds)
+            throws KnowledgeSourceReadException {
+        if (supportedPropIds == null || supportedPropIds.length == 0
+                || queryPropIds.isEmpty()) {
+            return ALL;
+        }
+        Set<String> ids = new HashSet<>(queryPropIds);
+        Collections.addAll(ids, supportedPropIds);
+        ids.addAll(knowledgeSource.collectPropIdDescendantsUsingAllNarrower(
+                false, ids.toArray(new String[ids.size()])));
+        return new RequestedPropositions(ids);
+    }
+
+    /**
+     * Gets an instance that requests every proposition.
+     *
+     * @return a {@link RequestedPropositions}.
+     */
+    static RequestedPropositions all() {
+        return ALL;
+    }
+
+    RequestedPropositions(Set<String> propIds) {
+        this.propIds = propIds;
+    }
+
+    /**
+     * Gets the requested proposition ids.
+     *
+     * @return an unmodifiable {@link Set} of proposition ids, or
+     * <code>null</code> if every proposition is requested.
+     */
+    Set<String> getPropositionIds() {
+        return this.propIds != null
+                ? Collections.unmodifiableSet(this.propIds) : null;
+    }
+
+    boolean isRequested(Proposition prop) {
+        return this.propIds == null || this.propIds.contains(prop.getId());
+    }
+
+    /**
+     * Collects the requested propositions, and the references and
+     * derivations that are reachable from them. Stops early if the current
+     * thread is interrupted.
+     *
+     * @param keyId the key id.
+     * @param propositions the propositions to filter. May be
+     * <code>null</code>.
+     * @param forwardDerivations the forward derivations.
+     * @param backwardDerivations the backward derivations.
+     * @param sizeHint the expected number of propositions, or
+     * <code>-1</code> if unknown.
+     * @return the results to pass to the query results handler. Their
+     * propositions are the requested propositions, in iteration order.
+     */
+    QueueObject extract(String keyId, Iterator<Proposition> propositions,
+            Map<Proposition, Set<Proposition>> forwardDerivations,
+            Map<Proposition, Set<Proposition>> backwardDerivations,
+            int sizeHint) {
+        List<Proposition> result
+                = new ArrayList<>(sizeHint > -1 ? sizeHint : 200);
+        Map<UniqueId, Proposition> refs = new HashMap<>();
+        if (propositions != null) {
+            Thread thread = Thread.currentThread();
+            while (!thread.isInterrupted() && propositions.hasNext()) {
+                Proposition prop = propositions.next();
+                refs.put(prop.getUniqueId(), prop);
+                if (isRequested(prop)) {
+                    result.add(prop);
+                }
+            }
+        }
+        if (this.propIds == null) {
+            return new QueueObject(keyId, result, forwardDerivations,
+                    backwardDerivations, refs);
+        }
+        Set<Proposition> reachable = reachable(result, refs,
+                forwardDerivations, backwardDerivations);
+        Map<UniqueId, Proposition> reachableRefs
+                = new HashMap<>(mapCapacity(reachable.size()));
+        for (Proposition prop : reachable) {
+            UniqueId uniqueId = prop.getUniqueId();
+            if (refs.containsKey(uniqueId)) {
+                reachableRefs.put(uniqueId, prop);
+            }
+        }
+        return new QueueObject(keyId, result,
+                prune(forwardDerivations, reachable),
+                prune(backwardDerivations, reachable), reachableRefs);
+    }
+
+    /**
+     * Finds the propositions that are reachable from the requested ones by
+     * following references and derivations, including the requested ones
+     * themselves.
+     */
+    private static Set<Proposition> reachable(List<Proposition> requested,
+            Map<UniqueId, Proposition> refs,
+            Map<Proposition, Set<Proposition>> forwardDerivations,
+            Map<Proposition, Set<Proposition>> backwardDerivations) {
+        Set<Proposition> result = new HashSet<>(requested);
+        Deque<Proposition> queue = new ArrayDeque<>(requested);
+        Proposition prop;
+        while ((prop = queue.poll()) != null) {
+            for (String refName : prop.getReferenceNames()) {
+                for (UniqueId uniqueId : prop.getReferences(refName)) {
+                    Proposition referenced = refs.get(uniqueId);
+                    if (referenced != null && result.add(referenced)) {
+                        queue.add(referenced);
+                    }
+                }
+            }
+            addDerived(forwardDerivations, prop, result, queue);
+            addDerived(backwardDerivations, prop, result, queue);
+        }
+        return result;
+    }
+
+    private static void addDerived(
+            Map<Proposition, Set<Proposition>> derivations, Proposition prop,
+            Set<Proposition> result, Deque<Proposition> queue) {
+        if (derivations != null) {
+            Set<Proposition> derived = derivations.get(prop);
+            if (derived != null) {
+                for (Proposition p : derived) {
+                    if (result.add(p)) {
+                        queue.add(p);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the derivations of reachable propositions. Everything that they
+     * are derived from or to is reachable too, so the sets of derived
+     * propositions are kept as they are.
+     */
+    private static Map<Proposition, Set<Proposition>> prune(
+            Map<Proposition, Set<Proposition>> derivations,
+            Set<Proposition> reachable) {
+        if (derivations == null) {
+            return null;
+        }
+        Map<Proposition, Set<Proposition>> result = new HashMap<>();
+        for (Map.Entry<Proposition, Set<Proposition>> me
+                : derivations.entrySet()) {
+            if (reachable.contains(me.getKey())) {
+                result.put(me.getKey(), me.getValue());
+            }
+        }
+        return result;
+    }
+
+    private static int mapCapacity(int size) {
+        return size * 4 / 3 + 1;
+    }
+}
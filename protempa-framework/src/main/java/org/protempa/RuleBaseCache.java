@@ -0,0 +1,380 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.drools.RuleBase;
+import org.protempa.proposition.value.ValueComparator;
+import org.protempa.query.QueryMode;
+
+/**
+ * Compiled Drools rule bases, keyed by a fingerprint of the proposition
+ * definitions, algorithms and query mode from which they were created. The
+ * fingerprint covers each algorithm's settings, and the algorithm parameter
+ * values are part of the low-level abstraction definitions. One instance is
+ * created per {@link Protempa} instance, so it serves only that instance's
+ * algorithm source, and it is cleared whenever its knowledge source or
+ * algorithm source is updated.
+ *
+ * Rule bases may optionally be serialized to the directory specified by the
+ * {@link #DIRECTORY_PROPERTY} system property so that they survive across
+ * JVMs. The fingerprint includes a stamp of the Protempa and Drools builds,
+ * so a serialized rule base is only reused by the build that created it.
+ *
+ * @author Andrew Post
+ */
+final class RuleBaseCache {
+
+    private static final Logger LOGGER = Logger.getLogger(RuleBaseCache.class.getName());
+
+    /**
+     * System property for the directory in which to store serialized rule
+     * bases. If unset, rule bases are cached in memory only.
+     */
+    static final String DIRECTORY_PROPERTY = "protempa.ruleBaseCache.directory";
+
+    /**
+     * System property for the maximum number of rule bases to keep in memory.
+     * The default is 16.
+     */
+    static final String SIZE_PROPERTY = "protempa.ruleBaseCache.size";
+
+    private static final String FILE_SUFFIX = ".rulebase";
+
+    private static final Comparator<PropositionDefinition> PROP_DEF_ID_COMP
+            = new Comparator<PropositionDefinition>() {
+        @Override
+        public int compare(PropositionDefinition o1, PropositionDefinition o2) {
+            return o1.getId().compareTo(o2.getId());
+        }
+    };
+
+    private static final String BUILD_STAMP = buildStamp();
+
+    private final Map<String, RuleBase> ruleBases;
+    private final Map<String, PropositionDefinitionDigest> propDefDigests;
+    private final Path directory;
+
+    RuleBaseCache() {
+        String dir = System.getProperty(DIRECTORY_PROPERTY);
+        this.directory = dir != null ? Paths.get(dir) : null;
+        final int size = Integer.getInteger(SIZE_PROPERTY, 16);
+        this.ruleBases = new LinkedHashMap<String, RuleBase>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RuleBase> eldest) {
+                return size() > size;
+            }
+        };
+        this.propDefDigests = new HashMap<>();
+    }
+
+    /**
+     * Returns a rule base for the given proposition definitions, creating it
+     * if it is not already cached.
+     *
+     * @param cache the proposition definitions that the rules may reference.
+     * @param propDefs the proposition definitions to create rules for.
+     * @param algorithms the algorithms for the low-level abstraction
+     * definitions in <code>propDefs</code>.
+     * @param queryMode the query mode.
+     * @return a {@link RuleBase}.
+     * @throws RuleBaseInstantiationException if an error occurred creating
+     * the rule base.
+     */
+    synchronized RuleBase getOrCreate(PropositionDefinitionCache cache,
+            Collection<PropositionDefinition> propDefs,
+            Map<LowLevelAbstractionDefinition, Algorithm> algorithms,
+            QueryMode queryMode) throws RuleBaseInstantiationException {
+        String fingerprint = fingerprint(cache, propDefs, algorithms, queryMode);
+        RuleBase ruleBase = this.ruleBases.get(fingerprint);
+        if (ruleBase != null) {
+            LOGGER.log(Level.FINE, "Reusing rule base {0}", fingerprint);
+            return ruleBase;
+        }
+        ruleBase = readRuleBase(fingerprint);
+        if (ruleBase == null) {
+            LOGGER.log(Level.FINE, "Creating rule base {0}", fingerprint);
+            JBossRuleCreator ruleCreator
+                    = new JBossRuleCreator(algorithms, cache);
+            try {
+                ruleCreator.visit(propDefs);
+            } catch (ProtempaException ex) {
+                throw new RuleBaseInstantiationException(
+                        "Could not create rules", ex);
+            }
+            ruleBase = new JBossRuleBaseFactory(ruleCreator).newInstance();
+            writeRuleBase(fingerprint, ruleBase);
+        }
+        this.ruleBases.put(fingerprint, ruleBase);
+        return ruleBase;
+    }
+
+    /**
+     * Removes all rule bases and proposition definition digests from memory.
+     * Serialized rule bases are keyed by the contents of the proposition
+     * definitions and algorithms, so they do not need to be removed.
+     */
+    synchronized void clear() {
+        this.ruleBases.clear();
+        this.propDefDigests.clear();
+    }
+
+    String fingerprint(PropositionDefinitionCache cache,
+            Collection<PropositionDefinition> propDefs,
+            Map<LowLevelAbstractionDefinition, Algorithm> algorithms,
+            QueryMode queryMode) throws RuleBaseInstantiationException {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                oos.writeObject(BUILD_STAMP);
+                oos.writeObject(queryMode.name());
+                writePropositionDefinitions(oos, propDefs);
+                writePropositionDefinitions(oos, cache.getAll());
+                List<LowLevelAbstractionDefinition> llads
+                        = new ArrayList<>(algorithms.keySet());
+                Collections.sort(llads, PROP_DEF_ID_COMP);
+                for (LowLevelAbstractionDefinition llad : llads) {
+                    oos.writeObject(llad.getId());
+                    writeAlgorithm(oos, algorithms.get(llad));
+                }
+            }
+            return toHex(sha256(baos.toByteArray()));
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            throw new RuleBaseInstantiationException(
+                    "Could not compute the rule base fingerprint", ex);
+        }
+    }
+
+    /**
+     * Writes the digests of proposition definitions in id order. One digest
+     * is remembered per proposition id, together with a weak reference to the
+     * instance it was computed from, so it is recomputed when a definition is
+     * re-read from the knowledge source, and the digests never outnumber the
+     * proposition ids that have been seen since {@link #clear() } was last
+     * called.
+     */
+    private void writePropositionDefinitions(ObjectOutputStream oos,
+            Collection<PropositionDefinition> propDefs)
+            throws IOException, NoSuchAlgorithmException {
+        List<PropositionDefinition> sorted = new ArrayList<>(propDefs.size());
+        for (PropositionDefinition propDef : propDefs) {
+            if (propDef != null) {
+                sorted.add(propDef);
+            }
+        }
+        Collections.sort(sorted, PROP_DEF_ID_COMP);
+        oos.writeInt(sorted.size());
+        for (PropositionDefinition propDef : sorted) {
+            PropositionDefinitionDigest digest
+                    = this.propDefDigests.get(propDef.getId());
+            if (digest == null || digest.propDef.get() != propDef) {
+                digest = new PropositionDefinitionDigest(propDef,
+                        sha256(serialize(propDef)));
+                this.propDefDigests.put(propDef.getId(), digest);
+            }
+            oos.write(digest.digest);
+        }
+    }
+
+    /**
+     * Writes an algorithm's settings. The algorithm's serialized form is
+     * included too if it is serializable, so that settings that subclasses
+     * add are covered.
+     */
+    private static void writeAlgorithm(ObjectOutputStream oos,
+            Algorithm algorithm) throws IOException, NoSuchAlgorithmException {
+        if (algorithm == null) {
+            oos.writeBoolean(false);
+            return;
+        }
+        oos.writeBoolean(true);
+        oos.writeObject(algorithm.getId());
+        oos.writeObject(algorithm.getClass().getName());
+        oos.writeInt(algorithm.getMinimumNumberOfValues());
+        oos.writeInt(algorithm.getMaximumNumberOfValues());
+        oos.writeInt(algorithm.getAdvanceRowSkipEnd());
+        oos.writeObject(String.valueOf(algorithm.getInValueType()));
+        AlgorithmParameter[] parameters = algorithm.getParameters();
+        oos.writeInt(parameters != null ? parameters.length : -1);
+        if (parameters != null) {
+            for (AlgorithmParameter parameter : parameters) {
+                oos.writeObject(parameter.getName());
+                oos.writeObject(String.valueOf(parameter.getValueType()));
+                ValueComparator[] comparators = parameter.getComparators();
+                oos.writeInt(comparators.length);
+                for (ValueComparator comparator : comparators) {
+                    oos.writeObject(comparator.name());
+                }
+            }
+        }
+        byte[] serialized;
+        try {
+            serialized = serialize(algorithm);
+        } catch (NotSerializableException ex) {
+            LOGGER.log(Level.FINE,
+                    "Algorithm {0} is not serializable; fingerprinting its settings only",
+                    algorithm.getId());
+            serialized = null;
+        }
+        oos.writeBoolean(serialized != null);
+        if (serialized != null) {
+            oos.write(sha256(serialized));
+        }
+    }
+
+    /**
+     * Returns the number of proposition definition digests in memory.
+     */
+    synchronized int getPropositionDefinitionDigestCount() {
+        return this.propDefDigests.size();
+    }
+
+    private static byte[] serialize(Object obj) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(obj);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] bytes)
+            throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(bytes);
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder result = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Identifies the Protempa and Drools builds by their versions and the
+     * locations and modification times of their class files.
+     */
+    private static String buildStamp() {
+        StringBuilder result = new StringBuilder();
+        for (Class<?> cls : new Class<?>[]{RuleBaseCache.class, RuleBase.class}) {
+            Package pkg = cls.getPackage();
+            result.append(pkg != null ? pkg.getImplementationVersion() : null);
+            try {
+                CodeSource codeSource
+                        = cls.getProtectionDomain().getCodeSource();
+                if (codeSource != null && codeSource.getLocation() != null) {
+                    Path location = Paths.get(codeSource.getLocation().toURI());
+                    result.append(' ').append(location).append(' ')
+                            .append(Files.getLastModifiedTime(location).toMillis());
+                }
+            } catch (URISyntaxException | IOException | SecurityException
+                    | FileSystemNotFoundException | IllegalArgumentException ex) {
+                LOGGER.log(Level.FINE,
+                        "Could not get the location of " + cls.getName(), ex);
+            }
+            result.append(';');
+        }
+        return result.toString();
+    }
+
+    private RuleBase readRuleBase(String fingerprint) {
+        if (this.directory == null) {
+            return null;
+        }
+        Path file = this.directory.resolve(fingerprint + FILE_SUFFIX);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
+            RuleBase ruleBase = (RuleBase) ois.readObject();
+            LOGGER.log(Level.FINE, "Read rule base {0}", file);
+            return ruleBase;
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            LOGGER.log(Level.WARNING, "Could not read rule base " + file + "; recreating it", ex);
+            return null;
+        }
+    }
+
+    private void writeRuleBase(String fingerprint, RuleBase ruleBase) {
+        if (this.directory == null) {
+            return;
+        }
+        Path file = this.directory.resolve(fingerprint + FILE_SUFFIX);
+        Path tmpFile = null;
+        try {
+            Files.createDirectories(this.directory);
+            tmpFile = Files.createTempFile(this.directory, fingerprint, ".tmp");
+            try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(tmpFile))) {
+                oos.writeObject(ruleBase);
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            tmpFile = null;
+            LOGGER.log(Level.FINE, "Wrote rule base {0}", file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not write rule base " + file, ex);
+        } finally {
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    private static final class PropositionDefinitionDigest {
+
+        private final WeakReference<PropositionDefinition> propDef;
+        private final byte[] digest;
+
+        PropositionDefinitionDigest(PropositionDefinition propDef,
+                byte[] digest) {
+            this.propDef = new WeakReference<>(propDef);
+            this.digest = digest;
+        }
+    }
+}
@@ -52,7 +52,6 @@ class SequentialTemporalPatternConsequence implements Consequence {
     private static final Logger LOGGER = Logger.getLogger(SequentialTemporalPatternConsequence.class.getName());
     private final SequentialTemporalPatternDefinition def;
     private final TemporalExtendedPropositionDefinition[] epds;
-    private final DerivationsBuilder derivationsBuilder;
     private int parameterMapCapacity;
     private List<List<TemporalExtendedPropositionDefinition>> epdPairs;
     private Map<List<TemporalExtendedPropositionDefinition>, Relation> epdToRelation;
@@ -63,8 +62,7 @@ class SequentialTemporalPatternConsequence implements Consequence {
      * <code>null</code>.
      * @param columns the number of parameters, must be greater than zero.
      */
-    SequentialTemporalPatternConsequence(SequentialTemporalPatternDefinition def,
-            DerivationsBuilder derivationsBuilder) {
+    SequentialTemporalPatternConsequence(SequentialTemporalPatternDefinition def) {
         assert def != null : "def cannot be null";
         this.def = def;
         SubsequentTemporalExtendedPropositionDefinition[] relatedTemporalExtendedPropositionDefinitions = 
@@ -79,7 +77,6 @@ class SequentialTemporalPatternConsequence implements Consequence {
                     relatedTemporalExtendedPropositionDefinitions[i - 1].getRelatedTemporalExtendedPropositionDefinition();
         }
         this.epds = epds;
-        this.derivationsBuilder = derivationsBuilder;
         this.parameterMapCapacity = this.epds.length * 4 / 3 + 1;
         this.epdPairs = 
                 new ArrayList<>();
@@ -185,8 +182,10 @@ class SequentialTemporalPatternConsequence implements Consequence {
                 def.getPropositionId(), uniqueId,
                 segment, subList, null, temporalOffset, epds, null);
         knowledgeHelper.insertLogical(result);
+        DerivationsBuilder derivationsBuilder = 
+                WorkingMemoryGlobals.getDerivationsBuilder(knowledgeHelper.getWorkingMemory());
         for (Proposition proposition : segment) {
-            this.derivationsBuilder.propositionAsserted(proposition, result);
+            derivationsBuilder.propositionAsserted(proposition, result);
         }
         LOGGER.log(Level.FINER, "Asserted derived proposition {0}", result);
     }
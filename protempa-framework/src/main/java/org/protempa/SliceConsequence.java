@@ -47,9 +47,6 @@ final class SliceConsequence implements Consequence {
 
     private final SliceDefinition def;
 
-    private final PropositionCopier copier;
-    
-    private final DerivationsBuilder derivationsBuilder;
 
     /*
      * A sublist index range for performing the slice. This will not necessarily
@@ -78,20 +75,15 @@ final class SliceConsequence implements Consequence {
 
     /**
      * Constructs a consequence instance with a definition of the temporal slice
-     * to compute and a derivations builder for recording links between computed
-     * temporal slices and the intervals from which they were derived.
+     * to compute.
      * 
      * @param def
      *            a {@link SliceDefinition} corresponding to this rule.
-     * @param listener
-     *            a {@link DerivationsBuilder}.
      */
-    SliceConsequence(SliceDefinition def, DerivationsBuilder listener) {
+    SliceConsequence(SliceDefinition def) {
         assert def != null : "def cannot be null";
-        assert listener != null : "listener cannot be null";
         
         this.def = def;
-        this.derivationsBuilder = listener;
         
         int minInd = def.getMinIndex();
         int maxInd = def.getMaxIndex();
@@ -105,7 +97,6 @@ final class SliceConsequence implements Consequence {
             this.reverse = false;
         }
         this.merged = def.isMergedInterval();
-        this.copier = new PropositionCopier(def.getPropositionId(), listener);
     }
 
     /**
@@ -132,18 +123,20 @@ final class SliceConsequence implements Consequence {
             comp = ProtempaUtil.TEMP_PROP_COMP;
         }
         Collections.sort(pl, comp);
-        this.copier.grab(arg0);
         if (this.merged) {
             mergedInterval(arg0, pl);
         } else {
+            PropositionCopier copier = 
+                    new PropositionCopier(this.def.getPropositionId());
+            copier.grab(arg0);
             for (ListIterator<TemporalProposition> itr = pl
                     .listIterator(this.minIndex); itr.hasNext()
                     && itr.nextIndex() < this.maxIndex;) {
                 TemporalProposition o = itr.next();
-                o.accept(this.copier);
+                o.accept(copier);
             }
+            copier.release();
         }
-        this.copier.release();
     }
 
     private void mergedInterval(KnowledgeHelper kh, List<TemporalProposition> pl) {
@@ -160,8 +153,10 @@ final class SliceConsequence implements Consequence {
         AbstractParameter result = AbstractParameterFactory.getFromAbstraction(
                 def.getPropositionId(), factory.getInstance(), segment, slice, null, null, null, null);
         kh.insertLogical(result);
+        DerivationsBuilder derivationsBuilder = 
+                WorkingMemoryGlobals.getDerivationsBuilder(kh.getWorkingMemory());
         for (Proposition p : segment) {
-            this.derivationsBuilder.propositionAsserted(p, result);
+            derivationsBuilder.propositionAsserted(p, result);
         }
     }
 }
@@ -19,7 +19,6 @@
  */
 package org.protempa;
 
-import java.io.IOError;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,21 +27,24 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.apache.commons.collections4.iterators.IteratorChain;
 import org.arp.javautil.arrays.Arrays;
 import org.drools.FactException;
+import org.drools.RuleBase;
 import org.drools.StatefulSession;
 
-import org.eurekaclinical.datastore.DataStore;
 import org.protempa.datastore.WorkingMemoryDataStores;
 import org.protempa.proposition.Proposition;
 import org.protempa.query.Query;
@@ -52,17 +54,82 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
 
     private static final Logger LOGGER = Logger.getLogger(StatefulExecutionStrategy.class.getName());
 
+    /**
+     * System property for the number of keys' working memories to buffer 
+     * before writing them to the data store in one batch. The default is 100.
+     */
+    static final String BATCH_SIZE_PROPERTY = "protempa.stateful.batchSize";
+
+    /**
+     * System property for when the data store is synced to disk and the
+     * proposition definitions stored alongside it are written. Allowed values
+     * are the names of the {@link Durability} constants. The default is
+     * {@link Durability#END}.
+     */
+    static final String DURABILITY_PROPERTY = "protempa.stateful.durability";
+
+    /**
+     * When the data store is synced to disk and its proposition definitions
+     * are written.
+     */
+    enum Durability {
+        /**
+         * After every batch of working memories is written, so that the
+         * batches written so far survive if processing stops unexpectedly.
+         */
+        BATCH,
+        /**
+         * Once, when the last of the query's execution strategies is shut
+         * down.
+         */
+        END
+    }
+
+    /**
+     * A working memory data store that is shared by the execution strategies
+     * of one query's worker threads. It is opened by the first of them to be
+     * initialized, and it is finished and closed by the last of them to be
+     * shut down. The first of them also checks the query mode against the
+     * data store's proposition definitions, updates them, and creates the
+     * rule base, which the others reuse.
+     */
+    private static final class SharedDataStore {
+
+        private final WorkingMemoryDataStores workingMemoryDataStores;
+        private final WorkingMemoryStore store;
+        private final RuleBase ruleBase;
+        private int users;
+
+        SharedDataStore(WorkingMemoryDataStores workingMemoryDataStores,
+                WorkingMemoryStore store, RuleBase ruleBase) {
+            this.workingMemoryDataStores = workingMemoryDataStores;
+            this.store = store;
+            this.ruleBase = ruleBase;
+            this.users = 1;
+        }
+    }
+
+    private static final Map<Query, SharedDataStore> SHARED_DATA_STORES
+            = new IdentityHashMap<>();
+
     private final Path databasePath;
-    private DataStore<String, WorkingMemoryFactStore> dataStore;
+    private WorkingMemoryStore store;
+    private WorkingMemoryWriter writer;
     private WorkingMemoryDataStores workingMemoryDataStores;
     private StatefulSession workingMemory;
     private final DeletedWorkingMemoryEventListener workingMemoryEventListener;
     private List<Proposition> propsToDelete;
     private final String databaseName;
     private final Path databaseDir;
+    private final int batchSize;
+    private Durability durability;
+    private RuleBase sharedRuleBase;
+    private SharedDataStore shared;
 
-    StatefulExecutionStrategy(AlgorithmSource algorithmSource, Query query) {
-        super(algorithmSource, query);
+    StatefulExecutionStrategy(AlgorithmSource algorithmSource, 
+            RuleBaseCache ruleBaseCache, Query query,
+            ExecutorMetrics metrics) {
+        super(algorithmSource, ruleBaseCache, query, metrics);
         assert query != null : "query cannot be null";
         String dbPath = query.getDatabasePath();
         assert dbPath != null : "query.getDatabasePath() cannot return a null value";
@@ -71,19 +138,61 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
         this.databaseName = this.databasePath.getFileName().toString();
         this.workingMemoryEventListener = new DeletedWorkingMemoryEventListener();
         this.propsToDelete = new ArrayList<>();
+        int bs = Integer.getInteger(BATCH_SIZE_PROPERTY, 100);
+        this.batchSize = bs > 0 ? bs : 1;
     }
 
     @Override
     public void initialize(PropositionDefinitionCache cache) throws ExecutionStrategyInitializationException {
-        createDataStoreManager(cache);
-        super.initialize(cache);
-        getOrCreateDataStore();
+        this.durability = readDurability();
+        synchronized (SHARED_DATA_STORES) {
+            SharedDataStore sharedDataStore
+                    = SHARED_DATA_STORES.get(getQuery());
+            if (sharedDataStore == null) {
+                createDataStoreManager(cache);
+                super.initialize(cache);
+                getOrCreateDataStore();
+                sharedDataStore = new SharedDataStore(
+                        this.workingMemoryDataStores, this.store,
+                        getRuleBase());
+                SHARED_DATA_STORES.put(getQuery(), sharedDataStore);
+            } else {
+                /*
+                 * Nothing of the shared data store is kept until this
+                 * execution strategy is counted as one of its users, so
+                 * that shutting down after a failure here leaves it open.
+                 */
+                this.sharedRuleBase = sharedDataStore.ruleBase;
+                super.initialize(cache);
+                this.workingMemoryDataStores
+                        = sharedDataStore.workingMemoryDataStores;
+                this.store = sharedDataStore.store;
+                sharedDataStore.users++;
+            }
+            this.shared = sharedDataStore;
+            this.writer = new WorkingMemoryWriter(this.store, this.batchSize);
+        }
+    }
+
+    private static Durability readDurability()
+            throws ExecutionStrategyInitializationException {
+        String value = System.getProperty(DURABILITY_PROPERTY,
+                Durability.END.name());
+        try {
+            return Durability.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new ExecutionStrategyInitializationException(
+                    "Invalid value for system property " + DURABILITY_PROPERTY
+                    + ": " + value + "; expected one of "
+                    + java.util.Arrays.toString(Durability.values()), ex);
+        }
     }
 
     @Override
     public Iterator<Proposition> execute(String keyId, Iterator<? extends Proposition> objects) throws ExecutionStrategyExecutionException {
-        getOrCreateWorkingMemoryInstance(keyId);
-        updateWorkingMemory(keyId, objects);
+        WorkingMemoryFactStore factStore = this.writer.get(keyId);
+        getOrCreateWorkingMemoryInstance(keyId, factStore);
+        updateWorkingMemory(objects, factStore);
         fireAllRules();
         cleanupAndPersistWorkingMemory(keyId);
         return getWorkingMemoryIterator();
@@ -97,26 +206,51 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
 
     @Override
     public void shutdown() throws ExecutionStrategyShutdownException {
-        ExecutionStrategyShutdownException exception1 = closeDataStore();
-        ExecutionStrategyShutdownException exception2 = closeDataStoreManager();
-        if (exception1 != null && exception2 != null) {
-            exception1.addSuppressed(exception2);
-            throw exception1;
-        } else if (exception1 != null) {
-            throw exception1;
-        } else if (exception2 != null) {
-            throw exception2;
+        ExecutionStrategyShutdownException flushException = flushPendingWrites();
+        ExecutionStrategyShutdownException[] exceptions;
+        if (releaseDataStore()) {
+            exceptions = new ExecutionStrategyShutdownException[]{
+                flushException, finish(), closeDataStore()};
+        } else {
+            exceptions = new ExecutionStrategyShutdownException[]{flushException};
+        }
+        ExecutionStrategyShutdownException exception = null;
+        for (ExecutionStrategyShutdownException ex : exceptions) {
+            if (ex != null) {
+                if (exception == null) {
+                    exception = ex;
+                } else {
+                    exception.addSuppressed(ex);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
         }
     }
 
-    public DataStore<String, WorkingMemoryFactStore> getDataStore() {
-        return this.dataStore;
+    /**
+     * Gets the key ids in the data store.
+     *
+     * @return a {@link Set} of key ids.
+     */
+    Set<String> getKeyIds() {
+        return this.store.getKeyIds();
     }
 
+    /**
+     * Creates the rule base for the query mode. This checks the queried
+     * proposition ids against the data store's proposition definitions and,
+     * for {@link QueryMode#REPROCESS_DELETE}, removes them from the data
+     * store's proposition definitions, so it runs only in the first of a
+     * query's execution strategies to be initialized. The others reuse its
+     * rule base.
+     */
     @Override
-    protected JBossRuleCreator newRuleCreator() throws ExecutionStrategyInitializationException {
-        ValidateAlgorithmCheckedVisitor visitor
-                = new ValidateAlgorithmCheckedVisitor(getAlgorithmSource());
+    protected RuleBase newRuleBase() throws ExecutionStrategyInitializationException {
+        if (this.sharedRuleBase != null) {
+            return this.sharedRuleBase;
+        }
         PropositionDefinitionCache cache;
         Collection<PropositionDefinition> propDefs; //same as cache.getAll()
         Query query = getQuery();
@@ -181,20 +315,7 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
             default:
                 throw new AssertionError("Unexpected query mode " + query.getQueryMode());
         }
-        try {
-            visitor.visit(propDefs);
-        } catch (ProtempaException ex) {
-            throw new ExecutionStrategyInitializationException(ex);
-        }
-        JBossRuleCreator ruleCreator = new JBossRuleCreator(
-                visitor.getAlgorithms(), getDerivationsBuilder(),
-                cache);
-        try {
-            ruleCreator.visit(propDefs);
-        } catch (ProtempaException ex) {
-            throw new ExecutionStrategyInitializationException(ex);
-        }
-        return ruleCreator;
+        return getOrCreateRuleBase(cache, propDefs);
     }
 
     private PropositionDefinitionCache newCacheWithPropDefsThatWeNeedToCompute(Collection<PropositionDefinition> propDefs) {
@@ -247,48 +368,56 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
 
     private void getOrCreateDataStore() throws ExecutionStrategyInitializationException {
         try {
-            this.dataStore = this.workingMemoryDataStores.getDataStore();
+            this.store = new WorkingMemoryStore(this.workingMemoryDataStores,
+                    this.durability);
             LOGGER.log(Level.FINE, "Opened data store {0}", this.databasePath.toString());
         } catch (IOException ex) {
             throw new ExecutionStrategyInitializationException(ex);
         }
 
         if (getQuery().getQueryMode() == QueryMode.REPLACE) {
-            this.dataStore.clear();
+            this.store.clear();
             LOGGER.log(Level.FINE, "Cleared data store {0}", this.databasePath.toString());
         }
     }
 
-    private void getOrCreateWorkingMemoryInstance(String keyId) {
-        createWorkingMemory(keyId);
+    private void getOrCreateWorkingMemoryInstance(String keyId,
+            WorkingMemoryFactStore factStore) {
+        createWorkingMemory(keyId, factStore);
         this.workingMemory.addEventListener(
                 this.workingMemoryEventListener);
     }
 
-    private void createWorkingMemory(String keyId) {
+    private void createWorkingMemory(String keyId,
+            WorkingMemoryFactStore factStore) {
         this.workingMemory = getRuleBase().newStatefulSession(true);
         this.workingMemory.setGlobal(WorkingMemoryGlobals.KEY_ID, keyId);
-        if (this.dataStore != null) {
-            WorkingMemoryFactStore factStore = this.dataStore.get(keyId);
-            if (factStore != null) {
-                Map<String, Integer> instanceNums = factStore.getInstanceNums();
-                if (instanceNums != null) {
-                    this.workingMemory.setGlobal(WorkingMemoryGlobals.DERIVED_UNIQUE_ID_COUNTS, this.dataStore.get(keyId).getInstanceNums());
-                }
+        this.workingMemory.setGlobal(WorkingMemoryGlobals.DERIVATIONS_BUILDER, getDerivationsBuilder());
+        if (factStore != null) {
+            Map<String, Integer> instanceNums = factStore.getInstanceNums();
+            if (instanceNums != null) {
+                this.workingMemory.setGlobal(WorkingMemoryGlobals.DERIVED_UNIQUE_ID_COUNTS, instanceNums);
             }
         }
     }
 
-    private void updateWorkingMemory(String keyId, Iterator<?> objects)
-            throws FactException {
+    private void updateWorkingMemory(Iterator<?> objects,
+            WorkingMemoryFactStore factStore) throws FactException {
         if (objects != null) {
             while (objects.hasNext()) {
                 this.workingMemory.insert((Proposition) objects.next());
             }
         }
-        if (this.dataStore != null) {
-            WorkingMemoryFactStore factStore = this.dataStore.get(keyId);
-            QueryMode queryMode = getQuery().getQueryMode();
+        QueryMode queryMode = getQuery().getQueryMode();
+        if (Arrays.contains(QueryMode.reprocessModes(), queryMode)) {
+            /*
+             * When reprocessing, the data store is where the propositions
+             * are retrieved from.
+             */
+            getMetrics().recordRetrievedPropositions(factStore != null
+                    ? factStore.getPropositions().size() : 0);
+        }
+        if (factStore != null) {
             switch (queryMode) {
                 case REPROCESS_UPDATE:
                 case REPROCESS_DELETE:
@@ -317,7 +446,10 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
     }
 
     private void fireAllRules() throws FactException {
+        long start = System.nanoTime();
         this.workingMemory.fireAllRules();
+        getMetrics().recordRuleFiring(
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
         this.propsToDelete.addAll(this.workingMemoryEventListener.getPropsToDelete());
     }
 
@@ -328,20 +460,6 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
                 "Persisting working memory for key ID {0}", keyId);
         WorkingMemoryFactStore factStore = new WorkingMemoryFactStore();
         Set<Proposition> realPropsToDelete = new HashSet<>(this.propsToDelete);
-        Map<Proposition, Set<Proposition>> forwardDerivationsCopy = new HashMap<>();
-        for (Map.Entry<Proposition, Set<Proposition>> me : getDerivationsBuilder().getForwardDerivations().entrySet()) {
-            Proposition p = me.getKey();
-            Set<Proposition> values = me.getValue();
-            forwardDerivationsCopy.put(p, new HashSet<>(values));
-        }
-        Map<Proposition, Set<Proposition>> backwardsDerivationsCopy = new HashMap<>();
-        for (Map.Entry<Proposition, Set<Proposition>> me : getDerivationsBuilder().getBackwardDerivations().entrySet()) {
-            Proposition p = me.getKey();
-            Set<Proposition> values = me.getValue();
-            backwardsDerivationsCopy.put(p, new HashSet<>(values));
-        }
-        factStore.setForwardDerivations(forwardDerivationsCopy);
-        factStore.setBackwardDerivations(backwardsDerivationsCopy);
         List<Proposition> facts = new ArrayList<>();
         Iterator factItr = this.workingMemory.iterateObjects();
         while (factItr.hasNext()) {
@@ -349,12 +467,24 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
             realPropsToDelete.remove(prop);
             facts.add(prop);
         }
-        factStore.removeAll(realPropsToDelete);
+        /*
+         * The derivations builder's maps are replaced rather than modified 
+         * after each key, so they only need to be copied if removing deleted
+         * propositions below would change what the query results handler 
+         * sees.
+         */
+        if (realPropsToDelete.isEmpty()) {
+            factStore.setForwardDerivations(getDerivationsBuilder().getForwardDerivations());
+            factStore.setBackwardDerivations(getDerivationsBuilder().getBackwardDerivations());
+        } else {
+            factStore.setForwardDerivations(copyDerivations(getDerivationsBuilder().getForwardDerivations()));
+            factStore.setBackwardDerivations(copyDerivations(getDerivationsBuilder().getBackwardDerivations()));
+            factStore.removeAll(realPropsToDelete);
+        }
         factStore.setPropositions(facts);
         factStore.setInstanceNums((Map<String, Integer>) this.workingMemory.getGlobal(WorkingMemoryGlobals.DERIVED_UNIQUE_ID_COUNTS));
-        this.dataStore.put(keyId, factStore);
         try {
-            this.workingMemoryDataStores.finish();
+            this.writer.put(keyId, factStore);
         } catch (IOException ex) {
             throw new ExecutionStrategyExecutionException(ex);
         }
@@ -362,27 +492,75 @@ class StatefulExecutionStrategy extends AbstractExecutionStrategy {
                 "Persisted working memory for key ID {0}", keyId);
     }
 
-    private Iterator<Proposition> getWorkingMemoryIterator() {
-        return (Iterator<Proposition>) new IteratorChain(
-                this.workingMemory.iterateObjects(),
-                this.propsToDelete.iterator());
+    private static Map<Proposition, Set<Proposition>> copyDerivations(
+            Map<Proposition, Set<Proposition>> derivations) {
+        Map<Proposition, Set<Proposition>> result = new HashMap<>(derivations.size() * 4 / 3 + 1);
+        for (Map.Entry<Proposition, Set<Proposition>> me : derivations.entrySet()) {
+            result.put(me.getKey(), new HashSet<>(me.getValue()));
+        }
+        return result;
     }
 
-    private ExecutionStrategyShutdownException closeDataStore() {
-        if (this.dataStore != null) {
+    private ExecutionStrategyShutdownException flushPendingWrites() {
+        if (this.writer != null) {
             try {
-                this.dataStore.close();
-            } catch (IOError err) {
-                return new ExecutionStrategyShutdownException(err);
+                this.writer.flush();
+            } catch (IOException | RuntimeException ex) {
+                return new ExecutionStrategyShutdownException(ex);
             }
         }
         return null;
     }
 
-    private ExecutionStrategyShutdownException closeDataStoreManager() {
+    /**
+     * Stops using the shared data store.
+     *
+     * @return <code>true</code> if this was the last execution strategy
+     * using it, or if this execution strategy failed to initialize before it
+     * started using it, in which case this execution strategy must finish
+     * and close whatever data store it opened itself.
+     */
+    private boolean releaseDataStore() {
+        synchronized (SHARED_DATA_STORES) {
+            if (this.shared == null) {
+                return true;
+            }
+            SharedDataStore sharedDataStore = this.shared;
+            this.shared = null;
+            if (--sharedDataStore.users == 0) {
+                SHARED_DATA_STORES.remove(getQuery());
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private ExecutionStrategyShutdownException finish() {
+        if (this.store != null) {
+            try {
+                this.store.finish();
+            } catch (IOException | RuntimeException ex) {
+                return new ExecutionStrategyShutdownException(ex);
+            }
+        }
+        return null;
+    }
+
+    private Iterator<Proposition> getWorkingMemoryIterator() {
+        return (Iterator<Proposition>) new IteratorChain(
+                this.workingMemory.iterateObjects(),
+                this.propsToDelete.iterator());
+    }
+
+    private ExecutionStrategyShutdownException closeDataStore() {
         try {
-            this.workingMemoryDataStores.close();
-        } catch (IOException ex) {
+            if (this.store != null) {
+                this.store.close();
+            } else if (this.workingMemoryDataStores != null) {
+                this.workingMemoryDataStores.close();
+            }
+        } catch (IOException | RuntimeException ex) {
             return new ExecutionStrategyShutdownException(ex);
         }
         return null;
@@ -19,12 +19,13 @@
  */
 package org.protempa;
 
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.collections4.iterators.IteratorChain;
 import org.arp.javautil.collections.Iterators;
 
+import org.drools.RuleBase;
 import org.drools.StatelessSession;
 import org.drools.StatelessSessionResult;
 import org.protempa.proposition.Proposition;
@@ -35,8 +36,10 @@ class StatelessExecutionStrategy extends AbstractExecutionStrategy {
     private StatelessSession statelessSession;
     private final DeletedWorkingMemoryEventListener workingMemoryEventListener;
 
-    StatelessExecutionStrategy(AlgorithmSource algorithmSource, Query query) {
-        super(algorithmSource, query);
+    StatelessExecutionStrategy(AlgorithmSource algorithmSource, 
+            RuleBaseCache ruleBaseCache, Query query,
+            ExecutorMetrics metrics) {
+        super(algorithmSource, ruleBaseCache, query, metrics);
         this.workingMemoryEventListener = new DeletedWorkingMemoryEventListener();
     }
 
@@ -44,6 +47,8 @@ class StatelessExecutionStrategy extends AbstractExecutionStrategy {
     public void initialize(PropositionDefinitionCache cache) throws ExecutionStrategyInitializationException {
         super.initialize(cache);
         this.statelessSession = getRuleBase().newStatelessSession();
+        this.statelessSession.setGlobal(WorkingMemoryGlobals.DERIVATIONS_BUILDER, 
+                getDerivationsBuilder());
     }
 
     @Override
@@ -51,8 +56,11 @@ class StatelessExecutionStrategy extends AbstractExecutionStrategy {
     public Iterator<Proposition> execute(String keyId, Iterator<? extends Proposition> props) {
         this.statelessSession.setGlobal(WorkingMemoryGlobals.KEY_ID, keyId);
         this.statelessSession.addEventListener(this.workingMemoryEventListener);
+        long start = System.nanoTime();
         StatelessSessionResult result = this.statelessSession
                 .executeWithResults(Iterators.asCollection(props));
+        getMetrics().recordRuleFiring(
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
         this.statelessSession.removeEventListener(this.workingMemoryEventListener);
         List<Proposition> propsToDelete = this.workingMemoryEventListener.getPropsToDelete();
         this.workingMemoryEventListener.clear();
@@ -68,25 +76,9 @@ class StatelessExecutionStrategy extends AbstractExecutionStrategy {
     }
     
     @Override
-    protected JBossRuleCreator newRuleCreator() throws ExecutionStrategyInitializationException {
-        ValidateAlgorithmCheckedVisitor visitor = new ValidateAlgorithmCheckedVisitor(
-                getAlgorithmSource());
+    protected RuleBase newRuleBase() throws ExecutionStrategyInitializationException {
         PropositionDefinitionCache cache = getCache();
-        Collection<PropositionDefinition> propDefs = cache.getAll(); 
-        try {
-            visitor.visit(propDefs);
-        } catch (ProtempaException ex) {
-            throw new ExecutionStrategyInitializationException(ex);
-        }
-        JBossRuleCreator ruleCreator = new JBossRuleCreator(
-                visitor.getAlgorithms(), getDerivationsBuilder(),
-                cache);
-        try {
-            ruleCreator.visit(propDefs);
-        } catch (ProtempaException ex) {
-            throw new ExecutionStrategyInitializationException(ex);
-        }
-        return ruleCreator;
+        return getOrCreateRuleBase(cache, cache.getAll());
     }
     
 }
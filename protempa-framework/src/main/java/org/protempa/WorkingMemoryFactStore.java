@@ -19,6 +19,7 @@ package org.protempa;
  * limitations under the License.
  * #L%
  */
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -34,6 +35,12 @@ import org.arp.javautil.arrays.Arrays;
 import org.protempa.proposition.Proposition;
 
 /**
+ * A key's propositions and derivations, as persisted between stateful
+ * queries. By default, fact stores are serialized in the compact form
+ * implemented by {@link CompactWorkingMemoryFactStore}. Set the
+ * {@link #JAVA_SERIALIZATION_PROPERTY} system property to
+ * <code>true</code> to use default Java serialization instead. Fact stores
+ * in either form can be read regardless of the property's value.
  *
  * @author Andrew Post
  */
@@ -41,6 +48,16 @@ public class WorkingMemoryFactStore implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * System property for serializing fact stores with default Java
+     * serialization rather than the compact form.
+     */
+    public static final String JAVA_SERIALIZATION_PROPERTY
+            = "protempa.workingMemoryFactStore.javaSerialization";
+
+    private static final boolean JAVA_SERIALIZATION
+            = Boolean.getBoolean(JAVA_SERIALIZATION_PROPERTY);
+
     private List<Proposition> propositions;
     private Map<Proposition, Set<Proposition>> forwardDerivations;
     private Map<Proposition, Set<Proposition>> backwardDerivations;
@@ -156,4 +173,12 @@ public class WorkingMemoryFactStore implements Serializable {
         return removedProps;
     }
 
+    private Object writeReplace() throws ObjectStreamException {
+        if (JAVA_SERIALIZATION) {
+            return this;
+        } else {
+            return new CompactWorkingMemoryFactStore(this);
+        }
+    }
+
 }
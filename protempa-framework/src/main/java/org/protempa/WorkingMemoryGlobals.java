@@ -21,6 +21,7 @@ package org.protempa;
  */
 
 import java.util.Map;
+import org.drools.WorkingMemory;
 import org.drools.rule.Package;
 
 /**
@@ -32,6 +33,19 @@ class WorkingMemoryGlobals {
     static void addAll(Package rules) {
         rules.addGlobal(KEY_ID, String.class);
         rules.addGlobal(DERIVED_UNIQUE_ID_COUNTS, Map.class);
+        rules.addGlobal(DERIVATIONS_BUILDER, DerivationsBuilder.class);
+    }
+
+    /**
+     * Gets the derivations builder of the given working memory. It is a 
+     * global rather than a field of the consequences so that one rule base
+     * can be shared by multiple sessions.
+     * 
+     * @param workingMemory a {@link WorkingMemory}.
+     * @return a {@link DerivationsBuilder}.
+     */
+    static DerivationsBuilder getDerivationsBuilder(WorkingMemory workingMemory) {
+        return (DerivationsBuilder) workingMemory.getGlobal(DERIVATIONS_BUILDER);
     }
     private WorkingMemoryGlobals() {}
     
@@ -39,4 +53,6 @@ class WorkingMemoryGlobals {
     
     static final String DERIVED_UNIQUE_ID_COUNTS = "derivedUniqueIdCounts";
     
+    static final String DERIVATIONS_BUILDER = "derivationsBuilder";
+    
 }
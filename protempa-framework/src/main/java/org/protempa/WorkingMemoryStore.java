@@ -0,0 +1,210 @@
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eurekaclinical.datastore.DataStore;
+import org.protempa.datastore.DataStoreExistsException;
+import org.protempa.datastore.DataStores;
+
+/**
+ * The working memory data store of a stateful query, which the execution
+ * strategies of the query's worker threads share. Reads and writes may
+ * happen concurrently. Syncing excludes them, because it closes the data
+ * store, which writes its contents to disk, and then reopens it.
+ *
+ * @author Andrew Post
+ */
+final class WorkingMemoryStore {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(WorkingMemoryStore.class.getName());
+
+    private final DataStores dataStores;
+    private final StatefulExecutionStrategy.Durability durability;
+    private final ReadWriteLock lock;
+    private DataStore<String, WorkingMemoryFactStore> dataStore;
+
+    /**
+     * Opens the data store.
+     *
+     * @param dataStores the data store's manager.
+     * @param durability when the data store is synced.
+     * @throws IOException if an error occurred opening the data store.
+     */
+    WorkingMemoryStore(DataStores dataStores,
+            StatefulExecutionStrategy.Durability durability)
+            throws IOException {
+        assert dataStores != null : "dataStores cannot be null";
+        assert durability != null : "durability cannot be null";
+        this.dataStores = dataStores;
+        this.durability = durability;
+        this.lock = new ReentrantReadWriteLock();
+        this.dataStore = open();
+    }
+
+    /**
+     * Gets a key's working memory.
+     *
+     * @param keyId a key id.
+     * @return the working memory, or <code>null</code> if the data store has
+     * none for the key.
+     */
+    WorkingMemoryFactStore get(String keyId) {
+        this.lock.readLock().lock();
+        try {
+            return this.dataStore.get(keyId);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a batch of working memories, and syncs the data store
+     * afterward if the durability is
+     * {@link StatefulExecutionStrategy.Durability#BATCH}.
+     *
+     * @param factStores the working memories by key id.
+     * @throws IOException if an error occurred syncing the data store.
+     */
+    void putAll(Map<String, WorkingMemoryFactStore> factStores)
+            throws IOException {
+        this.lock.readLock().lock();
+        try {
+            this.dataStore.putAll(factStores);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        if (this.durability == StatefulExecutionStrategy.Durability.BATCH) {
+            sync();
+        }
+    }
+
+    /**
+     * Gets the key ids in the data store. If the durability is
+     * {@link StatefulExecutionStrategy.Durability#BATCH}, this is a copy,
+     * because syncing invalidates the data store's key set.
+     *
+     * @return a {@link Set} of key ids.
+     */
+    Set<String> getKeyIds() {
+        this.lock.readLock().lock();
+        try {
+            if (this.durability == StatefulExecutionStrategy.Durability.BATCH) {
+                return new HashSet<>(this.dataStore.keySet());
+            } else {
+                return this.dataStore.keySet();
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all working memories from the data store.
+     */
+    void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.dataStore.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes and reopens the data store, which writes its contents to disk,
+     * and writes the data store's proposition definitions.
+     *
+     * @throws IOException if an error occurred.
+     */
+    void sync() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            closeDataStore();
+            this.dataStore = open();
+            this.dataStores.finish();
+            LOGGER.log(Level.FINER, "Synced the working memory data store");
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the data store's proposition definitions.
+     *
+     * @throws IOException if an error occurred.
+     */
+    void finish() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            this.dataStores.finish();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the data store and its manager.
+     *
+     * @throws IOException if an error occurred.
+     */
+    void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            try {
+                closeDataStore();
+            } finally {
+                this.dataStores.close();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private DataStore<String, WorkingMemoryFactStore> open()
+            throws IOException {
+        try {
+            return this.dataStores.getDataStore();
+        } catch (DataStoreExistsException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private void closeDataStore() throws IOException {
+        if (this.dataStore != null) {
+            try {
+                this.dataStore.close();
+            } catch (IOError err) {
+                throw new IOException(err);
+            } finally {
+                this.dataStore = null;
+            }
+        }
+    }
+}
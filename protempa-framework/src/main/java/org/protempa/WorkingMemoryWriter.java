@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Buffers one worker thread's working memories, and writes them to the
+ * query's {@link WorkingMemoryStore} in batches.
+ *
+ * @author Andrew Post
+ */
+final class WorkingMemoryWriter {
+
+    private static final Logger LOGGER
+            = Logger.getLogger(WorkingMemoryWriter.class.getName());
+
+    private final WorkingMemoryStore store;
+    private final int batchSize;
+    private final Map<String, WorkingMemoryFactStore> pendingWrites;
+
+    /**
+     * Creates a writer.
+     *
+     * @param store the data store to write to.
+     * @param batchSize the number of working memories to buffer before
+     * writing them. Must be positive.
+     */
+    WorkingMemoryWriter(WorkingMemoryStore store, int batchSize) {
+        assert store != null : "store cannot be null";
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.store = store;
+        this.batchSize = batchSize;
+        this.pendingWrites = new LinkedHashMap<>();
+    }
+
+    /**
+     * Gets a key's working memory, including one that has not been written
+     * yet.
+     *
+     * @param keyId a key id.
+     * @return the working memory, or <code>null</code> if there is none.
+     */
+    WorkingMemoryFactStore get(String keyId) {
+        WorkingMemoryFactStore factStore = this.pendingWrites.get(keyId);
+        if (factStore == null) {
+            factStore = this.store.get(keyId);
+        }
+        return factStore;
+    }
+
+    /**
+     * Buffers a key's working memory, and writes the buffered working
+     * memories if there are batch size of them.
+     *
+     * @param keyId a key id.
+     * @param factStore the key's working memory.
+     * @throws IOException if an error occurred syncing the data store.
+     */
+    void put(String keyId, WorkingMemoryFactStore factStore)
+            throws IOException {
+        this.pendingWrites.put(keyId, factStore);
+        if (this.pendingWrites.size() >= this.batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered working memories.
+     *
+     * @throws IOException if an error occurred syncing the data store.
+     */
+    void flush() throws IOException {
+        if (!this.pendingWrites.isEmpty()) {
+            LOGGER.log(Level.FINER,
+                    "Writing {0} working memories to the data store",
+                    this.pendingWrites.size());
+            this.store.putAll(this.pendingWrites);
+            this.pendingWrites.clear();
+        }
+    }
+}
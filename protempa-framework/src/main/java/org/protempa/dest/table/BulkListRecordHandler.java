@@ -0,0 +1,495 @@
+package org.protempa.dest.table;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arp.javautil.sql.ConnectionSpec;
+
+/**
+ * Loads records into a table in bulk. Records are staged as arrays of
+ * strings, and each time the stage reaches
+ * {@link RecordHandler#SQL_RUNNER_BATCH_SIZE_PROPERTY} rows or
+ * {@link #FLUSH_BYTES_PROPERTY} bytes, the staged rows are written with the
+ * fastest method that the database supports:
+ * <ul>
+ * <li><code>copy</code>: PostgreSQL's <code>COPY ... FROM STDIN</code>, if
+ * the PostgreSQL JDBC driver is available.</li>
+ * <li><code>multirow</code>: <code>INSERT</code> statements with many rows in
+ * their <code>VALUES</code> clause, which every supported database except
+ * Oracle accepts.</li>
+ * <li><code>batch</code>: a JDBC batch of single-row inserts, which the
+ * Oracle driver executes with array binding.</li>
+ * </ul>
+ * The method is chosen with the {@link #BULK_LOAD_PROPERTY} system property.
+ * Its default, <code>auto</code>, picks the fastest method for the
+ * database. A method that the database or the insert statement does not
+ * support falls back to the next one in the list above.
+ *
+ * By default, staged rows are written by a background thread while the next
+ * rows are staged, so database I/O overlaps with query processing. At most
+ * one batch is being written while another is staged. Set
+ * {@link #BACKGROUND_FLUSH_PROPERTY} to <code>false</code> to write in the
+ * caller's thread instead.
+ *
+ * The transaction is committed after every
+ * {@link RecordHandler#SQL_RUNNER_COMMIT_SIZE_PROPERTY} rows and on close.
+ * Unlike {@link ListRecordHandler}, failed batches are not replayed on a new
+ * connection.
+ *
+ * @author Andrew Post
+ */
+final class BulkListRecordHandler extends ListRecordHandler {
+
+    private static final Logger LOGGER = Util.logger();
+
+    /**
+     * System property for how to load records: <code>off</code> (the
+     * default, which uses {@link ListRecordHandler}), <code>auto</code>,
+     * <code>copy</code>, <code>multirow</code> or <code>batch</code>.
+     */
+    static final String BULK_LOAD_PROPERTY = "aiw.i2b2Etl.sqlRunner.bulkLoad";
+
+    /**
+     * System property for the maximum estimated number of bytes of staged
+     * rows before they are written. The default is 4 MB.
+     */
+    static final String FLUSH_BYTES_PROPERTY
+            = "aiw.i2b2Etl.sqlRunner.flushBytes";
+
+    /**
+     * System property for whether to write staged rows in a background
+     * thread. The default is <code>true</code>.
+     */
+    static final String BACKGROUND_FLUSH_PROPERTY
+            = "aiw.i2b2Etl.sqlRunner.backgroundFlush";
+
+    private static final long DEFAULT_FLUSH_BYTES = 4L * 1024 * 1024;
+
+    /*
+     * PostgreSQL allows 32767 parameters per statement. SQL Server allows
+     * 2100 parameters and 1000 rows in a VALUES clause.
+     */
+    private static final int MAX_PARAMETERS = 32767;
+    private static final int SQL_SERVER_MAX_PARAMETERS = 2000;
+    private static final int SQL_SERVER_MAX_ROWS = 1000;
+
+    /*
+     * Estimated bytes of a staged row and of each of its values, in addition
+     * to the values' characters.
+     */
+    private static final int ROW_OVERHEAD_BYTES = 32;
+    private static final int VALUE_OVERHEAD_BYTES = 40;
+
+    enum Mode {
+        AUTO, COPY, MULTIROW, BATCH
+    }
+
+    private final String statement;
+    private final InsertStatement insertStatement;
+    private final Mode mode;
+    private final int flushRows;
+    private final long flushBytes;
+    private final int commitRows;
+    private final ExecutorService flusher;
+    private List<String[]> staged;
+    private long stagedBytes;
+    private Future<?> pending;
+    private boolean failed;
+
+    /*
+     * Used only by whichever thread writes the staged rows.
+     */
+    private int rowsPerStatement;
+    private PreparedStatement rowsStatement;
+    private Object copyManager;
+    private Method copyIn;
+    private String copySql;
+    private int uncommittedRows;
+    private long rowsWritten;
+
+    BulkListRecordHandler(ConnectionSpec connSpec, String statement)
+            throws SQLException {
+        super(connSpec, statement);
+        this.statement = statement;
+        this.insertStatement = InsertStatement.parse(statement);
+        this.flushRows = Math.max(1,
+                Integer.getInteger(SQL_RUNNER_BATCH_SIZE_PROPERTY, 1000));
+        long bytes = Long.getLong(FLUSH_BYTES_PROPERTY, DEFAULT_FLUSH_BYTES);
+        this.flushBytes = bytes > 0 ? bytes : DEFAULT_FLUSH_BYTES;
+        this.commitRows = Math.max(1,
+                Integer.getInteger(SQL_RUNNER_COMMIT_SIZE_PROPERTY, 10000));
+        this.mode = resolveMode(requestedMode());
+        this.staged = new ArrayList<>(this.flushRows);
+        if (Boolean.parseBoolean(
+                System.getProperty(BACKGROUND_FLUSH_PROPERTY, "true"))) {
+            final String threadName = "BulkListRecordHandler-"
+                    + (this.insertStatement != null
+                            ? this.insertStatement.getTableName() : "flusher");
+            this.flusher = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.flusher = null;
+        }
+        LOGGER.log(Level.FINE, "Bulk loading with {0} for statement {1}",
+                new Object[]{this.mode, statement});
+    }
+
+    /**
+     * Returns whether {@link #BULK_LOAD_PROPERTY} requests bulk loading.
+     *
+     * @return <code>true</code> or <code>false</code>.
+     */
+    static boolean isEnabled() {
+        String value = System.getProperty(BULK_LOAD_PROPERTY);
+        return value != null && !value.equalsIgnoreCase("off")
+                && !value.equalsIgnoreCase("false");
+    }
+
+    Mode getMode() {
+        return this.mode;
+    }
+
+    @Override
+    public void insert(ArrayList<?> record) throws SQLException {
+        if (this.failed) {
+            throw new SQLException(
+                    "Cannot insert after an earlier batch failed");
+        }
+        if (record != null) {
+            int n = record.size();
+            String[] values = new String[n];
+            long bytes = ROW_OVERHEAD_BYTES;
+            for (int i = 0; i < n; i++) {
+                Object value = record.get(i);
+                String str = value == null ? "NULL" : value.toString();
+                values[i] = str;
+                bytes += VALUE_OVERHEAD_BYTES + 2L * str.length();
+            }
+            this.staged.add(values);
+            this.stagedBytes += bytes;
+            if (this.staged.size() >= this.flushRows
+                    || this.stagedBytes >= this.flushBytes) {
+                handOff();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException exceptionThrown = null;
+        try {
+            if (!this.failed) {
+                if (!this.staged.isEmpty()) {
+                    handOff();
+                }
+                awaitPending();
+                commit();
+                LOGGER.log(Level.FINE, "Bulk loaded {0} rows with {1}",
+                        new Object[]{this.rowsWritten, this.mode});
+            }
+        } catch (SQLException ex) {
+            /*
+             * The rows of a batch that failed in the background thread, or
+             * of the final commit, must not be committed when the connection
+             * is closed.
+             */
+            this.failed = true;
+            rollback(ex);
+            exceptionThrown = ex;
+        } finally {
+            if (this.flusher != null) {
+                this.flusher.shutdownNow();
+            }
+            if (this.rowsStatement != null) {
+                try {
+                    this.rowsStatement.close();
+                } catch (SQLException ex) {
+                    if (exceptionThrown != null) {
+                        exceptionThrown.addSuppressed(ex);
+                    } else {
+                        exceptionThrown = ex;
+                    }
+                }
+                this.rowsStatement = null;
+            }
+            try {
+                super.close();
+            } catch (SQLException ex) {
+                if (exceptionThrown != null) {
+                    exceptionThrown.addSuppressed(ex);
+                } else {
+                    exceptionThrown = ex;
+                }
+            }
+        }
+        if (exceptionThrown != null) {
+            throw exceptionThrown;
+        }
+    }
+
+    private static Mode requestedMode() {
+        String value = System.getProperty(BULK_LOAD_PROPERTY, "auto");
+        try {
+            return Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING,
+                    "Invalid value {0} for system property {1}; using auto",
+                    new Object[]{value, BULK_LOAD_PROPERTY});
+            return Mode.AUTO;
+        }
+    }
+
+    private Mode resolveMode(Mode requested) throws SQLException {
+        if (requested == Mode.BATCH || this.insertStatement == null
+                || this.insertStatement.getParameterCount() == 0) {
+            return Mode.BATCH;
+        }
+        String product = getConnection().getMetaData()
+                .getDatabaseProductName();
+        boolean oracle = product != null && product.startsWith("Oracle");
+        boolean postgres = product != null
+                && product.startsWith("PostgreSQL");
+        boolean sqlServer = product != null
+                && product.startsWith("Microsoft SQL Server");
+        if ((requested == Mode.COPY || (requested == Mode.AUTO && postgres))
+                && this.insertStatement.isPlaceholdersOnly()
+                && initCopy()) {
+            return Mode.COPY;
+        }
+        if (oracle) {
+            return Mode.BATCH;
+        }
+        int maxParameters = sqlServer
+                ? SQL_SERVER_MAX_PARAMETERS : MAX_PARAMETERS;
+        int rows = Math.min(this.flushRows,
+                maxParameters / this.insertStatement.getParameterCount());
+        if (sqlServer) {
+            rows = Math.min(rows, SQL_SERVER_MAX_ROWS);
+        }
+        if (rows < 2) {
+            return Mode.BATCH;
+        }
+        this.rowsPerStatement = rows;
+        return Mode.MULTIROW;
+    }
+
+    /**
+     * Gets PostgreSQL's copy API from the connection by reflection, so that
+     * the PostgreSQL driver is not needed to compile or run Protempa.
+     *
+     * @return whether the copy API is available.
+     */
+    private boolean initCopy() {
+        try {
+            ClassLoader classLoader
+                    = Thread.currentThread().getContextClassLoader();
+            Class<?> pgConnectionClass = Class.forName(
+                    "org.postgresql.PGConnection", false,
+                    classLoader != null ? classLoader
+                            : getClass().getClassLoader());
+            Connection cn = getConnection();
+            if (!cn.isWrapperFor(pgConnectionClass)) {
+                return false;
+            }
+            Object pgConnection = cn.unwrap(pgConnectionClass);
+            this.copyManager = pgConnectionClass.getMethod("getCopyAPI")
+                    .invoke(pgConnection);
+            this.copyIn = this.copyManager.getClass().getMethod("copyIn",
+                    String.class, Reader.class);
+            this.copySql = this.insertStatement.toCopy();
+            return true;
+        } catch (ReflectiveOperationException | SQLException
+                | RuntimeException ex) {
+            LOGGER.log(Level.FINE, "PostgreSQL copy API not available", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Writes the staged rows, or hands them to the background thread after it
+     * finishes writing the previous rows. If writing fails, the transaction
+     * is rolled back, and subsequent inserts fail.
+     */
+    private void handOff() throws SQLException {
+        final List<String[]> rows = this.staged;
+        this.staged = new ArrayList<>(this.flushRows);
+        this.stagedBytes = 0;
+        try {
+            if (this.flusher == null) {
+                write(rows);
+            } else {
+                awaitPending();
+                this.pending = this.flusher.submit(() -> {
+                    write(rows);
+                    return null;
+                });
+            }
+        } catch (SQLException ex) {
+            this.failed = true;
+            rollback(ex);
+            throw ex;
+        }
+    }
+
+    private void awaitPending() throws SQLException {
+        if (this.pending != null) {
+            try {
+                this.pending.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while writing rows", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                } else {
+                    throw new SQLException("Error writing rows", cause);
+                }
+            } finally {
+                this.pending = null;
+            }
+        }
+    }
+
+    private void write(List<String[]> rows) throws SQLException {
+        switch (this.mode) {
+            case COPY:
+                copy(rows);
+                break;
+            case MULTIROW:
+                insertMultiRow(rows);
+                break;
+            default:
+                insertBatch(rows);
+                break;
+        }
+        this.rowsWritten += rows.size();
+        this.uncommittedRows += rows.size();
+        if (this.uncommittedRows >= this.commitRows) {
+            commit();
+        }
+    }
+
+    private void copy(List<String[]> rows) throws SQLException {
+        StringBuilder buf = new StringBuilder((int) Math.min(
+                Integer.MAX_VALUE - 8, this.flushBytes));
+        for (String[] row : rows) {
+            InsertStatement.appendCsvRow(buf, row);
+        }
+        try {
+            this.copyIn.invoke(this.copyManager, this.copySql,
+                    new StringReader(buf.toString()));
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else {
+                throw new SQLException("Error copying rows", cause);
+            }
+        } catch (IllegalAccessException ex) {
+            throw new SQLException("Error copying rows", ex);
+        }
+    }
+
+    private void insertMultiRow(List<String[]> rows) throws SQLException {
+        Connection cn = getConnection();
+        int i = 0;
+        int n = rows.size();
+        if (n - i >= this.rowsPerStatement && this.rowsStatement == null) {
+            this.rowsStatement = cn.prepareStatement(
+                    this.insertStatement.toMultiRowInsert(
+                            this.rowsPerStatement));
+        }
+        for (; n - i >= this.rowsPerStatement; i += this.rowsPerStatement) {
+            bind(this.rowsStatement, rows, i, this.rowsPerStatement);
+            this.rowsStatement.executeUpdate();
+        }
+        if (i < n) {
+            try (PreparedStatement ps = cn.prepareStatement(
+                    this.insertStatement.toMultiRowInsert(n - i))) {
+                bind(ps, rows, i, n - i);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private void insertBatch(List<String[]> rows) throws SQLException {
+        if (this.rowsStatement == null) {
+            this.rowsStatement = getConnection().prepareStatement(
+                    this.statement);
+        }
+        for (String[] row : rows) {
+            for (int j = 0; j < row.length; j++) {
+                this.rowsStatement.setString(j + 1, row[j]);
+            }
+            this.rowsStatement.addBatch();
+        }
+        this.rowsStatement.executeBatch();
+        this.rowsStatement.clearBatch();
+    }
+
+    private static void bind(PreparedStatement ps, List<String[]> rows,
+            int offset, int count) throws SQLException {
+        int pos = 1;
+        for (int i = offset, n = offset + count; i < n; i++) {
+            for (String value : rows.get(i)) {
+                ps.setString(pos++, value);
+            }
+        }
+    }
+
+    private void commit() throws SQLException {
+        if (this.uncommittedRows > 0) {
+            Connection cn = getConnection();
+            if (!cn.getAutoCommit()) {
+                cn.commit();
+            }
+            this.uncommittedRows = 0;
+        }
+    }
+
+    private void rollback(Throwable throwable) {
+        try {
+            Connection cn = getConnection();
+            if (!cn.getAutoCommit()) {
+                cn.rollback();
+            }
+        } catch (SQLException ignore) {
+            throwable.addSuppressed(ignore);
+        }
+    }
+}
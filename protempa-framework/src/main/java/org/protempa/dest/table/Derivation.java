@@ -314,21 +314,14 @@ public final class Derivation extends Link {
 
     private void populateKnowledgeTree(KnowledgeSourceCache ksCache) {
         if (this.knowledgeTree == null) {
-            this.knowledgeTree = new HashSet<>();
-            Queue<String> queue = new LinkedList<>();
-            Arrays.addAll(queue, getPropositionIds());
-            String propId;
-            while ((propId = queue.poll()) != null) {
-                PropositionDefinition propDef = ksCache.get(propId);
-                if (propDef != null) {
-                    if (propDef.getInDataSource()) {
-                        this.knowledgeTree.add(propDef.getId());
-                    }
-                    Arrays.addAll(queue, propDef.getChildren());
-                } else {
-                    throw new AssertionError("Invalid proposition definition " + propId);
-                }
+            List<String> missing = new ArrayList<>();
+            Set<String> tree = ksCache.collectPropIdDescendantsUsingAllNarrower(
+                    true, missing, getPropositionIds());
+            if (!missing.isEmpty()) {
+                throw new AssertionError("Invalid proposition definition "
+                        + missing.get(0));
             }
+            this.knowledgeTree = tree;
         }
     }
 
@@ -0,0 +1,178 @@
+package org.protempa.dest.table;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed single-row <code>INSERT INTO table (columns) VALUES (...)</code>
+ * statement, from which the multi-row <code>INSERT</code> and
+ * <code>COPY</code> statements for bulk loading the same table are generated.
+ *
+ * @author Andrew Post
+ */
+final class InsertStatement {
+
+    private static final Pattern INSERT_PATTERN = Pattern.compile(
+            "^\\s*insert\\s+into\\s+([^\\s(]+)\\s*\\(([^)]*)\\)\\s*"
+            + "values\\s*(\\(.*\\))\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern PLACEHOLDERS_ONLY_PATTERN
+            = Pattern.compile("^\\(\\s*\\?\\s*(,\\s*\\?\\s*)*\\)$");
+
+    private final String tableName;
+    private final String columns;
+    private final int columnCount;
+    private final String rowValues;
+    private final int parameterCount;
+    private final boolean placeholdersOnly;
+
+    private InsertStatement(String tableName, String columns,
+            String rowValues) {
+        this.tableName = tableName;
+        this.columns = columns.trim();
+        this.columnCount = this.columns.split(",").length;
+        this.rowValues = rowValues;
+        int count = 0;
+        for (int i = 0, n = rowValues.length(); i < n; i++) {
+            if (rowValues.charAt(i) == '?') {
+                count++;
+            }
+        }
+        this.parameterCount = count;
+        this.placeholdersOnly
+                = PLACEHOLDERS_ONLY_PATTERN.matcher(rowValues).matches()
+                && count == this.columnCount;
+    }
+
+    /**
+     * Parses a single-row insert statement.
+     *
+     * @param sql the SQL of the statement.
+     * @return the parsed statement, or <code>null</code> if the SQL is not a
+     * single-row insert with an explicit column list and a values clause
+     * without quoted literals.
+     */
+    static InsertStatement parse(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        Matcher matcher = INSERT_PATTERN.matcher(sql);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String rowValues = matcher.group(3).trim();
+        if (rowValues.indexOf('\'') >= 0 || rowValues.indexOf('"') >= 0
+                || rowValues.toLowerCase().contains("select")) {
+            return null;
+        }
+        return new InsertStatement(matcher.group(1), matcher.group(2),
+                rowValues);
+    }
+
+    String getTableName() {
+        return this.tableName;
+    }
+
+    int getColumnCount() {
+        return this.columnCount;
+    }
+
+    /**
+     * Gets the number of parameters in one row of the values clause.
+     *
+     * @return the number of parameters.
+     */
+    int getParameterCount() {
+        return this.parameterCount;
+    }
+
+    /**
+     * Returns whether each column's value is a parameter, which is required
+     * for loading the table with <code>COPY</code>.
+     *
+     * @return <code>true</code> or <code>false</code>.
+     */
+    boolean isPlaceholdersOnly() {
+        return this.placeholdersOnly;
+    }
+
+    /**
+     * Generates an insert statement with the given number of rows in its
+     * values clause.
+     *
+     * @param rows the number of rows. Must be positive.
+     * @return the SQL of the statement.
+     */
+    String toMultiRowInsert(int rows) {
+        assert rows > 0 : "rows must be positive";
+        StringBuilder sql = new StringBuilder(
+                40 + this.tableName.length() + this.columns.length()
+                + rows * (this.rowValues.length() + 1));
+        sql.append("INSERT INTO ").append(this.tableName).append(" (")
+                .append(this.columns).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(this.rowValues);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Generates a PostgreSQL <code>COPY</code> statement that reads CSV rows
+     * with the columns in the same order as this statement.
+     *
+     * @return the SQL of the statement.
+     */
+    String toCopy() {
+        return "COPY " + this.tableName + " (" + this.columns
+                + ") FROM STDIN WITH (FORMAT csv)";
+    }
+
+    /**
+     * Appends a row to a buffer of <code>COPY</code> input in CSV format.
+     * Every value is quoted, so none is read as SQL <code>NULL</code>; this
+     * matches binding the values as strings.
+     *
+     * @param buf the buffer.
+     * @param values the row's values.
+     */
+    static void appendCsvRow(StringBuilder buf, String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append('"');
+            String value = values[i];
+            for (int j = 0, n = value.length(); j < n; j++) {
+                char c = value.charAt(j);
+                if (c == '"') {
+                    buf.append('"');
+                }
+                buf.append(c);
+            }
+            buf.append('"');
+        }
+        buf.append('\n');
+    }
+}
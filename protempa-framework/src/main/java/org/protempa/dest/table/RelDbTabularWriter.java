@@ -59,7 +59,7 @@ public class RelDbTabularWriter extends AbstractTabularWriter {
     
     public RelDbTabularWriter(ConnectionSpec inConnectionSpec, String inStatement) throws SQLException {
     	this.connectionSpec = inConnectionSpec;
-        this.recordHandler = new ListRecordHandler(inConnectionSpec, inStatement);
+        this.recordHandler = newRecordHandler(inConnectionSpec, inStatement);
         this.row = new ArrayList<>();
         logger.info("Creating RelDbTabularWriter");
     }
@@ -70,7 +70,7 @@ public class RelDbTabularWriter extends AbstractTabularWriter {
     	this.handlerList = new HashMap<String, RecordHandler<ArrayList<?>>>();
     	for(String tableName : inStatements.keySet()) {
     		logger.info("Creating Handler: " + tableName + "; SQL: " + inStatements.get(tableName));
-    		this.handlerList.put(tableName, new ListRecordHandler(inConnectionSpec, inStatements.get(tableName)));
+    		this.handlerList.put(tableName, newRecordHandler(inConnectionSpec, inStatements.get(tableName)));
     	}
         //this.recordHandler = new ListRecordHandler(inConnectionSpec, inStatement);
         this.row = new ArrayList<>();
@@ -78,7 +78,7 @@ public class RelDbTabularWriter extends AbstractTabularWriter {
     }
     
     public RelDbTabularWriter(ConnectionSpec inConnectionSpec) throws SQLException {
-        this.recordHandler = new ListRecordHandler(inConnectionSpec, this.inStatement);
+        this.recordHandler = newRecordHandler(inConnectionSpec, this.inStatement);
         this.row = new ArrayList<>();
         logger.info("Creating RelDbTabularWriter");
     }
@@ -90,7 +90,7 @@ public class RelDbTabularWriter extends AbstractTabularWriter {
 	public void setInStatement(String inStatement) throws SQLException {
 		this.inStatement = inStatement;
 		this.recordHandler.close();
-		this.recordHandler = new ListRecordHandler(connectionSpec, inStatement);
+		this.recordHandler = newRecordHandler(connectionSpec, inStatement);
 	}
 	
 	public ConnectionSpec getConnectionSpec() {
@@ -280,7 +280,7 @@ public class RelDbTabularWriter extends AbstractTabularWriter {
         	}
         	else {
         		logger.info("NULL RECORDHANDLER: Getting from statements map" + (statements == null? 0:statements.size()));
-        		this.recordHandler = new ListRecordHandler(this.connectionSpec, this.statements.get(this.tableName));
+        		this.recordHandler = newRecordHandler(this.connectionSpec, this.statements.get(this.tableName));
         		if(this.handlerList.containsKey(tableName))
         			this.handlerList.replace(tableName, this.recordHandler);
         		else 
@@ -312,6 +312,22 @@ public class RelDbTabularWriter extends AbstractTabularWriter {
         }
     }
 
+    /**
+     * Creates a record handler for an insert statement. If bulk loading is
+     * enabled with the <code>aiw.i2b2Etl.sqlRunner.bulkLoad</code> system
+     * property, records are staged and loaded in bulk, otherwise they are
+     * inserted in JDBC batches.
+     */
+    private static RecordHandler<ArrayList<?>> newRecordHandler(
+            ConnectionSpec connectionSpec, String statement)
+            throws SQLException {
+        if (BulkListRecordHandler.isEnabled()) {
+            return new BulkListRecordHandler(connectionSpec, statement);
+        } else {
+            return new ListRecordHandler(connectionSpec, statement);
+        }
+    }
+
     private int incr() {
         return this.colIndex++;
     }
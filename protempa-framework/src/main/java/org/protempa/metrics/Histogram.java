@@ -0,0 +1,207 @@
+package org.protempa.metrics;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of non-negative long values, such as times or
+ * counts. Values are counted in buckets whose bounds are powers of two, so
+ * recording a value is cheap and the histogram's size is fixed, and the
+ * percentiles it reports are accurate to within a factor of two.
+ *
+ * @author Andrew Post
+ */
+public final class Histogram implements HistogramMXBean {
+
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final LongAccumulator min;
+    private final LongAccumulator max;
+
+    /**
+     * Creates a histogram. Use {@link Metrics#histogram(java.lang.String) }
+     * to create a histogram that is shared and exported through JMX.
+     *
+     * @param name the histogram's name. Cannot be <code>null</code>.
+     */
+    public Histogram(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name cannot be null");
+        }
+        this.name = name;
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        this.max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value the value.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.buckets.incrementAndGet(bucket(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.min.accumulate(value);
+        this.max.accumulate(value);
+    }
+
+    @Override
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    @Override
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    /**
+     * Gets the smallest value recorded.
+     *
+     * @return the smallest value, or 0 if no values have been recorded.
+     */
+    @Override
+    public long getMin() {
+        long result = this.min.get();
+        return result == Long.MAX_VALUE ? 0 : result;
+    }
+
+    /**
+     * Gets the largest value recorded.
+     *
+     * @return the largest value, or 0 if no values have been recorded.
+     */
+    @Override
+    public long getMax() {
+        long result = this.max.get();
+        return result == Long.MIN_VALUE ? 0 : result;
+    }
+
+    @Override
+    public double getMean() {
+        long c = getCount();
+        return c > 0 ? (double) getSum() / c : 0.0;
+    }
+
+    @Override
+    public long get50thPercentile() {
+        return getPercentile(50.0);
+    }
+
+    @Override
+    public long get95thPercentile() {
+        return getPercentile(95.0);
+    }
+
+    @Override
+    public long get99thPercentile() {
+        return getPercentile(99.0);
+    }
+
+    /**
+     * Gets an upper bound on the given percentile of the values recorded. The
+     * bound is the upper bound of the bucket containing the percentile, or
+     * the largest value recorded if that is smaller.
+     *
+     * @param percentile a percentile between 0 and 100.
+     * @return the upper bound, or 0 if no values have been recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException(
+                    "percentile must be between 0 and 100 but was "
+                    + percentile);
+        }
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears the values recorded so far. Values recorded concurrently with a
+     * reset may be partially cleared.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.min.reset();
+        this.max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return this.name + ": count=" + getCount()
+                + ", mean=" + String.format("%.1f", getMean())
+                + ", p50=" + get50thPercentile()
+                + ", p95=" + get95thPercentile()
+                + ", p99=" + get99thPercentile()
+                + ", max=" + getMax();
+    }
+
+    /**
+     * Bucket 0 holds 0, and bucket <code>i</code> holds the values whose
+     * highest set bit is bit <code>i - 1</code>.
+     */
+    private static int bucket(long value) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
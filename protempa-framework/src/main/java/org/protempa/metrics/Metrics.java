@@ -0,0 +1,188 @@
+package org.protempa.metrics;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The histograms of the work that Protempa does, by name. There is one set of
+ * histograms per JVM, and each histogram accumulates values across queries
+ * until it is reset. Histograms are registered with the platform MBean server
+ * as <code>org.protempa:type=Histogram,name=&lt;name&gt;</code> unless the
+ * {@link #JMX_PROPERTY} system property is <code>false</code>.
+ *
+ * Times are recorded in microseconds, and the names of histograms of times
+ * end with <code>.micros</code>.
+ *
+ * The queues between the stages of a running query are registered too, as
+ * <code>org.protempa:type=Queue,query=&lt;query&gt;,name=&lt;name&gt;</code>,
+ * for as long as the query runs.
+ *
+ * @author Andrew Post
+ */
+public final class Metrics {
+
+    /**
+     * System property that, if <code>false</code>, prevents histograms from
+     * being registered with the platform MBean server. The default is
+     * <code>true</code>.
+     */
+    public static final String JMX_PROPERTY = "protempa.metrics.jmx";
+
+    private static final Logger LOGGER
+            = Logger.getLogger(Metrics.class.getName());
+
+    private static final ConcurrentMap<String, Histogram> HISTOGRAMS
+            = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets the histogram with the given name, creating it if needed.
+     *
+     * @param name the histogram's name. Cannot be <code>null</code>.
+     * @return the histogram.
+     */
+    public static Histogram histogram(String name) {
+        Histogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram(name);
+            histogram = HISTOGRAMS.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+                register(histogram);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Gets all of the histograms, sorted by name.
+     *
+     * @return an unmodifiable map of names to histograms.
+     */
+    public static SortedMap<String, Histogram> getHistograms() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(HISTOGRAMS));
+    }
+
+    /**
+     * Resets all of the histograms.
+     */
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Returns a summary of the histograms, one per line, sorted by name.
+     *
+     * @return a summary.
+     */
+    public static String summary() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Histogram> me : getHistograms().entrySet()) {
+            if (result.length() > 0) {
+                result.append('\n');
+            }
+            result.append(me.getValue());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Registers a queue with the platform MBean server, unless the
+     * {@link #JMX_PROPERTY} system property is <code>false</code> or a queue
+     * with the same query and name is already registered.
+     *
+     * @param queryName the name of the query whose queue it is.
+     * @param queue the queue. Cannot be <code>null</code>.
+     * @return the name under which the queue was registered, or
+     * <code>null</code> if it was not registered.
+     */
+    public static ObjectName registerQueue(String queryName,
+            QueueMXBean queue) {
+        if (Boolean.parseBoolean(System.getProperty(JMX_PROPERTY, "true"))) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName(
+                        "org.protempa:type=Queue,query="
+                        + ObjectName.quote(String.valueOf(queryName))
+                        + ",name=" + ObjectName.quote(queue.getName()));
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(queue, objectName);
+                    return objectName;
+                }
+            } catch (JMException | SecurityException ex) {
+                LOGGER.log(Level.FINE, "Could not register queue "
+                        + queue.getName() + " with JMX", ex);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Unregisters a queue from the platform MBean server.
+     *
+     * @param objectName the name returned by
+     * {@link #registerQueue(java.lang.String, org.protempa.metrics.QueueMXBean) }.
+     * May be <code>null</code>, in which case nothing happens.
+     */
+    public static void unregisterQueue(ObjectName objectName) {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .unregisterMBean(objectName);
+            } catch (JMException | SecurityException ex) {
+                LOGGER.log(Level.FINE, "Could not unregister queue "
+                        + objectName + " from JMX", ex);
+            }
+        }
+    }
+
+    private static void register(Histogram histogram) {
+        if (Boolean.parseBoolean(System.getProperty(JMX_PROPERTY, "true"))) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName(
+                        "org.protempa:type=Histogram,name="
+                        + ObjectName.quote(histogram.getName()));
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(histogram, objectName);
+                }
+            } catch (JMException | SecurityException ex) {
+                LOGGER.log(Level.FINE, "Could not register histogram "
+                        + histogram.getName() + " with JMX", ex);
+            }
+        }
+    }
+}
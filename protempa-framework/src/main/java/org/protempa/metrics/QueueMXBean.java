@@ -0,0 +1,46 @@
+package org.protempa.metrics;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The management interface of a queue between two stages of query
+ * execution. Its depth and bytes are gauges of the work waiting for the
+ * consuming stage, and the blocked times show which stage is the
+ * bottleneck: producers that block often are waiting for a slow consumer.
+ *
+ * @author Andrew Post
+ */
+public interface QueueMXBean {
+
+    String getName();
+
+    int getSize();
+
+    int getMaxSize();
+
+    long getBytes();
+
+    long getMaxBytes();
+
+    long getPutBlockedMicros();
+
+    long getTakeBlockedMicros();
+}
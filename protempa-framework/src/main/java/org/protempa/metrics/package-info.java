@@ -0,0 +1,31 @@
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+/**
+ * The package <code>org.protempa.metrics</code> contains histograms of the
+ * work that Protempa does while executing queries, such as the number of keys
+ * that each stage of the executor processes, the number of propositions per
+ * key, rule firing time and query results handler latency. Data source
+ * backends may record their own, such as SQL time per entity spec.
+ * <p>
+ * Histograms are created and looked up by name through
+ * {@link org.protempa.metrics.Metrics}, which also registers them with the
+ * platform MBean server.
+ */
+package org.protempa.metrics;
@@ -50,6 +50,8 @@ public class Segment<T extends TemporalProposition> extends AbstractList<T>
     protected int modCount = 0;
     private boolean intervalStale = true;
     private T maxFinishParam;
+    private T maxStartParam;
+    private T minFinishParam;
     private Interval interval;
 
     public Segment(Sequence<T> seq, int firstIndex, int lastIndex) {
@@ -162,6 +164,43 @@ public class Segment<T extends TemporalProposition> extends AbstractList<T>
         }
     }
 
+    private void calcMaxStartParam() {
+        if (maxStartParam == null) {
+            maxStartParam = Collections.min(this, MAX_START_COMP);
+        }
+    }
+
+    private void calcMinFinishParam() {
+        if (minFinishParam == null) {
+            minFinishParam = Collections.max(this, MIN_FINISH_COMP);
+        }
+    }
+
+    /**
+     * Updates the propositions that determine this segment's interval with
+     * the propositions at the given indices of the sequence, as if
+     * {@link Collections#min} and {@link Collections#max} had continued
+     * iterating over them.
+     */
+    private void extendParams(int fromIndex, int toIndex) {
+        for (int i = fromIndex; i <= toIndex; i++) {
+            T param = ts.get(i);
+            if (maxFinishParam != null
+                    && PropositionUtil.MAX_FINISH_COMP.compare(
+                            param, maxFinishParam) > 0) {
+                maxFinishParam = param;
+            }
+            if (maxStartParam != null
+                    && MAX_START_COMP.compare(param, maxStartParam) < 0) {
+                maxStartParam = param;
+            }
+            if (minFinishParam != null
+                    && MIN_FINISH_COMP.compare(param, minFinishParam) > 0) {
+                minFinishParam = param;
+            }
+        }
+    }
+
     public Segment<T> resetState(Sequence<T> sequence) {
         if (sequence == null) {
             return null;
@@ -178,12 +217,23 @@ public class Segment<T extends TemporalProposition> extends AbstractList<T>
             return null;
         }
 
+        if (sequence == ts && firstIndex == x && lastIndex >= y) {
+            /*
+             * The segment is being extended to the right, as when searching
+             * for a segment of a minimum duration, so we update rather than
+             * recompute the propositions that determine its interval.
+             */
+            extendParams(y + 1, lastIndex);
+        } else {
+            maxFinishParam = null;
+            maxStartParam = null;
+            minFinishParam = null;
+        }
         ts = sequence;
         x = firstIndex;
         y = lastIndex;
         modCount++;
         intervalStale = true;
-        maxFinishParam = null;
         return this;
 
     }
@@ -225,7 +275,7 @@ public class Segment<T extends TemporalProposition> extends AbstractList<T>
          */
         return segment.first().getInterval().getMinStart();
     }
-    private Comparator<TemporalProposition> MAX_START_COMP
+    private static final Comparator<TemporalProposition> MAX_START_COMP
             = new Comparator<TemporalProposition>() {
 
                 @Override
@@ -246,9 +296,10 @@ public class Segment<T extends TemporalProposition> extends AbstractList<T>
 
     private Long maximumStart(
             Segment<T> segment) {
-        return Collections.min(segment, MAX_START_COMP).getInterval().getMaxStart();
+        calcMaxStartParam();
+        return maxStartParam.getInterval().getMaxStart();
     }
-    private Comparator<TemporalProposition> MIN_FINISH_COMP
+    private static final Comparator<TemporalProposition> MIN_FINISH_COMP
             = new Comparator<TemporalProposition>() {
 
                 @Override
@@ -269,6 +320,7 @@ public class Segment<T extends TemporalProposition> extends AbstractList<T>
 
     private Long minimumFinish(
             Segment<T> segment) {
-        return Collections.max(segment, MIN_FINISH_COMP).getInterval().getMinFinish();
+        calcMinFinishParam();
+        return minFinishParam.getInterval().getMinFinish();
     }
 }
@@ -25,8 +25,6 @@ import java.io.ObjectInputStream;
 import org.protempa.proposition.value.Granularity;
 import org.protempa.proposition.value.Unit;
 
-import org.protempa.graph.Weight;
-
 /**
  * A constraint representing a temporal abstraction interval. When added to a
  * distance graph, two vertices are created, one marking the start of the
@@ -82,17 +80,24 @@ public final class DefaultInterval extends Interval {
                 computeLength();
                 if (cn == null) {
                     cn = new ConstraintNetwork(1);
-                    if (v[0] == null || v[1] == null || v[2] == null
-                            || v[3] == null || v[4] != null || v[5] != null
-                            || v[2].compareTo(v[1]) <= 0) {
+                    if (super.minimumStart() == NEG_INFINITY
+                            || super.maximumStart() == POS_INFINITY
+                            || super.minimumFinish() == NEG_INFINITY
+                            || super.maximumFinish() == POS_INFINITY
+                            || super.minimumLength() != NEG_INFINITY
+                            || super.maximumLength() != POS_INFINITY
+                            || super.minimumFinish() <= super.maximumStart()) {
                         cn.addInterval(this);
                     } else {
                         simple = true;
                     }
                 } else {
                     cn.clear();
-                    if (v[0] == null || v[1] == null || v[2] == null
-                            || v[3] == null || v[2].compareTo(v[1]) <= 0) {
+                    if (super.minimumStart() == NEG_INFINITY
+                            || super.maximumStart() == POS_INFINITY
+                            || super.minimumFinish() == NEG_INFINITY
+                            || super.maximumFinish() == POS_INFINITY
+                            || super.minimumFinish() <= super.maximumStart()) {
                         cn.addInterval(this);
                     } else {
                         simple = true;
@@ -108,135 +113,63 @@ public final class DefaultInterval extends Interval {
         return cn.getConsistent();
     }
 
-    /**
-     * *************************************************************************
-     * MINIMUM START
-     *************************************************************************
-     */
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see org.virginia.pbhs.parameters.Interval#getMinimumStart()
-     */
     @Override
-    public Long getMinimumStart() {
+    long minimumStart() {
         calculator();
         if (simple) {
-            return v[0];
+            return super.minimumStart();
         } else {
-            Weight minStart = cn.getMinimumStart();
-            return minStart.isInfinity() ? null : minStart.value();
+            return cn.getMinimumStart().value();
         }
     }
 
-    /**
-     * *************************************************************************
-     * MAXIMUM START
-     *************************************************************************
-     */
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see org.virginia.pbhs.parameters.Interval#getMaximumStart()
-     */
     @Override
-    public Long getMaximumStart() {
+    long maximumStart() {
         calculator();
         if (simple) {
-            return v[1];
+            return super.maximumStart();
         } else {
-            Weight maxStart = cn.getMaximumStart();
-            return maxStart.isInfinity() ? null : maxStart.value();
+            return cn.getMaximumStart().value();
         }
     }
 
-    /**
-     * *************************************************************************
-     * MINIMUM FINISH
-     *************************************************************************
-     */
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see org.virginia.pbhs.parameters.Interval#getMinimumFinish()
-     */
     @Override
-    public Long getMinimumFinish() {
+    long minimumFinish() {
         calculator();
         if (simple) {
-            return v[2];
+            return super.minimumFinish();
         } else {
-            Weight minFinish = cn.getMinimumFinish();
-            return minFinish.isInfinity() ? null : minFinish.value();
+            return cn.getMinimumFinish().value();
         }
     }
 
-    /**
-     * *************************************************************************
-     * MAXIMUM START
-     *************************************************************************
-     */
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see org.virginia.pbhs.parameters.Interval#getMaximumFinish()
-     */
     @Override
-    public Long getMaximumFinish() {
+    long maximumFinish() {
         calculator();
         if (simple) {
-            return v[3];
+            return super.maximumFinish();
         } else {
-            Weight maxFinish = cn.getMaximumFinish();
-            return maxFinish.isInfinity() ? null : maxFinish.value();
+            return cn.getMaximumFinish().value();
         }
     }
 
-    /**
-     * *************************************************************************
-     * MINIMUM DURATION
-     *************************************************************************
-     */
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see org.virginia.pbhs.parameters.Interval#getMinimumDuration()
-     */
     @Override
-    public Long getMinimumLength() {
+    long minimumLength() {
         calculator();
         if (simple) {
-            return v[2] - v[1];
+            return super.minimumFinish() - super.maximumStart();
         } else {
-            Weight minDur = cn.getMinimumDuration();
-            return minDur.isInfinity() ? null : minDur.value();
+            return cn.getMinimumDuration().value();
         }
     }
 
-    /**
-     * *************************************************************************
-     * MAXIMUM DURATION
-     *************************************************************************
-     */
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see org.virginia.pbhs.parameters.IInterval#getMaximumDuration()
-     */
     @Override
-    public Long getMaximumLength() {
+    long maximumLength() {
         calculator();
         if (simple) {
-            return v[3] - v[0];
+            return super.maximumFinish() - super.minimumStart();
         } else {
-            Weight maxDur = cn.getMaximumDuration();
-            return maxDur.isInfinity() ? null : maxDur.value();
+            return cn.getMaximumDuration().value();
         }
     }
 
@@ -45,36 +45,44 @@ final class DirectionalPathConsistency {
     }
 
     /**
-     * Gets the length of the edge between vertices <code>v1</code> and
-     * <code>v2</code>, either as originally specified in a directed graph or
-     * as updated by DPC.
-     * 
-     * @param i
-     *            index of <code>v1</code> in the vertex ordering.
-     * @param j
-     *            index of <code>v2</code> in the vertex ordering.
-     * @param v1
-     *            a vertex.
-     * @param v2
-     *            a vertex.
-     * @param g
-     *            a <code>DirectedGraph</code>.
-     * @param updatedEdges
-     *            a matrix of updates to the edge lengths as computed by DPC.
-     * @return a <code>Weight</code> representing the length of the specified
-     *         edge, or <code>null</code> if no edge exists between
-     *         <code>v1</code> and <code>v2</code>.
+     * Adds two edge lengths, with {@link Interval#NEG_INFINITY} and
+     * {@link Interval#POS_INFINITY} standing for negative and positive
+     * infinity.
+     *
+     * @param w1 an edge length.
+     * @param w2 another edge length.
+     * @return the sum.
      */
-    private static Weight getWeight(int i, int j, Object v1, Object v2,
-            DirectedGraph g, Weight[][] updatedEdges) {
-        Weight w = updatedEdges[i][j];
-        if (w == null) {
-            Edge e = g.getEdge(v1, v2);
-            if (e != null) {
-                w = e.getWeight();
-            }
+    private static long add(long w1, long w2) {
+        if ((w1 == Interval.POS_INFINITY && w2 == Interval.NEG_INFINITY)
+                || (w1 == Interval.NEG_INFINITY
+                && w2 == Interval.POS_INFINITY)) {
+            throw new IllegalArgumentException("+inf - inf!");
+        } else if (w1 == Interval.POS_INFINITY
+                || w2 == Interval.POS_INFINITY) {
+            return Interval.POS_INFINITY;
+        } else if (w1 == Interval.NEG_INFINITY
+                || w2 == Interval.NEG_INFINITY) {
+            return Interval.NEG_INFINITY;
+        } else {
+            return w1 + w2;
+        }
+    }
+
+    /**
+     * Inverts the sign of an edge length.
+     *
+     * @param w an edge length.
+     * @return the edge length with its sign inverted.
+     */
+    private static long invertSign(long w) {
+        if (w == Interval.POS_INFINITY) {
+            return Interval.NEG_INFINITY;
+        } else if (w == Interval.NEG_INFINITY) {
+            return Interval.POS_INFINITY;
+        } else {
+            return -w;
         }
-        return w;
     }
 
     /**
@@ -92,48 +100,61 @@ final class DirectionalPathConsistency {
             vertexOrdering[voa] = itr.next();
         }
         int vol = vertexOrdering.length;
-        Weight[][] updatedEdges = new Weight[vol][vol];
+        /*
+         * The lengths of the edges, either as originally specified in the
+         * directed graph or as updated by DPC. An edge exists between
+         * vertices i and j if and only if hasEdge[i][j] is true.
+         */
+        long[][] edges = new long[vol][vol];
+        boolean[][] hasEdge = new boolean[vol][vol];
+        for (int i = 0; i < vol; i++) {
+            for (int j = 0; j < vol; j++) {
+                Edge e = g.getEdge(vertexOrdering[i], vertexOrdering[j]);
+                if (e != null) {
+                    Weight w = e.getWeight();
+                    if (w != null) {
+                        edges[i][j] = w.value();
+                        hasEdge[i][j] = true;
+                    }
+                }
+            }
+        }
         for (int k = vol - 1; k > 1; k--) {
-            Object vk = vertexOrdering[k];
             for (int i = 0; i < k; i++) {
-                Object vi = vertexOrdering[i];
-                Weight wik = getWeight(i, k, vi, vk, g, updatedEdges);
-                if (wik != null) {
+                if (hasEdge[i][k]) {
+                    long wik = edges[i][k];
                     /*
                      * wki may be different from wik, so we can't just get the
                      * inverse of wik.
                      */
-                    Weight wki = getWeight(k, i, vk, vi, g, updatedEdges);
+                    boolean hasWki = hasEdge[k][i];
+                    long wki = edges[k][i];
                     // i > j because we evaluate the vertices in order.
                     for (int j = i + 1; j < k; j++) {
-                        Object vj = vertexOrdering[j];
-                        Weight wjk = getWeight(j, k, vj, vk, g, updatedEdges);
-                        if (wjk != null) {
-                            Weight wkj = getWeight(k, j, vk, vj, g,
-                                    updatedEdges);
-                            Weight wikj = wik.add(wkj);
-                            Weight wjki = wjk.add(wki);
-                            Weight wij = getWeight(i, j, vi, vj, g,
-                                    updatedEdges);
-                            Weight wji = getWeight(j, i, vj, vi, g,
-                                    updatedEdges);
-                            Weight iwjki = wjki.invertSign();
-                            Weight iwji = null;
-                            if (wji != null) {
-                                iwji = wji.invertSign();
-                            }
-                            if (wij != null) {
-                                Weight intersectionMin = Weight.max(iwji, iwjki);
-                                Weight intersectionMax = Weight.min(wij, wikj);
-                                if (intersectionMin.compareTo(intersectionMax) > 0) {
+                        if (hasEdge[j][k]) {
+                            long wjk = edges[j][k];
+                            long wikj = hasEdge[k][j]
+                                    ? add(wik, edges[k][j]) : wik;
+                            long wjki = hasWki ? add(wjk, wki) : wjk;
+                            long iwjki = invertSign(wjki);
+                            if (hasEdge[i][j]) {
+                                long intersectionMin = hasEdge[j][i]
+                                        ? Math.max(invertSign(edges[j][i]),
+                                                iwjki)
+                                        : iwjki;
+                                long intersectionMax = Math.min(edges[i][j],
+                                        wikj);
+                                if (intersectionMin > intersectionMax) {
                                     return false;
                                 }
-                                updatedEdges[i][j] = intersectionMax;
-                                updatedEdges[j][i] = intersectionMin.invertSign();
+                                edges[i][j] = intersectionMax;
+                                edges[j][i] = invertSign(intersectionMin);
                             } else {
-                                updatedEdges[i][j] = wikj;
-                                updatedEdges[j][i] = wjki;
+                                edges[i][j] = wikj;
+                                edges[j][i] = wjki;
+                                hasEdge[i][j] = true;
                             }
+                            hasEdge[j][i] = true;
                         }
                     }
                 }
@@ -57,21 +57,37 @@ public abstract class Interval implements Comparable<Interval> {
             return displayName;
         }
     }
+    /**
+     * Sentinel for negative infinity in the primitive representation of an
+     * interval's bounds. It corresponds to a <code>null</code> minimum in the
+     * public getters.
+     */
+    static final long NEG_INFINITY = Long.MIN_VALUE;
+    /**
+     * Sentinel for positive infinity in the primitive representation of an
+     * interval's bounds. It corresponds to a <code>null</code> maximum in the
+     * public getters.
+     */
+    static final long POS_INFINITY = Long.MAX_VALUE;
     private static final WeightFactory weightFactory = new WeightFactory();
-    private Long minStart;
-    private Long maxStart;
+    private long minStart;
+    private long maxStart;
     private Granularity startGranularity;
-    private Long minFinish;
-    private Long maxFinish;
+    private long minFinish;
+    private long maxFinish;
     private Granularity finishGranularity;
-    private Long minLength;
-    private Long maxLength;
+    private long minLength;
+    private long maxLength;
     private Unit lengthUnit;
     //Compute these
     private Start start;
     private Finish finish;
-    protected Long[] v;
-    private Weight[] vw;
+    private long v0;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long v5;
     private volatile int hashCode;
     private boolean minLengthComputed;
     private boolean maxLengthComputed;
@@ -124,58 +140,31 @@ public abstract class Interval implements Comparable<Interval> {
                     "maxLength must be positive or 0 but was " + maxLength);
         }
 
-        this.minStart = minStart;
-        this.maxStart = maxStart;
+        this.minStart = lower(minStart);
+        this.maxStart = upper(maxStart);
         this.startGranularity = startGranularity;
-        this.minFinish = minFinish;
-        this.maxFinish = maxFinish;
+        this.minFinish = lower(minFinish);
+        this.maxFinish = upper(maxFinish);
         this.finishGranularity = finishGranularity;
-        this.minLength = minLength;
-        this.maxLength = maxLength;
+        this.minLength = lower(minLength);
+        this.maxLength = upper(maxLength);
         this.lengthUnit = lengthUnit;
 
         initComputed();
     }
 
     protected void initComputed() throws IllegalArgumentException {
-        this.start = new Start(this);
-        this.finish = new Finish(this);
-
-        Long w0 = null;
-        Long w1 = null;
-        Long w2 = null;
-        Long w3 = null;
-        Long w4 = 0L;
-        Long w5 = null;
-        if (startGranularity != null) {
-            if (minStart != null) {
-                w0 = minStart;
-            }
-            if (maxStart != null) {
-                w1 = startGranularity.latest(maxStart);
-            }
-        } else {
-            if (minStart != null) {
-                w0 = minStart;
-            }
-            if (maxStart != null) {
-                w1 = maxStart;
-            }
-        }
-        if (finishGranularity != null) {
-            if (minFinish != null) {
-                w2 = minFinish;
-            }
-            if (maxFinish != null) {
-                w3 = finishGranularity.latest(maxFinish);
-            }
-        } else {
-            if (minFinish != null) {
-                w2 = minFinish;
-            }
-            if (maxFinish != null) {
-                w3 = maxFinish;
-            }
+        long w0 = minStart;
+        long w1 = maxStart;
+        long w2 = minFinish;
+        long w3 = maxFinish;
+        long w4 = 0L;
+        long w5 = POS_INFINITY;
+        if (startGranularity != null && maxStart != POS_INFINITY) {
+            w1 = startGranularity.latest(maxStart);
+        }
+        if (finishGranularity != null && maxFinish != POS_INFINITY) {
+            w3 = finishGranularity.latest(maxFinish);
         }
         Granularity g1 = null;
         if (startGranularity != null && finishGranularity != null) {
@@ -189,33 +178,42 @@ public abstract class Interval implements Comparable<Interval> {
         } else {
             g1 = finishGranularity;
         }
-        if (minLength != null) {
+        if (minLength != NEG_INFINITY) {
             if (g1 != null) {
-                w4 = g1.minimumDistance(maxStart, minLength, lengthUnit);
-            } else if (minFinish != null && maxStart != null) {
-                w4 = minLength.longValue();
+                if (maxStart != POS_INFINITY) {
+                    w4 = g1.minimumDistance(maxStart, minLength, lengthUnit);
+                }
+            } else if (minFinish != NEG_INFINITY && maxStart != POS_INFINITY) {
+                w4 = minLength;
             }
             this.minLengthComputed = true;
         }
-        if (maxLength != null) {
+        if (maxLength != POS_INFINITY) {
             if (g1 != null) {
-                w5 = g1.maximumDistance(minStart, maxLength, lengthUnit);
-            } else if (maxFinish != null && minStart != null) {
-                w5 = minLength.longValue();
+                if (minStart != NEG_INFINITY) {
+                    w5 = g1.maximumDistance(minStart, maxLength, lengthUnit);
+                }
+            } else if (maxFinish != POS_INFINITY && minStart != NEG_INFINITY) {
+                w5 = minLength;
             }
             this.maxLengthComputed = true;
         }
-        v = new Long[]{w0, w1, w2, w3, w4, w5};
-        if ((v[0] != null && v[1] != null && v[0].compareTo(v[1]) > 0) || (v[2] != null && v[3] != null && v[2].compareTo(v[3]) > 0) || (v[4] != null && v[5] != null && v[4].compareTo(v[5]) > 0)) {
+        if (w0 > w1 || w2 > w3 || w4 > w5) {
             throw new IllegalArgumentException("Illegal values for interval");
         }
+        this.v0 = w0;
+        this.v1 = w1;
+        this.v2 = w2;
+        this.v3 = w3;
+        this.v4 = w4;
+        this.v5 = w5;
     }
 
     protected void computeLength() {
         if (!this.minLengthComputed || !this.maxLengthComputed) {
             //set default min and max length
-            Long w4 = 0L;
-            Long w5 = null;
+            long w4 = 0L;
+            long w5 = POS_INFINITY;
 
             //set granularities
             Granularity g1 = null;
@@ -236,66 +234,153 @@ public abstract class Interval implements Comparable<Interval> {
 
             //set min length
             if (!this.minLengthComputed) {
-                if (this.minLength == null) {
+                if (this.minLength == NEG_INFINITY) {
                     if (g1 != null) {
                         lengthUnit = g1.getCorrespondingUnit();
-                        if (maxStart != null && minFinish != null) {
+                        if (maxStart != POS_INFINITY
+                                && minFinish != NEG_INFINITY) {
                             minLength = g1.distance(maxStart, minFinish, g2,
                                     lengthUnit);
                         }
-                    } else if (minFinish != null && maxStart != null) {
+                    } else if (minFinish != NEG_INFINITY
+                            && maxStart != POS_INFINITY) {
                         minLength = minFinish - maxStart;
                     }
                 }
                 if (g1 != null) {
-                    if (maxStart != null && minLength != null) {
+                    if (maxStart != POS_INFINITY
+                            && minLength != NEG_INFINITY) {
                         w4 = g1.minimumDistance(maxStart, minLength,
                                 lengthUnit);
                     }
-                } else if (minFinish != null && maxStart != null) {
-                    w4 = minLength.longValue();
+                } else if (minFinish != NEG_INFINITY
+                        && maxStart != POS_INFINITY) {
+                    w4 = minLength;
                 }
                 minLengthComputed = true;
             }
 
             //set max length
             if (!this.maxLengthComputed) {
-                if (this.maxLength == null) {
+                if (this.maxLength == POS_INFINITY) {
                     if (g1 != null) {
                         lengthUnit = g1.getCorrespondingUnit();
-                        if (minStart != null && maxFinish != null) {
+                        if (minStart != NEG_INFINITY
+                                && maxFinish != POS_INFINITY) {
                             maxLength = g1.distance(minStart, maxFinish, g2,
                                     lengthUnit);
                         }
 
-                    } else if (maxFinish != null && minStart != null) {
+                    } else if (maxFinish != POS_INFINITY
+                            && minStart != NEG_INFINITY) {
                         maxLength = maxFinish - minStart;
                     }
                 }
                 if (g1 != null) {
-                    if (minStart != null && maxLength != null) {
+                    if (minStart != NEG_INFINITY
+                            && maxLength != POS_INFINITY) {
                         w5 = g1.maximumDistance(minStart, maxLength,
                                 lengthUnit);
                     }
-                } else if (maxFinish != null && minStart != null) {
-                    w5 = minLength.longValue();
+                } else if (maxFinish != POS_INFINITY
+                        && minStart != NEG_INFINITY) {
+                    w5 = minLength;
                 }
                 this.maxLengthComputed = true;
             }
 
             //set min and max length
-            this.v[4] = w4;
-            this.v[5] = w5;
+            this.v4 = w4;
+            this.v5 = w5;
         }
     }
 
+    /**
+     * Converts a bound in the primitive representation to a {@link Long}.
+     *
+     * @param value a bound.
+     * @return the bound, or <code>null</code> if it is infinite.
+     */
+    static Long box(long value) {
+        return value == NEG_INFINITY || value == POS_INFINITY ? null : value;
+    }
+
+    private static long lower(Long value) {
+        return value != null ? value : NEG_INFINITY;
+    }
+
+    private static long upper(Long value) {
+        return value != null ? value : POS_INFINITY;
+    }
+
+    private static Weight weight(long value, Weight ifInfinite) {
+        return value == NEG_INFINITY || value == POS_INFINITY
+                ? ifInfinite : weightFactory.getInstance(value);
+    }
+
+    /**
+     * Gets the minimum start in internal PROTEMPA units.
+     *
+     * @return the minimum start, or {@link #NEG_INFINITY} if unbounded.
+     */
+    long minimumStart() {
+        return v0;
+    }
+
+    /**
+     * Gets the maximum start in internal PROTEMPA units.
+     *
+     * @return the maximum start, or {@link #POS_INFINITY} if unbounded.
+     */
+    long maximumStart() {
+        return v1;
+    }
+
+    /**
+     * Gets the minimum finish in internal PROTEMPA units.
+     *
+     * @return the minimum finish, or {@link #NEG_INFINITY} if unbounded.
+     */
+    long minimumFinish() {
+        return v2;
+    }
+
+    /**
+     * Gets the maximum finish in internal PROTEMPA units.
+     *
+     * @return the maximum finish, or {@link #POS_INFINITY} if unbounded.
+     */
+    long maximumFinish() {
+        return v3;
+    }
+
+    /**
+     * Gets the minimum length in internal PROTEMPA units.
+     *
+     * @return the minimum length.
+     */
+    long minimumLength() {
+        computeLength();
+        return v4;
+    }
+
+    /**
+     * Gets the maximum length in internal PROTEMPA units.
+     *
+     * @return the maximum length, or {@link #POS_INFINITY} if unbounded.
+     */
+    long maximumLength() {
+        computeLength();
+        return v5;
+    }
+
     /**
      * Gets the minimum start in internal PROTEMPA units.
      *
      * @return a {@link Long}.
      */
     public Long getMinimumStart() {
-        return v[0];
+        return box(minimumStart());
     }
 
     /**
@@ -304,7 +389,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMaximumStart() {
-        return v[1];
+        return box(maximumStart());
     }
 
     /**
@@ -313,7 +398,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMinimumFinish() {
-        return v[2];
+        return box(minimumFinish());
     }
 
     /**
@@ -322,7 +407,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMaximumFinish() {
-        return v[3];
+        return box(maximumFinish());
     }
 
     /**
@@ -331,8 +416,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMinimumLength() {
-        computeLength();
-        return v[4];
+        return box(minimumLength());
     }
 
     /**
@@ -341,18 +425,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMaximumLength() {
-        computeLength();
-        return v[5];
-    }
-
-    private void initVw() {
-        this.vw = new Weight[]{
-            v[0] != null ? weightFactory.getInstance(v[0]) : WeightFactory.NEG_INFINITY,
-            v[1] != null ? weightFactory.getInstance(v[1]) : WeightFactory.POS_INFINITY,
-            v[2] != null ? weightFactory.getInstance(v[2]) : WeightFactory.NEG_INFINITY,
-            v[3] != null ? weightFactory.getInstance(v[3]) : WeightFactory.POS_INFINITY,
-            v[4] != null ? weightFactory.getInstance(v[4]) : WeightFactory.ZERO,
-            v[5] != null ? weightFactory.getInstance(v[5]) : WeightFactory.POS_INFINITY};
+        return box(maximumLength());
     }
 
     /**
@@ -361,10 +434,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Weight}.
      */
     Weight getSpecifiedMinimumStart() {
-        if (vw == null) {
-            initVw();
-        }
-        return vw[0];
+        return weight(v0, WeightFactory.NEG_INFINITY);
     }
 
     /**
@@ -373,10 +443,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Weight}.
      */
     Weight getSpecifiedMaximumStart() {
-        if (vw == null) {
-            initVw();
-        }
-        return vw[1];
+        return weight(v1, WeightFactory.POS_INFINITY);
     }
 
     /**
@@ -385,10 +452,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Weight}.
      */
     Weight getSpecifiedMinimumFinish() {
-        if (vw == null) {
-            initVw();
-        }
-        return vw[2];
+        return weight(v2, WeightFactory.NEG_INFINITY);
     }
 
     /**
@@ -397,10 +461,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Weight}.
      */
     Weight getSpecifiedMaximumFinish() {
-        if (vw == null) {
-            initVw();
-        }
-        return vw[3];
+        return weight(v3, WeightFactory.POS_INFINITY);
     }
 
     /**
@@ -409,10 +470,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Weight}.
      */
     Weight getSpecifiedMinimumLength() {
-        if (vw == null) {
-            initVw();
-        }
-        return vw[4];
+        return weight(v4, WeightFactory.ZERO);
     }
 
     /**
@@ -421,10 +479,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Weight}.
      */
     Weight getSpecifiedMaximumLength() {
-        if (vw == null) {
-            initVw();
-        }
-        return vw[5];
+        return weight(v5, WeightFactory.POS_INFINITY);
     }
 
     /**
@@ -433,6 +488,9 @@ public abstract class Interval implements Comparable<Interval> {
      * @return
      */
     Start getStart() {
+        if (start == null) {
+            start = new Start(this);
+        }
         return start;
     }
 
@@ -442,6 +500,9 @@ public abstract class Interval implements Comparable<Interval> {
      * @return
      */
     Finish getFinish() {
+        if (finish == null) {
+            finish = new Finish(this);
+        }
         return finish;
     }
 
@@ -486,7 +547,8 @@ public abstract class Interval implements Comparable<Interval> {
      */
     @Override
     public String toString() {
-        return Arrays.asList(v).toString();
+        return Arrays.asList(box(v0), box(v1), box(v2), box(v3), box(v4),
+                box(v5)).toString();
     }
 
     static final class Start {
@@ -513,6 +575,16 @@ public abstract class Interval implements Comparable<Interval> {
             return hashCode;
         }
 
+        /*
+         * Start vertices are created lazily, so two may exist for the same
+         * interval if it is shared between threads.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || (obj instanceof Start
+                    && ((Start) obj).interval == this.interval);
+        }
+
         /*
          * (non-Javadoc)
          *
@@ -549,6 +621,12 @@ public abstract class Interval implements Comparable<Interval> {
             return hashCode;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || (obj instanceof Finish
+                    && ((Finish) obj).interval == this.interval);
+        }
+
         @Override
         public String toString() {
             return "" + interval + " finish";
@@ -566,14 +644,21 @@ public abstract class Interval implements Comparable<Interval> {
         }
 
         Interval otherIval = (Interval) other;
-        return Arrays.equals(this.v, otherIval.v);
+        return this.v0 == otherIval.v0 && this.v1 == otherIval.v1
+                && this.v2 == otherIval.v2 && this.v3 == otherIval.v3
+                && this.v4 == otherIval.v4 && this.v5 == otherIval.v5;
     }
 
     @Override
     public int hashCode() {
         if (this.hashCode == 0) {
             int result = 17;
-            result = 37 * result + Arrays.hashCode(this.v);
+            result = 37 * result + Long.hashCode(this.v0);
+            result = 37 * result + Long.hashCode(this.v1);
+            result = 37 * result + Long.hashCode(this.v2);
+            result = 37 * result + Long.hashCode(this.v3);
+            result = 37 * result + Long.hashCode(this.v4);
+            result = 37 * result + Long.hashCode(this.v5);
             this.hashCode = result;
         }
 
@@ -586,33 +671,11 @@ public abstract class Interval implements Comparable<Interval> {
             return 0;
         }
 
-        Long start1 = this.getMinimumStart();
-        Long finish1 = this.getMaximumFinish();
-        Long start2 = o.getMinimumStart();
-        Long finish2 = o.getMaximumFinish();
-
-        int result;
-        if (start1 == null && start2 != null) {
-            result = -1;
-        } else if (start1 != null && start2 == null) {
-            result = 1;
-        } else if (start1 == null && start2 == null) {
-            result = 0;
-        } else {
-            result = start1.compareTo(start2);
-        }
+        int result = Long.compare(minimumStart(), o.minimumStart());
         if (result != 0) {
             return result;
         }
-        if (finish1 == null && finish2 != null) {
-            return 1;
-        } else if (finish1 != null && finish2 == null) {
-            return -1;
-        } else if (finish1 == null && finish2 == null) {
-            return 0;
-        } else {
-            return finish1.compareTo(finish2);
-        }
+        return Long.compare(maximumFinish(), o.maximumFinish());
     }
 
     /**
@@ -621,7 +684,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMinStart() {
-        return minStart;
+        return box(minStart);
     }
 
     /**
@@ -630,7 +693,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMaxStart() {
-        return maxStart;
+        return box(maxStart);
     }
 
     /**
@@ -648,7 +711,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMinFinish() {
-        return minFinish;
+        return box(minFinish);
     }
 
     /**
@@ -657,7 +720,7 @@ public abstract class Interval implements Comparable<Interval> {
      * @return a {@link Long}.
      */
     public Long getMaxFinish() {
-        return maxFinish;
+        return box(maxFinish);
     }
 
     /**
@@ -677,7 +740,7 @@ public abstract class Interval implements Comparable<Interval> {
      */
     public Long getMinLength() {
         computeLength();
-        return minLength;
+        return box(minLength);
     }
 
     public Long minLengthIn(Unit unit) {
@@ -737,7 +800,7 @@ public abstract class Interval implements Comparable<Interval> {
      */
     public Long getMaxLength() {
         computeLength();
-        return maxLength;
+        return box(maxLength);
     }
 
     /**
@@ -754,16 +817,16 @@ public abstract class Interval implements Comparable<Interval> {
             ClassNotFoundException {
         s.defaultReadObject();
 
-        if (minStart != null && maxFinish != null && minStart > maxFinish) {
+        if (minStart > maxFinish) {
             throw new InvalidObjectException(
                     "maxFinish cannot be before minStart; maxFinish="
                     + maxFinish + "; minStart=" + minStart);
         }
-        if (minLength != null && minLength < 0) {
+        if (minLength != NEG_INFINITY && minLength < 0) {
             throw new InvalidObjectException(
                     "minLength must be positive or 0 but was " + minLength);
         }
-        if (maxLength != null && maxLength < 0) {
+        if (maxLength < 0) {
             throw new InvalidObjectException(
                     "maxLength must be positive or 0 but was " + maxLength);
         }
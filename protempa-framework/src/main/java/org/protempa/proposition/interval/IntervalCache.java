@@ -0,0 +1,161 @@
+package org.protempa.proposition.interval;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.protempa.proposition.value.Granularity;
+
+/**
+ * A bounded, lock-free cache of intervals for {@link IntervalFactory}. The
+ * cache is a direct-mapped table: each combination of arguments hashes to a
+ * single slot, and a new interval replaces whatever was in its slot. Lookups
+ * compare the arguments with those stored in the slot, so no key objects are
+ * allocated on a hit. Concurrent misses for the same arguments may create
+ * duplicate intervals, which is harmless because intervals are immutable.
+ *
+ * @author Andrew Post
+ */
+final class IntervalCache {
+
+    /**
+     * Identifies which <code>getInstance</code> method of
+     * {@link IntervalFactory} created an interval.
+     */
+    static final int POSITION = 0;
+    static final int START_FINISH = 1;
+    static final int MIN_MAX = 2;
+
+    private static final class Entry {
+
+        private final int kind;
+        private final int nulls;
+        private final long v0;
+        private final long v1;
+        private final long v2;
+        private final long v3;
+        private final Granularity g0;
+        private final Granularity g1;
+        private final Interval interval;
+
+        Entry(int kind, int nulls, long v0, long v1, long v2, long v3,
+                Granularity g0, Granularity g1, Interval interval) {
+            this.kind = kind;
+            this.nulls = nulls;
+            this.v0 = v0;
+            this.v1 = v1;
+            this.v2 = v2;
+            this.v3 = v3;
+            this.g0 = g0;
+            this.g1 = g1;
+            this.interval = interval;
+        }
+
+        boolean matches(int kind, int nulls, long v0, long v1, long v2,
+                long v3, Granularity g0, Granularity g1) {
+            return this.kind == kind && this.nulls == nulls
+                    && this.v0 == v0 && this.v1 == v1
+                    && this.v2 == v2 && this.v3 == v3
+                    && (this.g0 == g0 || (this.g0 != null && this.g0.equals(g0)))
+                    && (this.g1 == g1 || (this.g1 != null && this.g1.equals(g1)));
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * Creates a cache.
+     *
+     * @param size the maximum number of intervals to cache. It is rounded up
+     * to a power of two.
+     */
+    IntervalCache(int size) {
+        int capacity = Integer.highestOneBit(
+                Math.min(Math.max(2, size), 1 << 30) - 1) << 1;
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Returns the cached interval for the given arguments.
+     *
+     * @return the cached interval, or <code>null</code> if there is none.
+     */
+    Interval get(int kind, int nulls, long v0, long v1, long v2, long v3,
+            Granularity g0, Granularity g1) {
+        Entry entry = this.table.get(
+                slot(kind, nulls, v0, v1, v2, v3, g0, g1));
+        if (entry != null
+                && entry.matches(kind, nulls, v0, v1, v2, v3, g0, g1)) {
+            this.hits.increment();
+            return entry.interval;
+        } else {
+            this.misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Caches an interval for the given arguments, evicting the interval that
+     * was in its slot, if any.
+     */
+    void put(int kind, int nulls, long v0, long v1, long v2, long v3,
+            Granularity g0, Granularity g1, Interval interval) {
+        this.table.lazySet(slot(kind, nulls, v0, v1, v2, v3, g0, g1),
+                new Entry(kind, nulls, v0, v1, v2, v3, g0, g1, interval));
+    }
+
+    long getHitCount() {
+        return this.hits.sum();
+    }
+
+    long getMissCount() {
+        return this.misses.sum();
+    }
+
+    void clear() {
+        for (int i = 0, n = this.table.length(); i < n; i++) {
+            this.table.lazySet(i, null);
+        }
+        this.hits.reset();
+        this.misses.reset();
+    }
+
+    private int slot(int kind, int nulls, long v0, long v1, long v2, long v3,
+            Granularity g0, Granularity g1) {
+        long h = 31L * kind + nulls;
+        h = 31L * h + v0;
+        h = 31L * h + v1;
+        h = 31L * h + v2;
+        h = 31L * h + v3;
+        h = 31L * h + (g0 != null ? g0.hashCode() : 0);
+        h = 31L * h + (g1 != null ? g1.hashCode() : 0);
+        int x = (int) (h ^ (h >>> 32));
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        return x & this.mask;
+    }
+}
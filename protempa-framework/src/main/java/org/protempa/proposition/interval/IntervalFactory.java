@@ -19,29 +19,106 @@
  */
 package org.protempa.proposition.interval;
 
-import org.apache.commons.collections4.map.ReferenceMap;
 import org.protempa.proposition.value.AbsoluteTimeGranularity;
 import org.protempa.proposition.value.Granularity;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
-
 /**
  * A factory for creating {@link Interval} objects. A subclass of
  * {@link Interval} will be returned that is optimized for the arguments that
  * are provided to this factory's <code>getInstance</code> methods.
  *
+ * Intervals are interned in a JVM-wide, bounded, lock-free cache. Its
+ * maximum size is set with the {@link #CACHE_SIZE_PROPERTY} system property.
+ * Interning may be turned off for all factories by setting the
+ * {@link #CACHE_DISABLED_PROPERTY} system property to <code>true</code>, or
+ * for one factory by creating it with {@link #IntervalFactory(boolean) }
+ * when it will mostly create one-off intervals.
+ *
  * @author Andrew Post
  */
 public final class IntervalFactory {
 
+    /**
+     * System property for the maximum number of intervals to cache. The
+     * default is 65536.
+     */
+    public static final String CACHE_SIZE_PROPERTY
+            = "protempa.intervalFactory.cacheSize";
+
+    /**
+     * System property for turning off interval interning.
+     */
+    public static final String CACHE_DISABLED_PROPERTY
+            = "protempa.intervalFactory.cacheDisabled";
+
     private static class DefaultIntervalContainer {
 
         private static Interval defaultInterval = new DefaultInterval();
     }
 
-    private static final Map<List<Object>, Interval> cache = new ReferenceMap<>();
+    private static final IntervalCache cache = new IntervalCache(
+            Integer.getInteger(CACHE_SIZE_PROPERTY, 65536));
+
+    private static final boolean CACHE_DISABLED
+            = Boolean.getBoolean(CACHE_DISABLED_PROPERTY);
+
+    /*
+     * The nulls of the cache keys of the boxed getInstance methods when their
+     * start, finish or position is not null, so that the primitive
+     * getInstance methods share their intervals.
+     */
+    private static final int START_FINISH_NULLS = 4 | 8;
+    private static final int POSITION_NULLS = 2 | 4 | 8;
+
+    private final boolean intern;
+
+    /**
+     * Creates a factory that interns the intervals it creates, unless
+     * interning has been turned off with the
+     * {@link #CACHE_DISABLED_PROPERTY} system property.
+     */
+    public IntervalFactory() {
+        this(true);
+    }
+
+    /**
+     * Creates a factory.
+     *
+     * @param intern whether to intern the intervals that this factory
+     * creates. Interning is always off if the
+     * {@link #CACHE_DISABLED_PROPERTY} system property is <code>true</code>.
+     */
+    public IntervalFactory(boolean intern) {
+        this.intern = intern && !CACHE_DISABLED;
+    }
+
+    /**
+     * Returns the number of times that an interval was found in the interval
+     * cache.
+     *
+     * @return the number of hits.
+     */
+    public static long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * Returns the number of times that an interval was not found in the
+     * interval cache and had to be created.
+     *
+     * @return the number of misses.
+     */
+    public static long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * Removes all intervals from the interval cache and resets its hit and
+     * miss counts.
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
 
     /**
      * Returns an interval specified by the given minimum start, maximum start,
@@ -71,21 +148,26 @@ public final class IntervalFactory {
     public Interval getInstance(Long minStart, Long maxStart,
             Granularity startGran, Long minFinish, Long maxFinish,
             Granularity finishGran) {
-        List<Object> key = Arrays.asList(new Object[]{minStart, maxStart,
-            startGran, minFinish, maxFinish, finishGran});
-        Interval result;
-        synchronized (cache) {
-            result = cache.get(key);
-            if (result == null) {
-                if (minStart == null || maxStart == null || minFinish == null
-                        || maxFinish == null) {
-                    result = new DefaultInterval(minStart, maxStart, startGran,
-                            minFinish, maxFinish, finishGran, null, null, null);
-                } else {
-                    result = new SimpleInterval(minStart, maxStart,
-                            startGran, minFinish, maxFinish, finishGran);
-                }
-                cache.put(key, result);
+        int nulls = nulls(minStart, maxStart, minFinish, maxFinish);
+        long v0 = value(minStart);
+        long v1 = value(maxStart);
+        long v2 = value(minFinish);
+        long v3 = value(maxFinish);
+        Interval result = this.intern
+                ? cache.get(IntervalCache.MIN_MAX, nulls, v0, v1, v2, v3,
+                        startGran, finishGran)
+                : null;
+        if (result == null) {
+            if (nulls != 0) {
+                result = new DefaultInterval(minStart, maxStart, startGran,
+                        minFinish, maxFinish, finishGran, null, null, null);
+            } else {
+                result = new SimpleInterval(minStart, maxStart,
+                        startGran, minFinish, maxFinish, finishGran);
+            }
+            if (this.intern) {
+                cache.put(IntervalCache.MIN_MAX, nulls, v0, v1, v2, v3,
+                        startGran, finishGran, result);
             }
         }
         return result;
@@ -109,18 +191,53 @@ public final class IntervalFactory {
      */
     public Interval getInstance(Long start, Granularity startGran,
             Long finish, Granularity finishGran) {
-        List<Object> key = Arrays.asList(new Object[]{start, startGran,
-            finish, finishGran});
-        Interval result;
-        synchronized (cache) {
-            result = cache.get(key);
-            if (result == null) {
-                if (start == null || finish == null) {
-                    result = new DefaultInterval(start, startGran, finish, finishGran);
-                } else {
-                    result = new SimpleInterval(start, startGran, finish, finishGran);
-                }
-                cache.put(key, result);
+        int nulls = nulls(start, finish, null, null);
+        long v0 = value(start);
+        long v1 = value(finish);
+        Interval result = this.intern
+                ? cache.get(IntervalCache.START_FINISH, nulls, v0, v1, 0L, 0L,
+                        startGran, finishGran)
+                : null;
+        if (result == null) {
+            if (start == null || finish == null) {
+                result = new DefaultInterval(start, startGran, finish, finishGran);
+            } else {
+                result = new SimpleInterval(start, startGran, finish, finishGran);
+            }
+            if (this.intern) {
+                cache.put(IntervalCache.START_FINISH, nulls, v0, v1, 0L, 0L,
+                        startGran, finishGran, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the interval specified by the given start and finish and
+     * granularities, like
+     * {@link #getInstance(java.lang.Long, org.protempa.proposition.value.Granularity, java.lang.Long, org.protempa.proposition.value.Granularity) },
+     * for a start and finish that are known not to be <code>null</code>. The
+     * start and finish are boxed only if the interval is not interned
+     * already.
+     *
+     * @param start the start of the interval.
+     * @param startGran the {@link Granularity} of the start of the interval.
+     * @param finish the finish of the interval.
+     * @param finishGran the {@link Granularity} of the finish of the
+     * interval.
+     * @return an {@link Interval}.
+     */
+    public Interval getInstance(long start, Granularity startGran,
+            long finish, Granularity finishGran) {
+        Interval result = this.intern
+                ? cache.get(IntervalCache.START_FINISH, START_FINISH_NULLS,
+                        start, finish, 0L, 0L, startGran, finishGran)
+                : null;
+        if (result == null) {
+            result = new SimpleInterval(start, startGran, finish, finishGran);
+            if (this.intern) {
+                cache.put(IntervalCache.START_FINISH, START_FINISH_NULLS,
+                        start, finish, 0L, 0L, startGran, finishGran, result);
             }
         }
         return result;
@@ -141,17 +258,47 @@ public final class IntervalFactory {
      * @return an {@link Interval}.
      */
     public Interval getInstance(Long position, Granularity gran) {
-        List<Object> key = Arrays.asList(new Object[]{position, gran});
-        Interval result;
-        synchronized (cache) {
-            result = cache.get(key);
-            if (result == null) {
-                if (position == null) {
-                    result = new DefaultInterval(position, gran, position, gran);
-                } else {
-                    result = new SimpleInterval(position, gran);
-                }
-                cache.put(key, result);
+        int nulls = nulls(position, null, null, null);
+        long v0 = value(position);
+        Interval result = this.intern
+                ? cache.get(IntervalCache.POSITION, nulls, v0, 0L, 0L, 0L,
+                        gran, null)
+                : null;
+        if (result == null) {
+            if (position == null) {
+                result = new DefaultInterval(position, gran, position, gran);
+            } else {
+                result = new SimpleInterval(position, gran);
+            }
+            if (this.intern) {
+                cache.put(IntervalCache.POSITION, nulls, v0, 0L, 0L, 0L,
+                        gran, null, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an interval representing a position at a specified
+     * granularity, like
+     * {@link #getInstance(java.lang.Long, org.protempa.proposition.value.Granularity) },
+     * for a position that is known not to be <code>null</code>. The position
+     * is boxed only if the interval is not interned already.
+     *
+     * @param position a position on the timeline or other axis.
+     * @param gran a {@link Granularity}.
+     * @return an {@link Interval}.
+     */
+    public Interval getInstance(long position, Granularity gran) {
+        Interval result = this.intern
+                ? cache.get(IntervalCache.POSITION, POSITION_NULLS, position,
+                        0L, 0L, 0L, gran, null)
+                : null;
+        if (result == null) {
+            result = new SimpleInterval(position, gran);
+            if (this.intern) {
+                cache.put(IntervalCache.POSITION, POSITION_NULLS, position,
+                        0L, 0L, 0L, gran, null, result);
             }
         }
         return result;
@@ -165,4 +312,13 @@ public final class IntervalFactory {
     public Interval getInstance() {
         return DefaultIntervalContainer.defaultInterval;
     }
+
+    private static int nulls(Long v0, Long v1, Long v2, Long v3) {
+        return (v0 == null ? 1 : 0) | (v1 == null ? 2 : 0)
+                | (v2 == null ? 4 : 0) | (v3 == null ? 8 : 0);
+    }
+
+    private static long value(Long v) {
+        return v != null ? v : 0L;
+    }
 }
@@ -289,14 +289,14 @@ public final class Relation implements Serializable {
         if (interval1 == null || interval2 == null) {
             return false;
         }
-        Long minStart1 = interval1.getMinimumStart();
-        Long maxStart1 = interval1.getMaximumStart();
-        Long minFinish1 = interval1.getMinimumFinish();
-        Long maxFinish1 = interval1.getMaximumFinish();
-        Long minStart2 = interval2.getMinimumStart();
-        Long maxStart2 = interval2.getMaximumStart();
-        Long minFinish2 = interval2.getMinimumFinish();
-        Long maxFinish2 = interval2.getMaximumFinish();
+        long minStart1 = interval1.minimumStart();
+        long maxStart1 = interval1.maximumStart();
+        long minFinish1 = interval1.minimumFinish();
+        long maxFinish1 = interval1.maximumFinish();
+        long minStart2 = interval2.minimumStart();
+        long maxStart2 = interval2.maximumStart();
+        long minFinish2 = interval2.minimumFinish();
+        long maxFinish2 = interval2.maximumFinish();
         return evenHasRelationCheck(0, minStart1, minStart2)
                 && oddHasRelationCheck(1, maxStart1, maxStart2)
                 && evenHasRelationCheck(2, minStart1, minFinish2)
@@ -307,35 +307,48 @@ public final class Relation implements Serializable {
                 && oddHasRelationCheck(7, maxFinish1, maxFinish2);
     }
 
-    private boolean evenHasRelationCheck(int i, Long lhs, Long rhs) {
-        if (this.units[i] != null && lhs != null && rhs != null
-                && this.intValues[i] != null) {
-            long lhsl = lhs;
-            long rhsl = rhs;
-            if (lhsl <= rhsl) {
-                return isLessThanOrEqualToDuration(this.units[i], lhsl, rhsl,
-                        this.intValues[i]);
+    /*
+     * The bounds are in the primitive representation of intervals, with
+     * Interval.NEG_INFINITY and Interval.POS_INFINITY standing for
+     * unbounded minimums and maximums, respectively.
+     */
+    private boolean evenHasRelationCheck(int i, long lhs, long rhs) {
+        Integer intValue = this.intValues[i];
+        boolean lhsBounded = lhs != Interval.NEG_INFINITY
+                && lhs != Interval.POS_INFINITY;
+        boolean rhsBounded = rhs != Interval.NEG_INFINITY
+                && rhs != Interval.POS_INFINITY;
+        if (this.units[i] != null && lhsBounded && rhsBounded
+                && intValue != null) {
+            if (lhs <= rhs) {
+                return isLessThanOrEqualToDuration(this.units[i], lhs, rhs,
+                        intValue);
             } else {
-                return isGreaterThanOrEqualToDuration(this.units[i], rhsl,
-                        lhsl, -this.intValues[i]);
+                return isGreaterThanOrEqualToDuration(this.units[i], rhs,
+                        lhs, -intValue);
             }
-        } else if (lhs != null && rhs != null && this.intValues[i] != null) {
-            return lhs + this.intValues[i] <= rhs;
-        } else if ((rhs != null || lhs == null) && this.intValues[i] == null) {
+        } else if (lhsBounded && rhsBounded && intValue != null) {
+            return lhs + intValue <= rhs;
+        } else if ((rhsBounded || !lhsBounded) && intValue == null) {
             return true;
         } else {
             return false;
         }
     }
 
-    private boolean oddHasRelationCheck(int i, Long lhs, Long rhs) {
-        if (this.units[i] != null && lhs != null && rhs != null
-                && this.intValues[i] != null) {
+    private boolean oddHasRelationCheck(int i, long lhs, long rhs) {
+        Integer intValue = this.intValues[i];
+        boolean lhsBounded = lhs != Interval.NEG_INFINITY
+                && lhs != Interval.POS_INFINITY;
+        boolean rhsBounded = rhs != Interval.NEG_INFINITY
+                && rhs != Interval.POS_INFINITY;
+        if (this.units[i] != null && lhsBounded && rhsBounded
+                && intValue != null) {
             return isGreaterThanOrEqualToDuration(this.units[i], lhs, rhs,
-                    this.intValues[i]);
-        } else if (lhs != null && rhs != null && this.intValues[i] != null) {
-            return lhs + this.intValues[i] >= rhs;
-        } else if ((lhs != null || rhs == null) && this.intValues[i] == null) {
+                    intValue);
+        } else if (lhsBounded && rhsBounded && intValue != null) {
+            return lhs + intValue >= rhs;
+        } else if ((lhsBounded || !rhsBounded) && intValue == null) {
             return true;
         } else {
             return false;
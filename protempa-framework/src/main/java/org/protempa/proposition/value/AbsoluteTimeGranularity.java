@@ -27,7 +27,9 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.TimeZone;
 
 /**
  * Defines absolute time temporal granularities. The <code>getName</code> method
@@ -645,11 +647,7 @@ public final class AbsoluteTimeGranularity implements Granularity {
     private transient final ThreadLocal<DateFormat> shortDateFormatNoYear;
     private transient final ThreadLocal<DateFormat> timeFormat;
     private transient final ThreadLocal<DateFormat> reprFormat;
-    private transient final Calendar earliestCal;
-    private transient final Calendar latestCal;
-    private transient final Calendar minDistCal;
-    private transient final Calendar maxDistCal;
-    private transient final Calendar distToCal;
+    private transient final ThreadLocal<Calendar> calendar;
     private transient final Unit correspondingUnit;
     private int ordinal = nextOrdinal++;
 
@@ -675,11 +673,20 @@ public final class AbsoluteTimeGranularity implements Granularity {
         this.shortDateFormatNoYear = shortDateFormatNoYear;
         this.timeFormat = timeFormat;
         this.reprFormat = reprFormat;
-        this.earliestCal = Calendar.getInstance();
-        this.latestCal = Calendar.getInstance();
-        this.minDistCal = Calendar.getInstance();
-        this.maxDistCal = Calendar.getInstance();
-        this.distToCal = Calendar.getInstance();
+        /*
+         * Each thread gets its own calendar so that the calendar arithmetic
+         * below does not contend on a lock. The time zone and locale are
+         * captured here so that every thread's calendar computes the same
+         * results as a single calendar created at class initialization.
+         */
+        final TimeZone timeZone = TimeZone.getDefault();
+        final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        this.calendar = new ThreadLocal<Calendar>() {
+            @Override
+            protected Calendar initialValue() {
+                return Calendar.getInstance(timeZone, locale);
+            }
+        };
         this.correspondingUnit = correspondingUnit;
     }
 
@@ -780,21 +787,19 @@ public final class AbsoluteTimeGranularity implements Granularity {
 
     @Override
     public long earliest(long pos) {
-        synchronized (this.earliestCal) {
-            this.earliestCal.setTimeInMillis(pos);
-            zeroCalendar(this.earliestCal);
-            return this.earliestCal.getTimeInMillis();
-        }
+        Calendar cal = this.calendar.get();
+        cal.setTimeInMillis(pos);
+        zeroCalendar(cal);
+        return cal.getTimeInMillis();
     }
 
     @Override
     public long latest(long pos) {
-        synchronized (this.latestCal) {
-            this.latestCal.setTimeInMillis(pos);
-            this.latestCal.add(CALENDAR_TIME_UNITS[this.calUnitIndex], 1);
-            this.latestCal.add(CALENDAR_TIME_UNITS[0], -1);
-            return this.latestCal.getTimeInMillis();
-        }
+        Calendar cal = this.calendar.get();
+        cal.setTimeInMillis(pos);
+        cal.add(CALENDAR_TIME_UNITS[this.calUnitIndex], 1);
+        cal.add(CALENDAR_TIME_UNITS[0], -1);
+        return cal.getTimeInMillis();
     }
 
     @Override
@@ -802,23 +807,22 @@ public final class AbsoluteTimeGranularity implements Granularity {
         if (distance == 0) {
             return 0L;
         }
-        synchronized (this.maxDistCal) {
-            this.maxDistCal.setTimeInMillis(position);
-            long initial = this.maxDistCal.getTimeInMillis();
-            int calUnits;
-            if (distanceUnit == null) {
-                calUnits = CALENDAR_TIME_UNITS[0];
-            } else {
-                calUnits = ((AbsoluteTimeUnit) distanceUnit).getCalendarUnits();
-            }
-            for (long d = 0; d < distance; d += Integer.MAX_VALUE) {
-                int dAsInt = (int) Math.min(Integer.MAX_VALUE, distance - d);
-                this.maxDistCal.add(calUnits, dAsInt);
-            }
-            this.maxDistCal.add(calUnits, 1);
-            this.maxDistCal.add(CALENDAR_TIME_UNITS[0], -1);
-            return this.maxDistCal.getTimeInMillis() - initial;
+        Calendar cal = this.calendar.get();
+        cal.setTimeInMillis(position);
+        long initial = cal.getTimeInMillis();
+        int calUnits;
+        if (distanceUnit == null) {
+            calUnits = CALENDAR_TIME_UNITS[0];
+        } else {
+            calUnits = ((AbsoluteTimeUnit) distanceUnit).getCalendarUnits();
+        }
+        for (long d = 0; d < distance; d += Integer.MAX_VALUE) {
+            int dAsInt = (int) Math.min(Integer.MAX_VALUE, distance - d);
+            cal.add(calUnits, dAsInt);
         }
+        cal.add(calUnits, 1);
+        cal.add(CALENDAR_TIME_UNITS[0], -1);
+        return cal.getTimeInMillis() - initial;
     }
 
     @Override
@@ -826,23 +830,22 @@ public final class AbsoluteTimeGranularity implements Granularity {
         if (distance == 0) {
             return 0L;
         }
-        synchronized (this.minDistCal) {
-            this.minDistCal.setTimeInMillis(position);
-            long initial = this.minDistCal.getTimeInMillis();
-            int calUnits;
-            if (distanceUnit == null) {
-                calUnits = CALENDAR_TIME_UNITS[0];
-            } else {
-                calUnits = ((AbsoluteTimeUnit) distanceUnit).getCalendarUnits();
-            }
-            for (long d = 0; d < distance; d += Integer.MAX_VALUE) {
-                int dAsInt = (int) Math.min(Integer.MAX_VALUE, distance - d);
-                this.minDistCal.add(calUnits, +dAsInt);
-            }
-            this.minDistCal.add(calUnits, -1);
-            this.minDistCal.add(CALENDAR_TIME_UNITS[0], 1);
-            return this.minDistCal.getTimeInMillis() - initial;
+        Calendar cal = this.calendar.get();
+        cal.setTimeInMillis(position);
+        long initial = cal.getTimeInMillis();
+        int calUnits;
+        if (distanceUnit == null) {
+            calUnits = CALENDAR_TIME_UNITS[0];
+        } else {
+            calUnits = ((AbsoluteTimeUnit) distanceUnit).getCalendarUnits();
+        }
+        for (long d = 0; d < distance; d += Integer.MAX_VALUE) {
+            int dAsInt = (int) Math.min(Integer.MAX_VALUE, distance - d);
+            cal.add(calUnits, +dAsInt);
         }
+        cal.add(calUnits, -1);
+        cal.add(CALENDAR_TIME_UNITS[0], 1);
+        return cal.getTimeInMillis() - initial;
     }
 
     private void zeroCalendar(Calendar cal) {
@@ -862,20 +865,19 @@ public final class AbsoluteTimeGranularity implements Granularity {
         if (du.isUsingFastDurationCalculations()) {
             return (finish - start) / du.getLength();
         } else {
-            synchronized (this.distToCal) {
-                this.distToCal.setTimeInMillis(start);
-                int calUnits = du.getCalendarUnits();
-                int returnValue = 0;
-                while (true) {
-                    this.distToCal.add(calUnits, 1);
-                    if (this.distToCal.getTimeInMillis() > finish) {
-                        break;
-                    } else {
-                        returnValue++;
-                    }
+            Calendar cal = this.calendar.get();
+            cal.setTimeInMillis(start);
+            int calUnits = du.getCalendarUnits();
+            int returnValue = 0;
+            while (true) {
+                cal.add(calUnits, 1);
+                if (cal.getTimeInMillis() > finish) {
+                    break;
+                } else {
+                    returnValue++;
                 }
-                return returnValue;
             }
+            return returnValue;
         }
     }
 
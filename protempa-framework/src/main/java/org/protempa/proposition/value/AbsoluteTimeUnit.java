@@ -22,7 +22,9 @@ package org.protempa.proposition.value;
 import java.io.ObjectStreamException;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.TimeZone;
 
 /**
  * Defines units of absolute time. The <code>getName</code> method provides a
@@ -161,7 +163,7 @@ public class AbsoluteTimeUnit extends AbstractTimeUnit {
 
         return pos;
     }
-    private transient final Calendar cal;
+    private transient final ThreadLocal<Calendar> cal;
     private transient final boolean isUsingFastDurationCalculations;
     private int ordinal = nextOrdinal++;
 
@@ -172,7 +174,14 @@ public class AbsoluteTimeUnit extends AbstractTimeUnit {
         super(name, pluralName, abbreviation, shortFormat,
                 mediumFormat, longFormat, length, calUnits);
 
-        this.cal = Calendar.getInstance();
+        final TimeZone timeZone = TimeZone.getDefault();
+        final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        this.cal = new ThreadLocal<Calendar>() {
+            @Override
+            protected Calendar initialValue() {
+                return Calendar.getInstance(timeZone, locale);
+            }
+        };
 
         if (fastDurationCalcsEnabled) {
             this.isUsingFastDurationCalculations = canUseFastDistanceCalcs;
@@ -210,11 +219,10 @@ public class AbsoluteTimeUnit extends AbstractTimeUnit {
         if (this.isUsingFastDurationCalculations) {
             return position + duration * getLength();
         } else {
-            synchronized (this.cal) {
-                this.cal.setTimeInMillis(position);
-                this.cal.add(getCalendarUnits(), duration);
-                return this.cal.getTimeInMillis();
-            }
+            Calendar c = this.cal.get();
+            c.setTimeInMillis(position);
+            c.add(getCalendarUnits(), duration);
+            return c.getTimeInMillis();
         }
     }
 }
@@ -22,6 +22,7 @@ package org.protempa.proposition.value;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.text.Format;
 import org.apache.commons.lang3.builder.ToStringBuilder;
@@ -51,6 +52,16 @@ public final class BooleanValue implements Value, Serializable {
         return (BooleanValue) ValueType.BOOLEANVALUE.parse(str);
     }
 
+    /**
+     * Gets the boolean value corresponding to a java boolean.
+     *
+     * @param val a java boolean.
+     * @return {@link BooleanValue#TRUE} or {@link BooleanValue#FALSE}.
+     */
+    public static BooleanValue getInstance(boolean val) {
+        return val ? TRUE : FALSE;
+    }
+
     /**
      * Creates a new boolean value. Use {@link BooleanValue#TRUE} or
      * {@link BooleanValue#FALSE} instead.
@@ -80,7 +91,7 @@ public final class BooleanValue implements Value, Serializable {
     
     @Override
     public BooleanValue replace() {
-        return this;
+        return getInstance(this.val);
     }
 
     /**
@@ -198,6 +209,16 @@ public final class BooleanValue implements Value, Serializable {
         this.val = s.readBoolean();
     }
 
+    /**
+     * Used by built-in serialization.
+     *
+     * @return {@link BooleanValue#TRUE} or {@link BooleanValue#FALSE}.
+     * @throws ObjectStreamException
+     */
+    private Object readResolve() throws ObjectStreamException {
+        return getInstance(this.val);
+    }
+
     @Override
     public ValueBuilder asBuilder() {
         return new BooleanValueBuilder(this);
@@ -24,12 +24,13 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.text.Format;
-import java.util.Map;
-import org.apache.commons.collections4.map.ReferenceMap;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 /**
- * Represents a {@link String} value.
+ * Represents a {@link String} value. Short values obtained from
+ * {@link #getInstance(java.lang.String) } are interned in a bounded, lock-free
+ * cache whose maximum size is set with the {@link #CACHE_SIZE_PROPERTY}
+ * system property.
  *
  * @author Andrew Post
  */
@@ -38,10 +39,18 @@ public final class NominalValue implements Value, Comparable<NominalValue>,
 
     private static final long serialVersionUID = 440118249272295573L;
 
+    /**
+     * System property for the maximum number of nominal values to cache. The
+     * default is 65536.
+     */
+    public static final String CACHE_SIZE_PROPERTY
+            = "protempa.nominalValue.cacheSize";
+
     private String val;
     private transient volatile int hashCode;
 
-    private static final Map<String, NominalValue> cache = new ReferenceMap<>();
+    private static final ValueCache<String, NominalValue> cache
+            = new ValueCache<>(Integer.getInteger(CACHE_SIZE_PROPERTY, 65536));
 
     /**
      * Creates a new nominal value. If <code>val</code>'s length is less than 20
@@ -54,13 +63,10 @@ public final class NominalValue implements Value, Comparable<NominalValue>,
      */
     public static NominalValue getInstance(String val) {
         if (val != null && val.length() < 20) {
-            NominalValue result;
-            synchronized (cache) {
-                result = cache.get(val);
-                if (result == null) {
-                    result = new NominalValue(val);
-                    cache.put(val, result);
-                }
+            NominalValue result = cache.get(val);
+            if (result == null) {
+                result = new NominalValue(val);
+                cache.put(val, result);
             }
             return result;
         } else {
@@ -85,10 +91,7 @@ public final class NominalValue implements Value, Comparable<NominalValue>,
 
     @Override
     public NominalValue replace() {
-        NominalValue result;
-        synchronized (cache) {
-            result = cache.get(this.val);
-        }
+        NominalValue result = cache.get(this.val);
         if (result != null) {
             return result;
         } else {
@@ -213,9 +216,7 @@ public final class NominalValue implements Value, Comparable<NominalValue>,
         String tmpVal = (String) s.readObject();
         this.val = tmpVal != null ? tmpVal : "";
         if (tmpVal != null && tmpVal.length() < 20) {
-            if (!cache.containsKey(tmpVal)) {
-                cache.put(tmpVal, this);
-            }
+            cache.putIfAbsent(tmpVal, this);
         }
     }
 
@@ -19,7 +19,6 @@
  */
 package org.protempa.proposition.value;
 
-import org.apache.commons.collections4.map.ReferenceMap;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import java.io.IOException;
@@ -28,13 +27,21 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.text.Format;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Represents a number, either integral or floating point, with unbounded upper
  * and lower limit (subject to available memory). Significant digits are
  * preserved.
  *
+ * Instances obtained from {@link #getInstance(java.math.BigDecimal) } and the
+ * other factory methods are interned in a bounded, lock-free cache whose
+ * maximum size is set with the {@link #CACHE_SIZE_PROPERTY} system property.
+ * Numbers with at most {@value #SMALL_MAX_SCALE} decimal places whose
+ * unscaled value is small are additionally kept in a fixed table, so that
+ * getting or parsing them does not allocate a {@link BigDecimal} once they
+ * have been created.
+ *
  * @author Andrew Post
  */
 public final class NumberValue implements NumericalValue,
@@ -42,8 +49,28 @@ public final class NumberValue implements NumericalValue,
 
     private static final long serialVersionUID = 266750924747111671L;
 
-    private static final Map<BigDecimal, NumberValue> cache = new ReferenceMap<>();
+    /**
+     * System property for the maximum number of number values to cache. The
+     * default is 65536.
+     */
+    public static final String CACHE_SIZE_PROPERTY
+            = "protempa.numberValue.cacheSize";
+
+    private static final int SMALL_MAX_SCALE = 2;
+    private static final int SMALL_LIMIT = 1024;
+    private static final int SMALL_ROW = 2 * SMALL_LIMIT;
+
+    private static final int CACHE_SIZE
+            = Integer.getInteger(CACHE_SIZE_PROPERTY, 65536);
+    private static final ValueCache<BigDecimal, NumberValue> cache
+            = new ValueCache<>(CACHE_SIZE);
+    private static final ValueCache<String, NumberValue> stringCache
+            = new ValueCache<>(CACHE_SIZE);
+    private static final AtomicReferenceArray<NumberValue> smallValues
+            = new AtomicReferenceArray<>((SMALL_MAX_SCALE + 1) * SMALL_ROW);
+
     private BigDecimal num;
+    private transient double doubleValue;
     private transient volatile int hashCode;
 
     /**
@@ -70,25 +97,117 @@ public final class NumberValue implements NumericalValue,
     }
 
     public static NumberValue getInstance(long num) {
-        return getInstance(BigDecimal.valueOf(num));
+        return getInstance(num, 0);
     }
 
     public static NumberValue getInstance(BigDecimal num) {
         NumberValue result;
         if (num != null) {
-            synchronized (cache) {
-                result = cache.get(num);
-                if (result == null) {
-                    result = new NumberValue(num);
-                    cache.put(num, result);
+            result = cache.get(num);
+            if (result == null) {
+                result = new NumberValue(num);
+                cache.put(num, result);
+            }
+        } else {
+            result = getInstance(0L);
+        }
+        return result;
+    }
+
+    /**
+     * Gets an instance of {@link NumberValue} representing
+     * <code>unscaledVal &times; 10<sup>-scale</sup></code>, like
+     * {@link BigDecimal#valueOf(long, int) }.
+     *
+     * @param unscaledVal the unscaled value.
+     * @param scale the scale.
+     * @return a {@link NumberValue}. Guaranteed not <code>null</code>.
+     */
+    static NumberValue getInstance(long unscaledVal, int scale) {
+        if (scale >= 0 && scale <= SMALL_MAX_SCALE
+                && unscaledVal >= -SMALL_LIMIT && unscaledVal < SMALL_LIMIT) {
+            int index = scale * SMALL_ROW + (int) unscaledVal + SMALL_LIMIT;
+            NumberValue result = smallValues.get(index);
+            if (result == null) {
+                result = new NumberValue(
+                        BigDecimal.valueOf(unscaledVal, scale));
+                if (!smallValues.compareAndSet(index, null, result)) {
+                    result = smallValues.get(index);
                 }
             }
+            return result;
         } else {
-            result = getInstance(BigDecimal.ZERO);
+            return getInstance(BigDecimal.valueOf(unscaledVal, scale));
+        }
+    }
+
+    /**
+     * Gets an instance of {@link NumberValue} from a string in the format
+     * described in the javadoc for {@link BigDecimal}'s string constructor.
+     * Plain decimal numbers like <code>-12</code> and <code>98.6</code> are
+     * parsed without allocating a {@link BigDecimal}.
+     *
+     * @param str a string with no leading or trailing whitespace. Cannot be
+     * <code>null</code>.
+     * @return a {@link NumberValue}. Guaranteed not <code>null</code>.
+     * @throws NumberFormatException if the string is not a number.
+     */
+    static NumberValue parseInstance(String str) {
+        NumberValue result = parsePlainDecimal(str);
+        if (result == null) {
+            result = stringCache.get(str);
+            if (result == null) {
+                result = getInstance(new BigDecimal(str));
+                stringCache.put(str, result);
+            }
         }
         return result;
     }
 
+    /**
+     * Parses a string of the form <code>[+-]digits[.digits]</code> with at
+     * most 18 digits.
+     *
+     * @return a {@link NumberValue}, or <code>null</code> if the string is not
+     * of that form.
+     */
+    private static NumberValue parsePlainDecimal(String str) {
+        int length = str.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0) {
+            char first = str.charAt(0);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                i++;
+            }
+        }
+        long unscaledVal = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < length; i++) {
+            char c = str.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 18) {
+                    return null;
+                }
+                unscaledVal = unscaledVal * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0 && digits > 0) {
+                scale = 0;
+            } else {
+                return null;
+            }
+        }
+        if (digits == 0 || scale == 0) {
+            return null;
+        }
+        return getInstance(negative ? -unscaledVal : unscaledVal,
+                Math.max(scale, 0));
+    }
+
     public NumberValue(long num) {
         this(BigDecimal.valueOf(num));
     }
@@ -107,14 +226,12 @@ public final class NumberValue implements NumericalValue,
         } else {
             this.num = num;
         }
+        this.doubleValue = this.num.doubleValue();
     }
 
     @Override
     public NumberValue replace() {
-        NumberValue result;
-        synchronized (cache) {
-            result = cache.get(this.num);
-        }
+        NumberValue result = cache.get(this.num);
         if (result != null) {
             return result;
         } else {
@@ -155,7 +272,17 @@ public final class NumberValue implements NumericalValue,
      */
     @Override
     public int compareTo(NumberValue o) {
-        return num.compareTo(o.num);
+        /*
+         * Rounding to double preserves order, so the doubles decide the
+         * comparison unless they are equal.
+         */
+        if (this.doubleValue < o.doubleValue) {
+            return -1;
+        } else if (this.doubleValue > o.doubleValue) {
+            return 1;
+        } else {
+            return num.compareTo(o.num);
+        }
     }
 
     @Override
@@ -179,7 +306,7 @@ public final class NumberValue implements NumericalValue,
 
     @Override
     public double doubleValue() {
-        return num.doubleValue();
+        return this.doubleValue;
     }
 
     public long longValue() {
@@ -266,9 +393,7 @@ public final class NumberValue implements NumericalValue,
             ClassNotFoundException {
         BigDecimal tmpNum = (BigDecimal) s.readObject();
         init(tmpNum);
-        if (!cache.containsKey(tmpNum)) {
-            cache.put(tmpNum, this);
-        }
+        cache.putIfAbsent(this.num, this);
     }
 
     @Override
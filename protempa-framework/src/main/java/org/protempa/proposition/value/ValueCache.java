@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.proposition.value;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free cache for interning values. The cache is a
+ * direct-mapped table: each key hashes to a single slot, and a new value
+ * replaces whatever was in its slot, so the cache never holds more than its
+ * size. Concurrent misses for the same key may create duplicate values, which
+ * is harmless because values are immutable and compared with
+ * <code>equals</code>.
+ *
+ * @param <K> the type of key.
+ * @param <V> the type of value.
+ *
+ * @author Andrew Post
+ */
+final class ValueCache<K, V> {
+
+    private static final class Entry<K, V> {
+
+        private final K key;
+        private final V value;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry<K, V>> table;
+    private final int mask;
+
+    /**
+     * Creates a cache.
+     *
+     * @param size the maximum number of values to cache. It is rounded up
+     * to a power of two.
+     */
+    ValueCache(int size) {
+        int capacity = Integer.highestOneBit(
+                Math.min(Math.max(2, size), 1 << 30) - 1) << 1;
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Returns the cached value for a key.
+     *
+     * @param key a key. Cannot be <code>null</code>.
+     * @return the cached value, or <code>null</code> if there is none.
+     */
+    V get(K key) {
+        Entry<K, V> entry = this.table.get(slot(key));
+        if (entry != null
+                && (entry.key == key || entry.key.equals(key))) {
+            return entry.value;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Caches a value, evicting the value that was in its slot, if any.
+     *
+     * @param key a key. Cannot be <code>null</code>.
+     * @param value the value.
+     */
+    void put(K key, V value) {
+        this.table.lazySet(slot(key), new Entry<>(key, value));
+    }
+
+    /**
+     * Caches a value unless one is already cached for the key.
+     *
+     * @param key a key. Cannot be <code>null</code>.
+     * @param value the value.
+     * @return the value that is cached for the key.
+     */
+    V putIfAbsent(K key, V value) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value);
+        return value;
+    }
+
+    private int slot(K key) {
+        int x = key.hashCode();
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        return x & this.mask;
+    }
+}
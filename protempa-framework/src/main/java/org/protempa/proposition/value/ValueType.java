@@ -19,14 +19,11 @@
  */
 package org.protempa.proposition.value;
 
-import org.apache.commons.collections4.map.ReferenceMap;
-
 import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Represents types of values of propositions and properties, and provides a
@@ -178,7 +175,6 @@ public enum ValueType {
                 }
             },
     NUMBERVALUE {
-                private Map<String, BigDecimal> cache = new ReferenceMap<>();
 
                 @Override
                 public Value parse(String val) {
@@ -188,16 +184,7 @@ public enum ValueType {
                              * BigDecimal constructor returns a NumberFormatException if
                              * there are spaces before or after the number in val.
                              */
-                            String valTrimmed = val.trim();
-                            BigDecimal bd;
-                            synchronized (this.cache) {
-                                bd = this.cache.get(valTrimmed);
-                                if (bd == null) {
-                                    bd = new BigDecimal(valTrimmed);
-                                    this.cache.put(valTrimmed, bd);
-                                }
-                            }
-                            return NumberValue.getInstance(bd);
+                            return NumberValue.parseInstance(val.trim());
                         } catch (NumberFormatException e) {
                             /**
                              * NumericalValueFactory relies on this returning
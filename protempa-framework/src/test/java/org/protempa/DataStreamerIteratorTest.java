@@ -0,0 +1,101 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.protempa.proposition.Proposition;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class DataStreamerIteratorTest {
+
+    @Test
+    public void testMergeOrder() throws DataSourceReadException {
+        List<DataStreamingEventIterator<Proposition>> itrs = new ArrayList<>();
+        itrs.add(new KeyIdIterator("a", "a", "c"));
+        itrs.add(new KeyIdIterator("a", "b"));
+        itrs.add(new KeyIdIterator());
+        itrs.add(new KeyIdIterator("b", "b", "b", "d"));
+        Assert.assertEquals(
+                Arrays.asList("a", "a", "a", "b", "b", "b", "b", "c", "d"),
+                drain(itrs));
+    }
+
+    @Test
+    public void testSingleIterator() throws DataSourceReadException {
+        List<DataStreamingEventIterator<Proposition>> itrs = new ArrayList<>();
+        itrs.add(new KeyIdIterator("a", "b", "b"));
+        Assert.assertEquals(Arrays.asList("a", "b", "b"), drain(itrs));
+    }
+
+    @Test
+    public void testNoIterators() throws DataSourceReadException {
+        List<DataStreamingEventIterator<Proposition>> itrs = new ArrayList<>();
+        Assert.assertEquals(Collections.emptyList(), drain(itrs));
+    }
+
+    private static List<String> drain(
+            List<DataStreamingEventIterator<Proposition>> itrs)
+            throws DataSourceReadException {
+        List<String> result = new ArrayList<>();
+        try (DataStreamerIterator<Proposition> itr
+                = new DataStreamerIterator<>(itrs)) {
+            while (itr.hasNext()) {
+                String keyId = itr.getNextKeyId();
+                Assert.assertEquals(keyId, itr.next().getKeyId());
+                result.add(keyId);
+            }
+        }
+        return result;
+    }
+
+    private static final class KeyIdIterator
+            implements DataStreamingEventIterator<Proposition> {
+
+        private final Iterator<String> keyIds;
+
+        KeyIdIterator(String... keyIds) {
+            this.keyIds = Arrays.asList(keyIds).iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.keyIds.hasNext();
+        }
+
+        @Override
+        public DataStreamingEvent<Proposition> next() {
+            return new DataStreamingEvent<>(this.keyIds.next(),
+                    Collections.<Proposition>emptyList());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.protempa;
+
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.protempa.metrics.Histogram;
+import org.protempa.metrics.Metrics;
+import org.protempa.query.Query;
+import org.protempa.query.QueryMode;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class ExecutorMetricsTest {
+
+    private Query query;
+
+    @Before
+    public void setUp() {
+        Metrics.reset();
+        this.query = new Query("test", null, null, null, new String[0], null,
+                QueryMode.UPDATE, null);
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.reset();
+        this.query = null;
+    }
+
+    @Test
+    public void testQueriesHaveSeparateHistograms() {
+        ExecutorMetrics first = newExecutorMetrics();
+        ExecutorMetrics second = newExecutorMetrics();
+        first.recordRetrievedPropositions(3);
+        first.recordRetrievedPropositions(5);
+        second.recordRetrievedPropositions(100);
+
+        Assert.assertEquals(2, histogram(first,
+                ExecutorMetrics.RETRIEVED_PROPOSITIONS_PER_KEY).getCount());
+        Assert.assertEquals(8, histogram(first,
+                ExecutorMetrics.RETRIEVED_PROPOSITIONS_PER_KEY).getSum());
+        Assert.assertEquals(1, histogram(second,
+                ExecutorMetrics.RETRIEVED_PROPOSITIONS_PER_KEY).getCount());
+        Assert.assertEquals(100, histogram(second,
+                ExecutorMetrics.RETRIEVED_PROPOSITIONS_PER_KEY).getSum());
+    }
+
+    @Test
+    public void testJvmWideHistogramAccumulatesQueries() {
+        ExecutorMetrics first = newExecutorMetrics();
+        ExecutorMetrics second = newExecutorMetrics();
+        first.recordProcessed(10, 2);
+        second.recordProcessed(20, 4);
+
+        Histogram processTime = Metrics.histogram(ExecutorMetrics.PROCESS_TIME);
+        Assert.assertEquals(2, processTime.getCount());
+        Assert.assertEquals(30, processTime.getSum());
+        Assert.assertEquals(6, Metrics.histogram(
+                ExecutorMetrics.PROCESSED_PROPOSITIONS_PER_KEY).getSum());
+    }
+
+    @Test
+    public void testSummaryExcludesOtherQueries() {
+        ExecutorMetrics first = newExecutorMetrics();
+        ExecutorMetrics second = newExecutorMetrics();
+        first.recordRuleFiring(7);
+        second.recordRuleFiring(1000);
+        second.recordRuleFiring(1000);
+
+        Assert.assertEquals(1, histogram(first,
+                ExecutorMetrics.RULE_FIRING_TIME).getCount());
+        String summary = first.summary();
+        Assert.assertTrue(summary, summary.contains(
+                histogram(first, ExecutorMetrics.RULE_FIRING_TIME).toString()));
+        Assert.assertFalse(summary, summary.contains(
+                Metrics.histogram(ExecutorMetrics.RULE_FIRING_TIME).toString()));
+    }
+
+    @Test
+    public void testQueueGauges() throws Exception {
+        ExecutorMetrics metrics = newExecutorMetrics();
+        MemoryBoundedBlockingQueue<Long> queue
+                = new MemoryBoundedBlockingQueue<>("gauged", 10, 100, l -> l);
+        metrics.addQueue(queue);
+        queue.put(30L);
+        queue.put(40L);
+
+        String summary = metrics.summary();
+        Assert.assertTrue(summary, summary.contains(
+                "queue gauged: depth 2 of 10, 70 of 100 bytes"));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(
+                "org.protempa:type=Queue,query=\"test\",name=\"gauged\"");
+        Assert.assertEquals(2, server.getAttribute(objectName, "Size"));
+        Assert.assertEquals(70L, server.getAttribute(objectName, "Bytes"));
+        Assert.assertEquals(0L,
+                server.getAttribute(objectName, "PutBlockedMicros"));
+
+        metrics.stop();
+        Assert.assertFalse(server.isRegistered(objectName));
+    }
+
+    private ExecutorMetrics newExecutorMetrics() {
+        return new ExecutorMetrics(this.query,
+                Collections.<ProtempaEventListener>emptyList());
+    }
+
+    private static Histogram histogram(ExecutorMetrics metrics, String name) {
+        for (Histogram histogram : metrics.getHistograms()) {
+            if (histogram.getName().equals(name)) {
+                return histogram;
+            }
+        }
+        throw new AssertionError("No histogram " + name);
+    }
+}
@@ -0,0 +1,184 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.protempa.proposition.DefaultUniqueIdFactory;
+import org.protempa.proposition.Event;
+import org.protempa.proposition.Proposition;
+import org.protempa.proposition.UniqueIdFactory;
+import org.protempa.proposition.interval.IntervalFactory;
+import org.protempa.proposition.interval.Relation;
+import org.protempa.proposition.value.AbsoluteTimeGranularity;
+import org.protempa.proposition.value.AbsoluteTimeUnit;
+
+/**
+ * Checks that the order in which a high-level abstraction rule's patterns
+ * are joined does not change which combinations of propositions match.
+ *
+ * @author Andrew Post
+ */
+public class HighLevelAbstractionJoinOrderTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private HighLevelAbstractionDefinition def;
+    private Map<String, List<Proposition>> candidates;
+
+    @Before
+    public void setUp() {
+        TemporalExtendedPropositionDefinition a
+                = new TemporalExtendedPropositionDefinition("A");
+        TemporalExtendedPropositionDefinition b
+                = new TemporalExtendedPropositionDefinition("B");
+        TemporalExtendedPropositionDefinition c
+                = new TemporalExtendedPropositionDefinition("C");
+        TemporalExtendedPropositionDefinition d
+                = new TemporalExtendedPropositionDefinition("D");
+        Relation before = new Relation(null, null, null, null, null, null,
+                null, null, 1, AbsoluteTimeUnit.DAY, null, null, null, null,
+                null, null);
+        this.def = new HighLevelAbstractionDefinition("HLA");
+        this.def.add(d);
+        this.def.add(c);
+        this.def.add(a);
+        this.def.add(b);
+        this.def.setRelation(a, b, before);
+        this.def.setRelation(b, c, before);
+
+        UniqueIdFactory uidFactory = new DefaultUniqueIdFactory();
+        IntervalFactory intervalFactory = new IntervalFactory();
+        this.candidates = new HashMap<>();
+        addEvents(uidFactory, intervalFactory, "A", 0, 5, 10);
+        addEvents(uidFactory, intervalFactory, "B", 3, 8, 12);
+        addEvents(uidFactory, intervalFactory, "C", 6, 11, 20);
+        addEvents(uidFactory, intervalFactory, "D", 1, 2);
+    }
+
+    @Test
+    public void testJoinOrderIsAPermutation() {
+        Set<ExtendedPropositionDefinition> epds
+                = this.def.getExtendedPropositionDefinitions();
+        ExtendedPropositionDefinition[] ordered
+                = JBossRuleCreator.joinOrder(this.def, epds);
+        Assert.assertEquals(epds, new HashSet<>(Arrays.asList(ordered)));
+        Assert.assertEquals(epds.size(), ordered.length);
+    }
+
+    @Test
+    public void testPatternOrderYieldsSameMatches() {
+        ExtendedPropositionDefinition[] ordered = JBossRuleCreator.joinOrder(
+                this.def, this.def.getExtendedPropositionDefinitions());
+        Set<Map<String, Proposition>> expected = matches(ordered);
+        Assert.assertFalse(expected.isEmpty());
+        for (ExtendedPropositionDefinition[] order
+                : permutations(this.def.getExtendedPropositionDefinitions())) {
+            Assert.assertEquals(Arrays.toString(order), expected,
+                    matches(order));
+        }
+    }
+
+    private void addEvents(UniqueIdFactory uidFactory,
+            IntervalFactory intervalFactory, String id, int... days) {
+        List<Proposition> events = new ArrayList<>();
+        for (int day : days) {
+            Event event = new Event(id, uidFactory.getInstance());
+            event.setInterval(intervalFactory.getInstance(day * DAY,
+                    AbsoluteTimeGranularity.DAY, day * DAY + DAY / 2,
+                    AbsoluteTimeGranularity.DAY));
+            events.add(event);
+        }
+        this.candidates.put(id, events);
+    }
+
+    /**
+     * Joins the candidate propositions pattern by pattern the way the rule
+     * engine does, using the predicate expressions created for the given
+     * pattern order.
+     */
+    private Set<Map<String, Proposition>> matches(
+            ExtendedPropositionDefinition[] order) {
+        HighLevelAbstractionPredicateExpression[] joins
+                = new HighLevelAbstractionPredicateExpression[order.length];
+        for (int i = 1; i < order.length; i++) {
+            joins[i] = new HighLevelAbstractionPredicateExpression(this.def,
+                    order, i);
+        }
+        Set<Map<String, Proposition>> result = new HashSet<>();
+        join(order, joins, new Proposition[0], result);
+        return result;
+    }
+
+    private void join(ExtendedPropositionDefinition[] order,
+            HighLevelAbstractionPredicateExpression[] joins,
+            Proposition[] previous, Set<Map<String, Proposition>> result) {
+        int i = previous.length;
+        if (i == order.length) {
+            Map<String, Proposition> match = new HashMap<>();
+            for (int j = 0; j < i; j++) {
+                match.put(order[j].getPropositionId(), previous[j]);
+            }
+            result.add(match);
+            return;
+        }
+        for (Proposition p
+                : this.candidates.get(order[i].getPropositionId())) {
+            if (i == 0 || joins[i].evaluate(p, previous)) {
+                Proposition[] next = Arrays.copyOf(previous, i + 1);
+                next[i] = p;
+                join(order, joins, next, result);
+            }
+        }
+    }
+
+    private static List<ExtendedPropositionDefinition[]> permutations(
+            Set<ExtendedPropositionDefinition> epds) {
+        List<ExtendedPropositionDefinition[]> result = new ArrayList<>();
+        permute(new ArrayList<>(epds),
+                new ArrayList<ExtendedPropositionDefinition>(), result);
+        return result;
+    }
+
+    private static void permute(List<ExtendedPropositionDefinition> remaining,
+            List<ExtendedPropositionDefinition> prefix,
+            List<ExtendedPropositionDefinition[]> result) {
+        if (remaining.isEmpty()) {
+            result.add(prefix.toArray(
+                    new ExtendedPropositionDefinition[prefix.size()]));
+            return;
+        }
+        for (int i = 0; i < remaining.size(); i++) {
+            List<ExtendedPropositionDefinition> rest
+                    = new ArrayList<>(remaining);
+            prefix.add(rest.remove(i));
+            permute(rest, prefix, result);
+            prefix.remove(prefix.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class KeyDispatcherTest {
+
+    private static final String POISON = "poison";
+
+    @Test
+    public void testPoisonPillSeenByEveryWorker() throws InterruptedException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(10);
+        KeyDispatcher<String> dispatcher
+                = new KeyDispatcher<>(queue, POISON, false);
+        queue.put("a");
+        queue.put(POISON);
+        Assert.assertEquals("a", dispatcher.take().getElement());
+        Assert.assertSame(POISON, dispatcher.take().getElement());
+        Assert.assertSame(POISON, dispatcher.take().getElement());
+    }
+
+    @Test
+    public void testPreserveKeyOrder() throws InterruptedException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(10);
+        final KeyDispatcher<String> dispatcher
+                = new KeyDispatcher<>(queue, POISON, true);
+        queue.put("a");
+        queue.put("b");
+        final KeyDispatcher.Ticket<String> first = dispatcher.take();
+        final KeyDispatcher.Ticket<String> second = dispatcher.take();
+        final List<String> results
+                = Collections.synchronizedList(new ArrayList<String>());
+        Thread secondThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    dispatcher.awaitTurn(second);
+                    results.add(second.getElement());
+                } catch (InterruptedException ex) {
+                    throw new AssertionError(ex);
+                } finally {
+                    dispatcher.done(second);
+                }
+            }
+        };
+        secondThread.start();
+        Thread.sleep(100);
+        Assert.assertTrue(results.isEmpty());
+        dispatcher.awaitTurn(first);
+        results.add(first.getElement());
+        dispatcher.done(first);
+        secondThread.join();
+        Assert.assertEquals(java.util.Arrays.asList("a", "b"), results);
+    }
+
+    @Test
+    public void testAbortReleasesWaitingWorkers() throws InterruptedException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(10);
+        KeyDispatcher<String> dispatcher
+                = new KeyDispatcher<>(queue, POISON, true);
+        queue.put("a");
+        queue.put("b");
+        dispatcher.take();
+        KeyDispatcher.Ticket<String> second = dispatcher.take();
+        dispatcher.abort();
+        dispatcher.awaitTurn(second);
+        Assert.assertSame(POISON, dispatcher.take().getElement());
+    }
+    @Test
+    public void testInterruptedWorkerDoesNotBlockLaterTickets()
+            throws InterruptedException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(10);
+        final KeyDispatcher<String> dispatcher
+                = new KeyDispatcher<>(queue, POISON, true);
+        queue.put("a");
+        queue.put("b");
+        queue.put("c");
+        KeyDispatcher.Ticket<String> first = dispatcher.take();
+        final KeyDispatcher.Ticket<String> second = dispatcher.take();
+        final KeyDispatcher.Ticket<String> third = dispatcher.take();
+        Thread secondThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    dispatcher.awaitTurn(second);
+                    throw new AssertionError("expected interrupt");
+                } catch (InterruptedException ex) {
+                    // expected
+                } finally {
+                    dispatcher.done(second);
+                }
+            }
+        };
+        secondThread.start();
+        Thread.sleep(100);
+        secondThread.interrupt();
+        secondThread.join();
+        final List<String> results
+                = Collections.synchronizedList(new ArrayList<String>());
+        Thread thirdThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    dispatcher.awaitTurn(third);
+                    results.add(third.getElement());
+                } catch (InterruptedException ex) {
+                    throw new AssertionError(ex);
+                } finally {
+                    dispatcher.done(third);
+                }
+            }
+        };
+        thirdThread.start();
+        dispatcher.awaitTurn(first);
+        results.add(first.getElement());
+        dispatcher.done(first);
+        thirdThread.join(5000);
+        Assert.assertFalse(thirdThread.isAlive());
+        Assert.assertEquals(java.util.Arrays.asList("a", "c"), results);
+    }
+}
@@ -38,6 +38,7 @@ import org.protempa.backend.ksb.SimpleKnowledgeSourceBackend;
  * @author Andrew Post
  */
 public class KnowledgeSourceImplTest {
+    private SimpleKnowledgeSourceBackend backend;
     private KnowledgeSourceImpl knowledgeSource;
     
     @Before
@@ -56,16 +57,16 @@ public class KnowledgeSourceImplTest {
             constantDefinition.setInverseIsA(me.getValue());
             propDefs.add(constantDefinition);
         }
-        this.knowledgeSource = new KnowledgeSourceImpl(
-                new SimpleKnowledgeSourceBackend(
-                        propDefs.toArray(
-                                new PropositionDefinition[propDefs.size()])));
+        this.backend = new SimpleKnowledgeSourceBackend(
+                propDefs.toArray(new PropositionDefinition[propDefs.size()]));
+        this.knowledgeSource = new KnowledgeSourceImpl(this.backend);
     }
     
     @After
     public void tearDown() throws SourceCloseException {
         this.knowledgeSource.close();
         this.knowledgeSource = null;
+        this.backend = null;
     }
     
     @Test
@@ -93,4 +94,38 @@ public class KnowledgeSourceImplTest {
                 expected, 
                 knowledgeSource.collectPropIdDescendantsUsingInverseIsA("bar", "rab"));
     }
+    
+    @Test
+    public void testReadPropositionDefinitionCached() throws KnowledgeSourceReadException {
+        PropositionDefinition first = 
+                knowledgeSource.readPropositionDefinition("bar");
+        long misses = knowledgeSource.getCacheMissCount();
+        Assert.assertSame("cached read failed", 
+                first, knowledgeSource.readPropositionDefinition("bar"));
+        Assert.assertEquals("cache miss count changed", 
+                misses, knowledgeSource.getCacheMissCount());
+    }
+    
+    @Test
+    public void testReadPropositionDefinitionNotFoundCached() throws KnowledgeSourceReadException {
+        Assert.assertNull(knowledgeSource.readPropositionDefinition("notfound"));
+        long hits = knowledgeSource.getCacheHitCount();
+        Assert.assertNull(knowledgeSource.readPropositionDefinition("notfound"));
+        Assert.assertEquals("not-found result was not cached", 
+                hits + 1, knowledgeSource.getCacheHitCount());
+    }
+    
+    @Test
+    public void testBackendUpdatedInvalidatesCache() throws KnowledgeSourceReadException {
+        knowledgeSource.readPropositionDefinition("bar");
+        knowledgeSource.readPropositionDefinition("bar");
+        Assert.assertEquals("second read was not cached", 
+                1, knowledgeSource.getCacheHitCount());
+        this.backend.fireKnowledgeSourceBackendUpdated();
+        Assert.assertNotNull(knowledgeSource.readPropositionDefinition("bar"));
+        Assert.assertEquals("read after backend update was cached", 
+                0, knowledgeSource.getCacheHitCount());
+        Assert.assertEquals("read after backend update was cached", 
+                1, knowledgeSource.getCacheMissCount());
+    }
 }
@@ -0,0 +1,76 @@
+package org.protempa;
+
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class KnowledgeSourceReadCacheTest {
+
+    private static final KnowledgeSourceReadCache.Key KEY
+            = new KnowledgeSourceReadCache.Key("test", "foo");
+
+    @Test
+    public void testReadCached() throws KnowledgeSourceReadException {
+        KnowledgeSourceReadCache cache = new KnowledgeSourceReadCache(10);
+        Assert.assertEquals("bar", cache.get(KEY, () -> "bar"));
+        Assert.assertEquals("bar", cache.get(KEY, () -> "baz"));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testReadRacingClearIsNotCached()
+            throws KnowledgeSourceReadException {
+        KnowledgeSourceReadCache cache = new KnowledgeSourceReadCache(10);
+        Assert.assertEquals("stale", cache.get(KEY, () -> {
+            cache.clear();
+            return "stale";
+        }));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals("fresh", cache.get(KEY, () -> "fresh"));
+    }
+
+    @Test
+    public void testPutFromEarlierGenerationIsDropped() {
+        KnowledgeSourceReadCache cache = new KnowledgeSourceReadCache(10);
+        long generation = cache.generation();
+        cache.clear();
+        cache.put(KEY, "stale", generation);
+        Assert.assertNull(cache.getIfPresent(KEY));
+        cache.put(KEY, "fresh", cache.generation());
+        Assert.assertEquals("fresh", cache.getIfPresent(KEY).getValue());
+    }
+
+    @Test
+    public void testEviction() {
+        KnowledgeSourceReadCache cache = new KnowledgeSourceReadCache(8);
+        for (int i = 0; i < 20; i++) {
+            cache.put(new KnowledgeSourceReadCache.Key("test", i), i,
+                    cache.generation());
+            Assert.assertTrue(cache.size() <= 8);
+        }
+    }
+}
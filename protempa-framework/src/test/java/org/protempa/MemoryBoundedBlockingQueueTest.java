@@ -0,0 +1,123 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class MemoryBoundedBlockingQueueTest {
+
+    @Test
+    public void testBoundedBySize() {
+        MemoryBoundedBlockingQueue<Long> queue
+                = new MemoryBoundedBlockingQueue<>("test", 2, 1000, l -> l);
+        Assert.assertTrue(queue.offer(1L));
+        Assert.assertTrue(queue.offer(1L));
+        Assert.assertFalse(queue.offer(1L));
+    }
+
+    @Test
+    public void testBoundedByBytes() {
+        MemoryBoundedBlockingQueue<Long> queue
+                = new MemoryBoundedBlockingQueue<>("test", 10, 100, l -> l);
+        Assert.assertTrue(queue.offer(60L));
+        Assert.assertFalse(queue.offer(60L));
+        Assert.assertEquals(60L, queue.getBytes());
+        Assert.assertEquals(Long.valueOf(60L), queue.poll());
+        Assert.assertEquals(0L, queue.getBytes());
+        Assert.assertTrue(queue.offer(60L));
+    }
+
+    @Test
+    public void testOversizedElementAcceptedWhenEmpty() {
+        MemoryBoundedBlockingQueue<Long> queue
+                = new MemoryBoundedBlockingQueue<>("test", 10, 100, l -> l);
+        Assert.assertTrue(queue.offer(500L));
+        Assert.assertFalse(queue.offer(1L));
+    }
+
+    @Test
+    public void testPutBlocksUntilTake() throws InterruptedException {
+        final MemoryBoundedBlockingQueue<Long> queue
+                = new MemoryBoundedBlockingQueue<>("test", 10, 100, l -> l);
+        queue.put(80L);
+        final CountDownLatch putting = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                putting.countDown();
+                queue.put(80L);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        putting.await();
+        awaitWaiting(producer);
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(Long.valueOf(80L), queue.take());
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertEquals(1, queue.size());
+        Assert.assertTrue(queue.getPutBlockedMicros() > 0);
+    }
+
+    @Test
+    public void testPollTimesOut() throws InterruptedException {
+        MemoryBoundedBlockingQueue<Long> queue
+                = new MemoryBoundedBlockingQueue<>("test", 10, 100, l -> l);
+        Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDrainTo() {
+        MemoryBoundedBlockingQueue<Long> queue
+                = new MemoryBoundedBlockingQueue<>("test", 10, 100, l -> l);
+        queue.offer(1L);
+        queue.offer(2L);
+        queue.offer(3L);
+        List<Long> drained = new ArrayList<>();
+        Assert.assertEquals(2, queue.drainTo(drained, 2));
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(3L, queue.getBytes());
+    }
+
+    /**
+     * Waits for a thread to park, failing after five seconds.
+     */
+    private static void awaitWaiting(Thread thread)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING) {
+            if (System.nanoTime() > deadline) {
+                Assert.fail("Thread " + thread.getName()
+                        + " did not block; state " + thread.getState());
+            }
+            Thread.yield();
+        }
+    }
+}
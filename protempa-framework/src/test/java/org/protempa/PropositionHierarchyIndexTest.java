@@ -0,0 +1,76 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.arp.javautil.arrays.Arrays;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class PropositionHierarchyIndexTest {
+    private PropositionHierarchyIndex index;
+    
+    @Before
+    public void setUp() {
+        List<PropositionDefinition> propDefs = new ArrayList<>();
+        propDefs.add(constant("foo"));
+        propDefs.add(constant("bar", "foo", "baz"));
+        propDefs.add(constant("baz", "oof", "bar"));
+        propDefs.add(constant("rab", "zab"));
+        this.index = new PropositionHierarchyIndex(propDefs, false);
+    }
+    
+    @Test
+    public void testCollectPropIdsWithCycle() {
+        Set<String> found = new HashSet<>();
+        Set<String> missing = new HashSet<>();
+        this.index.collectPropIds(false, java.util.Arrays.asList("baz"), 
+                found, missing);
+        Assert.assertEquals("collectPropIds failed", 
+                Arrays.asSet(new String[] {"bar", "baz", "foo"}), found);
+        Assert.assertEquals("missing failed", 
+                Arrays.asSet(new String[] {"oof"}), missing);
+    }
+    
+    @Test
+    public void testCollectAllPropIds() {
+        Set<String> result = new HashSet<>();
+        this.index.collectAllPropIds(java.util.Arrays.asList("rab", "xyz"), 
+                result);
+        Assert.assertEquals("collectAllPropIds failed", 
+                Arrays.asSet(new String[] {"rab", "zab", "xyz"}), result);
+    }
+    
+    private static ConstantDefinition constant(String id, 
+            String... inverseIsA) {
+        ConstantDefinition constantDefinition = new ConstantDefinition(id);
+        constantDefinition.setInverseIsA(inverseIsA);
+        return constantDefinition;
+    }
+}
@@ -0,0 +1,94 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.protempa.query.Query;
+import org.protempa.query.QueryMode;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class ReprocessKeySourceTest {
+
+    @Test
+    public void testAllKeysInDataStore() {
+        Set<String> dataStore = newDataStore("a", "b", "c");
+        ReprocessKeySource keySource = new ReprocessKeySource(
+                newQuery(new String[0]));
+        Assert.assertEquals(dataStore, drain(keySource, dataStore));
+    }
+
+    @Test
+    public void testQueriedKeysOnly() {
+        Set<String> dataStore = newDataStore("a", "b", "c");
+        ReprocessKeySource keySource = new ReprocessKeySource(
+                newQuery(new String[]{"c", "a", "d"}));
+        Set<String> expected = new HashSet<>();
+        expected.add("a");
+        expected.add("c");
+        Assert.assertEquals(expected, drain(keySource, dataStore));
+    }
+
+    @Test
+    public void testAbort() {
+        Set<String> dataStore = newDataStore("a", "b", "c");
+        ReprocessKeySource keySource = new ReprocessKeySource(
+                newQuery(new String[0]));
+        Assert.assertNotNull(keySource.next(dataStore));
+        keySource.abort();
+        Assert.assertNull(keySource.next(dataStore));
+    }
+
+    @Test
+    public void testProcessedCount() {
+        ReprocessKeySource keySource = new ReprocessKeySource(
+                newQuery(new String[0]));
+        keySource.keyProcessed();
+        keySource.keyProcessed();
+        Assert.assertEquals(2, keySource.getProcessedCount());
+    }
+
+    private static Set<String> drain(ReprocessKeySource keySource,
+            Set<String> dataStore) {
+        Set<String> result = new HashSet<>();
+        String keyId;
+        while ((keyId = keySource.next(dataStore)) != null) {
+            Assert.assertTrue("Key " + keyId + " handed out twice",
+                    result.add(keyId));
+        }
+        return result;
+    }
+
+    private static Set<String> newDataStore(String... keyIds) {
+        return new HashSet<>(Arrays.asList(keyIds));
+    }
+
+    private static Query newQuery(String[] keyIds) {
+        return new Query("test", null, keyIds, null, new String[0],
+                new PropositionDefinition[0], QueryMode.REPROCESS_CREATE,
+                "/tmp/test");
+    }
+}
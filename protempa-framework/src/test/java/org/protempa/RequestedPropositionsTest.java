@@ -0,0 +1,191 @@
+package org.protempa;
+
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.protempa.backend.ksb.SimpleKnowledgeSourceBackend;
+import org.protempa.proposition.AbstractParameter;
+import org.protempa.proposition.DefaultUniqueIdFactory;
+import org.protempa.proposition.Event;
+import org.protempa.proposition.Proposition;
+import org.protempa.proposition.UniqueId;
+import org.protempa.proposition.UniqueIdFactory;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class RequestedPropositionsTest {
+
+    private KnowledgeSourceImpl knowledgeSource;
+
+    @Before
+    public void setUp() {
+        HighLevelAbstractionDefinition hla
+                = new HighLevelAbstractionDefinition("HLA");
+        hla.add(new TemporalExtendedPropositionDefinition("CHILD"));
+        EventDefinition child = new EventDefinition("CHILD");
+        child.setInverseIsA("GRANDCHILD");
+        EventDefinition grandchild = new EventDefinition("GRANDCHILD");
+        EventDefinition other = new EventDefinition("OTHER");
+        this.knowledgeSource = new KnowledgeSourceImpl(
+                new SimpleKnowledgeSourceBackend(hla, child, grandchild,
+                        other));
+    }
+
+    @After
+    public void tearDown() throws SourceCloseException {
+        this.knowledgeSource.close();
+        this.knowledgeSource = null;
+    }
+
+    @Test
+    public void testIncludesAbstractedFromAndInverseIsA()
+            throws KnowledgeSourceReadException {
+        RequestedPropositions requested = RequestedPropositions.getInstance(
+                this.knowledgeSource, Collections.singleton("HLA"),
+                new String[]{"HLA"});
+        Assert.assertEquals(
+                new HashSet<>(
+                        Arrays.asList("HLA", "CHILD", "GRANDCHILD")),
+                requested.getPropositionIds());
+    }
+
+    @Test
+    public void testNoSupportedPropositionIdsRequestsAll()
+            throws KnowledgeSourceReadException {
+        RequestedPropositions requested = RequestedPropositions.getInstance(
+                this.knowledgeSource, Collections.singleton("HLA"),
+                new String[0]);
+        Assert.assertNull(requested.getPropositionIds());
+    }
+
+    @Test
+    public void testDerivationLinkToUnrequestedChild() {
+        UniqueIdFactory uidFactory = new DefaultUniqueIdFactory();
+        AbstractParameter hla
+                = new AbstractParameter("HLA", uidFactory.getInstance());
+        Event child = new Event("OTHER", uidFactory.getInstance());
+        Event referenced = new Event("OTHER", uidFactory.getInstance());
+        hla.setReferences("ref",
+                Collections.singletonList(referenced.getUniqueId()));
+        Map<Proposition, Set<Proposition>> backwardDerivations
+                = new HashMap<>();
+        backwardDerivations.put(hla, Collections.<Proposition>singleton(child));
+
+        RequestedPropositions requested = new RequestedPropositions(
+                Collections.singleton("HLA"));
+        QueueObject result = requested.extract("key",
+                Arrays.<Proposition>asList(child, hla, referenced).iterator(),
+                new HashMap<>(), backwardDerivations, -1);
+
+        Assert.assertEquals(Collections.singletonList(hla),
+                result.propositions);
+        Proposition derivedFrom = result.backwardDerivations.get(
+                result.propositions.get(0)).iterator().next();
+        Assert.assertSame(child, result.refs.get(derivedFrom.getUniqueId()));
+        Assert.assertSame(referenced,
+                result.refs.get(hla.getReferences("ref").get(0)));
+    }
+
+    @Test
+    public void testPrunesUnreachable() {
+        UniqueIdFactory uidFactory = new DefaultUniqueIdFactory();
+        AbstractParameter hla
+                = new AbstractParameter("HLA", uidFactory.getInstance());
+        Event child = new Event("CHILD", uidFactory.getInstance());
+        Event grandchild = new Event("OTHER", uidFactory.getInstance());
+        Event referencedByChild = new Event("OTHER", uidFactory.getInstance());
+        child.setReferences("ref",
+                Collections.singletonList(referencedByChild.getUniqueId()));
+        AbstractParameter unrequested
+                = new AbstractParameter("OTHER", uidFactory.getInstance());
+        Event unreachable = new Event("OTHER", uidFactory.getInstance());
+        Map<Proposition, Set<Proposition>> forwardDerivations
+                = new HashMap<>();
+        forwardDerivations.put(grandchild,
+                Collections.<Proposition>singleton(child));
+        forwardDerivations.put(child, Collections.<Proposition>singleton(hla));
+        forwardDerivations.put(unreachable,
+                Collections.<Proposition>singleton(unrequested));
+        Map<Proposition, Set<Proposition>> backwardDerivations
+                = new HashMap<>();
+        backwardDerivations.put(hla, Collections.<Proposition>singleton(child));
+        backwardDerivations.put(child,
+                Collections.<Proposition>singleton(grandchild));
+        backwardDerivations.put(unrequested,
+                Collections.<Proposition>singleton(unreachable));
+
+        RequestedPropositions requested = new RequestedPropositions(
+                Collections.singleton("HLA"));
+        QueueObject result = requested.extract("key",
+                Arrays.<Proposition>asList(unreachable, grandchild, child,
+                        referencedByChild, unrequested, hla).iterator(),
+                forwardDerivations, backwardDerivations, -1);
+
+        Assert.assertEquals(Collections.singletonList(hla),
+                result.propositions);
+        Assert.assertEquals(uniqueIds(hla, child, grandchild,
+                referencedByChild), result.refs.keySet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(grandchild, child)),
+                result.forwardDerivations.keySet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(hla, child)),
+                result.backwardDerivations.keySet());
+    }
+
+    @Test
+    public void testAllRequestedKeepsEverything() {
+        UniqueIdFactory uidFactory = new DefaultUniqueIdFactory();
+        Event first = new Event("OTHER", uidFactory.getInstance());
+        Event second = new Event("OTHER", uidFactory.getInstance());
+        Map<Proposition, Set<Proposition>> forwardDerivations
+                = new HashMap<>();
+        forwardDerivations.put(first, Collections.<Proposition>singleton(second));
+        Map<Proposition, Set<Proposition>> backwardDerivations
+                = new HashMap<>();
+
+        QueueObject result = RequestedPropositions.all().extract("key",
+                Arrays.<Proposition>asList(first, second).iterator(),
+                forwardDerivations, backwardDerivations, 2);
+
+        Assert.assertEquals(Arrays.asList(first, second), result.propositions);
+        Assert.assertEquals(uniqueIds(first, second), result.refs.keySet());
+        Assert.assertSame(forwardDerivations, result.forwardDerivations);
+        Assert.assertSame(backwardDerivations, result.backwardDerivations);
+    }
+
+    private static Set<UniqueId> uniqueIds(Proposition... props) {
+        Set<UniqueId> result = new HashSet<>();
+        for (Proposition prop : props) {
+            result.add(prop.getUniqueId());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package org.protempa;
+
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.protempa.query.QueryMode;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class RuleBaseCacheTest {
+
+    private RuleBaseCache ruleBaseCache;
+
+    @Before
+    public void setUp() {
+        this.ruleBaseCache = new RuleBaseCache();
+    }
+
+    @Test
+    public void testSameDefinitionsSameFingerprint() throws Exception {
+        Assert.assertEquals(fingerprint(newEvent("A", "a")),
+                fingerprint(newEvent("A", "a")));
+    }
+
+    @Test
+    public void testChangedDefinitionChangesFingerprint() throws Exception {
+        Assert.assertNotEquals(fingerprint(newEvent("A", "a")),
+                fingerprint(newEvent("A", "b")));
+    }
+
+    @Test
+    public void testRereadDefinitionsReplaceDigests() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            fingerprint(newEvent("A", "a"), newEvent("B", "b"));
+        }
+        Assert.assertEquals(2,
+                this.ruleBaseCache.getPropositionDefinitionDigestCount());
+    }
+
+    @Test
+    public void testClearRemovesDigests() throws Exception {
+        fingerprint(newEvent("A", "a"));
+        this.ruleBaseCache.clear();
+        Assert.assertEquals(0,
+                this.ruleBaseCache.getPropositionDefinitionDigestCount());
+    }
+
+    private String fingerprint(PropositionDefinition... propDefs)
+            throws RuleBaseInstantiationException {
+        List<PropositionDefinition> propDefList = Arrays.asList(propDefs);
+        return this.ruleBaseCache.fingerprint(
+                new PropositionDefinitionCache(propDefList), propDefList,
+                Collections.<LowLevelAbstractionDefinition, Algorithm>emptyMap(),
+                QueryMode.UPDATE);
+    }
+
+    private static EventDefinition newEvent(String id, String displayName) {
+        EventDefinition result = new EventDefinition(id);
+        result.setDisplayName(displayName);
+        return result;
+    }
+}
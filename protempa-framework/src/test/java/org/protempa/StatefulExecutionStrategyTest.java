@@ -0,0 +1,135 @@
+package org.protempa;
+
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2013 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.protempa.backend.asb.AlgorithmSourceBackend;
+import org.protempa.query.Query;
+import org.protempa.query.QueryMode;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class StatefulExecutionStrategyTest {
+
+    private static final String DATABASE_NAME = "test";
+
+    private Path directory;
+    private AlgorithmSourceImpl algorithmSource;
+    private RuleBaseCache ruleBaseCache;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("protempa-stateful");
+        try (ObjectOutputStream oos = new ObjectOutputStream(
+                Files.newOutputStream(this.directory.resolve(
+                        DATABASE_NAME + ".stored-propdefs")))) {
+            oos.writeInt(1);
+            oos.writeObject(new EventDefinition("A"));
+        }
+        this.algorithmSource
+                = new AlgorithmSourceImpl(new AlgorithmSourceBackend[0]);
+        this.ruleBaseCache = new RuleBaseCache();
+    }
+
+    @After
+    public void tearDown() throws IOException, SourceCloseException {
+        this.algorithmSource.close();
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                path.toFile().delete();
+            });
+        }
+    }
+
+    @Test
+    public void testReprocessDeleteWithMultipleWorkers() throws Exception {
+        Query query = query(QueryMode.REPROCESS_DELETE, "A");
+        StatefulExecutionStrategy first = newExecutionStrategy(query);
+        StatefulExecutionStrategy second = newExecutionStrategy(query);
+        first.initialize(new PropositionDefinitionCache(
+                Collections.<PropositionDefinition>emptyList()));
+        try {
+            second.initialize(new PropositionDefinitionCache(
+                    Collections.<PropositionDefinition>emptyList()));
+            Assert.assertSame(first.getRuleBase(), second.getRuleBase());
+            second.shutdown();
+        } finally {
+            first.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedWorkerDoesNotReleaseSharedDataStore()
+            throws Exception {
+        Query query = query(QueryMode.REPROCESS_DELETE, "A");
+        StatefulExecutionStrategy first = newExecutionStrategy(query);
+        StatefulExecutionStrategy second = newExecutionStrategy(query);
+        first.initialize(new PropositionDefinitionCache(
+                Collections.<PropositionDefinition>emptyList()));
+        try {
+            try {
+                second.initialize(null);
+                Assert.fail("expected the second worker to fail");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+            second.shutdown();
+
+            StatefulExecutionStrategy third = newExecutionStrategy(query);
+            third.initialize(new PropositionDefinitionCache(
+                    Collections.<PropositionDefinition>emptyList()));
+            Assert.assertSame(first.getRuleBase(), third.getRuleBase());
+            third.shutdown();
+        } finally {
+            first.shutdown();
+        }
+    }
+
+    @Test(expected = ExecutionStrategyInitializationException.class)
+    public void testReprocessDeleteOfPropIdNotInDataStore() throws Exception {
+        newExecutionStrategy(query(QueryMode.REPROCESS_DELETE, "B"))
+                .initialize(new PropositionDefinitionCache(
+                        Collections.<PropositionDefinition>emptyList()));
+    }
+
+    private Query query(QueryMode queryMode, String... propIds) {
+        return new Query(null, null, null, null, propIds, null, queryMode,
+                this.directory.resolve(DATABASE_NAME).toString());
+    }
+
+    private StatefulExecutionStrategy newExecutionStrategy(Query query) {
+        return new StatefulExecutionStrategy(this.algorithmSource,
+                this.ruleBaseCache, query, new ExecutorMetrics(query,
+                        Collections.<ProtempaEventListener>emptyList()));
+    }
+}
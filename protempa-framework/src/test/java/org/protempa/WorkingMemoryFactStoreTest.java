@@ -0,0 +1,338 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.protempa.proposition.AbstractParameter;
+import org.protempa.proposition.Constant;
+import org.protempa.proposition.Context;
+import org.protempa.proposition.DataSourceBackendId;
+import org.protempa.proposition.DerivedSourceId;
+import org.protempa.proposition.Event;
+import org.protempa.proposition.LocalUniqueId;
+import org.protempa.proposition.LocalUniqueIdValuesProvider;
+import org.protempa.proposition.PrimitiveParameter;
+import org.protempa.proposition.Proposition;
+import org.protempa.proposition.ProviderBasedLocalUniqueId;
+import org.protempa.proposition.UniqueId;
+import org.protempa.proposition.interval.IntervalFactory;
+import org.protempa.proposition.value.AbsoluteTimeGranularity;
+import org.protempa.proposition.value.BooleanValue;
+import org.protempa.proposition.value.DateValue;
+import org.protempa.proposition.value.InequalityNumberValue;
+import org.protempa.proposition.value.NominalValue;
+import org.protempa.proposition.value.NumberValue;
+import org.protempa.proposition.value.ValueComparator;
+import org.protempa.proposition.value.ValueList;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class WorkingMemoryFactStoreTest extends ProtempaTestCase {
+
+    public void testRoundTrip() throws Exception {
+        IntervalFactory intervalFactory = new IntervalFactory();
+        DataSourceBackendSourceSystem sourceSystem
+                = DataSourceBackendSourceSystem.getInstance("TEST");
+
+        PrimitiveParameter pp = new PrimitiveParameter("TEST",
+                providerUid("TEST", "TEST", 1));
+        pp.setSourceSystem(sourceSystem);
+        pp.setValue(NumberValue.getInstance(13));
+        pp.setPosition(1172779860000L);
+        pp.setGranularity(AbsoluteTimeGranularity.MINUTE);
+
+        Event event = new Event("EVENT", providerUid("TEST", "EVENT", 1));
+        event.setSourceSystem(sourceSystem);
+        event.setInterval(intervalFactory.getInstance(1172779860000L,
+                AbsoluteTimeGranularity.DAY, 1172966400000L,
+                AbsoluteTimeGranularity.DAY));
+
+        AbstractParameter ap = new AbstractParameter("ABSTRACT",
+                derivedUid("ABSTRACT", 1));
+        ap.setSourceSystem(SourceSystem.DERIVED);
+        ap.setInterval(pp.getInterval());
+
+        List<Proposition> propositions = new ArrayList<>();
+        propositions.add(pp);
+        propositions.add(event);
+        Map<Proposition, Set<Proposition>> forwardDerivations
+                = new HashMap<>();
+        forwardDerivations.put(pp,
+                new HashSet<Proposition>(Collections.singleton(ap)));
+        Map<Proposition, Set<Proposition>> backwardDerivations
+                = new HashMap<>();
+        backwardDerivations.put(ap,
+                new HashSet<Proposition>(Collections.singleton(pp)));
+        Map<String, Integer> instanceNums = new HashMap<>();
+        instanceNums.put("ABSTRACT", 1);
+
+        WorkingMemoryFactStore factStore = new WorkingMemoryFactStore();
+        factStore.setPropositions(propositions);
+        factStore.setForwardDerivations(forwardDerivations);
+        factStore.setBackwardDerivations(backwardDerivations);
+        factStore.setInstanceNums(instanceNums);
+
+        WorkingMemoryFactStore copy = roundTrip(factStore);
+
+        assertEquals(propositions, copy.getPropositions());
+        assertTrue(pp.isEqual(copy.getPropositions().get(0)));
+        assertTrue(event.isEqual(copy.getPropositions().get(1)));
+        assertEquals(forwardDerivations, copy.getForwardDerivations());
+        assertEquals(backwardDerivations, copy.getBackwardDerivations());
+        assertEquals(instanceNums, copy.getInstanceNums());
+        Proposition derived = copy.getForwardDerivations()
+                .get(copy.getPropositions().get(0)).iterator().next();
+        assertSame(derived,
+                copy.getBackwardDerivations().keySet().iterator().next());
+        assertTrue(ap.isEqual(derived));
+    }
+
+    public void testRoundTripEmpty() throws Exception {
+        WorkingMemoryFactStore copy
+                = roundTrip(new WorkingMemoryFactStore());
+        assertNull(copy.getPropositions());
+        assertNull(copy.getForwardDerivations());
+        assertNull(copy.getBackwardDerivations());
+        assertNull(copy.getInstanceNums());
+    }
+
+    public void testRoundTripAllTypes() throws Exception {
+        IntervalFactory intervalFactory = new IntervalFactory();
+        DataSourceBackendSourceSystem sourceSystem
+                = DataSourceBackendSourceSystem.getInstance("TEST");
+        UniqueId encounterUid = providerUid("TEST", "ENCOUNTER", 1);
+
+        Constant patient = new Constant("PATIENT",
+                providerUid("TEST", "PATIENT", 1));
+        patient.setSourceSystem(sourceSystem);
+        patient.setProperty("name", NominalValue.getInstance("Jane Doe"));
+        patient.setProperty("dateOfBirth",
+                DateValue.getInstance(new Date(86400000L)));
+        patient.setProperty("alive", BooleanValue.getInstance(true));
+        patient.setProperty("deceased", BooleanValue.getInstance(false));
+        patient.setProperty("weight",
+                NumberValue.getInstance(new BigDecimal("72.50")));
+        patient.setProperty("big", NumberValue.getInstance(
+                new BigDecimal("123456789012345678901234567890.123")));
+        patient.setProperty("bound", new InequalityNumberValue(
+                ValueComparator.LESS_THAN, new BigDecimal("0.5")));
+        patient.setProperty("codes", ValueList.getInstance(
+                NominalValue.getInstance("a"),
+                NominalValue.getInstance("b")));
+        patient.setProperty("missing", null);
+        patient.setReferences("encounters", Arrays.asList(encounterUid));
+        patient.setCreateDate(new Date(1000L));
+        patient.setUpdateDate(new Date(2000L));
+        patient.setDownloadDate(new Date(3000L));
+
+        Event encounter = new Event("ENCOUNTER", encounterUid);
+        encounter.setSourceSystem(sourceSystem);
+        encounter.setInterval(intervalFactory.getInstance(1172779860000L,
+                1172779870000L, AbsoluteTimeGranularity.MINUTE, null,
+                1172966400000L, AbsoluteTimeGranularity.DAY));
+        encounter.setReferences("patient",
+                Arrays.asList(patient.getUniqueId()));
+
+        Context context = new Context("CONTEXT",
+                derivedUid("CONTEXT", 1));
+        context.setSourceSystem(SourceSystem.DERIVED);
+        context.setInterval(intervalFactory.getInstance(1172779860000L,
+                AbsoluteTimeGranularity.DAY));
+
+        AbstractParameter ap = new AbstractParameter("ABSTRACT",
+                derivedUid("ABSTRACT", 1));
+        ap.setSourceSystem(SourceSystem.DERIVED);
+        ap.setInterval(encounter.getInterval());
+        ap.setValue(NominalValue.getInstance("High"));
+        ap.setContextId("CONTEXT");
+
+        List<Proposition> propositions
+                = Arrays.<Proposition>asList(patient, encounter, context, ap);
+        WorkingMemoryFactStore factStore = new WorkingMemoryFactStore();
+        factStore.setPropositions(propositions);
+
+        WorkingMemoryFactStore copy = roundTrip(factStore);
+
+        List<Proposition> copies = copy.getPropositions();
+        assertEquals(propositions, copies);
+        for (int i = 0; i < propositions.size(); i++) {
+            assertTrue(propositions.get(i).isEqual(copies.get(i)));
+            assertEquals(propositions.get(i).getSourceSystem(),
+                    copies.get(i).getSourceSystem());
+        }
+        Constant patientCopy = (Constant) copies.get(0);
+        for (String propertyName : patient.getPropertyNames()) {
+            assertEquals(patient.getProperty(propertyName),
+                    patientCopy.getProperty(propertyName));
+        }
+        assertEquals(patient.getReferences("encounters"),
+                patientCopy.getReferences("encounters"));
+        assertSame(patientCopy.getReferences("encounters").get(0),
+                copies.get(1).getUniqueId());
+        assertEquals(patient.getCreateDate(), patientCopy.getCreateDate());
+        assertEquals(patient.getUpdateDate(), patientCopy.getUpdateDate());
+        assertNull(patientCopy.getDeleteDate());
+        assertEquals(patient.getDownloadDate(),
+                patientCopy.getDownloadDate());
+        assertEquals(encounter.getInterval(),
+                ((Event) copies.get(1)).getInterval());
+        assertEquals(context.getInterval(),
+                ((Context) copies.get(2)).getInterval());
+        AbstractParameter apCopy = (AbstractParameter) copies.get(3);
+        assertEquals(ap.getInterval(), apCopy.getInterval());
+        assertEquals(ap.getValue(), apCopy.getValue());
+        assertEquals("CONTEXT", apCopy.getContextId());
+    }
+
+    public void testEqualPropositionsStayDistinct() throws Exception {
+        UniqueId uid = getUid();
+        PrimitiveParameter pp1 = new PrimitiveParameter("TEST", uid);
+        pp1.setValue(NumberValue.getInstance(1));
+        PrimitiveParameter pp2 = new PrimitiveParameter("TEST", uid);
+        pp2.setValue(NumberValue.getInstance(2));
+        assertEquals(pp1, pp2);
+
+        WorkingMemoryFactStore factStore = new WorkingMemoryFactStore();
+        factStore.setPropositions(Arrays.<Proposition>asList(pp1, pp2));
+
+        List<Proposition> copies = roundTrip(factStore).getPropositions();
+        assertEquals(2, copies.size());
+        assertNotSame(copies.get(0), copies.get(1));
+        assertEquals(NumberValue.getInstance(1),
+                ((PrimitiveParameter) copies.get(0)).getValue());
+        assertEquals(NumberValue.getInstance(2),
+                ((PrimitiveParameter) copies.get(1)).getValue());
+    }
+
+    /**
+     * The compact form should be well under half the size of serializing
+     * the same propositions and derivations with plain Java serialization.
+     */
+    public void testCompactSize() throws Exception {
+        IntervalFactory intervalFactory = new IntervalFactory();
+        DataSourceBackendSourceSystem sourceSystem
+                = DataSourceBackendSourceSystem.getInstance("TEST");
+        List<Proposition> propositions = new ArrayList<>();
+        Map<Proposition, Set<Proposition>> forwardDerivations
+                = new HashMap<>();
+        Map<Proposition, Set<Proposition>> backwardDerivations
+                = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            PrimitiveParameter pp = new PrimitiveParameter("LAB_RESULT",
+                    providerUid("TEST", "LAB_RESULT", i));
+            pp.setSourceSystem(sourceSystem);
+            pp.setValue(NumberValue.getInstance(i % 50));
+            pp.setPosition(1172779860000L + i * 60000L);
+            pp.setGranularity(AbsoluteTimeGranularity.MINUTE);
+            pp.setProperty("units", NominalValue.getInstance("mg/dL"));
+            propositions.add(pp);
+            AbstractParameter ap = new AbstractParameter("HIGH_LAB",
+                    derivedUid("HIGH_LAB", i));
+            ap.setSourceSystem(SourceSystem.DERIVED);
+            ap.setInterval(intervalFactory.getInstance(
+                    pp.getPosition(), AbsoluteTimeGranularity.MINUTE));
+            ap.setValue(NominalValue.getInstance("High"));
+            forwardDerivations.put(pp,
+                    new HashSet<Proposition>(Collections.singleton(ap)));
+            backwardDerivations.put(ap,
+                    new HashSet<Proposition>(Collections.singleton(pp)));
+        }
+        WorkingMemoryFactStore factStore = new WorkingMemoryFactStore();
+        factStore.setPropositions(propositions);
+        factStore.setForwardDerivations(forwardDerivations);
+        factStore.setBackwardDerivations(backwardDerivations);
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(plain)) {
+            oos.writeObject(new ArrayList<>(propositions));
+            oos.writeObject(forwardDerivations);
+            oos.writeObject(backwardDerivations);
+        }
+        int compactSize = serialize(factStore).length;
+        assertTrue("compact size " + compactSize + " vs plain size "
+                + plain.size(), compactSize * 2 < plain.size());
+        assertEquals(propositions, roundTrip(factStore).getPropositions());
+    }
+
+    private static UniqueId providerUid(String sourceId, String id,
+            int numericalId) {
+        return new UniqueId(DataSourceBackendId.getInstance(sourceId),
+                localUid(id, numericalId));
+    }
+
+    private static UniqueId derivedUid(String id, int numericalId) {
+        return new UniqueId(DerivedSourceId.getInstance(),
+                localUid(id, numericalId));
+    }
+
+    private static LocalUniqueId localUid(final String id,
+            final int numericalId) {
+        return new ProviderBasedLocalUniqueId(
+                new LocalUniqueIdValuesProvider() {
+                    @Override
+                    public void incr() {
+                    }
+
+                    @Override
+                    public String getId() {
+                        return id;
+                    }
+
+                    @Override
+                    public int getNumericalId() {
+                        return numericalId;
+                    }
+                });
+    }
+
+    private static byte[] serialize(WorkingMemoryFactStore factStore)
+            throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(factStore);
+        }
+        return baos.toByteArray();
+    }
+
+    private static WorkingMemoryFactStore roundTrip(
+            WorkingMemoryFactStore factStore)
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(serialize(factStore)))) {
+            return (WorkingMemoryFactStore) ois.readObject();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.protempa;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.eurekaclinical.datastore.DataStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.protempa.datastore.DataStores;
+
+/**
+ * Tests when {@link WorkingMemoryWriter} writes working memories to a
+ * {@link WorkingMemoryStore}, and what is on disk if processing stops
+ * without shutting down. The data store is a fake that keeps what is written
+ * to it in memory until it is closed, like a data store with deferred
+ * writes.
+ *
+ * @author Andrew Post
+ */
+public class WorkingMemoryWriterTest {
+
+    private Map<String, WorkingMemoryFactStore> disk;
+    private Map<String, WorkingMemoryFactStore> unsynced;
+    private int propDefWrites;
+    private boolean closed;
+
+    @Before
+    public void setUp() {
+        this.disk = new HashMap<>();
+        this.unsynced = new HashMap<>();
+    }
+
+    @After
+    public void tearDown() {
+        this.disk = null;
+        this.unsynced = null;
+        this.propDefWrites = 0;
+        this.closed = false;
+    }
+
+    @Test
+    public void testWritesAtBatchSize() throws IOException {
+        WorkingMemoryWriter writer = new WorkingMemoryWriter(
+                newStore(StatefulExecutionStrategy.Durability.END), 3);
+        put(writer, "k0", "k1");
+        Assert.assertTrue(this.unsynced.isEmpty());
+        put(writer, "k2");
+        Assert.assertEquals(keyIds("k0", "k1", "k2"), this.unsynced.keySet());
+        put(writer, "k3");
+        Assert.assertEquals(keyIds("k0", "k1", "k2"), this.unsynced.keySet());
+        Assert.assertNotNull(writer.get("k3"));
+        writer.flush();
+        Assert.assertEquals(keyIds("k0", "k1", "k2", "k3"),
+                this.unsynced.keySet());
+    }
+
+    @Test
+    public void testBatchDurabilitySyncsEveryBatch() throws IOException {
+        WorkingMemoryWriter writer = new WorkingMemoryWriter(
+                newStore(StatefulExecutionStrategy.Durability.BATCH), 2);
+        put(writer, "k0", "k1");
+        Assert.assertEquals(keyIds("k0", "k1"), this.disk.keySet());
+        Assert.assertEquals(1, this.propDefWrites);
+        put(writer, "k2", "k3", "k4");
+
+        // Stop without flushing or closing.
+        Assert.assertEquals(keyIds("k0", "k1", "k2", "k3"),
+                this.disk.keySet());
+        Assert.assertEquals(2, this.propDefWrites);
+    }
+
+    @Test
+    public void testEndDurabilityWritesOnlyAtShutdown() throws IOException {
+        WorkingMemoryStore store
+                = newStore(StatefulExecutionStrategy.Durability.END);
+        WorkingMemoryWriter writer = new WorkingMemoryWriter(store, 2);
+        put(writer, "k0", "k1", "k2", "k3", "k4");
+        Assert.assertTrue(this.disk.isEmpty());
+        Assert.assertEquals(0, this.propDefWrites);
+
+        writer.flush();
+        store.finish();
+        store.close();
+        Assert.assertEquals(keyIds("k0", "k1", "k2", "k3", "k4"),
+                this.disk.keySet());
+        Assert.assertEquals(1, this.propDefWrites);
+        Assert.assertTrue(this.closed);
+    }
+
+    @Test
+    public void testReadsAfterSync() throws IOException {
+        WorkingMemoryStore store
+                = newStore(StatefulExecutionStrategy.Durability.BATCH);
+        WorkingMemoryWriter writer = new WorkingMemoryWriter(store, 1);
+        put(writer, "k0");
+        Assert.assertNotNull(writer.get("k0"));
+        Assert.assertNull(writer.get("k1"));
+    }
+
+    @Test
+    public void testBatchDurabilityKeyIdsSurviveSync() throws IOException {
+        WorkingMemoryStore store
+                = newStore(StatefulExecutionStrategy.Durability.BATCH);
+        WorkingMemoryWriter writer = new WorkingMemoryWriter(store, 1);
+        put(writer, "k0", "k1");
+        Set<String> keyIds = store.getKeyIds();
+        put(writer, "k2");
+        Assert.assertEquals(keyIds("k0", "k1"), keyIds);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchSizeMustBePositive() throws IOException {
+        new WorkingMemoryWriter(
+                newStore(StatefulExecutionStrategy.Durability.END), 0);
+    }
+
+    private static void put(WorkingMemoryWriter writer, String... keyIds)
+            throws IOException {
+        for (String keyId : keyIds) {
+            writer.put(keyId, new WorkingMemoryFactStore());
+        }
+    }
+
+    private static Set<String> keyIds(String... keyIds) {
+        return new HashSet<>(Arrays.asList(keyIds));
+    }
+
+    private WorkingMemoryStore newStore(
+            StatefulExecutionStrategy.Durability durability)
+            throws IOException {
+        return new WorkingMemoryStore(new DataStores() {
+
+            @Override
+            public boolean exists() {
+                return true;
+            }
+
+            @Override
+            public DataStore<String, WorkingMemoryFactStore> getDataStore() {
+                return newDataStore();
+            }
+
+            @Override
+            public void finish() {
+                propDefWrites++;
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+            }
+        }, durability);
+    }
+
+    /**
+     * Creates a data store that reads what is on disk, and writes to disk
+     * only when it is closed.
+     */
+    @SuppressWarnings("unchecked")
+    private DataStore<String, WorkingMemoryFactStore> newDataStore() {
+        this.unsynced = new HashMap<>(this.disk);
+        Map<String, WorkingMemoryFactStore> contents = this.unsynced;
+        boolean[] dataStoreClosed = {false};
+        return (DataStore<String, WorkingMemoryFactStore>) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{DataStore.class},
+                (proxy, method, args) -> {
+                    if (dataStoreClosed[0]) {
+                        throw new IllegalStateException("closed");
+                    }
+                    switch (method.getName()) {
+                        case "close":
+                        case "shutdown":
+                            this.disk.putAll(contents);
+                            contents.clear();
+                            dataStoreClosed[0] = true;
+                            return null;
+                        case "isClosed":
+                            return Boolean.FALSE;
+                        default:
+                            try {
+                                return method.invoke(contents, args);
+                            } catch (InvocationTargetException ex) {
+                                throw ex.getCause();
+                            }
+                    }
+                });
+    }
+}
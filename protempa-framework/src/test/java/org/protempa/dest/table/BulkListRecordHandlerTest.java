@@ -0,0 +1,274 @@
+package org.protempa.dest.table;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.arp.javautil.sql.ConnectionSpec;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link BulkListRecordHandler} against a connection that records the
+ * JDBC calls made on it.
+ *
+ * @author Andrew Post
+ */
+public class BulkListRecordHandlerTest {
+
+    private static final String INSERT = "INSERT INTO T (A, B) VALUES (?, ?)";
+
+    private List<String> calls;
+    private String failOn;
+
+    @Before
+    public void setUp() {
+        this.calls = Collections.synchronizedList(new ArrayList<>());
+        System.setProperty(BulkListRecordHandler.BULK_LOAD_PROPERTY, "batch");
+        System.setProperty(RecordHandler.SQL_RUNNER_BATCH_SIZE_PROPERTY, "2");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(BulkListRecordHandler.BULK_LOAD_PROPERTY);
+        System.clearProperty(BulkListRecordHandler.BACKGROUND_FLUSH_PROPERTY);
+        System.clearProperty(RecordHandler.SQL_RUNNER_BATCH_SIZE_PROPERTY);
+        this.calls = null;
+        this.failOn = null;
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        BulkListRecordHandler handler = newHandler(null);
+        Assert.assertEquals(BulkListRecordHandler.Mode.BATCH,
+                handler.getMode());
+        handler.insert(row(0));
+        handler.insert(row(1));
+        handler.insert(row(2));
+        handler.close();
+        Assert.assertEquals(Arrays.asList(
+                "prepare " + INSERT,
+                "prepare " + INSERT,
+                "set 1=a0", "set 2=b0", "addBatch",
+                "set 1=a1", "set 2=b1", "addBatch",
+                "executeBatch", "clearBatch",
+                "set 1=a2", "set 2=b2", "addBatch",
+                "executeBatch", "clearBatch",
+                "commit",
+                "close",
+                "close",
+                "close connection"), this.calls);
+    }
+
+    @Test
+    public void testMultiRow() throws Exception {
+        System.setProperty(BulkListRecordHandler.BULK_LOAD_PROPERTY, "auto");
+        BulkListRecordHandler handler = newHandler("H2");
+        Assert.assertEquals(BulkListRecordHandler.Mode.MULTIROW,
+                handler.getMode());
+        handler.insert(row(0));
+        handler.insert(row(1));
+        handler.insert(row(2));
+        handler.close();
+        Assert.assertEquals(Arrays.asList(
+                "prepare " + INSERT,
+                "prepare " + INSERT + ",(?, ?)",
+                "set 1=a0", "set 2=b0", "set 3=a1", "set 4=b1",
+                "executeUpdate",
+                "prepare " + INSERT,
+                "set 1=a2", "set 2=b2",
+                "executeUpdate", "close",
+                "commit",
+                "close",
+                "close",
+                "close connection"), this.calls);
+    }
+
+    @Test
+    public void testFailedBatchRollsBackOnClose() throws Exception {
+        this.failOn = "executeBatch";
+        BulkListRecordHandler handler = newHandler(null);
+        handler.insert(row(0));
+        handler.insert(row(1));
+        try {
+            handler.close();
+            Assert.fail("expected close to fail");
+        } catch (SQLException ex) {
+            Assert.assertEquals("executeBatch failed", ex.getMessage());
+        }
+        assertRolledBack();
+        Assert.assertEquals("close connection",
+                this.calls.get(this.calls.size() - 1));
+    }
+
+    @Test
+    public void testFailedBatchRollsBackOnInsert() throws Exception {
+        this.failOn = "executeBatch";
+        BulkListRecordHandler handler = newHandler(null);
+        handler.insert(row(0));
+        handler.insert(row(1));
+        handler.insert(row(2));
+        try {
+            handler.insert(row(3));
+            Assert.fail("expected the insert to fail");
+        } catch (SQLException ex) {
+            Assert.assertEquals("executeBatch failed", ex.getMessage());
+        }
+        try {
+            handler.insert(row(4));
+            Assert.fail("expected inserts after a failure to fail");
+        } catch (SQLException ex) {
+            Assert.assertEquals("Cannot insert after an earlier batch failed",
+                    ex.getMessage());
+        }
+        handler.close();
+        assertRolledBack();
+        Assert.assertFalse(this.calls.contains("set 1=a2"));
+    }
+
+    @Test
+    public void testFailedBatchInCallerThreadRollsBack() throws Exception {
+        System.setProperty(BulkListRecordHandler.BACKGROUND_FLUSH_PROPERTY,
+                "false");
+        this.failOn = "executeBatch";
+        BulkListRecordHandler handler = newHandler(null);
+        handler.insert(row(0));
+        try {
+            handler.insert(row(1));
+            Assert.fail("expected the insert to fail");
+        } catch (SQLException ex) {
+            Assert.assertEquals("executeBatch failed", ex.getMessage());
+        }
+        Assert.assertEquals("rollback", this.calls.get(this.calls.size() - 1));
+        handler.close();
+        assertRolledBack();
+    }
+
+    private void assertRolledBack() {
+        Assert.assertTrue(this.calls.toString(),
+                this.calls.contains("rollback"));
+        Assert.assertFalse(this.calls.toString(),
+                this.calls.contains("commit"));
+    }
+
+    private static ArrayList<String> row(int i) {
+        return new ArrayList<>(Arrays.asList("a" + i, "b" + i));
+    }
+
+    /**
+     * Records a call, and throws an exception if it is the call that is
+     * set up to fail.
+     */
+    private void record(String call) throws SQLException {
+        this.calls.add(call);
+        if (call.equals(this.failOn)) {
+            throw new SQLException(call + " failed");
+        }
+    }
+
+    private BulkListRecordHandler newHandler(String databaseProductName)
+            throws SQLException {
+        Connection connection = newConnection(databaseProductName);
+        ConnectionSpec connSpec = (ConnectionSpec) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{ConnectionSpec.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getOrCreate")) {
+                        return connection;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return new BulkListRecordHandler(connSpec, INSERT);
+    }
+
+    private Connection newConnection(String databaseProductName) {
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            record("prepare " + args[0]);
+                            return newStatement();
+                        case "getMetaData":
+                            return newMetaData(databaseProductName);
+                        case "getAutoCommit":
+                            return Boolean.FALSE;
+                        case "commit":
+                        case "rollback":
+                            record(method.getName());
+                            return null;
+                        case "close":
+                            record("close connection");
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.getName());
+                    }
+                });
+    }
+
+    private DatabaseMetaData newMetaData(String databaseProductName) {
+        return (DatabaseMetaData) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{DatabaseMetaData.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getDatabaseProductName")) {
+                        return databaseProductName;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private PreparedStatement newStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setString":
+                            record("set " + args[0] + "=" + args[1]);
+                            return null;
+                        case "addBatch":
+                        case "clearBatch":
+                        case "close":
+                            record(method.getName());
+                            return null;
+                        case "executeBatch":
+                            record(method.getName());
+                            return new int[0];
+                        case "executeUpdate":
+                            record(method.getName());
+                            return 0;
+                        default:
+                            throw new UnsupportedOperationException(
+                                    method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,85 @@
+package org.protempa.dest.table;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class InsertStatementTest {
+
+    @Test
+    public void testParse() {
+        InsertStatement stmt = InsertStatement.parse(
+                "insert into patient (keyid, name, dob) values (?, ?, ?)");
+        Assert.assertNotNull(stmt);
+        Assert.assertEquals("patient", stmt.getTableName());
+        Assert.assertEquals(3, stmt.getColumnCount());
+        Assert.assertEquals(3, stmt.getParameterCount());
+        Assert.assertTrue(stmt.isPlaceholdersOnly());
+    }
+
+    @Test
+    public void testParseWithExpression() {
+        InsertStatement stmt = InsertStatement.parse(
+                "INSERT INTO t (a, b) VALUES (?, CURRENT_TIMESTAMP)");
+        Assert.assertNotNull(stmt);
+        Assert.assertEquals(1, stmt.getParameterCount());
+        Assert.assertFalse(stmt.isPlaceholdersOnly());
+    }
+
+    @Test
+    public void testParseNotAnInsert() {
+        Assert.assertNull(InsertStatement.parse("UPDATE t SET a = ?"));
+        Assert.assertNull(InsertStatement.parse(
+                "INSERT INTO t VALUES (?, ?)"));
+        Assert.assertNull(InsertStatement.parse(
+                "INSERT INTO t (a, b) VALUES (?, 'x')"));
+        Assert.assertNull(InsertStatement.parse(null));
+    }
+
+    @Test
+    public void testToMultiRowInsert() {
+        InsertStatement stmt = InsertStatement.parse(
+                "INSERT INTO t (a, b) VALUES (?, ?)");
+        Assert.assertEquals("INSERT INTO t (a, b) VALUES (?, ?),(?, ?),(?, ?)",
+                stmt.toMultiRowInsert(3));
+    }
+
+    @Test
+    public void testToCopy() {
+        InsertStatement stmt = InsertStatement.parse(
+                "INSERT INTO s.t (a, b) VALUES (?, ?);");
+        Assert.assertEquals("COPY s.t (a, b) FROM STDIN WITH (FORMAT csv)",
+                stmt.toCopy());
+    }
+
+    @Test
+    public void testAppendCsvRow() {
+        StringBuilder buf = new StringBuilder();
+        InsertStatement.appendCsvRow(buf,
+                new String[]{"a", "say \"hi\"", "x,y", "NULL"});
+        Assert.assertEquals("\"a\",\"say \"\"hi\"\"\",\"x,y\",\"NULL\"\n",
+                buf.toString());
+    }
+}
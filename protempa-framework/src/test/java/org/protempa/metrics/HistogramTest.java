@@ -0,0 +1,80 @@
+package org.protempa.metrics;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class HistogramTest {
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram("test");
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMin());
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(0, histogram.get99thPercentile());
+        Assert.assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void testStatistics() {
+        Histogram histogram = new Histogram("test");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(5050, histogram.getSum());
+        Assert.assertEquals(1, histogram.getMin());
+        Assert.assertEquals(100, histogram.getMax());
+        Assert.assertEquals(50.5, histogram.getMean(), 0.0);
+    }
+
+    @Test
+    public void testPercentileWithinFactorOfTwo() {
+        Histogram histogram = new Histogram("test");
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        long p50 = histogram.get50thPercentile();
+        Assert.assertTrue("p50 was " + p50, p50 >= 500 && p50 < 1000);
+        Assert.assertEquals(1000, histogram.get99thPercentile());
+    }
+
+    @Test
+    public void testReset() {
+        Histogram histogram = new Histogram("test");
+        histogram.record(5);
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testMetricsReturnsSameHistogram() {
+        Assert.assertSame(Metrics.histogram("test.same"),
+                Metrics.histogram("test.same"));
+        Assert.assertTrue(Metrics.getHistograms().containsKey("test.same"));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.protempa.proposition;
+
+import org.protempa.ProtempaTestCase;
+import org.protempa.proposition.value.AbsoluteTimeGranularity;
+import org.protempa.proposition.value.Granularity;
+import org.protempa.proposition.value.NumberValue;
+
+/**
+ * @author Andrew Post
+ */
+public class SegmentTest extends ProtempaTestCase {
+
+    private static final Granularity[] GRANULARITIES = {
+        AbsoluteTimeGranularity.MINUTE, AbsoluteTimeGranularity.HOUR,
+        AbsoluteTimeGranularity.SECOND, AbsoluteTimeGranularity.DAY
+    };
+
+    private Sequence<PrimitiveParameter> seq;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.seq = new Sequence<>("TEST");
+        long position = 1172779860000L;
+        for (int i = 0; i < 20; i++) {
+            PrimitiveParameter p = new PrimitiveParameter("TEST", getUid());
+            p.setValue(NumberValue.getInstance(i));
+            p.setPosition(position);
+            p.setGranularity(GRANULARITIES[i % GRANULARITIES.length]);
+            this.seq.add(p);
+            position += 45000L * (i % 3 + 1);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        this.seq = null;
+    }
+
+    public void testExtendedIntervalMatchesNewSegment() {
+        Segment<PrimitiveParameter> seg = new Segment<>(this.seq, 2, 2);
+        for (int y = 2; y < this.seq.size(); y++) {
+            seg.resetState(this.seq, 2, y);
+            assertEquals(new Segment<>(this.seq, 2, y).getInterval(),
+                    seg.getInterval());
+        }
+    }
+
+    public void testShrunkIntervalMatchesNewSegment() {
+        Segment<PrimitiveParameter> seg = new Segment<>(this.seq);
+        seg.getInterval();
+        seg.resetState(this.seq, 5, 9);
+        assertEquals(new Segment<>(this.seq, 5, 9).getInterval(),
+                seg.getInterval());
+    }
+}
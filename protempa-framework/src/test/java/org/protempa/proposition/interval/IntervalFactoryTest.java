@@ -0,0 +1,77 @@
+package org.protempa.proposition.interval;
+
+/*-
+ * #%L
+ * Protempa Framework
+ * %%
+ * Copyright (C) 2012 - 2018 Emory University
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import org.protempa.ProtempaTestCase;
+import org.protempa.proposition.value.AbsoluteTimeGranularity;
+
+/**
+ *
+ * @author Andrew Post
+ */
+public class IntervalFactoryTest extends ProtempaTestCase {
+
+    public void testInterned() {
+        IntervalFactory factory = new IntervalFactory();
+        Interval i1 = factory.getInstance(1000L, AbsoluteTimeGranularity.DAY,
+                2000L, AbsoluteTimeGranularity.DAY);
+        long hits = IntervalFactory.getCacheHitCount();
+        Interval i2 = factory.getInstance(1000L, AbsoluteTimeGranularity.DAY,
+                2000L, AbsoluteTimeGranularity.DAY);
+        assertSame(i1, i2);
+        assertTrue(IntervalFactory.getCacheHitCount() > hits);
+    }
+
+    public void testDifferentArgumentsNotShared() {
+        IntervalFactory factory = new IntervalFactory();
+        Interval i1 = factory.getInstance(1000L, AbsoluteTimeGranularity.DAY);
+        Interval i2 = factory.getInstance(1000L, AbsoluteTimeGranularity.HOUR);
+        Interval i3 = factory.getInstance(1000L, AbsoluteTimeGranularity.DAY,
+                1000L, AbsoluteTimeGranularity.DAY);
+        Interval i4 = factory.getInstance(null, AbsoluteTimeGranularity.DAY);
+        assertNotSame(i1, i2);
+        assertNotSame(i1, i3);
+        assertNotSame(i1, i4);
+        assertEquals(AbsoluteTimeGranularity.HOUR, i2.getStartGranularity());
+        assertNull(i4.getMinimumStart());
+    }
+
+    public void testPrimitiveAndBoxedShareIntervals() {
+        IntervalFactory factory = new IntervalFactory();
+        assertSame(factory.getInstance(3000L, AbsoluteTimeGranularity.DAY),
+                factory.getInstance(Long.valueOf(3000L),
+                        AbsoluteTimeGranularity.DAY));
+        assertSame(factory.getInstance(3000L, AbsoluteTimeGranularity.DAY,
+                4000L, AbsoluteTimeGranularity.DAY),
+                factory.getInstance(Long.valueOf(3000L),
+                        AbsoluteTimeGranularity.DAY, Long.valueOf(4000L),
+                        AbsoluteTimeGranularity.DAY));
+    }
+
+    public void testNotInterned() {
+        IntervalFactory factory = new IntervalFactory(false);
+        Interval i1 = factory.getInstance(1000L, AbsoluteTimeGranularity.DAY,
+                2000L, AbsoluteTimeGranularity.DAY);
+        Interval i2 = factory.getInstance(1000L, AbsoluteTimeGranularity.DAY,
+                2000L, AbsoluteTimeGranularity.DAY);
+        assertNotSame(i1, i2);
+        assertEquals(i1, i2);
+    }
+}
@@ -22,7 +22,13 @@ package org.protempa.proposition.value;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.protempa.proposition.value.AbsoluteTimeGranularity;
 import static org.protempa.proposition.value.AbsoluteTimeGranularityUtil.asPosition;
@@ -51,4 +57,39 @@ public class AbsoluteTimeGranularityTest extends TestCase {
         long april1 = asPosition(DATE_FORMAT.parse("01-Apr-2007"));
         assertEquals(april1, AbsoluteTimeGranularity.MONTH.earliest(april1));
     }
+
+    public void testEarliestLatestConcurrent() throws Exception {
+        final long start = asPosition(DATE_FORMAT.parse("01-Jan-2007"));
+        final long[] expected = earliestAndLatest(start);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        return earliestAndLatest(start);
+                    }
+                }));
+            }
+            for (Future<long[]> future : futures) {
+                long[] actual = future.get();
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i], actual[i]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long[] earliestAndLatest(long start) {
+        long[] result = new long[2000];
+        for (int i = 0; i < result.length; i += 2) {
+            long pos = start + i * 3600000L + 1234L;
+            result[i] = AbsoluteTimeGranularity.DAY.earliest(pos);
+            result[i + 1] = AbsoluteTimeGranularity.MONTH.latest(pos);
+        }
+        return result;
+    }
 }
@@ -140,4 +140,27 @@ public class NumberValueTest extends TestCase {
         format.setGroupingUsed(false);
         assertEquals("1000", format.format(new BigDecimal("1000")));
     }
+
+    public void testParseMatchesBigDecimal() {
+        String[] strs = {"0", "-0", "+7", "007", "-12", "1.50", "-98.6",
+            "1023", "-1024", "1024", "0.001", "123456789012345678",
+            "1234567890123456789", "1e3", "5.", ".5"};
+        for (String str : strs) {
+            assertEquals(str, NumberValue.getInstance(new BigDecimal(str)),
+                    ValueType.NUMBERVALUE.parse(str));
+        }
+    }
+
+    public void testParseInvalid() {
+        assertNull(ValueType.NUMBERVALUE.parse("1.2.3"));
+        assertNull(ValueType.NUMBERVALUE.parse("-"));
+    }
+
+    public void testCompareToEqualDoubles() {
+        NumberValue a = NumberValue.getInstance(
+                new BigDecimal("0.10000000000000000001"));
+        NumberValue b = NumberValue.getInstance(new BigDecimal("0.1"));
+        assertEquals(a.doubleValue(), b.doubleValue());
+        assertTrue(a.compareTo(b) > 0);
+    }
 }